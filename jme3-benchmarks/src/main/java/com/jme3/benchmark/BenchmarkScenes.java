@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.anim.Armature;
+import com.jme3.anim.Joint;
+import com.jme3.anim.SkinningControl;
+import com.jme3.asset.AssetConfig;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Cylinder;
+import com.jme3.system.NullRenderer;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the scenes shared by the benchmarks. Everything here is
+ * headless: rendering goes through a {@link NullRenderer}, so the numbers
+ * measure the engine's CPU side only and are reproducible without a GPU.
+ */
+public final class BenchmarkScenes {
+
+    private static final String[] MATERIALS = {
+        "Common/MatDefs/Misc/Unshaded.j3md",
+        "Common/MatDefs/Light/Lighting.j3md"
+    };
+
+    private BenchmarkScenes() {
+    }
+
+    public static AssetManager createAssetManager() {
+        Logger.getLogger(AssetConfig.class.getName()).setLevel(Level.OFF);
+        return new DesktopAssetManager(true);
+    }
+
+    public static RenderManager createRenderManager() {
+        return new RenderManager(new NullRenderer());
+    }
+
+    /**
+     * Creates a main view looking down the negative Z axis into the
+     * scenes built by {@link #createGrid(AssetManager, int, int) createGrid}.
+     */
+    public static ViewPort createViewPort(RenderManager renderManager) {
+        Camera cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(60f, 1280f / 720f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 50));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        return renderManager.createMainView("Benchmark", cam);
+    }
+
+    /**
+     * Creates a scene of <code>count</code> boxes laid out on a square grid,
+     * grouped under intermediate nodes of <code>fanOut</code> children each.
+     * About half of the boxes are behind the camera returned by
+     * {@link #createViewPort(RenderManager) createViewPort}, and the boxes
+     * alternate between a few materials so sorting has work to do.
+     */
+    public static Node createGrid(AssetManager assetManager, int count, int fanOut) {
+        Material[] materials = new Material[MATERIALS.length * 2];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = new Material(assetManager, MATERIALS[i % MATERIALS.length]);
+            if (i < MATERIALS.length) {
+                materials[i].setColor(i == 0 ? "Color" : "Diffuse", ColorRGBA.randomColor());
+            }
+        }
+
+        Box box = new Box(0.4f, 0.4f, 0.4f);
+        int side = (int) FastMath.ceil(FastMath.sqrt(count));
+        Node root = new Node("Root");
+        Node group = null;
+        for (int i = 0; i < count; i++) {
+            if (i % fanOut == 0) {
+                group = new Node("Group " + (i / fanOut));
+                root.attachChild(group);
+            }
+            Geometry geom = new Geometry("Box " + i, box);
+            geom.setMaterial(materials[i % materials.length]);
+            geom.setLocalTranslation(i % side - side / 2f, 0, i / side - side / 2f);
+            group.attachChild(geom);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    /**
+     * Creates a skinned cylinder driven by a chain of <code>jointCount</code>
+     * joints, each vertex weighted to the two joints nearest to it.
+     */
+    public static Node createSkinnedModel(AssetManager assetManager, int jointCount, int samples) {
+        float height = jointCount;
+        Mesh mesh = new Cylinder(samples, samples, 0.5f, height, true);
+
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        int vertexCount = mesh.getVertexCount();
+        ByteBuffer indices = BufferUtils.createByteBuffer(vertexCount * 4);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(vertexCount * 4);
+        for (int v = 0; v < vertexCount; v++) {
+            // Cylinder is built along Z, centered on the origin
+            float z = positions.get(v * 3 + 2) + height / 2f;
+            int joint = Math.min((int) z, jointCount - 1);
+            int next = Math.min(joint + 1, jointCount - 1);
+            float blend = FastMath.clamp(z - joint, 0f, 1f);
+            indices.put((byte) joint).put((byte) next).put((byte) 0).put((byte) 0);
+            weights.put(1f - blend).put(blend).put(0f).put(0f);
+        }
+        indices.flip();
+        weights.flip();
+
+        VertexBuffer indexBuffer = new VertexBuffer(VertexBuffer.Type.BoneIndex);
+        indexBuffer.setupData(VertexBuffer.Usage.Static, 4, VertexBuffer.Format.UnsignedByte, indices);
+        mesh.setBuffer(indexBuffer);
+        VertexBuffer weightBuffer = new VertexBuffer(VertexBuffer.Type.BoneWeight);
+        weightBuffer.setupData(VertexBuffer.Usage.Static, 4, VertexBuffer.Format.Float, weights);
+        mesh.setBuffer(weightBuffer);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose();
+
+        Joint[] joints = new Joint[jointCount];
+        for (int i = 0; i < jointCount; i++) {
+            joints[i] = new Joint("Joint " + i);
+            if (i == 0) {
+                joints[i].setLocalTranslation(new Vector3f(0, 0, -height / 2f));
+            } else {
+                joints[i].setLocalTranslation(new Vector3f(0, 0, 1));
+                joints[i - 1].addChild(joints[i]);
+            }
+        }
+        Armature armature = new Armature(joints);
+        armature.saveBindPose();
+        armature.saveInitialPose();
+
+        Geometry geom = new Geometry("Skinned", mesh);
+        geom.setMaterial(new Material(assetManager, MATERIALS[0]));
+        Node model = new Node("Model");
+        model.attachChild(geom);
+        model.addControl(new SkinningControl(armature));
+        return model;
+    }
+}
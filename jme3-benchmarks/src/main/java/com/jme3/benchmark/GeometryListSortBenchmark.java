@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.OpaqueSortKeyComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures filling and sorting a {@link GeometryList} the way the render
+ * queue does it every frame: geometries are added in scene order and then
+ * sorted with the bucket's comparator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryListSortBenchmark {
+
+    @Param({"1000", "10000"})
+    public int geometries;
+
+    @Param({"opaque", "opaqueSortKey", "transparent"})
+    public String comparator;
+
+    private GeometryList list;
+    private Geometry[] sceneOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RenderManager renderManager = BenchmarkScenes.createRenderManager();
+        ViewPort viewPort = BenchmarkScenes.createViewPort(renderManager);
+        Node scene = BenchmarkScenes.createGrid(BenchmarkScenes.createAssetManager(), geometries, 16);
+        // Material sort ids are only known once the techniques are selected
+        renderManager.preloadScene(scene);
+
+        List<Geometry> geoms = new ArrayList<>();
+        collect(scene, geoms);
+        sceneOrder = geoms.toArray(new Geometry[geoms.size()]);
+
+        list = new GeometryList(createComparator(comparator));
+        list.setCamera(viewPort.getCamera());
+    }
+
+    private static GeometryComparator createComparator(String name) {
+        switch (name) {
+            case "opaque":
+                return new OpaqueComparator();
+            case "opaqueSortKey":
+                return new OpaqueSortKeyComparator();
+            case "transparent":
+                return new TransparentComparator();
+            default:
+                throw new IllegalArgumentException("Unknown comparator: " + name);
+        }
+    }
+
+    private static void collect(Spatial spatial, List<Geometry> geoms) {
+        if (spatial instanceof Geometry) {
+            geoms.add((Geometry) spatial);
+        } else {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                collect(child, geoms);
+            }
+        }
+    }
+
+    @Benchmark
+    public GeometryList sort() {
+        list.clear();
+        for (Geometry geom : sceneOrder) {
+            list.add(geom);
+        }
+        list.sort();
+        return list;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.anim.Armature;
+import com.jme3.anim.Joint;
+import com.jme3.anim.SkinningControl;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one frame of software skinning: posing the armature, updating
+ * the joint transforms and deforming the mesh in
+ * {@link SkinningControl}, optionally splitting the mesh across the
+ * common fork-join pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SkinningControlBenchmark {
+
+    @Param({"16", "64"})
+    public int joints;
+
+    @Param({"32", "128"})
+    public int samples;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private SkinningControl control;
+    private Joint[] jointList;
+    private final Quaternion rotation = new Quaternion();
+    private float angle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        renderManager = BenchmarkScenes.createRenderManager();
+        viewPort = BenchmarkScenes.createViewPort(renderManager);
+        Node model = BenchmarkScenes.createSkinnedModel(
+                BenchmarkScenes.createAssetManager(), joints, samples);
+        control = model.getControl(SkinningControl.class);
+        control.setHardwareSkinningPreferred(false);
+        if (parallel) {
+            control.setSoftwareSkinningPool(ForkJoinPool.commonPool());
+        }
+
+        Armature armature = control.getArmature();
+        jointList = new Joint[armature.getJointCount()];
+        for (int i = 0; i < jointList.length; i++) {
+            jointList[i] = armature.getJoint(i);
+        }
+    }
+
+    @Benchmark
+    public SkinningControl skin() {
+        angle += 0.01f;
+        rotation.fromAngleNormalAxis(angle, Vector3f.UNIT_X);
+        for (Joint joint : jointList) {
+            joint.setLocalRotation(rotation);
+        }
+        control.update(1f / 60f);
+        control.render(renderManager, viewPort);
+        return control;
+    }
+}
@@ -65,6 +65,11 @@ public class AnimComposer extends AbstractControl {
     private float globalSpeed = 1f;
     private Map<String, Layer> layers = new LinkedHashMap<>();
 
+    /**
+     * Set while an {@link AnimationBatch} evaluates this composer.
+     */
+    transient boolean batched = false;
+
     public AnimComposer() {
         layers.put(DEFAULT_LAYER, new Layer(this));
     }
@@ -378,6 +383,28 @@ public class AnimComposer extends AbstractControl {
 
     @Override
     protected void controlUpdate(float tpf) {
+        if (!batched) {
+            evaluate(tpf);
+        }
+    }
+
+    /**
+     * Advances the layers and applies their current actions, unless an
+     * {@link AnimLodControl} on the spatial skips this frame.
+     *
+     * @param tpf the time since the last update (in seconds)
+     */
+    void evaluate(float tpf) {
+        AnimLodControl lod = spatial.getControl(AnimLodControl.class);
+        if (lod != null && lod.isEnabled()) {
+            tpf = lod.advance(tpf);
+            if (tpf < 0f) {
+                return;
+            }
+        } else {
+            lod = null;
+        }
+
         for (Layer layer : layers.values()) {
             Action currentAction = layer.currentAction;
             if (currentAction == null) {
@@ -385,7 +412,7 @@ public class AnimComposer extends AbstractControl {
             }
             layer.advance(tpf);
 
-            currentAction.setMask(layer.mask);
+            currentAction.setMask(lod == null ? layer.mask : lod.getMask(layer.mask));
             boolean running = currentAction.interpolate(layer.time);
             currentAction.setMask(null);
 
@@ -421,6 +448,7 @@ public class AnimComposer extends AbstractControl {
     @Override
     public void cloneFields(Cloner cloner, Object original) {
         super.cloneFields(cloner, original);
+        batched = false;
         Map<String, AnimClip> clips = new HashMap<>();
         for (String key : animClipMap.keySet()) {
             clips.put(key, cloner.clone(animClipMap.get(key)));
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.FastMath;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.control.AreaUtils;
+import com.jme3.util.clone.Cloner;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>AnimLodControl</code> lowers the cost of animating models that
+ * cover a small part of the screen.
+ * <p>
+ * Add it to the spatial holding the {@link AnimComposer} and the
+ * {@link SkinningControl} of a model. Each frame the model is rendered, the
+ * control measures the fraction of the screen covered by its bounds, and
+ * the next frame uses the most reduced {@link #addLevel(float, int, int) level}
+ * that applies to that coverage:
+ * <ul>
+ * <li>the animation is only evaluated every <code>updateInterval</code>
+ * frames, with the time of the skipped frames, so it plays at the same
+ * speed. The armature and the skinning are left untouched in between,</li>
+ * <li>joints deeper than <code>maxJointDepth</code> in the armature, such
+ * as fingers, keep their last pose.</li>
+ * </ul>
+ * Models that were not rendered in the previous frame are not animated at
+ * all unless {@link #setFreezeOffscreen(boolean) freezing} is disabled.
+ * Update intervals are staggered between models so that distant crowds
+ * do not all update during the same frame.
+ * <p>
+ * The {@link SkinningControl} of the model updates the armature and the
+ * skinning after each evaluation of the animation, whether it comes before
+ * or after the composer in the control list. In the latter case, like
+ * without this control, it applies the pose of the previous frame.
+ */
+public class AnimLodControl extends AbstractControl {
+
+    // controls created or cloned so far, staggers the update intervals
+    private static final AtomicInteger controlCount = new AtomicInteger();
+
+    private float[] maxCoverages = new float[0];
+    private int[] updateIntervals = new int[0];
+    private int[] maxJointDepths = new int[0];
+    private boolean freezeOffscreen = true;
+
+    private transient boolean rendered = true;
+    private transient float frameCoverage = 1f;
+    private transient int level = -1;
+    private transient int phase = nextPhase();
+    private transient long frameCount = 0;
+    private transient float elapsed = 0f;
+    private transient int poseCount = 0;
+    private transient JointMask jointMask = new JointMask();
+
+    /**
+     * Creates a control without reduced levels, models are only frozen
+     * while offscreen.
+     */
+    public AnimLodControl() {
+    }
+
+    private static int nextPhase() {
+        // the phase only needs to differ between neighbouring controls
+        return controlCount.getAndIncrement() & 0xffff;
+    }
+
+    /**
+     * Adds a reduced level, used when the model covers at most the given
+     * fraction of the screen, unless a level with a lower coverage also
+     * applies.
+     *
+     * @param maxCoverage    the screen fraction below which the level applies (in [0, 1])
+     * @param updateInterval the animation is evaluated once per this many frames (&ge;1)
+     * @param maxJointDepth  the depth of the deepest animated joints, roots
+     *                       having a depth of 0, or -1 to animate all joints
+     */
+    public void addLevel(float maxCoverage, int updateInterval, int maxJointDepth) {
+        if (updateInterval < 1) {
+            throw new IllegalArgumentException("updateInterval must be at least 1");
+        }
+        int count = maxCoverages.length;
+        float[] coverages = new float[count + 1];
+        int[] intervals = new int[count + 1];
+        int[] depths = new int[count + 1];
+        // keep the levels sorted by decreasing coverage
+        int index = 0;
+        while (index < count && maxCoverages[index] >= maxCoverage) {
+            index++;
+        }
+        System.arraycopy(maxCoverages, 0, coverages, 0, index);
+        System.arraycopy(updateIntervals, 0, intervals, 0, index);
+        System.arraycopy(maxJointDepths, 0, depths, 0, index);
+        coverages[index] = maxCoverage;
+        intervals[index] = updateInterval;
+        depths[index] = maxJointDepth;
+        System.arraycopy(maxCoverages, index, coverages, index + 1, count - index);
+        System.arraycopy(updateIntervals, index, intervals, index + 1, count - index);
+        System.arraycopy(maxJointDepths, index, depths, index + 1, count - index);
+        maxCoverages = coverages;
+        updateIntervals = intervals;
+        maxJointDepths = depths;
+    }
+
+    /**
+     * @return the number of reduced levels
+     */
+    public int getNumLevels() {
+        return maxCoverages.length;
+    }
+
+    /**
+     * Returns the reduced level used during the last animation update.
+     *
+     * @return the index of the level, by decreasing coverage, or -1 if the
+     * animation was evaluated at full detail
+     */
+    public int getCurrentLevel() {
+        return level;
+    }
+
+    /**
+     * Sets whether models that were not rendered in the previous frame are
+     * left unanimated. Enabled by default.
+     *
+     * @param freezeOffscreen true to freeze offscreen models
+     */
+    public void setFreezeOffscreen(boolean freezeOffscreen) {
+        this.freezeOffscreen = freezeOffscreen;
+    }
+
+    /**
+     * @return true if offscreen models are frozen
+     */
+    public boolean isFreezeOffscreen() {
+        return freezeOffscreen;
+    }
+
+    /**
+     * Called by the composer once per frame. Returns the time to advance
+     * the animation by, or a negative value if it is skipped this frame.
+     */
+    float advance(float tpf) {
+        boolean visible = rendered || !freezeOffscreen;
+        float coverage = frameCoverage;
+        rendered = false;
+        frameCoverage = 0f;
+
+        elapsed += tpf;
+        level = -1;
+        for (int i = maxCoverages.length - 1; i >= 0; i--) {
+            if (coverage <= maxCoverages[i]) {
+                level = i;
+                break;
+            }
+        }
+        int interval = level < 0 ? 1 : updateIntervals[level];
+        long frame = frameCount++;
+        if (!visible || (frame + phase) % interval != 0) {
+            return -1f;
+        }
+        poseCount++;
+        float result = elapsed;
+        elapsed = 0f;
+        return result;
+    }
+
+    /**
+     * Returns the number of times the animation of the model was evaluated.
+     * It changes whenever the armature and the skinning need updating, and
+     * stays the same on the frames skipped by this control.
+     *
+     * @return the number of evaluated poses
+     */
+    public int getPoseCount() {
+        return poseCount;
+    }
+
+    /**
+     * Returns the mask restricting the given layer mask to the joints
+     * animated at the current level, or the layer mask itself if all joints
+     * are animated. The returned mask is reused by the next call.
+     */
+    AnimationMask getMask(AnimationMask layerMask) {
+        int maxDepth = level < 0 ? -1 : maxJointDepths[level];
+        if (maxDepth < 0) {
+            return layerMask;
+        }
+        jointMask.maxDepth = maxDepth;
+        jointMask.layerMask = layerMask;
+        return jointMask;
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+        rendered = true;
+        if (maxCoverages.length == 0) {
+            return;
+        }
+        BoundingVolume bv = spatial.getWorldBound();
+        if (bv == null) {
+            frameCoverage = 1f;
+            return;
+        }
+        Camera cam = vp.getCamera();
+        float atanNH = FastMath.atan(cam.getFrustumNear() * cam.getFrustumTop());
+        float ratio = (FastMath.PI / (8f * atanNH));
+        float distance = bv.distanceTo(cam.getLocation()) / ratio;
+        float coverage = distance <= 0f ? 1f
+                : AreaUtils.calcScreenArea(bv, distance, cam.getWidth()) / (cam.getWidth() * cam.getHeight());
+        // keep the largest coverage among the viewports showing the model
+        frameCoverage = Math.max(frameCoverage, coverage);
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+        rendered = true;
+        frameCoverage = 1f;
+        level = -1;
+        phase = nextPhase();
+        frameCount = 0;
+        elapsed = 0f;
+        poseCount = 0;
+        jointMask = new JointMask();
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        super.write(ex);
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(maxCoverages, "maxCoverages", new float[0]);
+        oc.write(updateIntervals, "updateIntervals", new int[0]);
+        oc.write(maxJointDepths, "maxJointDepths", new int[0]);
+        oc.write(freezeOffscreen, "freezeOffscreen", true);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        InputCapsule ic = im.getCapsule(this);
+        maxCoverages = ic.readFloatArray("maxCoverages", new float[0]);
+        updateIntervals = ic.readIntArray("updateIntervals", new int[0]);
+        maxJointDepths = ic.readIntArray("maxJointDepths", new int[0]);
+        freezeOffscreen = ic.readBoolean("freezeOffscreen", true);
+    }
+
+    /**
+     * Excludes the joints deeper than a given depth.
+     */
+    private static class JointMask implements AnimationMask {
+
+        private int maxDepth;
+        private AnimationMask layerMask;
+
+        @Override
+        public boolean contains(Object target) {
+            if (target instanceof Joint) {
+                int depth = 0;
+                for (Joint j = ((Joint) target).getParent(); j != null; j = j.getParent()) {
+                    if (++depth > maxDepth) {
+                        return false;
+                    }
+                }
+            }
+            return layerMask == null || layerMask.contains(target);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.util.SafeArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>AnimationBatch</code> evaluates the animations of many models in
+ * parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Registered {@link AnimComposer}s are no longer evaluated by their own
+ * control update; instead {@link #update(float)} advances all of them
+ * across the pool, then updates the armatures of the registered
+ * {@link SkinningControl}s the same way. Registered skinning controls also
+ * split the software skinning of large meshes over the pool, see
+ * {@link SkinningControl#setSoftwareSkinningPool(ForkJoinPool)}.
+ * <p>
+ * Call {@link #update(float)} once per frame from the update thread, before
+ * the scene's logical state is updated, for example from an app state.
+ * Each model is evaluated by a single thread, but different models are
+ * evaluated concurrently, so actions that call back into user code (such
+ * as {@link com.jme3.anim.tween.Tweens#callMethod(Object, String, Object...)})
+ * run on pool threads and must not touch shared state.
+ */
+public class AnimationBatch {
+
+    /**
+     * Ranges of at most this many controls are updated by a single task.
+     */
+    static final int SEQUENTIAL_THRESHOLD = 4;
+
+    private final ForkJoinPool pool;
+    private final SafeArrayList<AnimComposer> composers = new SafeArrayList<>(AnimComposer.class);
+    private final SafeArrayList<SkinningControl> skinningControls = new SafeArrayList<>(SkinningControl.class);
+
+    /**
+     * Creates a batch evaluating on the given pool.
+     *
+     * @param pool the pool to use (not null)
+     */
+    public AnimationBatch(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool animations are evaluated on
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Adds a composer to this batch. It is then only evaluated by
+     * {@link #update(float)}.
+     *
+     * @param composer the composer to add (not null, not part of a batch)
+     */
+    public void add(AnimComposer composer) {
+        if (composer.batched) {
+            throw new IllegalStateException("The composer is already part of a batch");
+        }
+        composer.batched = true;
+        composers.add(composer);
+    }
+
+    /**
+     * Removes a composer from this batch, it is evaluated by its own control
+     * update again.
+     *
+     * @param composer the composer to remove
+     * @return true if the composer was part of this batch
+     */
+    public boolean remove(AnimComposer composer) {
+        if (!composers.remove(composer)) {
+            return false;
+        }
+        composer.batched = false;
+        return true;
+    }
+
+    /**
+     * Adds a skinning control to this batch. Its armature is then only
+     * updated by {@link #update(float)}, and its software skinning uses
+     * the pool of this batch.
+     *
+     * @param control the control to add (not null, not part of a batch)
+     */
+    public void add(SkinningControl control) {
+        if (control.batched) {
+            throw new IllegalStateException("The control is already part of a batch");
+        }
+        control.batched = true;
+        control.setSoftwareSkinningPool(pool);
+        skinningControls.add(control);
+    }
+
+    /**
+     * Removes a skinning control from this batch, its armature is updated
+     * by its own control update again.
+     *
+     * @param control the control to remove
+     * @return true if the control was part of this batch
+     */
+    public boolean remove(SkinningControl control) {
+        if (!skinningControls.remove(control)) {
+            return false;
+        }
+        control.batched = false;
+        if (control.getSoftwareSkinningPool() == pool) {
+            control.setSoftwareSkinningPool(null);
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates all the enabled composers of this batch, then updates the
+     * armatures of all its enabled skinning controls. Returns once every
+     * model is done.
+     *
+     * @param tpf the time since the last update (in seconds)
+     */
+    public void update(float tpf) {
+        AnimComposer[] composerArray = composers.getArray();
+        if (composerArray.length > 0) {
+            pool.invoke(new UpdateTask(composerArray, 0, composerArray.length, tpf));
+        }
+        SkinningControl[] skinningArray = skinningControls.getArray();
+        if (skinningArray.length > 0) {
+            pool.invoke(new UpdateTask(skinningArray, 0, skinningArray.length, tpf));
+        }
+    }
+
+    private static final class UpdateTask extends RecursiveAction {
+
+        private final Object[] controls;
+        private final int from;
+        private final int to;
+        private final float tpf;
+
+        UpdateTask(Object[] controls, int from, int to, float tpf) {
+            this.controls = controls;
+            this.from = from;
+            this.to = to;
+            this.tpf = tpf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UpdateTask(controls, from, middle, tpf),
+                          new UpdateTask(controls, middle, to, tpf));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Object control = controls[i];
+                if (control instanceof AnimComposer) {
+                    AnimComposer composer = (AnimComposer) control;
+                    if (composer.isEnabled() && composer.getSpatial() != null) {
+                        composer.evaluate(tpf);
+                    }
+                } else {
+                    SkinningControl skinning = (SkinningControl) control;
+                    if (skinning.isEnabled() && skinning.getSpatial() != null
+                            && skinning.consumePoseUpdate()) {
+                        skinning.getArmature().update();
+                    }
+                }
+            }
+        }
+    }
+}
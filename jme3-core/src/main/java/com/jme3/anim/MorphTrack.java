@@ -168,6 +168,10 @@ public class MorphTrack implements AnimTrack<float[]> {
                     / (times[endFrame] - times[startFrame]);
         }
 
+        FrameInterpolator interpolator = this.interpolator;
+        if (interpolator == FrameInterpolator.DEFAULT) {
+            interpolator = FrameInterpolator.getThreadDefault();
+        }
         interpolator.interpolateWeights(blend, startFrame, weights, nbMorphTargets, store);
     }
 
@@ -0,0 +1,779 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.anim.interpolator.FrameInterpolator;
+import com.jme3.anim.util.HasLocalTransform;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.util.TempVars;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link TransformTrack} storing its keyframes in compressed form, for
+ * large animation libraries such as motion capture data.
+ * <p>
+ * When keyframes are set, keys that the remaining ones reproduce within
+ * the {@link #getTolerance() tolerance} by linear interpolation are
+ * dropped. The kept keys are then quantized:
+ * <ul>
+ * <li>translations and scales are stored as 16 bit values normalized to
+ * the range of the track on each axis,</li>
+ * <li>rotations are stored in 64 bits with the "smallest three" encoding:
+ * the index of the largest component plus the three others on 20 bits,
+ * the largest one being rebuilt from the unit length.</li>
+ * </ul>
+ * The quantization error is included in the tolerance, so every original
+ * keyframe is reproduced within it. A channel whose quantization step
+ * alone would exceed the tolerance, e.g. translations spanning a long
+ * root motion or any channel with a tolerance of 0, is stored as floats
+ * instead.
+ * <p>
+ * Keys are decoded on the fly when the track is sampled. Translations and
+ * scales are interpolated linearly and rotations with nlerp. Setting another
+ * {@link #setFrameInterpolator(FrameInterpolator) frame interpolator} is
+ * supported, but keeps a decoded copy of the keyframes and so loses the
+ * memory savings.
+ */
+public class QuantizedTransformTrack extends TransformTrack {
+
+    private static final int ROTATION_BITS = 20;
+    private static final long ROTATION_MASK = (1L << ROTATION_BITS) - 1;
+    private static final float ROTATION_RANGE = FastMath.sqrt(2f) / 2f;
+    private static final int TRANSLATION_MASK = 0xFFFF;
+    /**
+     * Bound of the error on each decoded rotation component: half a step on
+     * the three stored ones, about three times that on the rebuilt one.
+     */
+    private static final float ROTATION_ERROR = 3f * ROTATION_RANGE / ROTATION_MASK;
+
+    private float tolerance;
+    private double length;
+    private float[] times;
+    private short[] translations;
+    private float[] translationRange;
+    private long[] rotations;
+    private short[] scales;
+    private float[] scaleRange;
+    // channels kept as floats when quantizing them would exceed the tolerance
+    private float[] exactTranslations;
+    private float[] exactRotations;
+    private float[] exactScales;
+    private FrameInterpolator interpolator = FrameInterpolator.DEFAULT;
+
+    /**
+     * Serialization-only. Do not use.
+     */
+    public QuantizedTransformTrack() {
+    }
+
+    /**
+     * Creates a compressed track with the given keyframes.
+     *
+     * @param target       the animated target
+     * @param times        a float array with the time of each frame
+     * @param translations the translation of the target for each frame, or null
+     * @param rotations    the rotation of the target for each frame, or null
+     * @param scales       the scale of the target for each frame, or null
+     * @param tolerance    the error tolerated when dropping keyframes (&ge;0)
+     */
+    public QuantizedTransformTrack(HasLocalTransform target, float[] times, Vector3f[] translations,
+            Quaternion[] rotations, Vector3f[] scales, float tolerance) {
+        setTarget(target);
+        setTolerance(tolerance);
+        setKeyframes(times, translations, rotations, scales);
+    }
+
+    /**
+     * Creates a compressed copy of the given track, animating the same target.
+     *
+     * @param track     the track to compress
+     * @param tolerance the error tolerated when dropping keyframes (&ge;0)
+     */
+    public QuantizedTransformTrack(TransformTrack track, float tolerance) {
+        this(track.getTarget(), track.getTimes(), track.getTranslations(),
+                track.getRotations(), track.getScales(), tolerance);
+    }
+
+    /**
+     * Replaces the transform tracks of the given clip with compressed ones.
+     * Other tracks are kept as is.
+     *
+     * @param clip      the clip to compress
+     * @param tolerance the error tolerated when dropping keyframes (&ge;0)
+     */
+    public static void compress(AnimClip clip, float tolerance) {
+        AnimTrack[] tracks = clip.getTracks().clone();
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i] instanceof TransformTrack && !(tracks[i] instanceof QuantizedTransformTrack)) {
+                tracks[i] = new QuantizedTransformTrack((TransformTrack) tracks[i], tolerance);
+            }
+        }
+        clip.setTracks(tracks);
+    }
+
+    /**
+     * Sets the error tolerated when dropping keyframes, applied to the
+     * translation, scale and quaternion components. Only affects keyframes
+     * set afterwards. The quantization error counts towards the tolerance;
+     * channels it does not fit in are stored as floats. A tolerance of 0
+     * only drops keyframes that are reproduced exactly, and stores every
+     * channel as floats.
+     *
+     * @param tolerance the tolerance (&ge;0)
+     */
+    public void setTolerance(float tolerance) {
+        if (tolerance < 0f) {
+            throw new IllegalArgumentException("tolerance cannot be negative");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return the error tolerated when dropping keyframes
+     */
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Returns the number of keyframes stored by this track, after reduction
+     * when they were set with
+     * {@link #setKeyframes(float[], Vector3f[], Quaternion[], Vector3f[])}.
+     *
+     * @return the keyframe count
+     */
+    public int getKeyframeCount() {
+        return times == null ? 0 : times.length;
+    }
+
+    /**
+     * Sets the keyframes, drops the ones the others reproduce within the
+     * tolerance, and quantizes the kept ones where the tolerance allows.
+     *
+     * @param times        a float array with the time of each frame
+     * @param translations the translation of the target for each frame, or null
+     * @param rotations    the rotation of the target for each frame, or null
+     * @param scales       the scale of the target for each frame, or null
+     */
+    @Override
+    public void setKeyframes(float[] times, Vector3f[] translations, Quaternion[] rotations, Vector3f[] scales) {
+        if (times.length == 0) {
+            throw new RuntimeException("TransformTrack with no keyframes!");
+        }
+        assert translations == null || translations.length == times.length;
+        assert rotations == null || rotations.length == times.length;
+        assert scales == null || scales.length == times.length;
+
+        // the kept keys are quantized afterwards, leave room for that error
+        float translationError = translations == null ? 0f : quantizationError(computeRange(translations));
+        float scaleError = scales == null ? 0f : quantizationError(computeRange(scales));
+        boolean quantizeTranslations = translationError <= tolerance;
+        boolean quantizeRotations = ROTATION_ERROR <= tolerance;
+        boolean quantizeScales = scaleError <= tolerance;
+        float translationTolerance = quantizeTranslations ? tolerance - translationError : tolerance;
+        float rotationTolerance = quantizeRotations ? tolerance - ROTATION_ERROR : tolerance;
+        float scaleTolerance = quantizeScales ? tolerance - scaleError : tolerance;
+        boolean[] kept = reduceKeyframes(times, translations, rotations, scales,
+                translationTolerance, rotationTolerance, scaleTolerance);
+        int count = 0;
+        for (boolean k : kept) {
+            if (k) {
+                count++;
+            }
+        }
+
+        this.times = new float[count];
+        Vector3f[] keptTranslations = translations == null ? null : new Vector3f[count];
+        Quaternion[] keptRotations = rotations == null ? null : new Quaternion[count];
+        Vector3f[] keptScales = scales == null ? null : new Vector3f[count];
+        for (int i = 0, j = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                continue;
+            }
+            this.times[j] = times[i];
+            if (translations != null) {
+                keptTranslations[j] = translations[i];
+            }
+            if (rotations != null) {
+                keptRotations[j] = rotations[i];
+            }
+            if (scales != null) {
+                keptScales[j] = scales[i];
+            }
+            j++;
+        }
+        length = this.times[count - 1] - this.times[0];
+
+        // the kept keys span at most the range of all keys, so their
+        // quantization error is within the one accounted for above
+        storeTranslations(keptTranslations, quantizeTranslations);
+        storeRotations(keptRotations, quantizeRotations);
+        storeScales(keptScales, quantizeScales);
+        updateDecodedKeyframes();
+    }
+
+    /**
+     * Sets the keyframe times. With as many times as stored keyframes, the
+     * keyframes are kept and only retimed. Otherwise they are cleared, to be
+     * set again for the new times with the per-channel setters.
+     *
+     * @param times a float array with the time of each frame
+     */
+    @Override
+    public void setTimes(float[] times) {
+        if (times.length == 0) {
+            throw new RuntimeException("TransformTrack with no keyframes!");
+        }
+        if (times.length != getKeyframeCount()) {
+            storeTranslations(null, false);
+            storeRotations(null, false);
+            storeScales(null, false);
+        }
+        this.times = times;
+        length = times[times.length - 1] - times[0];
+        updateDecodedKeyframes();
+    }
+
+    /**
+     * Sets the translations, one for each keyframe time, quantized if the
+     * tolerance allows. No keyframe is dropped, since the other channels
+     * share the same times.
+     *
+     * @param translations the translation of the target for each frame
+     */
+    @Override
+    public void setKeyframesTranslation(Vector3f[] translations) {
+        checkKeyframeCount(translations.length);
+        storeTranslations(translations, quantizationError(computeRange(translations)) <= tolerance);
+        updateDecodedKeyframes();
+    }
+
+    /**
+     * Sets the rotations, one for each keyframe time, quantized if the
+     * tolerance allows. No keyframe is dropped, since the other channels
+     * share the same times.
+     *
+     * @param rotations the rotation of the target for each frame
+     */
+    @Override
+    public void setKeyframesRotation(Quaternion[] rotations) {
+        checkKeyframeCount(rotations.length);
+        storeRotations(rotations, ROTATION_ERROR <= tolerance);
+        updateDecodedKeyframes();
+    }
+
+    /**
+     * Sets the scales, one for each keyframe time, quantized if the
+     * tolerance allows. No keyframe is dropped, since the other channels
+     * share the same times.
+     *
+     * @param scales the scale of the target for each frame
+     */
+    @Override
+    public void setKeyframesScale(Vector3f[] scales) {
+        checkKeyframeCount(scales.length);
+        storeScales(scales, quantizationError(computeRange(scales)) <= tolerance);
+        updateDecodedKeyframes();
+    }
+
+    private void storeTranslations(Vector3f[] values, boolean quantized) {
+        translations = null;
+        translationRange = null;
+        exactTranslations = null;
+        if (values == null) {
+            return;
+        }
+        if (quantized) {
+            translationRange = computeRange(values);
+            translations = quantize(values, translationRange);
+        } else {
+            exactTranslations = toFloats(values);
+        }
+    }
+
+    private void storeRotations(Quaternion[] values, boolean quantized) {
+        rotations = null;
+        exactRotations = null;
+        if (values == null) {
+            return;
+        }
+        if (quantized) {
+            rotations = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                rotations[i] = encodeRotation(values[i]);
+            }
+        } else {
+            exactRotations = new float[values.length * 4];
+            for (int i = 0; i < values.length; i++) {
+                exactRotations[i * 4] = values[i].getX();
+                exactRotations[i * 4 + 1] = values[i].getY();
+                exactRotations[i * 4 + 2] = values[i].getZ();
+                exactRotations[i * 4 + 3] = values[i].getW();
+            }
+        }
+    }
+
+    private void storeScales(Vector3f[] values, boolean quantized) {
+        scales = null;
+        scaleRange = null;
+        exactScales = null;
+        if (values == null) {
+            return;
+        }
+        if (quantized) {
+            scaleRange = computeRange(values);
+            scales = quantize(values, scaleRange);
+        } else {
+            exactScales = toFloats(values);
+        }
+    }
+
+    private boolean hasTranslations() {
+        return translations != null || exactTranslations != null;
+    }
+
+    private boolean hasRotations() {
+        return rotations != null || exactRotations != null;
+    }
+
+    private boolean hasScales() {
+        return scales != null || exactScales != null;
+    }
+
+    private Vector3f getTranslation(int index, Vector3f store) {
+        if (translations != null) {
+            return decode(translations, translationRange, index, store);
+        }
+        return get(exactTranslations, index, store);
+    }
+
+    private Quaternion getRotation(int index, Quaternion store) {
+        if (rotations != null) {
+            return decodeRotation(rotations[index], store);
+        }
+        int i = index * 4;
+        return store.set(exactRotations[i], exactRotations[i + 1], exactRotations[i + 2], exactRotations[i + 3]);
+    }
+
+    private Vector3f getScale(int index, Vector3f store) {
+        if (scales != null) {
+            return decode(scales, scaleRange, index, store);
+        }
+        return get(exactScales, index, store);
+    }
+
+    private void checkKeyframeCount(int count) {
+        if (times == null) {
+            throw new RuntimeException("TransformTrack doesn't have any time for key frames, please call setTimes first");
+        }
+        if (count != times.length) {
+            throw new IllegalArgumentException("Expected " + times.length + " keyframes, got " + count);
+        }
+    }
+
+    /**
+     * Sets the interpolator used to sample this track. The default one
+     * samples the quantized keyframes directly. Any other one works on a
+     * decoded copy of the keyframes, as large as a plain TransformTrack.
+     *
+     * @param interpolator the interpolator to use
+     */
+    @Override
+    public void setFrameInterpolator(FrameInterpolator interpolator) {
+        super.setFrameInterpolator(interpolator);
+        this.interpolator = interpolator;
+        updateDecodedKeyframes();
+    }
+
+    private boolean usesDecodedKeyframes() {
+        return interpolator != null && interpolator != FrameInterpolator.DEFAULT;
+    }
+
+    /**
+     * Hands the decoded keyframes to the superclass for a custom interpolator.
+     */
+    private void updateDecodedKeyframes() {
+        if (!usesDecodedKeyframes() || times == null) {
+            return;
+        }
+        super.setTimes(times);
+        if (hasTranslations()) {
+            super.setKeyframesTranslation(getTranslations());
+        }
+        if (hasRotations()) {
+            super.setKeyframesRotation(getRotations());
+        }
+        if (hasScales()) {
+            super.setKeyframesScale(getScales());
+        }
+    }
+
+    @Override
+    public float[] getTimes() {
+        return times;
+    }
+
+    @Override
+    public Vector3f[] getTranslations() {
+        if (!hasTranslations()) {
+            return null;
+        }
+        Vector3f[] result = new Vector3f[times.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getTranslation(i, new Vector3f());
+        }
+        return result;
+    }
+
+    @Override
+    public Quaternion[] getRotations() {
+        if (!hasRotations()) {
+            return null;
+        }
+        Quaternion[] result = new Quaternion[times.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getRotation(i, new Quaternion());
+        }
+        return result;
+    }
+
+    @Override
+    public Vector3f[] getScales() {
+        if (!hasScales()) {
+            return null;
+        }
+        Vector3f[] result = new Vector3f[times.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getScale(i, new Vector3f());
+        }
+        return result;
+    }
+
+    @Override
+    public double getLength() {
+        return length;
+    }
+
+    @Override
+    public void getDataAtTime(double t, Transform transform) {
+        if (usesDecodedKeyframes()) {
+            getDecodedDataAtTime(t, transform);
+            return;
+        }
+        float time = (float) t;
+
+        int lastFrame = times.length - 1;
+        int startFrame;
+        int endFrame;
+        float blend = 0f;
+        if (time <= times[0] || lastFrame == 0) {
+            startFrame = endFrame = 0;
+        } else if (time >= times[lastFrame]) {
+            startFrame = endFrame = lastFrame;
+        } else {
+            int index = Arrays.binarySearch(times, time);
+            if (index >= 0) {
+                startFrame = endFrame = index;
+            } else {
+                endFrame = -index - 1;
+                startFrame = endFrame - 1;
+                blend = (time - times[startFrame]) / (times[endFrame] - times[startFrame]);
+            }
+        }
+
+        TempVars vars = TempVars.get();
+        if (hasTranslations()) {
+            Vector3f translation = getTranslation(startFrame, transform.getTranslation());
+            if (endFrame != startFrame) {
+                translation.interpolateLocal(getTranslation(endFrame, vars.vect1), blend);
+            }
+            transform.setTranslation(translation);
+        }
+        if (hasRotations()) {
+            Quaternion rotation = getRotation(startFrame, transform.getRotation());
+            if (endFrame != startFrame) {
+                rotation.nlerp(getRotation(endFrame, vars.quat1), blend);
+            }
+            transform.setRotation(rotation);
+        }
+        if (hasScales()) {
+            Vector3f scale = getScale(startFrame, transform.getScale());
+            if (endFrame != startFrame) {
+                scale.interpolateLocal(getScale(endFrame, vars.vect1), blend);
+            }
+            transform.setScale(scale);
+        }
+        vars.release();
+    }
+
+    /**
+     * Samples the decoded keyframes with the custom interpolator. The
+     * superclass may still hold a channel cleared since, so only the
+     * channels of this track are applied.
+     */
+    private void getDecodedDataAtTime(double t, Transform transform) {
+        TempVars vars = TempVars.get();
+        Vector3f translation = vars.vect1.set(transform.getTranslation());
+        Quaternion rotation = vars.quat1.set(transform.getRotation());
+        Vector3f scale = vars.vect2.set(transform.getScale());
+        super.getDataAtTime(t, transform);
+        if (!hasTranslations()) {
+            transform.setTranslation(translation);
+        }
+        if (!hasRotations()) {
+            transform.setRotation(rotation);
+        }
+        if (!hasScales()) {
+            transform.setScale(scale);
+        }
+        vars.release();
+    }
+
+    /**
+     * Flags the keyframes to keep: a keyframe is dropped when interpolating
+     * between the kept keys around it stays within the tolerance for it and
+     * for every keyframe dropped before it. Each channel has its own
+     * tolerance.
+     */
+    private static boolean[] reduceKeyframes(float[] times, Vector3f[] translations,
+            Quaternion[] rotations, Vector3f[] scales, float translationTolerance,
+            float rotationTolerance, float scaleTolerance) {
+        int count = times.length;
+        boolean[] kept = new boolean[count];
+        kept[0] = true;
+        kept[count - 1] = true;
+
+        Vector3f vector = new Vector3f();
+        Quaternion rotation = new Quaternion();
+        int anchor = 0;
+        for (int end = 2; end < count; end++) {
+            boolean fits = true;
+            for (int k = anchor + 1; k < end && fits; k++) {
+                float span = times[end] - times[anchor];
+                float blend = span > 0f ? (times[k] - times[anchor]) / span : 0f;
+                if (translations != null) {
+                    vector.interpolateLocal(translations[anchor], translations[end], blend);
+                    fits = withinTolerance(vector, translations[k], translationTolerance);
+                }
+                if (fits && rotations != null) {
+                    rotation.set(rotations[anchor]).normalizeLocal();
+                    rotation.nlerp(rotations[end], blend);
+                    fits = withinTolerance(rotation, rotations[k], rotationTolerance);
+                }
+                if (fits && scales != null) {
+                    vector.interpolateLocal(scales[anchor], scales[end], blend);
+                    fits = withinTolerance(vector, scales[k], scaleTolerance);
+                }
+            }
+            if (!fits) {
+                anchor = end - 1;
+                kept[anchor] = true;
+            }
+        }
+        return kept;
+    }
+
+    private static boolean withinTolerance(Vector3f value, Vector3f expected, float tolerance) {
+        return Math.abs(value.x - expected.x) <= tolerance
+                && Math.abs(value.y - expected.y) <= tolerance
+                && Math.abs(value.z - expected.z) <= tolerance;
+    }
+
+    private static boolean withinTolerance(Quaternion value, Quaternion expected, float tolerance) {
+        float norm = FastMath.sqrt(expected.norm());
+        // q and -q are the same rotation
+        float sign = value.dot(expected) < 0f ? -1f / norm : 1f / norm;
+        return Math.abs(value.getX() - expected.getX() * sign) <= tolerance
+                && Math.abs(value.getY() - expected.getY() * sign) <= tolerance
+                && Math.abs(value.getZ() - expected.getZ() * sign) <= tolerance
+                && Math.abs(value.getW() - expected.getW() * sign) <= tolerance;
+    }
+
+    /**
+     * Returns the minimum and the extent of the given vectors on each axis.
+     */
+    private static float[] computeRange(Vector3f[] values) {
+        float[] range = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (Vector3f v : values) {
+            for (int axis = 0; axis < 3; axis++) {
+                float c = v.get(axis);
+                range[axis] = Math.min(range[axis], c);
+                range[axis + 3] = Math.max(range[axis + 3], c);
+            }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            range[axis + 3] -= range[axis];
+        }
+        return range;
+    }
+
+    /**
+     * Returns the largest error added by quantizing values within the given
+     * range: half a step on the widest axis.
+     */
+    private static float quantizationError(float[] range) {
+        float extent = Math.max(range[3], Math.max(range[4], range[5]));
+        return extent / TRANSLATION_MASK / 2f;
+    }
+
+    private static short[] quantize(Vector3f[] values, float[] range) {
+        short[] result = new short[values.length * 3];
+        for (int i = 0; i < values.length; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float extent = range[axis + 3];
+                int q = extent > 0f
+                        ? Math.round((values[i].get(axis) - range[axis]) / extent * TRANSLATION_MASK)
+                        : 0;
+                result[i * 3 + axis] = (short) q;
+            }
+        }
+        return result;
+    }
+
+    private static float[] toFloats(Vector3f[] values) {
+        float[] result = new float[values.length * 3];
+        for (int i = 0; i < values.length; i++) {
+            result[i * 3] = values[i].x;
+            result[i * 3 + 1] = values[i].y;
+            result[i * 3 + 2] = values[i].z;
+        }
+        return result;
+    }
+
+    private static Vector3f get(float[] values, int index, Vector3f store) {
+        int i = index * 3;
+        return store.set(values[i], values[i + 1], values[i + 2]);
+    }
+
+    private static Vector3f decode(short[] values, float[] range, int index, Vector3f store) {
+        int i = index * 3;
+        return store.set(
+                range[0] + (values[i] & TRANSLATION_MASK) * range[3] / TRANSLATION_MASK,
+                range[1] + (values[i + 1] & TRANSLATION_MASK) * range[4] / TRANSLATION_MASK,
+                range[2] + (values[i + 2] & TRANSLATION_MASK) * range[5] / TRANSLATION_MASK);
+    }
+
+    /**
+     * Packs a rotation with the smallest three encoding: bits 60 to 61 hold
+     * the index of the dropped largest component, then three 20 bit values.
+     */
+    static long encodeRotation(Quaternion rotation) {
+        float x = rotation.getX(), y = rotation.getY(), z = rotation.getZ(), w = rotation.getW();
+        float norm = FastMath.sqrt(x * x + y * y + z * z + w * w);
+        float[] c = {x / norm, y / norm, z / norm, w / norm};
+
+        int largest = 0;
+        for (int i = 1; i < 4; i++) {
+            if (Math.abs(c[i]) > Math.abs(c[largest])) {
+                largest = i;
+            }
+        }
+        // the largest component is rebuilt as a positive value
+        float sign = c[largest] < 0f ? -1f : 1f;
+
+        long result = largest;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest) {
+                continue;
+            }
+            float value = FastMath.clamp(c[i] * sign, -ROTATION_RANGE, ROTATION_RANGE);
+            long q = Math.round((value + ROTATION_RANGE) / (2f * ROTATION_RANGE) * ROTATION_MASK);
+            result = (result << ROTATION_BITS) | q;
+        }
+        return result;
+    }
+
+    static Quaternion decodeRotation(long packed, Quaternion store) {
+        int largest = (int) (packed >>> (3 * ROTATION_BITS));
+        float a = decodeComponent(packed >>> (2 * ROTATION_BITS));
+        float b = decodeComponent(packed >>> ROTATION_BITS);
+        float c = decodeComponent(packed);
+        float d = FastMath.sqrt(Math.max(0f, 1f - a * a - b * b - c * c));
+        switch (largest) {
+            case 0:
+                return store.set(d, a, b, c);
+            case 1:
+                return store.set(a, d, b, c);
+            case 2:
+                return store.set(a, b, d, c);
+            default:
+                return store.set(a, b, c, d);
+        }
+    }
+
+    private static float decodeComponent(long bits) {
+        return (bits & ROTATION_MASK) / (float) ROTATION_MASK * (2f * ROTATION_RANGE) - ROTATION_RANGE;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(tolerance, "tolerance", 0f);
+        oc.write(times, "times", null);
+        oc.write(translations, "translations", null);
+        oc.write(translationRange, "translationRange", null);
+        oc.write(rotations, "rotations", null);
+        oc.write(scales, "scales", null);
+        oc.write(scaleRange, "scaleRange", null);
+        oc.write(exactTranslations, "exactTranslations", null);
+        oc.write(exactRotations, "exactRotations", null);
+        oc.write(exactScales, "exactScales", null);
+        oc.write(getTarget(), "target", null);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        tolerance = ic.readFloat("tolerance", 0f);
+        times = ic.readFloatArray("times", null);
+        translations = ic.readShortArray("translations", null);
+        translationRange = ic.readFloatArray("translationRange", null);
+        rotations = ic.readLongArray("rotations", null);
+        scales = ic.readShortArray("scales", null);
+        scaleRange = ic.readFloatArray("scaleRange", null);
+        exactTranslations = ic.readFloatArray("exactTranslations", null);
+        exactRotations = ic.readFloatArray("exactRotations", null);
+        exactScales = ic.readFloatArray("exactScales", null);
+        setTarget((HasLocalTransform) ic.readSavable("target", null));
+        length = times[times.length - 1] - times[0];
+        updateDecodedKeyframes();
+    }
+}
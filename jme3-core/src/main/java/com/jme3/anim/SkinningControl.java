@@ -32,7 +32,9 @@
 package com.jme3.anim;
 
 import com.jme3.export.*;
+import com.jme3.material.MatParam;
 import com.jme3.material.MatParamOverride;
+import com.jme3.material.Material;
 import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.renderer.*;
@@ -40,6 +42,7 @@ import com.jme3.scene.*;
 import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.scene.control.AbstractControl;
 import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.shader.BufferObject;
 import com.jme3.shader.VarType;
 import com.jme3.util.SafeArrayList;
 import com.jme3.util.TempVars;
@@ -49,6 +52,8 @@ import com.jme3.util.clone.JmeCloneable;
 import java.io.IOException;
 import java.nio.Buffer;
 import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +70,17 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
     private static final Logger logger = Logger.getLogger(SkinningControl.class.getName());
 
+    /**
+     * Meshes with at most this many vertices are skinned on the render thread
+     * even if a {@link #setSoftwareSkinningPool(ForkJoinPool) pool} is set.
+     */
+    static final int PARALLEL_SKINNING_THRESHOLD = 2048;
+
+    /**
+     * Binding point of the uniform buffers holding the joint matrices.
+     */
+    public static final int BONE_MATRICES_BINDING = 8;
+
     /**
      * The armature of the model.
      */
@@ -103,14 +119,46 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
      */
     private transient boolean hwSkinningSupported = false;
 
+    /**
+     * User wishes to pass the joint matrices in a uniform buffer if available.
+     */
+    private transient boolean uboDesired = false;
+
+    /**
+     * The joint matrices are currently passed in a uniform buffer.
+     */
+    private transient boolean uboEnabled = false;
+
+    /**
+     * Joint matrices padded to the number of bones declared to the shaders,
+     * when passed in a uniform buffer.
+     */
+    private transient Matrix4f[] jointPalette;
+
     /**
      * Bone offset matrices, recreated each frame
      */
     private transient Matrix4f[] offsetMatrices;
 
+    /**
+     * Pool used to split software skinning of large meshes, or null.
+     */
+    private transient ForkJoinPool skinningPool;
+
+    /**
+     * The pose count of the {@link AnimLodControl} when the armature was
+     * last updated.
+     */
+    private transient int lodPoseCount = -1;
+
+    /**
+     * Set while an {@link AnimationBatch} updates the armature.
+     */
+    transient boolean batched = false;
 
     private MatParamOverride numberOfJointsParam;
     private MatParamOverride jointMatricesParam;
+    private transient MatParamOverride jointMatricesBlockParam;
 
     /**
      * Serialization only. Do not use.
@@ -136,12 +184,23 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
     private void switchToHardware() {
         numberOfJointsParam.setEnabled(true);
-        jointMatricesParam.setEnabled(true);
+        jointMatricesParam.setEnabled(!uboEnabled);
+        if (jointMatricesBlockParam != null) {
+            jointMatricesBlockParam.setEnabled(uboEnabled);
+        }
 
         // Next full 10 bones (e.g. 30 on 24 bones)
         int numBones = ((armature.getJointCount() / 10) + 1) * 10;
         numberOfJointsParam.setValue(numBones);
 
+        if (uboEnabled) {
+            // the buffer must be as large as the block declared by the shaders
+            jointPalette = new Matrix4f[numBones];
+            for (int i = armature.getJointCount(); i < numBones; i++) {
+                jointPalette[i] = Matrix4f.IDENTITY;
+            }
+        }
+
         for (Geometry geometry : targets) {
             Mesh mesh = geometry.getMesh();
             if (mesh != null && mesh.isAnimated()) {
@@ -153,6 +212,9 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
     private void switchToSoftware() {
         numberOfJointsParam.setEnabled(false);
         jointMatricesParam.setEnabled(false);
+        if (jointMatricesBlockParam != null) {
+            jointMatricesBlockParam.setEnabled(false);
+        }
 
         for (Geometry geometry : targets) {
             Mesh mesh = geometry.getMesh();
@@ -164,6 +226,19 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
     private boolean testHardwareSupported(RenderManager rm) {
 
+        if (uboDesired && isUniformBufferSupported(rm.getRenderer())) {
+            setUniformBufferEnabled(true);
+            switchToHardware();
+
+            try {
+                rm.preloadScene(spatial);
+                return true;
+            } catch (RendererException e) {
+                logger.log(Level.WARNING, "Could not pass joint matrices in a uniform buffer due to shader compile error:", e);
+                setUniformBufferEnabled(false);
+            }
+        }
+
         //Only 255 bones max supported with hardware skinning
         if (armature.getJointCount() > 255) {
             return false;
@@ -180,6 +255,91 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         }
     }
 
+    /**
+     * Tells if the joint matrices can be passed in a uniform buffer: the
+     * renderer must support uniform buffers and GLSL 1.50 or ES 3.00, the
+     * buffer must fit, and the materials of all the targets must declare a
+     * <code>BoneMatricesBlock</code> parameter.
+     */
+    private boolean isUniformBufferSupported(Renderer renderer) {
+        if (!renderer.getCaps().contains(Caps.UniformBufferObject)
+                || !(renderer.getCaps().contains(Caps.GLSL150) || renderer.getCaps().contains(Caps.GLSL300))) {
+            return false;
+        }
+        Integer maxBlockSize = renderer.getLimits().get(Limits.UniformBufferObjectMaxBlockSize);
+        int numBones = ((armature.getJointCount() / 10) + 1) * 10;
+        if (maxBlockSize == null || numBones * 64 > maxBlockSize) {
+            return false;
+        }
+        for (Geometry geometry : targets) {
+            Material material = geometry.getMaterial();
+            MatParam param = material == null ? null : material.getMaterialDef().getMaterialParam("BoneMatricesBlock");
+            if (param == null || param.getVarType() != VarType.BufferObject) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setUniformBufferEnabled(boolean enabled) {
+        uboEnabled = enabled;
+        if (!enabled && jointMatricesBlockParam != null) {
+            jointMatricesBlockParam.setEnabled(false);
+        }
+    }
+
+    private void addUniformBufferParam(Spatial spatial) {
+        // overrides holding a buffer are saved without it, drop any stale one
+        for (MatParamOverride override : spatial.getLocalMatParamOverrides().getArray()) {
+            if (override.getVarType() == VarType.BufferObject
+                    && override.getName().equals(jointMatricesBlockParam.getName())) {
+                spatial.removeMatParamOverride(override);
+            }
+        }
+        spatial.addMatParamOverride(jointMatricesBlockParam);
+    }
+
+    /**
+     * Specifies if the joint matrices should be passed to the shaders in a
+     * uniform buffer shared by all the geometries of the armature, instead
+     * of a uniform array set on each of them. The buffer is then uploaded
+     * once per frame, and armatures with more than 255 joints can be
+     * skinned on the GPU. It is only used with hardware skinning, and if
+     * {@link #isUniformBufferUsed() supported}. Must be set before the
+     * control is first rendered. False by default.
+     *
+     * @param preferred true to use a uniform buffer when supported
+     */
+    public void setUniformBufferPreferred(boolean preferred) {
+        uboDesired = preferred;
+        if (preferred && jointMatricesBlockParam == null) {
+            BufferObject block = new BufferObject(BONE_MATRICES_BINDING, BufferObject.Layout.std140,
+                    BufferObject.BufferType.UniformBufferObject);
+            jointMatricesBlockParam = new MatParamOverride(VarType.BufferObject, "BoneMatricesBlock", block);
+            jointMatricesBlockParam.setEnabled(false);
+            if (spatial != null) {
+                addUniformBufferParam(spatial);
+            }
+        }
+    }
+
+    /**
+     * @return true if a uniform buffer is preferred for the joint matrices
+     * @see #setUniformBufferPreferred(boolean)
+     */
+    public boolean isUniformBufferPreferred() {
+        return uboDesired;
+    }
+
+    /**
+     * @return true if the joint matrices are currently passed in a uniform
+     * buffer, false otherwise
+     * @see #setUniformBufferPreferred(boolean)
+     */
+    public boolean isUniformBufferUsed() {
+        return hwSkinningEnabled && uboEnabled;
+    }
+
     /**
      * Specifies if hardware skinning is preferred. If it is preferred and
      * supported by GPU, it shall be enabled, if its not preferred, or not
@@ -201,6 +361,26 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         return hwSkinningDesired;
     }
 
+    /**
+     * Sets the pool used to split software skinning of large meshes into
+     * vertex ranges that are skinned in parallel. The render thread waits
+     * for all the ranges before the buffers are flagged for upload, so
+     * this does not change the result. Hardware skinning is not affected.
+     *
+     * @param pool the pool to use, or null to skin on the render thread only
+     */
+    public void setSoftwareSkinningPool(ForkJoinPool pool) {
+        this.skinningPool = pool;
+    }
+
+    /**
+     * @return the pool used for software skinning, or null if none
+     * @see #setSoftwareSkinningPool(ForkJoinPool)
+     */
+    public ForkJoinPool getSoftwareSkinningPool() {
+        return skinningPool;
+    }
+
     /**
      * @return True is hardware skinning is activated and is currently used, false otherwise.
      */
@@ -240,6 +420,9 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         if (oldSpatial != null) {
             oldSpatial.removeMatParamOverride(numberOfJointsParam);
             oldSpatial.removeMatParamOverride(jointMatricesParam);
+            if (jointMatricesBlockParam != null) {
+                oldSpatial.removeMatParamOverride(jointMatricesBlockParam);
+            }
         }
 
         if (spatial != null) {
@@ -247,6 +430,9 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
             spatial.removeMatParamOverride(jointMatricesParam);
             spatial.addMatParamOverride(numberOfJointsParam);
             spatial.addMatParamOverride(jointMatricesParam);
+            if (jointMatricesBlockParam != null) {
+                addUniformBufferParam(spatial);
+            }
         }
     }
 
@@ -266,7 +452,13 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
     private void controlRenderHardware() {
         offsetMatrices = armature.computeSkinningMatrices();
-        jointMatricesParam.setValue(offsetMatrices);
+        if (uboEnabled) {
+            System.arraycopy(offsetMatrices, 0, jointPalette, 0, offsetMatrices.length);
+            BufferObject block = (BufferObject) jointMatricesBlockParam.getValue();
+            block.setFieldValue("BoneMatrices", jointPalette);
+        } else {
+            jointMatricesParam.setValue(offsetMatrices);
+        }
     }
 
     @Override
@@ -309,8 +501,33 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
     @Override
     protected void controlUpdate(float tpf) {
+        if (!consumePoseUpdate()) {
+            // the armature did not move, keep the current skinning
+            return;
+        }
         wasMeshUpdated = false;
-        armature.update();
+        if (!batched) {
+            armature.update();
+        }
+    }
+
+    /**
+     * Returns false if an {@link AnimLodControl} on the spatial did not
+     * evaluate the animation since the last call. Comparing pose counts
+     * rather than the flag of the current frame keeps this independent of
+     * the order of the controls.
+     */
+    boolean consumePoseUpdate() {
+        AnimLodControl lod = spatial.getControl(AnimLodControl.class);
+        if (lod == null || !lod.isEnabled()) {
+            return true;
+        }
+        int poseCount = lod.getPoseCount();
+        if (poseCount == lodPoseCount) {
+            return false;
+        }
+        lodPoseCount = poseCount;
+        return true;
     }
 
     //only do this for software updates
@@ -362,6 +579,8 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
     @Override
     public void cloneFields(Cloner cloner, Object original) {
         super.cloneFields(cloner, original);
+        batched = false;
+        lodPoseCount = -1;
 
         this.armature = cloner.clone(armature);
 
@@ -371,6 +590,14 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
 
         this.numberOfJointsParam = cloner.clone(numberOfJointsParam);
         this.jointMatricesParam = cloner.clone(jointMatricesParam);
+
+        // each armature needs its own buffer
+        this.jointMatricesBlockParam = cloner.clone(jointMatricesBlockParam);
+        if (jointMatricesBlockParam != null) {
+            jointMatricesBlockParam.setValue(new BufferObject(BONE_MATRICES_BINDING, BufferObject.Layout.std140,
+                    BufferObject.BufferType.UniformBufferObject));
+        }
+        this.jointPalette = jointPalette == null ? null : jointPalette.clone();
     }
 
     /**
@@ -439,17 +666,71 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
      * @param offsetMatrices the transformation matrices to apply
      */
     private void softwareSkinUpdate(Mesh mesh, Matrix4f[] offsetMatrices) {
+        if (mesh.getMaxNumWeights() <= 0) {
+            throw new IllegalStateException("Max weights per vert is incorrectly set!");
+        }
 
+        VertexBuffer vb = mesh.getBuffer(Type.Position);
+        VertexBuffer nb = mesh.getBuffer(Type.Normal);
         VertexBuffer tb = mesh.getBuffer(Type.Tangent);
+        int vertexCount = vb.getData().limit() / 3;
+
+        ForkJoinPool pool = skinningPool;
+        if (pool != null && vertexCount > PARALLEL_SKINNING_THRESHOLD) {
+            pool.invoke(new SkinningTask(mesh, offsetMatrices, tb, 0, vertexCount));
+        } else {
+            skinRange(mesh, offsetMatrices, tb, 0, vertexCount);
+        }
+
+        vb.updateData(vb.getData());
+        nb.updateData(nb.getData());
+        if (tb != null) {
+            tb.updateData(tb.getData());
+        }
+        mesh.invalidateCollisionData();
+    }
+
+    private void skinRange(Mesh mesh, Matrix4f[] offsetMatrices, VertexBuffer tb, int start, int end) {
         if (tb == null) {
             //if there are no tangents use the classic skinning
-            applySkinning(mesh, offsetMatrices);
+            applySkinning(mesh, offsetMatrices, start, end);
         } else {
             //if there are tangents use the skinning with tangents
-            applySkinningTangents(mesh, offsetMatrices, tb);
+            applySkinningTangents(mesh, offsetMatrices, tb, start, end);
         }
+    }
 
+    /**
+     * Skins a range of vertices of a mesh, splitting wide ranges into
+     * fork-join subtasks. Each range reads and writes its own slice of the
+     * buffers through duplicates, so ranges never share state.
+     */
+    private final class SkinningTask extends RecursiveAction {
+
+        private final Mesh mesh;
+        private final Matrix4f[] offsetMatrices;
+        private final VertexBuffer tb;
+        private final int start;
+        private final int end;
+
+        SkinningTask(Mesh mesh, Matrix4f[] offsetMatrices, VertexBuffer tb, int start, int end) {
+            this.mesh = mesh;
+            this.offsetMatrices = offsetMatrices;
+            this.tb = tb;
+            this.start = start;
+            this.end = end;
+        }
 
+        @Override
+        protected void compute() {
+            if (end - start > PARALLEL_SKINNING_THRESHOLD) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SkinningTask(mesh, offsetMatrices, tb, start, middle),
+                          new SkinningTask(mesh, offsetMatrices, tb, middle, end));
+                return;
+            }
+            skinRange(mesh, offsetMatrices, tb, start, end);
+        }
     }
 
     /**
@@ -457,39 +738,31 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
      *
      * @param mesh           the mesh
      * @param offsetMatrices the offset matices to apply
+     * @param start          the first vertex to skin
+     * @param end            the vertex after the last one to skin
      */
-    private void applySkinning(Mesh mesh, Matrix4f[] offsetMatrices) {
+    private void applySkinning(Mesh mesh, Matrix4f[] offsetMatrices, int start, int end) {
         int maxWeightsPerVert = mesh.getMaxNumWeights();
-        if (maxWeightsPerVert <= 0) {
-            throw new IllegalStateException("Max weights per vert is incorrectly set!");
-        }
         int fourMinusMaxWeights = 4 - maxWeightsPerVert;
 
         // NOTE: This code assumes the vertex buffer is in bind pose
         // resetToBind() has been called this frame
-        VertexBuffer vb = mesh.getBuffer(Type.Position);
-        FloatBuffer fvb = (FloatBuffer) vb.getData();
-        fvb.rewind();
-
-        VertexBuffer nb = mesh.getBuffer(Type.Normal);
-        FloatBuffer fnb = (FloatBuffer) nb.getData();
-        fnb.rewind();
+        FloatBuffer fvb = slice(mesh.getBuffer(Type.Position), 3, start, end);
+        FloatBuffer fnb = slice(mesh.getBuffer(Type.Normal), 3, start, end);
 
         // get boneIndexes and weights for mesh
         IndexBuffer ib = IndexBuffer.wrapIndexBuffer(mesh.getBuffer(Type.BoneIndex).getData());
         FloatBuffer wb = (FloatBuffer) mesh.getBuffer(Type.BoneWeight).getData();
 
-        wb.rewind();
-
         float[] weights = wb.array();
-        int idxWeights = 0;
+        int idxWeights = start * 4;
 
         TempVars vars = TempVars.get();
 
         float[] posBuf = vars.skinPositions;
         float[] normBuf = vars.skinNormals;
 
-        int iterations = (int) FastMath.ceil(fvb.limit() / ((float) posBuf.length));
+        int iterations = (int) FastMath.ceil(fvb.remaining() / ((float) posBuf.length));
         int bufLength = posBuf.length;
         for (int i = iterations - 1; i >= 0; i--) {
             // read next set of positions and normals from native buffer
@@ -548,10 +821,6 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         }
 
         vars.release();
-
-        vb.updateData(fvb);
-        nb.updateData(fnb);
-
     }
 
     /**
@@ -564,40 +833,26 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
      * @param mesh           the mesh
      * @param offsetMatrices the offsetMatrices to apply
      * @param tb             the tangent vertexBuffer
+     * @param start          the first vertex to skin
+     * @param end            the vertex after the last one to skin
      */
-    private void applySkinningTangents(Mesh mesh, Matrix4f[] offsetMatrices, VertexBuffer tb) {
+    private void applySkinningTangents(Mesh mesh, Matrix4f[] offsetMatrices, VertexBuffer tb, int start, int end) {
         int maxWeightsPerVert = mesh.getMaxNumWeights();
-
-        if (maxWeightsPerVert <= 0) {
-            throw new IllegalStateException("Max weights per vert is incorrectly set!");
-        }
-
         int fourMinusMaxWeights = 4 - maxWeightsPerVert;
 
         // NOTE: This code assumes the vertex buffer is in bind pose
         // resetToBind() has been called this frame
-        VertexBuffer vb = mesh.getBuffer(Type.Position);
-        FloatBuffer fvb = (FloatBuffer) vb.getData();
-        fvb.rewind();
-
-        VertexBuffer nb = mesh.getBuffer(Type.Normal);
-
-        FloatBuffer fnb = (FloatBuffer) nb.getData();
-        fnb.rewind();
-
-
-        FloatBuffer ftb = (FloatBuffer) tb.getData();
-        ftb.rewind();
+        FloatBuffer fvb = slice(mesh.getBuffer(Type.Position), 3, start, end);
+        FloatBuffer fnb = slice(mesh.getBuffer(Type.Normal), 3, start, end);
+        FloatBuffer ftb = slice(tb, 4, start, end);
 
 
         // get boneIndexes and weights for mesh
         IndexBuffer ib = IndexBuffer.wrapIndexBuffer(mesh.getBuffer(Type.BoneIndex).getData());
         FloatBuffer wb = (FloatBuffer) mesh.getBuffer(Type.BoneWeight).getData();
 
-        wb.rewind();
-
         float[] weights = wb.array();
-        int idxWeights = 0;
+        int idxWeights = start * 4;
 
         TempVars vars = TempVars.get();
 
@@ -606,7 +861,7 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         float[] normBuf = vars.skinNormals;
         float[] tanBuf = vars.skinTangents;
 
-        int iterations = (int) FastMath.ceil(fvb.limit() / ((float) posBuf.length));
+        int iterations = (int) FastMath.ceil(fvb.remaining() / ((float) posBuf.length));
         int bufLength = 0;
         int tanLength = 0;
         for (int i = iterations - 1; i >= 0; i--) {
@@ -694,10 +949,16 @@ public class SkinningControl extends AbstractControl implements Cloneable, JmeCl
         }
 
         vars.release();
+    }
 
-        vb.updateData(fvb);
-        nb.updateData(fnb);
-        tb.updateData(ftb);
+    /**
+     * Returns an independent view of the given vertex range of a buffer.
+     */
+    private static FloatBuffer slice(VertexBuffer vb, int components, int start, int end) {
+        FloatBuffer fb = ((FloatBuffer) vb.getData()).duplicate();
+        fb.limit(end * components);
+        fb.position(start * components);
+        return fb;
     }
 
     @Override
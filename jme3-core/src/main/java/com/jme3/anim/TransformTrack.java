@@ -254,6 +254,10 @@ public class TransformTrack implements AnimTrack<Transform> {
                     / (times[endFrame] - times[startFrame]);
         }
 
+        FrameInterpolator interpolator = this.interpolator;
+        if (interpolator == FrameInterpolator.DEFAULT) {
+            interpolator = FrameInterpolator.getThreadDefault();
+        }
         Transform interpolated = interpolator.interpolate(blend, startFrame, translations, rotations, scales, times);
 
         if (translations != null) {
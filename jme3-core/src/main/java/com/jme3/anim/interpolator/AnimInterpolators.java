@@ -32,6 +32,7 @@
 package com.jme3.anim.interpolator;
 
 import com.jme3.math.*;
+import com.jme3.util.TempVars;
 
 import static com.jme3.anim.interpolator.FrameInterpolator.TrackDataReader;
 import static com.jme3.anim.interpolator.FrameInterpolator.TrackTimeReader;
@@ -43,27 +44,32 @@ public class AnimInterpolators {
 
     //Rotation interpolators
 
-    public static final AnimInterpolator<Quaternion> NLerp = new AnimInterpolator<Quaternion>() {
-        private Quaternion next = new Quaternion();
+    // The shared interpolators below use TempVars rather than fields
+    // so that animations can be evaluated from several threads.
 
+    public static final AnimInterpolator<Quaternion> NLerp = new AnimInterpolator<Quaternion>() {
         @Override
         public Quaternion interpolate(float t, int currentIndex, TrackDataReader<Quaternion> data, TrackTimeReader times, Quaternion store) {
+            TempVars vars = TempVars.get();
+            Quaternion next = vars.quat1;
             data.getEntryClamp(currentIndex, store);
             data.getEntryClamp(currentIndex + 1, next);
             store.nlerp(next, t);
+            vars.release();
             return store;
         }
     };
 
     public static final AnimInterpolator<Quaternion> SLerp = new AnimInterpolator<Quaternion>() {
-        private Quaternion next = new Quaternion();
-
         @Override
         public Quaternion interpolate(float t, int currentIndex, TrackDataReader<Quaternion> data, TrackTimeReader times, Quaternion store) {
+            TempVars vars = TempVars.get();
+            Quaternion next = vars.quat1;
             data.getEntryClamp(currentIndex, store);
             data.getEntryClamp(currentIndex + 1, next);
             //MathUtils.slerpNoInvert(store, next, t, store);
             MathUtils.slerp(store, next, t, store);
+            vars.release();
             return store;
         }
     };
@@ -90,13 +96,14 @@ public class AnimInterpolators {
 
     //Position / Scale interpolators
     public static final AnimInterpolator<Vector3f> LinearVec3f = new AnimInterpolator<Vector3f>() {
-        private Vector3f next = new Vector3f();
-
         @Override
         public Vector3f interpolate(float t, int currentIndex, TrackDataReader<Vector3f> data, TrackTimeReader times, Vector3f store) {
+            TempVars vars = TempVars.get();
+            Vector3f next = vars.vect1;
             data.getEntryClamp(currentIndex, store);
             data.getEntryClamp(currentIndex + 1, next);
             store.interpolateLocal(next, t);
+            vars.release();
             return store;
         }
     };
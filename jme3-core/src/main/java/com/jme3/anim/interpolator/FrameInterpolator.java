@@ -41,6 +41,13 @@ public class FrameInterpolator {
 
     public static final FrameInterpolator DEFAULT = new FrameInterpolator();
 
+    private static final ThreadLocal<FrameInterpolator> threadDefault = new ThreadLocal<FrameInterpolator>() {
+        @Override
+        protected FrameInterpolator initialValue() {
+            return new FrameInterpolator();
+        }
+    };
+
     private AnimInterpolator<Float> timeInterpolator;
     private AnimInterpolator<Vector3f> translationInterpolator = AnimInterpolators.LinearVec3f;
     private AnimInterpolator<Quaternion> rotationInterpolator = AnimInterpolators.NLerp;
@@ -88,6 +95,24 @@ public class FrameInterpolator {
         }
     }
 
+    /**
+     * Returns the interpolator of the current thread that stands in for
+     * {@link #DEFAULT}. A frame interpolator keeps per call state, so tracks
+     * using the default one evaluate through this instance in order to be
+     * usable from several threads at once. Its interpolators are those
+     * currently set on {@link #DEFAULT}.
+     *
+     * @return the interpolator for the current thread (not null)
+     */
+    public static FrameInterpolator getThreadDefault() {
+        FrameInterpolator result = threadDefault.get();
+        result.timeInterpolator = DEFAULT.timeInterpolator;
+        result.translationInterpolator = DEFAULT.translationInterpolator;
+        result.rotationInterpolator = DEFAULT.rotationInterpolator;
+        result.scaleInterpolator = DEFAULT.scaleInterpolator;
+        return result;
+    }
+
     public void setTimeInterpolator(AnimInterpolator<Float> timeInterpolator) {
         this.timeInterpolator = timeInterpolator;
     }
@@ -444,8 +444,7 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
             //if there are tangents use the skinning with tangents
             applySkinningTangents(mesh, offsetMatrices, tb);
         }
-
-
+        mesh.invalidateCollisionData();
     }
 
     /**
@@ -76,6 +76,8 @@ public class DesktopAssetManager implements AssetManager {
     private List<ClassLoader> classLoaders =
             Collections.synchronizedList(new ArrayList<ClassLoader>());
 
+    private volatile DiskAssetCache diskCache;
+
     public DesktopAssetManager(){
         this(null);
     }
@@ -129,6 +131,24 @@ public class DesktopAssetManager implements AssetManager {
         eventListeners.clear();
     }
     
+    /**
+     * Sets the cache that keeps loaded assets on disk for later runs, or
+     * null to load every asset from its source.
+     *
+     * @param diskCache the disk cache, or null
+     * @see DiskAssetCache
+     */
+    public void setDiskCache(DiskAssetCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * @return the disk cache, or null if there is none
+     */
+    public DiskAssetCache getDiskCache() {
+        return diskCache;
+    }
+
     public void setAssetEventListener(AssetEventListener listener){
         eventListeners.clear();
         eventListeners.add(listener);
@@ -253,6 +273,25 @@ public class DesktopAssetManager implements AssetManager {
         }
     }
 
+    /**
+     * Replaces the cache used for all asset keys whose
+     * {@link AssetKey#getCacheType() cache type} is <code>cacheType</code>.
+     * For example, to keep textures within a memory budget:
+     * <pre>
+     * assetManager.setAssetCache(WeakRefCloneAssetCache.class, new LRUAssetCache(budget));
+     * </pre>
+     * Assets cached so far for that type are removed from the cache.
+     *
+     * @param cacheType the cache type the keys specify
+     * @param cache the cache to use instead
+     */
+    public void setAssetCache(Class<? extends AssetCache> cacheType, AssetCache cache) {
+        if (cacheType == null || cache == null) {
+            throw new IllegalArgumentException("cacheType and cache cannot be null");
+        }
+        handler.setCache(cacheType, cache);
+    }
+
     /**
      * Loads an asset that has already been located.
      * @param <T> The asset type
@@ -271,7 +310,8 @@ public class DesktopAssetManager implements AssetManager {
         Object obj;
         try {
             handler.establishParentKey(key);
-            obj = loader.load(info);
+            DiskAssetCache disk = diskCache;
+            obj = disk != null ? disk.load(this, key, info, loader) : loader.load(info);
         } catch (IOException ex) {
             throw new AssetLoadException("An exception has occurred while loading asset: " + key, ex);
         } finally {
@@ -367,6 +407,11 @@ public class DesktopAssetManager implements AssetManager {
             listener.assetRequested(key);
         }
         
+        DiskAssetCache disk = diskCache;
+        if (disk != null) {
+            disk.addDependency(key);
+        }
+        
         AssetCache cache = handler.getCache(key.getCacheType());
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         
@@ -460,7 +505,7 @@ public class DesktopAssetManager implements AssetManager {
      * {@inheritDoc}
      */
     @Override
-    public ShaderGenerator getShaderGenerator(EnumSet<Caps> caps) {
+    public synchronized ShaderGenerator getShaderGenerator(EnumSet<Caps> caps) {
         if (shaderGenerator == null) {
             if(caps.contains(Caps.OpenGLES30) && caps.contains(Caps.GLSL300)){
                 shaderGenerator = new Glsl300ShaderGenerator(this);
@@ -477,7 +522,7 @@ public class DesktopAssetManager implements AssetManager {
      * {@inheritDoc}
      */
     @Override
-    public void setShaderGenerator(ShaderGenerator shaderGenerator) {
+    public synchronized void setShaderGenerator(ShaderGenerator shaderGenerator) {
         this.shaderGenerator = shaderGenerator;
     }
 
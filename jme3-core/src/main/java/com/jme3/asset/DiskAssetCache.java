@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>DiskAssetCache</code> keeps the result of loading an asset on disk,
+ * so that later runs can skip parsing and decoding it. Models parsed from
+ * OBJ or glTF files, materials and decoded images are stored in the jME
+ * binary format and read back as if they were .j3o files, which is usually
+ * far faster than loading the original.
+ * <p>
+ * Entries are keyed by the asset key and validated against a hash of the
+ * asset's content, and of the content of every asset requested while it
+ * was loaded, such as the MTL file of an OBJ model. A change to any of them
+ * reloads the asset from its source and replaces the entry. Assets that are
+ * not {@link Savable}, and .j3o files which are already in binary form,
+ * are never stored.
+ * <p>
+ * The cache is enabled with
+ * {@link DesktopAssetManager#setDiskCache(com.jme3.asset.DiskAssetCache)}.
+ */
+public class DiskAssetCache {
+
+    private static final Logger logger = Logger.getLogger(DiskAssetCache.class.getName());
+
+    private static final int MAGIC = 0x4A4D4443;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".jmc";
+
+    private final File directory;
+
+    private final ThreadLocal<ArrayDeque<Set<String>>> dependencies = new ThreadLocal<ArrayDeque<Set<String>>>() {
+        @Override
+        protected ArrayDeque<Set<String>> initialValue() {
+            return new ArrayDeque<Set<String>>();
+        }
+    };
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a cache storing its entries in the given directory, which
+     * is created if needed.
+     *
+     * @param directory the cache directory
+     */
+    public DiskAssetCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the directory holding the entries
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of assets read from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of assets that had to be loaded from their source
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Deletes all entries.
+     */
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX) && !file.delete()) {
+                logger.log(Level.WARNING, "Cannot delete cache entry {0}", file);
+            }
+        }
+    }
+
+    /**
+     * Decides whether the given asset goes through the cache. Override to
+     * restrict the cache to some kinds of assets.
+     *
+     * @param key the key of the asset
+     * @return true if the asset may be stored
+     */
+    protected boolean isCacheable(AssetKey<?> key) {
+        return !"j3o".equalsIgnoreCase(key.getExtension());
+    }
+
+    /**
+     * Reads the asset from its entry if it is still valid, otherwise loads
+     * it with the loader and stores the result.
+     */
+    Object load(AssetManager manager, AssetKey<?> key, AssetInfo info, AssetLoader loader) throws IOException {
+        if (!isCacheable(key)) {
+            return loader.load(info);
+        }
+
+        String id = key.getClass().getName() + ":" + key;
+        File file = new File(directory, hash(id) + SUFFIX);
+        String contentHash = hashContent(info);
+        if (contentHash != null && file.isFile()) {
+            Object cached = readEntry(manager, key, file, id, contentHash);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        ArrayDeque<Set<String>> stack = dependencies.get();
+        Set<String> requested = new LinkedHashSet<String>();
+        stack.push(requested);
+        Object asset;
+        try {
+            asset = loader.load(info);
+        } finally {
+            stack.pop();
+            // Dependencies of nested loads are dependencies of the outer ones as well.
+            if (!stack.isEmpty()) {
+                stack.peek().addAll(requested);
+            }
+        }
+
+        if (contentHash != null && asset instanceof Savable) {
+            writeEntry(manager, file, id, contentHash, requested, (Savable) asset);
+        }
+        return asset;
+    }
+
+    /**
+     * Records an asset requested by the asset currently being loaded.
+     */
+    void addDependency(AssetKey<?> key) {
+        Set<String> requested = dependencies.get().peek();
+        if (requested != null) {
+            requested.add(key.getName());
+        }
+    }
+
+    private Object readEntry(AssetManager manager, AssetKey<?> key, File file, String id, String contentHash) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION
+                        || !id.equals(in.readUTF()) || !contentHash.equals(in.readUTF())) {
+                    return null;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    String hash = in.readUTF();
+                    AssetInfo dependency = manager.locateAsset(new AssetKey<Object>(name));
+                    if (dependency == null || !hash.equals(hashContent(dependency))) {
+                        return null;
+                    }
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+
+                BinaryImporter importer = BinaryImporter.getInstance();
+                importer.setAssetManager(manager);
+                Savable asset = importer.load(data);
+                if (asset instanceof CloneableSmartAsset) {
+                    ((CloneableSmartAsset) asset).setKey(key);
+                }
+                return asset;
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Cannot read cache entry for " + key, ex);
+            return null;
+        }
+    }
+
+    private void writeEntry(AssetManager manager, File file, String id, String contentHash,
+                            Set<String> requested, Savable asset) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.log(Level.WARNING, "Cannot create cache directory {0}", directory);
+            return;
+        }
+        File temp = null;
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            BinaryExporter.getInstance().save(asset, data);
+
+            temp = File.createTempFile("entry", ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(id);
+                out.writeUTF(contentHash);
+                out.writeInt(requested.size());
+                for (String name : requested) {
+                    AssetInfo dependency = manager.locateAsset(new AssetKey<Object>(name));
+                    String hash = dependency != null ? hashContent(dependency) : null;
+                    if (hash == null) {
+                        // Cannot be validated later, do not store the asset.
+                        return;
+                    }
+                    out.writeUTF(name);
+                    out.writeUTF(hash);
+                }
+                out.writeInt(data.size());
+                data.writeTo(out);
+            } finally {
+                out.close();
+            }
+
+            // Replace the entry at once so other readers never see half of it,
+            // nor a missing file.
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Cannot write cache entry for " + id, ex);
+        } finally {
+            if (temp != null && temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static String hashContent(AssetInfo info) {
+        MessageDigest digest = createDigest();
+        try {
+            InputStream in = info.openStream();
+            if (in == null) {
+                return null;
+            }
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.FINE, "Cannot hash " + info.getKey(), ex);
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String hash(String text) {
+        MessageDigest digest = createDigest();
+        try {
+            return toHex(digest.digest(text.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new UnsupportedOperationException("SHA-1 is not available", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
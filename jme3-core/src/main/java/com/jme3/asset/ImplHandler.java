@@ -208,6 +208,20 @@ final class ImplHandler {
         }
     }
     
+    /**
+     * Uses the given cache for all keys whose cache type is
+     * <code>cacheClass</code>, instead of an instance of that class.
+     * The cache previously used for the type is cleared.
+     */
+    public void setCache(Class<? extends AssetCache> cacheClass, AssetCache cache) {
+        synchronized (classToCacheMap) {
+            AssetCache old = classToCacheMap.put(cacheClass, cache);
+            if (old != null && old != cache) {
+                old.clearCache();
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends AssetCache> T getCache(Class<T> cacheClass) {
         if (cacheClass == null) {
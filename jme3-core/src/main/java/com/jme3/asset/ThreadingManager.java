@@ -31,25 +31,69 @@
  */
 package com.jme3.asset;
 
+import com.jme3.export.binary.BinaryImporter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <code>ThreadingManager</code> manages the threads used to load content
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ * <p>
+ * Queued loads run in order of priority, higher priorities first and
+ * loads of equal priority in submission order.
+ * {@link #loadAssetAsync(com.jme3.asset.AssetKey, int) loadAssetAsync}
+ * additionally fetches the dependencies of a model, such as its materials
+ * and textures, in parallel before loading the model itself, which then
+ * finds them in the asset cache.
  */
 public class ThreadingManager {
 
-    protected final ExecutorService executor =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
-                                         new LoadingThreadFactory());
+    private static final Logger logger = Logger.getLogger(ThreadingManager.class.getName());
+
+    /**
+     * The priority of loads that do not specify one.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /**
+     * Runs the queued tasks by priority. Tasks submitted to it directly run
+     * with the {@link #DEFAULT_PRIORITY default priority}.
+     */
+    protected final ExecutorService executor;
 
     protected final AssetManager owner;
     protected int nextThreadId = 0;
 
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Map<AssetKey, Prefetch> prefetches = new HashMap<>();
+
     public ThreadingManager(AssetManager owner){
+        this(owner, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a manager loading with the given number of threads.
+     *
+     * @param owner the asset manager to load assets from
+     * @param threads the number of loading threads
+     */
+    public ThreadingManager(AssetManager owner, int threads){
         this.owner = owner;
+        this.executor = new PriorityExecutor(threads);
     }
 
     protected class LoadingThreadFactory implements ThreadFactory {
@@ -76,8 +120,259 @@ public class ThreadingManager {
         }
     }
 
+    /**
+     * A queued task, ordered by priority and then by submission.
+     */
+    private static final class PriorityTask implements Runnable, Comparable<PriorityTask> {
+
+        private final int priority;
+        private final long sequence;
+        private final Runnable body;
+
+        PriorityTask(int priority, long sequence, Runnable body) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(PriorityTask other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A thread pool with a priority queue, which only holds
+     * {@link PriorityTask}s: other tasks are wrapped on the way in, as the
+     * queue could not order them.
+     */
+    private final class PriorityExecutor extends ThreadPoolExecutor {
+
+        PriorityExecutor(int threads) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                  new PriorityBlockingQueue<Runnable>(), new LoadingThreadFactory());
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (command != null && !(command instanceof PriorityTask)) {
+                command = new PriorityTask(DEFAULT_PRIORITY, nextSequence.getAndIncrement(), command);
+            }
+            super.execute(command);
+        }
+    }
+
+    /**
+     * A dependency fetch shared by all loads that need it.
+     */
+    private static final class Prefetch {
+
+        private final CompletableFuture<?> future;
+        private int users;
+
+        Prefetch(CompletableFuture<?> future) {
+            this.future = future;
+        }
+    }
+
     public <T> Future<T> loadAsset(AssetKey<T> assetKey) {
-        return executor.submit(new LoadingTask<>(assetKey));
+        FutureTask<T> task = new FutureTask<>(new LoadingTask<>(assetKey));
+        execute(DEFAULT_PRIORITY, task);
+        return task;
+    }
+
+    /**
+     * Loads an asset in the background with the default priority.
+     *
+     * @param <T> the type of the asset
+     * @param assetKey the key of the asset to load
+     * @return a future completed with the asset
+     * @see #loadAssetAsync(com.jme3.asset.AssetKey, int)
+     */
+    public <T> CompletableFuture<T> loadAssetAsync(AssetKey<T> assetKey) {
+        return loadAssetAsync(assetKey, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Loads an asset in the background. The dependencies returned by
+     * {@link #findDependencies(com.jme3.asset.AssetKey)} are loaded in
+     * parallel first, with the same priority; loads that share a dependency
+     * wait for the same fetch instead of loading it twice. The dependencies
+     * are held until the asset is loaded so the asset cache cannot drop
+     * them in the meantime.
+     * <p>
+     * Cancelling the future skips the load if it has not started yet, and
+     * the fetch of every dependency no other load is waiting for.
+     * A load that is already running is not interrupted.
+     *
+     * @param <T> the type of the asset
+     * @param assetKey the key of the asset to load
+     * @param priority the priority of the load, higher priorities load first
+     * @return a future completed with the asset, or with the exception
+     * thrown while loading it
+     */
+    public <T> CompletableFuture<T> loadAssetAsync(AssetKey<T> assetKey, int priority) {
+        return loadAssetAsync(assetKey, priority, Collections.<AssetKey>emptySet());
+    }
+
+    private <T> CompletableFuture<T> loadAssetAsync(final AssetKey<T> assetKey, final int priority,
+                                                    final Set<AssetKey> ancestors) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        execute(priority, new LoadStep<T>(result) {
+            @Override
+            protected void step() {
+                List<AssetKey> dependencies = null;
+                try {
+                    dependencies = findDependencies(assetKey);
+                } catch (IOException | RuntimeException ex) {
+                    logger.log(Level.FINE, "Cannot find dependencies of " + assetKey, ex);
+                }
+                if (dependencies == null || dependencies.isEmpty()) {
+                    result.complete(owner.loadAsset(assetKey));
+                    return;
+                }
+
+                // Models linking each other must not wait for themselves.
+                Set<AssetKey> chain = new HashSet<>(ancestors);
+                chain.add(assetKey);
+                final List<AssetKey> fetchedKeys = new ArrayList<>();
+                final List<Prefetch> fetches = new ArrayList<>();
+                for (AssetKey dependency : dependencies) {
+                    if (!chain.contains(dependency) && !fetchedKeys.contains(dependency)) {
+                        fetchedKeys.add(dependency);
+                        fetches.add(acquirePrefetch(dependency, priority, chain));
+                    }
+                }
+
+                // Also keeps the fetched assets reachable until the load ends.
+                result.whenComplete(new BiConsumer<T, Throwable>() {
+                    @Override
+                    public void accept(T asset, Throwable failure) {
+                        for (int i = 0; i < fetches.size(); i++) {
+                            releasePrefetch(fetchedKeys.get(i), fetches.get(i));
+                        }
+                    }
+                });
+
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[fetches.size()];
+                for (int i = 0; i < futures.length; i++) {
+                    futures[i] = fetches.get(i).future;
+                }
+                // Failed dependencies are reported by the load itself.
+                CompletableFuture.allOf(futures).whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(Void ignored, Throwable failure) {
+                        execute(priority, new LoadStep<T>(result) {
+                            @Override
+                            protected void step() {
+                                result.complete(owner.loadAsset(assetKey));
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the assets that loading the given asset will request, so that
+     * {@link #loadAssetAsync(com.jme3.asset.AssetKey, int) loadAssetAsync}
+     * can fetch them in parallel beforehand. The default implementation
+     * reads the textures, materials and linked models referenced by .j3o
+     * files and finds none for other assets.
+     *
+     * @param assetKey the key of the asset about to be loaded
+     * @return the keys of the dependencies, or null if there are none
+     * @throws IOException if the asset cannot be read
+     */
+    protected List<AssetKey> findDependencies(AssetKey<?> assetKey) throws IOException {
+        if (!"j3o".equalsIgnoreCase(assetKey.getExtension())) {
+            return null;
+        }
+        AssetInfo info = owner.locateAsset(assetKey);
+        if (info == null) {
+            return null;
+        }
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setAssetManager(owner);
+        InputStream in = info.openStream();
+        try {
+            return importer.readDependencies(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private Prefetch acquirePrefetch(final AssetKey<?> key, int priority, Set<AssetKey> ancestors) {
+        synchronized (prefetches) {
+            Prefetch prefetch = prefetches.get(key);
+            if (prefetch == null) {
+                final Prefetch created = new Prefetch(loadAssetAsync(key, priority, ancestors));
+                prefetches.put(key, created);
+                created.future.whenComplete(new BiConsumer<Object, Throwable>() {
+                    @Override
+                    public void accept(Object asset, Throwable failure) {
+                        synchronized (prefetches) {
+                            if (prefetches.get(key) == created) {
+                                prefetches.remove(key);
+                            }
+                        }
+                    }
+                });
+                prefetch = created;
+            }
+            prefetch.users++;
+            return prefetch;
+        }
+    }
+
+    private void releasePrefetch(AssetKey key, Prefetch prefetch) {
+        synchronized (prefetches) {
+            prefetch.users--;
+            if (prefetch.users == 0 && !prefetch.future.isDone()) {
+                prefetch.future.cancel(false);
+            }
+        }
+    }
+
+    private void execute(int priority, Runnable body) {
+        executor.execute(new PriorityTask(priority, nextSequence.getAndIncrement(), body));
+    }
+
+    /**
+     * A step of an asynchronous load, skipped once the load is cancelled
+     * and completing it exceptionally if it fails.
+     */
+    private static abstract class LoadStep<T> implements Runnable {
+
+        private final CompletableFuture<T> result;
+
+        LoadStep(CompletableFuture<T> result) {
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                step();
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+
+        protected abstract void step();
     }
 
     public static boolean isLoadingThread() {
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+/**
+ * <code>AssetCacheStats</code> is a snapshot of the state and counters of
+ * an {@link LRUAssetCache}.
+ */
+public final class AssetCacheStats {
+
+    private final int assetCount;
+    private final long size;
+    private final long budget;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    public AssetCacheStats(int assetCount, long size, long budget,
+                           long hitCount, long missCount, long evictionCount) {
+        this.assetCount = assetCount;
+        this.size = size;
+        this.budget = budget;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * @return the number of cached assets
+     */
+    public int getAssetCount() {
+        return assetCount;
+    }
+
+    /**
+     * @return the estimated size of all cached assets in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the budget of the cache in bytes
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the number of lookups that found an asset
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that found nothing
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of assets removed to stay within the budget
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the fraction of lookups that found an asset, or 0 if there
+     * were no lookups
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : hitCount / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetCacheStats[assets=" + assetCount
+                + ", size=" + size + "/" + budget
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", evictions=" + evictionCount + "]";
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>LRUAssetCache</code> is an asset cache with a memory budget.
+ * The estimated size of every asset is tracked, and once the total exceeds
+ * the budget the least recently used assets are removed from the cache.
+ * <p>
+ * Sizes are estimated from the data that dominates an asset's memory use:
+ * the image data of textures and images, the vertex buffers of models and
+ * meshes and the data of audio buffers. Subclasses can refine this by
+ * overriding {@link #estimateSize(com.jme3.asset.AssetKey, java.lang.Object) }.
+ * Note that removing an asset from the cache only releases the cache's
+ * reference, memory shared with clones still in use is released once
+ * those clones are gone.
+ * <p>
+ * The cache does not track clones, so it can be used for any asset type,
+ * e.g. with {@link com.jme3.asset.DesktopAssetManager#setAssetCache(java.lang.Class, com.jme3.asset.cache.AssetCache) }
+ * to bound the memory used by textures and models.
+ *
+ * @see AssetCacheStats
+ */
+public class LRUAssetCache implements AssetCache {
+
+    private static final Logger logger = Logger.getLogger(LRUAssetCache.class.getName());
+
+    /**
+     * The budget used by the empty constructor, 256 MiB.
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * Size assumed for assets without buffer data.
+     */
+    protected static final long BASE_SIZE = 1024;
+
+    private static final class Entry {
+
+        final Object asset;
+        final long size;
+
+        Entry(Object asset, long size) {
+            this.asset = asset;
+            this.size = size;
+        }
+    }
+
+    // Access ordered, the eldest entry is the least recently used one.
+    private final LinkedHashMap<AssetKey, Entry> entries
+            = new LinkedHashMap<AssetKey, Entry>(16, 0.75f, true);
+
+    private long budget;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache with a budget of {@link #DEFAULT_BUDGET} bytes.
+     */
+    public LRUAssetCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a cache with the given budget.
+     *
+     * @param budget the maximum estimated size of all cached assets in bytes
+     */
+    public LRUAssetCache(long budget) {
+        setBudget(budget);
+    }
+
+    /**
+     * Sets the memory budget. If the cached assets exceed the new budget,
+     * the least recently used ones are removed right away.
+     *
+     * @param budget the maximum estimated size of all cached assets in bytes
+     */
+    public synchronized void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative: " + budget);
+        }
+        this.budget = budget;
+        evict();
+    }
+
+    /**
+     * @return the maximum estimated size of all cached assets in bytes
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    @Override
+    public <T> void addToCache(AssetKey<T> key, T obj) {
+        long assetSize = estimateSize(key, obj);
+        synchronized (this) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                size -= old.size;
+            }
+            if (assetSize > budget) {
+                logger.log(Level.FINE, "{0} exceeds the cache budget and is not cached", key);
+                return;
+            }
+            entries.put(key, new Entry(obj, assetSize));
+            size += assetSize;
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (size > budget && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            size -= eldest.size;
+            evictions++;
+        }
+    }
+
+    @Override
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    @Override
+    public void notifyNoAssetClone() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getFromCache(AssetKey<T> key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (T) entry.asset;
+    }
+
+    @Override
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        size -= entry.size;
+        return true;
+    }
+
+    @Override
+    public synchronized void clearCache() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return a snapshot of the cache statistics
+     */
+    public synchronized AssetCacheStats getStats() {
+        return new AssetCacheStats(entries.size(), size, budget, hits, misses, evictions);
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Estimates the memory used by an asset, including its native buffers.
+     * Called outside of the cache's lock.
+     *
+     * @param key the key of the asset
+     * @param asset the asset
+     * @return the estimated size in bytes
+     */
+    protected long estimateSize(AssetKey key, Object asset) {
+        if (asset instanceof Texture) {
+            Image image = ((Texture) asset).getImage();
+            return BASE_SIZE + (image != null ? getImageSize(image) : 0);
+        } else if (asset instanceof Image) {
+            return BASE_SIZE + getImageSize((Image) asset);
+        } else if (asset instanceof Spatial) {
+            return BASE_SIZE + getMeshesSize((Spatial) asset);
+        } else if (asset instanceof Mesh) {
+            return BASE_SIZE + getMeshSize((Mesh) asset);
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            return BASE_SIZE + (data != null ? getBufferSize(data) : 0);
+        } else if (asset instanceof byte[]) {
+            return BASE_SIZE + ((byte[]) asset).length;
+        } else if (asset instanceof String) {
+            return BASE_SIZE + 2L * ((String) asset).length();
+        }
+        return BASE_SIZE;
+    }
+
+    private static long getImageSize(Image image) {
+        long bytes = 0;
+        for (ByteBuffer data : image.getData()) {
+            if (data != null) {
+                bytes += data.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private static long getMeshesSize(Spatial spatial) {
+        // Meshes shared between geometries are counted once.
+        Set<Mesh> meshes = Collections.newSetFromMap(new IdentityHashMap<Mesh, Boolean>());
+        ArrayDeque<Spatial> stack = new ArrayDeque<Spatial>();
+        stack.push(spatial);
+        long bytes = 0;
+        while (!stack.isEmpty()) {
+            Spatial s = stack.pop();
+            if (s instanceof Geometry) {
+                Mesh mesh = ((Geometry) s).getMesh();
+                if (mesh != null && meshes.add(mesh)) {
+                    bytes += getMeshSize(mesh);
+                }
+            } else if (s instanceof Node) {
+                for (Spatial child : ((Node) s).getChildren()) {
+                    stack.push(child);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long getMeshSize(Mesh mesh) {
+        long bytes = 0;
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getData() != null) {
+                bytes += getBufferSize(vb.getData());
+            }
+        }
+        return bytes;
+    }
+
+    private static long getBufferSize(Buffer buffer) {
+        long elements = buffer.capacity();
+        if (buffer instanceof ByteBuffer) {
+            return elements;
+        } else if (buffer instanceof ShortBuffer || buffer instanceof CharBuffer) {
+            return elements * 2;
+        } else if (buffer instanceof IntBuffer || buffer instanceof FloatBuffer) {
+            return elements * 4;
+        } else if (buffer instanceof LongBuffer || buffer instanceof DoubleBuffer) {
+            return elements * 8;
+        }
+        return elements;
+    }
+}
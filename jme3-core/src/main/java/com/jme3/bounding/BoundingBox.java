@@ -748,20 +748,12 @@ public class BoundingBox extends BoundingVolume {
 
             if (notEntirelyClipped && (t[0] != saveT0 || t[1] != saveT1)) {
                 if (t[1] > t[0]) {
-                    float[] distances = t;
-                    Vector3f point0 = new Vector3f(ray.direction).multLocal(distances[0]).addLocal(ray.origin);
-                    Vector3f point1 = new Vector3f(ray.direction).multLocal(distances[1]).addLocal(ray.origin);
-
-                    CollisionResult result = new CollisionResult(point0, distances[0]);
-                    results.addCollision(result);
-                    result = new CollisionResult(point1, distances[1]);
-                    results.addCollision(result);
+                    addRayCollision(ray, t[0], results);
+                    addRayCollision(ray, t[1], results);
                     return 2;
                 }
 
-                Vector3f point = new Vector3f(ray.direction).multLocal(t[0]).addLocal(ray.origin);
-                CollisionResult result = new CollisionResult(point, t[0]);
-                results.addCollision(result);
+                addRayCollision(ray, t[0], results);
                 return 1;
             }
             return 0;
@@ -751,10 +751,7 @@ public class BoundingSphere extends BoundingVolume {
             root = FastMath.sqrt(discr);
 
             float distance = root - a1;
-            Vector3f point = new Vector3f(ray.direction).multLocal(distance).addLocal(ray.origin);
-
-            CollisionResult result = new CollisionResult(point, distance);
-            results.addCollision(result);
+            addRayCollision(ray, distance, results);
             vars.release();
             return 1;
         }
@@ -771,17 +768,14 @@ public class BoundingSphere extends BoundingVolume {
         } else if (discr >= FastMath.ZERO_TOLERANCE) {
             root = FastMath.sqrt(discr);
             float dist = -a1 - root;
-            Vector3f point = new Vector3f(ray.direction).multLocal(dist).addLocal(ray.origin);
-            results.addCollision(new CollisionResult(point, dist));
+            addRayCollision(ray, dist, results);
 
             dist = -a1 + root;
-            point = new Vector3f(ray.direction).multLocal(dist).addLocal(ray.origin);
-            results.addCollision(new CollisionResult(point, dist));
+            addRayCollision(ray, dist, results);
             return 2;
         } else {
             float dist = -a1;
-            Vector3f point = new Vector3f(ray.direction).multLocal(dist).addLocal(ray.origin);
-            results.addCollision(new CollisionResult(point, dist));
+            addRayCollision(ray, dist, results);
             return 1;
         }
     }
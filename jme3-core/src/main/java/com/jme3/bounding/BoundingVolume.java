@@ -32,6 +32,7 @@
 package com.jme3.bounding;
 
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
@@ -318,6 +319,20 @@ public abstract class BoundingVolume implements Savable, Cloneable, Collidable {
         center = (Vector3f) e.getCapsule(this).readSavable("center", Vector3f.ZERO.clone());
     }
 
+    /**
+     * Adds the point at the given distance along the ray as a collision,
+     * taking the result from <code>results</code> so pooled results are
+     * reused.
+     */
+    static void addRayCollision(Ray ray, float distance, CollisionResults results) {
+        CollisionResult result = results.obtainCollision();
+        result.setContactPoint(ray.direction.x * distance + ray.origin.x,
+                ray.direction.y * distance + ray.origin.y,
+                ray.direction.z * distance + ray.origin.z);
+        result.setDistance(distance);
+        results.addCollision(result);
+    }
+
     public int collideWith(Collidable other) {
         TempVars tempVars = TempVars.get();
         try {
@@ -50,6 +50,8 @@ public class CollisionResult implements Comparable<CollisionResult> {
     private Vector3f contactNormal;
     private float distance;
     private int triangleIndex;
+    private Vector3f pointStore;
+    private Vector3f normalStore;
 
     public CollisionResult(Geometry geometry, Vector3f contactPoint, float distance, int triangleIndex) {
         this.geometry = geometry;
@@ -78,6 +80,38 @@ public class CollisionResult implements Comparable<CollisionResult> {
         this.contactPoint = point;
     }
 
+    /**
+     * Sets the contact point without allocating once this result owns a
+     * vector for it. A point previously given through
+     * {@link #setContactPoint(com.jme3.math.Vector3f)} is never modified.
+     *
+     * @param x the X coordinate of the contact point
+     * @param y the Y coordinate of the contact point
+     * @param z the Z coordinate of the contact point
+     */
+    public void setContactPoint(float x, float y, float z){
+        if (pointStore == null) {
+            pointStore = new Vector3f();
+        }
+        contactPoint = pointStore.set(x, y, z);
+    }
+
+    /**
+     * Sets the contact normal without allocating once this result owns a
+     * vector for it. A normal previously given through
+     * {@link #setContactNormal(com.jme3.math.Vector3f)} is never modified.
+     *
+     * @param x the X component of the contact normal
+     * @param y the Y component of the contact normal
+     * @param z the Z component of the contact normal
+     */
+    public void setContactNormal(float x, float y, float z){
+        if (normalStore == null) {
+            normalStore = new Vector3f();
+        }
+        contactNormal = normalStore.set(x, y, z);
+    }
+
     public void setDistance(float dist){
         this.distance = dist;
     }
@@ -97,6 +131,18 @@ public class CollisionResult implements Comparable<CollisionResult> {
         return store;
     }
 
+    /**
+     * Returns this result to the state of a newly created one, keeping the
+     * vectors it owns for reuse.
+     */
+    void reset() {
+        geometry = null;
+        contactPoint = null;
+        contactNormal = null;
+        distance = 0;
+        triangleIndex = 0;
+    }
+
     @Override
     public int compareTo(CollisionResult other) {
         return Float.compare(distance, other.distance);
@@ -39,6 +39,20 @@ import java.util.List;
 /**
  * <code>CollisionResults</code> is a collection returned as a result of a 
  * collision detection operation done by {@link Collidable}.
+ * <p>
+ * Two optional modes help when the same instance is queried every frame:
+ * <ul>
+ * <li>{@link #setMaxResults(int) Top-k}: only the given number of closest
+ * collisions are kept. Collidables can ask for the
+ * {@link #getDistanceLimit() distance limit} to skip work on anything
+ * farther away. Entries beyond the limit are dropped when the results are
+ * sorted, which happens on the first call to any getter other than
+ * {@link #size()} and {@link #getCollisionDirect(int)}.</li>
+ * <li>{@link #setPooled(boolean) Pooled}: {@link #clear()} keeps the
+ * removed results and {@link #obtainCollision()} hands them out again, so
+ * repeated queries stop allocating once warmed up. Results, and the
+ * vectors they own, must then not be kept past the next clear.</li>
+ * </ul>
  * 
  * @author Kirill Vainer
  */
@@ -46,14 +60,117 @@ public class CollisionResults implements Iterable<CollisionResult> {
 
     private ArrayList<CollisionResult> results = null;
     private boolean sorted = true;
+    private int maxResults = Integer.MAX_VALUE;
+    /**
+     * Max-heap of the closest distances added, used in top-k mode.
+     */
+    private float[] closest = null;
+    private int closestCount = 0;
+    private ArrayList<CollisionResult> pool = null;
 
     /**
      * Clears all collision results added to this list
      */
     public void clear(){
         if (results != null) {
+            if (pool != null) {
+                // addAll() would copy the results into a temporary array
+                for (int i = 0; i < results.size(); i++) {
+                    pool.add(results.get(i));
+                }
+            }
             results.clear();
         }
+        closestCount = 0;
+        sorted = true;
+    }
+
+    /**
+     * Limits the results to the given number of closest collisions.
+     * Use {@link Integer#MAX_VALUE} (the default) to keep all of them.
+     *
+     * @param maxResults the number of closest collisions to keep (&ge;1)
+     */
+    public void setMaxResults(int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1");
+        }
+        this.maxResults = maxResults;
+        closestCount = 0;
+        if (maxResults == Integer.MAX_VALUE) {
+            closest = null;
+            return;
+        }
+        if (closest == null || closest.length != maxResults) {
+            closest = new float[maxResults];
+        }
+        if (results != null) {
+            for (int i = 0; i < results.size(); i++) {
+                offerDistance(results.get(i).getDistance());
+            }
+        }
+        sorted = false;
+    }
+
+    /**
+     * @return the number of closest collisions kept,
+     * {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Returns the distance beyond which a new collision cannot be among the
+     * kept results. This is the distance of the k-th closest collision
+     * when {@link #setMaxResults(int) top-k} mode is full, otherwise
+     * positive infinity.
+     *
+     * @return the distance limit
+     */
+    public float getDistanceLimit() {
+        if (closest != null && closestCount == closest.length) {
+            return closest[0];
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Enables or disables reuse of cleared results through
+     * {@link #obtainCollision()}.
+     *
+     * @param pooled true to recycle results on {@link #clear()}
+     */
+    public void setPooled(boolean pooled) {
+        if (pooled && pool == null) {
+            pool = new ArrayList<CollisionResult>();
+        } else if (!pooled) {
+            pool = null;
+        }
+    }
+
+    /**
+     * @return true if cleared results are reused
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Returns an empty result to be filled and passed to
+     * {@link #addCollision(com.jme3.collision.CollisionResult)}. In pooled
+     * mode this is a result recycled by a previous {@link #clear()},
+     * otherwise a new instance.
+     *
+     * @return an empty result
+     */
+    public CollisionResult obtainCollision() {
+        if (pool != null && !pool.isEmpty()) {
+            CollisionResult result = pool.remove(pool.size() - 1);
+            result.reset();
+            return result;
+        }
+        return new CollisionResult();
     }
 
     /**
@@ -68,10 +185,7 @@ public class CollisionResults implements Iterable<CollisionResult> {
             return dumbCompiler.iterator();
         }
         
-        if (!sorted){
-            Collections.sort(results);
-            sorted = true;
-        }
+        sort();
 
         return results.iterator();
     }
@@ -82,6 +196,9 @@ public class CollisionResults implements Iterable<CollisionResult> {
         }
         results.add(result);
         sorted = false;
+        if (closest != null) {
+            offerDistance(result.getDistance());
+        }
     }
 
     public int size(){
@@ -95,10 +212,7 @@ public class CollisionResults implements Iterable<CollisionResult> {
         if (results == null || size() == 0)
             return null;
 
-        if (!sorted){
-            Collections.sort(results);
-            sorted = true;
-        }
+        sort();
 
         return results.get(0);
     }
@@ -107,10 +221,7 @@ public class CollisionResults implements Iterable<CollisionResult> {
         if (results == null || size() == 0)
             return null;
 
-        if (!sorted){
-            Collections.sort(results);
-            sorted = true;
-        }
+        sort();
 
         return results.get(size()-1);
     }
@@ -120,10 +231,7 @@ public class CollisionResults implements Iterable<CollisionResult> {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
         }
         
-        if (!sorted){
-            Collections.sort(results);
-            sorted = true;
-        }
+        sort();
 
         return results.get(index);
     }
@@ -140,6 +248,60 @@ public class CollisionResults implements Iterable<CollisionResult> {
         return results.get(index);
     }
 
+    /**
+     * Sorts the results by distance and drops the ones past the top-k limit.
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        Collections.sort(results);
+        sorted = true;
+        for (int i = results.size() - 1; i >= maxResults; i--) {
+            CollisionResult removed = results.remove(i);
+            if (pool != null) {
+                pool.add(removed);
+            }
+        }
+    }
+
+    /**
+     * Keeps the distance if it is among the closest seen so far.
+     */
+    private void offerDistance(float distance) {
+        float[] heap = closest;
+        int i;
+        if (closestCount < heap.length) {
+            // sift up
+            i = closestCount++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (heap[parent] >= distance) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = distance;
+        } else if (distance < heap[0]) {
+            // replace the farthest, sift down
+            i = 0;
+            int half = closestCount >> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < closestCount && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= distance) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = distance;
+        }
+    }
+
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
@@ -111,6 +111,27 @@ public final class BIHNode implements Savable {
         this.rightPlane = rightPlane;
     }
 
+    /**
+     * @return the split axis, or 3 for a leaf
+     */
+    int getAxis() {
+        return axis;
+    }
+
+    /**
+     * @return the index of the first triangle of a leaf
+     */
+    int getLeftIndex() {
+        return leftIndex;
+    }
+
+    /**
+     * @return the index of the last triangle of a leaf
+     */
+    int getRightIndex() {
+        return rightIndex;
+    }
+
     @Override
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
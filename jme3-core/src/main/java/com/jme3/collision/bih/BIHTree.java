@@ -35,6 +35,7 @@ import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingSphere;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.collision.UnsupportedCollisionException;
 import com.jme3.export.InputCapsule;
@@ -44,6 +45,7 @@ import com.jme3.export.OutputCapsule;
 import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Ray;
+import com.jme3.math.Triangle;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.CollisionData;
 import com.jme3.scene.Mesh;
@@ -56,18 +58,89 @@ import com.jme3.scene.mesh.WrappedIndexBuffer;
 import com.jme3.util.TempVars;
 import java.io.IOException;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Bounding Interval Hierarchy over the triangles of a mesh.
+ * <p>
+ * The tree is built with {@link BIHNode}s and then flattened into two
+ * primitive arrays: for each node, two ints hold either the split axis and
+ * the index of the left child (the right child follows it), or the
+ * triangle range of a leaf, and two floats hold the left and right planes.
+ * The triangles are stored in the same order as the leaves reference them.
+ * <p>
+ * When the positions of a mesh change but its triangles do not, as with
+ * software skinning, {@link #refit()} keeps the nodes and only moves their
+ * planes, which is much cheaper than building a new tree.
+ */
 public class BIHTree implements CollisionData {
 
+    /**
+     * Strategies to choose the split plane of the inner nodes.
+     */
+    public enum SplitMethod {
+        /**
+         * Split at the middle of the node bounds. Fast to build.
+         */
+        Midpoint,
+        /**
+         * Split where the surface area heuristic estimates the cheapest
+         * traversal. Slower to build, but rays visit fewer nodes and
+         * triangles.
+         */
+        SurfaceAreaHeuristic
+    }
+
     public static final int MAX_TREE_DEPTH = 100;
     public static final int MAX_TRIS_PER_NODE = 21;
+    /**
+     * The number of triangles above which a parallel construction builds
+     * the two children of a node in separate tasks.
+     */
+    static final int PARALLEL_BUILD_THRESHOLD = 4096;
+    /**
+     * The number of rays a task of a parallel batch traces.
+     */
+    static final int PARALLEL_RAY_THRESHOLD = 256;
+    /**
+     * Inner nodes are never deeper than MAX_TREE_DEPTH, so traversals never
+     * have more nodes than this pending.
+     */
+    static final int STACK_SIZE = MAX_TREE_DEPTH + 2;
+    private static final int LEAF = 3;
+    private static final int SAH_BINS = 16;
+    /**
+     * Widens the distance limit used to prune nodes, so rounding in the
+     * local traversal never skips a node holding a hit that would be kept.
+     */
+    private static final float LIMIT_SLACK = 1.0001f;
+    /**
+     * The default factor by which a refit may degrade the tree before it is
+     * rebuilt.
+     */
+    public static final float DEFAULT_REBUILD_THRESHOLD = 2f;
     private Mesh mesh;
-    private BIHNode root;
     private int maxTrisPerNode;
     private int numTris;
     private float[] pointData;
     private int[] triIndices;
+    private int[] nodes;
+    private float[] planes;
+    private SplitMethod splitMethod = SplitMethod.Midpoint;
+    private transient float[] bounds;
+    private float rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+    /**
+     * The surface area cost of the tree when it was built.
+     */
+    private transient float builtCost;
+    /**
+     * Bounds of each node computed by a refit, 6 floats per node.
+     */
+    private transient float[] nodeBounds;
     
     // private transient CollisionResults boundResults = new CollisionResults();
     private transient float[] bihSwapTmp;
@@ -122,17 +195,21 @@ public class BIHTree implements CollisionData {
         if(vBuffer == null){
             throw new IllegalArgumentException("A mesh should at least contain a Position buffer");
         }        
-        IndexBuffer ib = mesh.getIndexBuffer();
+        IndexBuffer ib = getTriangleIndexBuffer(mesh);
         FloatBuffer vb = (FloatBuffer) vBuffer.getData();
-        
+
+        numTris = ib.size() / 3;
+        initTriList(vb, ib);
+    }
+
+    private static IndexBuffer getTriangleIndexBuffer(Mesh mesh) {
+        IndexBuffer ib = mesh.getIndexBuffer();
         if (ib == null) {
             ib = new VirtualIndexBuffer(mesh.getVertexCount(), mesh.getMode());
         } else if (mesh.getMode() != Mode.Triangles) {
             ib = new WrappedIndexBuffer(mesh);
         }
-
-        numTris = ib.size() / 3;
-        initTriList(vb, ib);
+        return ib;
     }
 
     public BIHTree(Mesh mesh) {
@@ -142,9 +219,229 @@ public class BIHTree implements CollisionData {
     public BIHTree() {
     }
 
+    /**
+     * Sets the strategy used by the next construction to split the nodes.
+     *
+     * @param splitMethod the strategy (not null, default Midpoint)
+     */
+    public void setSplitMethod(SplitMethod splitMethod) {
+        if (splitMethod == null) {
+            throw new IllegalArgumentException("splitMethod cannot be null");
+        }
+        this.splitMethod = splitMethod;
+    }
+
+    /**
+     * @return the strategy used to split the nodes
+     */
+    public SplitMethod getSplitMethod() {
+        return splitMethod;
+    }
+
+    /**
+     * Sets how much worse than a freshly built tree a refit tree may become
+     * before {@link #refit()} rebuilds it. The quality is estimated with the
+     * surface area heuristic, relative to the bounds of the whole mesh.
+     *
+     * @param rebuildThreshold the allowed cost ratio (&ge;1, default 2),
+     * or {@link Float#POSITIVE_INFINITY} to never rebuild
+     */
+    public void setRebuildThreshold(float rebuildThreshold) {
+        if (!(rebuildThreshold >= 1f)) {
+            throw new IllegalArgumentException("rebuildThreshold must be at least 1");
+        }
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    /**
+     * @return the allowed cost ratio of a refit tree to a freshly built one
+     */
+    public float getRebuildThreshold() {
+        return rebuildThreshold;
+    }
+
     public void construct() {
+        construct(null);
+    }
+
+    /**
+     * Builds the tree, building the subtrees of large meshes in parallel on
+     * the given pool. The resulting tree is the same as the one built by
+     * {@link #construct()}.
+     *
+     * @param pool the pool to build on, or null to build on this thread
+     */
+    public void construct(ForkJoinPool pool) {
         BoundingBox sceneBbox = createBox(0, numTris - 1);
-        root = createNode(0, numTris - 1, sceneBbox, 0);
+        BIHNode root;
+        if (pool != null && numTris > PARALLEL_BUILD_THRESHOLD) {
+            root = pool.invoke(new BuildTask(0, numTris - 1, sceneBbox, 0));
+        } else {
+            root = createNode(0, numTris - 1, sceneBbox, 0, new BuildContext(false));
+        }
+        flatten(root);
+    }
+
+    private void flatten(BIHNode root) {
+        int count = countNodes(root);
+        nodes = new int[count * 2];
+        planes = new float[count * 2];
+        flatten(root, 0, 1);
+        updateBounds();
+        builtCost = computeNodeBounds(false);
+    }
+
+    /**
+     * Fits the tree to the current positions of the mesh. The triangles
+     * stay in the same leaves and the planes of the nodes are recomputed
+     * from the leaves up, in time linear in the number of triangles.
+     * <p>
+     * Moving the vertices far from where they were when the tree was built
+     * makes the nodes overlap more and queries slower. Once the estimated
+     * cost exceeds the {@link #setRebuildThreshold(float) rebuild threshold},
+     * or if the number of triangles changed, the tree is rebuilt instead.
+     *
+     * @return true if the tree was rebuilt, false if it was refit
+     * @throws IllegalStateException if the tree has not been constructed
+     */
+    public boolean refit() {
+        if (nodes == null) {
+            throw new IllegalStateException("The tree has not been constructed");
+        }
+        if (mesh == null) {
+            throw new IllegalStateException("The tree has no mesh to refit to");
+        }
+
+        FloatBuffer vb = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
+        IndexBuffer ib = getTriangleIndexBuffer(mesh);
+        if (ib.size() / 3 != numTris) {
+            numTris = ib.size() / 3;
+            initTriList(vb, ib);
+            construct();
+            return true;
+        }
+
+        // reload the triangles in the order the leaves reference them
+        int p = 0;
+        for (int i = 0; i < numTris; i++) {
+            int index = triIndices[i] * 3;
+            for (int j = 0; j < 3; j++) {
+                int vert = ib.get(index + j) * 3;
+                pointData[p++] = vb.get(vert++);
+                pointData[p++] = vb.get(vert++);
+                pointData[p++] = vb.get(vert);
+            }
+        }
+        updateBounds();
+
+        float cost = computeNodeBounds(true);
+        if (cost > builtCost * rebuildThreshold) {
+            construct();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the bounds of every node from the leaves up. Children are
+     * always stored after their parent, so a reverse pass sees them first.
+     *
+     * @param updatePlanes true to store the new bounds in the node planes
+     * @return the surface area cost of the tree: the area of each inner
+     * node plus the area of each leaf times its triangle count, divided by
+     * the area of the root
+     */
+    private float computeNodeBounds(boolean updatePlanes) {
+        int count = nodes.length / 2;
+        if (nodeBounds == null || nodeBounds.length != count * 6) {
+            nodeBounds = new float[count * 6];
+        }
+        float[] box = nodeBounds;
+        float cost = 0;
+        for (int n = count - 1; n >= 0; n--) {
+            int b = n * 6;
+            int header = nodes[n * 2];
+            if ((header & LEAF) == LEAF) {
+                int first = header >>> 2;
+                int last = nodes[n * 2 + 1];
+                box[b] = box[b + 1] = box[b + 2] = Float.POSITIVE_INFINITY;
+                box[b + 3] = box[b + 4] = box[b + 5] = Float.NEGATIVE_INFINITY;
+                for (int i = first * 9; i < (last + 1) * 9; i += 3) {
+                    for (int a = 0; a < 3; a++) {
+                        box[b + a] = Math.min(box[b + a], pointData[i + a]);
+                        box[b + a + 3] = Math.max(box[b + a + 3], pointData[i + a]);
+                    }
+                }
+                cost += surfaceArea(box, b) * (last - first + 1);
+            } else {
+                int left = nodes[n * 2 + 1] * 6;
+                int right = left + 6;
+                for (int a = 0; a < 3; a++) {
+                    box[b + a] = Math.min(box[left + a], box[right + a]);
+                    box[b + a + 3] = Math.max(box[left + a + 3], box[right + a + 3]);
+                }
+                if (updatePlanes) {
+                    planes[n * 2] = box[left + header + 3];
+                    planes[n * 2 + 1] = box[right + header];
+                }
+                cost += surfaceArea(box, b);
+            }
+        }
+        float rootArea = surfaceArea(box, 0);
+        return rootArea > 0 ? cost / rootArea : 0;
+    }
+
+    private static float surfaceArea(float[] box, int offset) {
+        float x = box[offset + 3] - box[offset];
+        float y = box[offset + 4] - box[offset + 1];
+        float z = box[offset + 5] - box[offset + 2];
+        if (!(x >= 0 && y >= 0 && z >= 0)) {
+            return 0;
+        }
+        return 2f * (x * y + y * z + z * x);
+    }
+
+    private static int countNodes(BIHNode node) {
+        if (node.getAxis() == LEAF) {
+            return 1;
+        }
+        return 1 + countNodes(node.getLeftChild()) + countNodes(node.getRightChild());
+    }
+
+    /**
+     * Stores the given node at the given index, and its children from the
+     * next free index on.
+     *
+     * @return the next free index
+     */
+    private int flatten(BIHNode node, int index, int next) {
+        int axis = node.getAxis();
+        if (axis == LEAF) {
+            nodes[index * 2] = LEAF | (node.getLeftIndex() << 2);
+            nodes[index * 2 + 1] = node.getRightIndex();
+            return next;
+        }
+
+        int left = next;
+        nodes[index * 2] = axis;
+        nodes[index * 2 + 1] = left;
+        planes[index * 2] = node.getLeftPlane();
+        planes[index * 2 + 1] = node.getRightPlane();
+        next = flatten(node.getLeftChild(), left, next + 2);
+        return flatten(node.getRightChild(), left + 1, next);
+    }
+
+    private void updateBounds() {
+        bounds = new float[]{
+            Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+        for (int i = 0; i < pointData.length; i += 3) {
+            for (int a = 0; a < 3; a++) {
+                bounds[a] = Math.min(bounds[a], pointData[i + a]);
+                bounds[a + 3] = Math.max(bounds[a + 3], pointData[i + a]);
+            }
+        }
     }
 
     private BoundingBox createBox(int l, int r) {
@@ -173,7 +470,7 @@ public class BIHTree implements CollisionData {
         return triIndices[triIndex];
     }
 
-    private int sortTriangles(int l, int r, float split, int axis) {
+    private int sortTriangles(int l, int r, float split, int axis, float[] swapTmp) {
         int pivot = l;
         int j = r;
 
@@ -187,7 +484,7 @@ public class BIHTree implements CollisionData {
             getTriangle(pivot, v1, v2, v3);
             v1.addLocal(v2).addLocal(v3).multLocal(FastMath.ONE_THIRD);
             if (v1.get(axis) > split) {
-                swapTriangles(pivot, j);
+                swapTriangles(pivot, j, swapTmp);
                 --j;
             } else {
                 ++pivot;
@@ -297,38 +594,46 @@ public class BIHTree implements CollisionData {
 //
 //        return node;
 //    }
-    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth) {
+    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth, BuildContext context) {
         if ((r - l) < maxTrisPerNode || depth > MAX_TREE_DEPTH) {
             return new BIHNode(l, r);
         }
 
         BoundingBox currentBox = createBox(l, r);
 
-        Vector3f exteriorExt = nodeBbox.getExtent(null);
-        Vector3f interiorExt = currentBox.getExtent(null);
-        exteriorExt.subtractLocal(interiorExt);
+        int axis;
+        float split;
+        if (splitMethod == SplitMethod.SurfaceAreaHeuristic && findSahSplit(l, r, context)) {
+            axis = context.splitAxis;
+            split = context.split;
+        } else {
+            Vector3f exteriorExt = nodeBbox.getExtent(null);
+            Vector3f interiorExt = currentBox.getExtent(null);
+            exteriorExt.subtractLocal(interiorExt);
 
-        int axis = 0;
-        if (exteriorExt.x > exteriorExt.y) {
-            if (exteriorExt.x > exteriorExt.z) {
-                axis = 0;
+            axis = 0;
+            if (exteriorExt.x > exteriorExt.y) {
+                if (exteriorExt.x > exteriorExt.z) {
+                    axis = 0;
+                } else {
+                    axis = 2;
+                }
             } else {
-                axis = 2;
+                if (exteriorExt.y > exteriorExt.z) {
+                    axis = 1;
+                } else {
+                    axis = 2;
+                }
             }
-        } else {
-            if (exteriorExt.y > exteriorExt.z) {
-                axis = 1;
-            } else {
-                axis = 2;
+            if (exteriorExt.equals(Vector3f.ZERO)) {
+                axis = 0;
             }
-        }
-        if (exteriorExt.equals(Vector3f.ZERO)) {
-            axis = 0;
+
+//            Arrays.sort(tris, l, r, comparators[axis]);
+            split = currentBox.getCenter().get(axis);
         }
 
-//        Arrays.sort(tris, l, r, comparators[axis]);
-        float split = currentBox.getCenter().get(axis);
-        int pivot = sortTriangles(l, r, split, axis);
+        int pivot = sortTriangles(l, r, split, axis, context.swapTmp);
         if (pivot == l || pivot == r) {
             pivot = (r + l) / 2;
         }
@@ -338,12 +643,12 @@ public class BIHTree implements CollisionData {
             //Only right
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
-            return createNode(l, r, rbbox, depth + 1);
+            return createNode(l, r, rbbox, depth + 1, context);
         } else if (pivot > r) {
             //Only left
             BoundingBox lbbox = new BoundingBox(currentBox);
             setMinMax(lbbox, false, axis, split);
-            return createNode(l, r, lbbox, depth + 1);
+            return createNode(l, r, lbbox, depth + 1, context);
         } else {
             //Build the node
             BIHNode node = new BIHNode(axis);
@@ -354,19 +659,144 @@ public class BIHTree implements CollisionData {
 
             //The left node right border is the plane most right
             node.setLeftPlane(getMinMax(createBox(l, max(l, pivot - 1)), false, axis));
-            node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1)); //Recursive call
 
             //Right Child
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
             //The right node left border is the plane most left
             node.setRightPlane(getMinMax(createBox(pivot, r), true, axis));
-            node.setRightChild(createNode(pivot, r, rbbox, depth + 1)); //Recursive call
+
+            //Recursive calls, the children sort disjoint ranges
+            if (context.parallel && r - l > PARALLEL_BUILD_THRESHOLD) {
+                BuildTask leftTask = new BuildTask(l, max(l, pivot - 1), lbbox, depth + 1);
+                leftTask.fork();
+                node.setRightChild(createNode(pivot, r, rbbox, depth + 1, context));
+                node.setLeftChild(leftTask.join());
+            } else {
+                node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1, context));
+                node.setRightChild(createNode(pivot, r, rbbox, depth + 1, context));
+            }
 
             return node;
         }
     }
 
+    /**
+     * Bins the triangle centroids of the given range along each axis and
+     * looks for the bin boundary with the lowest surface area heuristic cost.
+     * The split value is the largest centroid on the left of the boundary, so
+     * that sorting the triangles puts the same triangles on each side.
+     *
+     * @return true if a split was found and stored in the context, false if
+     * all the centroids are the same
+     */
+    private boolean findSahSplit(int l, int r, BuildContext context) {
+        float[] centroids = context.centroidBounds;
+        for (int a = 0; a < 3; a++) {
+            centroids[a] = Float.POSITIVE_INFINITY;
+            centroids[a + 3] = Float.NEGATIVE_INFINITY;
+        }
+        for (int i = l; i <= r; i++) {
+            for (int a = 0; a < 3; a++) {
+                float c = centroid(i, a);
+                centroids[a] = Math.min(centroids[a], c);
+                centroids[a + 3] = Math.max(centroids[a + 3], c);
+            }
+        }
+
+        int[] counts = context.binCounts;
+        float[] binBounds = context.binBounds;
+        float[] binMax = context.binMaxCentroid;
+        float[] rightAreas = context.rightAreas;
+        float bestCost = Float.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; a++) {
+            float extent = centroids[a + 3] - centroids[a];
+            if (!(extent > 0f)) {
+                continue;
+            }
+            float scale = SAH_BINS / extent;
+            for (int b = 0; b < SAH_BINS; b++) {
+                counts[b] = 0;
+                binMax[b] = Float.NEGATIVE_INFINITY;
+                resetBox(binBounds, b * 6);
+            }
+            for (int i = l; i <= r; i++) {
+                float c = centroid(i, a);
+                int b = Math.min(SAH_BINS - 1, (int) ((c - centroids[a]) * scale));
+                counts[b]++;
+                binMax[b] = Math.max(binMax[b], c);
+                int p = i * 9;
+                for (int v = 0; v < 9; v += 3) {
+                    for (int k = 0; k < 3; k++) {
+                        binBounds[b * 6 + k] = Math.min(binBounds[b * 6 + k], pointData[p + v + k]);
+                        binBounds[b * 6 + k + 3] = Math.max(binBounds[b * 6 + k + 3], pointData[p + v + k]);
+                    }
+                }
+            }
+
+            // sweep from the right to know the cost of each right side
+            float[] box = context.sweepBox;
+            resetBox(box, 0);
+            for (int b = SAH_BINS - 1; b > 0; b--) {
+                growBox(box, binBounds, b * 6);
+                rightAreas[b] = surfaceArea(box);
+            }
+            resetBox(box, 0);
+            int leftCount = 0;
+            for (int b = 0; b < SAH_BINS - 1; b++) {
+                growBox(box, binBounds, b * 6);
+                leftCount += counts[b];
+                int rightCount = (r - l + 1) - leftCount;
+                if (leftCount == 0 || rightCount == 0) {
+                    continue;
+                }
+                float cost = surfaceArea(box) * leftCount + rightAreas[b + 1] * rightCount;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    context.splitAxis = a;
+                    context.split = binMax[b];
+                    for (int k = b - 1; k >= 0 && context.split == Float.NEGATIVE_INFINITY; k--) {
+                        context.split = binMax[k];
+                    }
+                }
+            }
+        }
+        return bestCost < Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Computes the centroid of a triangle along an axis, the same way
+     * {@link #sortTriangles(int, int, float, int, float[])} does.
+     */
+    private float centroid(int index, int axis) {
+        int p = index * 9 + axis;
+        return (pointData[p] + pointData[p + 3] + pointData[p + 6]) * FastMath.ONE_THIRD;
+    }
+
+    private static void resetBox(float[] box, int offset) {
+        for (int k = 0; k < 3; k++) {
+            box[offset + k] = Float.POSITIVE_INFINITY;
+            box[offset + k + 3] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static void growBox(float[] box, float[] other, int offset) {
+        for (int k = 0; k < 3; k++) {
+            box[k] = Math.min(box[k], other[offset + k]);
+            box[k + 3] = Math.max(box[k + 3], other[offset + k + 3]);
+        }
+    }
+
+    private static float surfaceArea(float[] box) {
+        float dx = box[3] - box[0];
+        float dy = box[4] - box[1];
+        float dz = box[5] - box[2];
+        if (!(dx >= 0f)) {
+            return 0f;
+        }
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
     public void getTriangle(int index, Vector3f v1, Vector3f v2, Vector3f v3) {
         int pointIndex = index * 9;
 
@@ -384,17 +814,21 @@ public class BIHTree implements CollisionData {
     }
 
     public void swapTriangles(int index1, int index2) {
+        swapTriangles(index1, index2, bihSwapTmp);
+    }
+
+    private void swapTriangles(int index1, int index2, float[] swapTmp) {
         int p1 = index1 * 9;
         int p2 = index2 * 9;
 
         // store p1 in tmp
-        System.arraycopy(pointData, p1, bihSwapTmp, 0, 9);
+        System.arraycopy(pointData, p1, swapTmp, 0, 9);
 
         // copy p2 to p1
         System.arraycopy(pointData, p2, pointData, p1, 9);
 
         // copy tmp to p2
-        System.arraycopy(bihSwapTmp, 0, pointData, p2, 9);
+        System.arraycopy(swapTmp, 0, pointData, p2, 9);
 
         // swap indices
         int tmp2 = triIndices[index1];
@@ -433,8 +867,12 @@ public class BIHTree implements CollisionData {
                     }
                 }
 
-    //            return root.intersectBrute(r, worldMatrix, this, tMin, tMax, results);
-                return root.intersectWhere(r, worldMatrix, this, tMin, tMax, results);
+                // the bound is entered past the farthest hit still kept
+                if (tMin > results.getDistanceLimit()) {
+                    return 0;
+                }
+
+                return intersectWhere(r, worldMatrix, tMin, tMax, results);
             }
             return 0;
         } finally {
@@ -458,7 +896,501 @@ public class BIHTree implements CollisionData {
         }
 
         bbox.transform(worldMatrix.invert(), bbox);
-        return root.intersectWhere(bv, bbox, worldMatrix, this, results);
+        return intersectWhere(bv, bbox, worldMatrix, results);
+    }
+
+    private int intersectWhere(Collidable col,
+            BoundingBox box,
+            Matrix4f worldMatrix,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] stack = vars.bihNodeStack;
+        int stackSize = 0;
+
+        float[] minExts = {box.getCenter().x - box.getXExtent(),
+            box.getCenter().y - box.getYExtent(),
+            box.getCenter().z - box.getZExtent()};
+
+        float[] maxExts = {box.getCenter().x + box.getXExtent(),
+            box.getCenter().y + box.getYExtent(),
+            box.getCenter().z + box.getZExtent()};
+
+        stack[stackSize++] = 0;
+
+        Triangle t = new Triangle();
+        int cols = 0;
+
+        stackloop:
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+
+            while ((nodes[node * 2] & LEAF) != LEAF) {
+                int a = nodes[node * 2];
+                int left = nodes[node * 2 + 1];
+                float leftPlane = planes[node * 2];
+                float rightPlane = planes[node * 2 + 1];
+
+                float maxExt = maxExts[a];
+                float minExt = minExts[a];
+
+                if (leftPlane < rightPlane) {
+                    // means there's a gap in the middle
+                    // if the box is in that gap, we stop there
+                    if (minExt > leftPlane
+                            && maxExt < rightPlane) {
+                        continue stackloop;
+                    }
+                }
+
+                if (maxExt < rightPlane) {
+                    node = left;
+                } else if (minExt > leftPlane) {
+                    node = left + 1;
+                } else {
+                    stack[stackSize++] = left + 1;
+                    node = left;
+                }
+            }
+
+            int last = nodes[node * 2 + 1];
+            for (int i = nodes[node * 2] >>> 2; i <= last; i++) {
+                getTriangle(i, t.get1(), t.get2(), t.get3());
+                if (worldMatrix != null) {
+                    worldMatrix.mult(t.get1(), t.get1());
+                    worldMatrix.mult(t.get2(), t.get2());
+                    worldMatrix.mult(t.get3(), t.get3());
+                }
+
+                int added = col.collideWith(t, results);
+
+                if (added > 0) {
+                    int index = getTriangleIndex(i);
+                    int start = results.size() - added;
+
+                    for (int j = start; j < results.size(); j++) {
+                        CollisionResult cr = results.getCollisionDirect(j);
+                        cr.setTriangleIndex(index);
+                    }
+
+                    cols += added;
+                }
+            }
+        }
+        vars.release();
+        return cols;
+    }
+
+    private static float toRangeLimit(float limit) {
+        if (limit == Float.POSITIVE_INFINITY) {
+            return limit;
+        }
+        return limit * LIMIT_SLACK;
+    }
+
+    private int intersectWhere(Ray r,
+            Matrix4f worldMatrix,
+            float sceneMin,
+            float sceneMax,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] stack = vars.bihNodeStack;
+        float[] ranges = vars.bihRangeStack;
+        int stackSize = 0;
+
+        Vector3f o = vars.vect1.set(r.getOrigin());
+        Vector3f d = vars.vect2.set(r.getDirection());
+
+        Matrix4f inv = vars.tempMat4.set(worldMatrix).invertLocal();
+
+        inv.mult(r.getOrigin(), r.getOrigin());
+
+        // Fixes rotation collision bug
+        inv.multNormal(r.getDirection(), r.getDirection());
+
+        float[] origins = vars.bihRayOrigin;
+        origins[0] = r.getOrigin().x;
+        origins[1] = r.getOrigin().y;
+        origins[2] = r.getOrigin().z;
+
+        float[] invDirections = vars.bihRayInvDirection;
+        invDirections[0] = 1f / r.getDirection().x;
+        invDirections[1] = 1f / r.getDirection().y;
+        invDirections[2] = 1f / r.getDirection().z;
+
+        r.getDirection().normalizeLocal();
+
+        Ray worldRay = vars.bihRay;
+        worldRay.setOrigin(o);
+        worldRay.setDirection(d);
+        Vector3f contactPoint = vars.vect6;
+        Vector3f contactNormal = vars.vect7;
+        float limit = results.getDistanceLimit();
+        float rangeLimit = toRangeLimit(limit);
+
+        Vector3f v1 = vars.vect3,
+                v2 = vars.vect4,
+                v3 = vars.vect5;
+        int cols = 0;
+
+        stack[stackSize] = 0;
+        ranges[stackSize * 2] = sceneMin;
+        ranges[stackSize * 2 + 1] = sceneMax;
+        stackSize++;
+        stackloop:
+        while (stackSize > 0) {
+            stackSize--;
+            int node = stack[stackSize];
+            float tMin = ranges[stackSize * 2],
+                    tMax = min(ranges[stackSize * 2 + 1], rangeLimit);
+
+            if (tMax < tMin) {
+                continue;
+            }
+
+            while ((nodes[node * 2] & LEAF) != LEAF) { // while node is not a leaf
+                int a = nodes[node * 2];
+
+                // find the origin and direction value for the given axis
+                float origin = origins[a];
+                float invDirection = invDirections[a];
+
+                float tNearSplit, tFarSplit;
+                int nearNode, farNode;
+
+                tNearSplit = (planes[node * 2] - origin) * invDirection;
+                tFarSplit = (planes[node * 2 + 1] - origin) * invDirection;
+                nearNode = nodes[node * 2 + 1];
+                farNode = nearNode + 1;
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    int tmpNode = nearNode;
+                    nearNode = farNode;
+                    farNode = tmpNode;
+                }
+
+                if (tMin > tNearSplit && tMax < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tMax < tFarSplit) {
+                    tMax = min(tMax, tNearSplit);
+                    node = nearNode;
+                } else {
+                    stack[stackSize] = farNode;
+                    ranges[stackSize * 2] = max(tMin, tFarSplit);
+                    ranges[stackSize * 2 + 1] = tMax;
+                    stackSize++;
+                    tMax = min(tMax, tNearSplit);
+                    node = nearNode;
+                }
+            }
+
+            // a leaf
+            int last = nodes[node * 2 + 1];
+            for (int i = nodes[node * 2] >>> 2; i <= last; i++) {
+                getTriangle(i, v1, v2, v3);
+
+                float t = r.intersects(v1, v2, v3);
+                if (!Float.isInfinite(t)) {
+                    if (worldMatrix != null) {
+                        worldMatrix.mult(v1, v1);
+                        worldMatrix.mult(v2, v2);
+                        worldMatrix.mult(v3, v3);
+                        float t_world = worldRay.intersects(v1, v2, v3);
+                        t = t_world;
+                    }
+
+                    contactPoint.set(d).multLocal(t).addLocal(o);
+                    float worldSpaceDist = o.distance(contactPoint);
+                    if (worldSpaceDist > limit) {
+                        continue;
+                    }
+                    Triangle.computeTriangleNormal(v1, v2, v3, contactNormal);
+
+                    CollisionResult cr = results.obtainCollision();
+                    cr.setContactPoint(contactPoint.x, contactPoint.y, contactPoint.z);
+                    cr.setDistance(worldSpaceDist);
+                    cr.setContactNormal(contactNormal.x, contactNormal.y, contactNormal.z);
+                    cr.setTriangleIndex(getTriangleIndex(i));
+                    results.addCollision(cr);
+                    cols++;
+
+                    limit = results.getDistanceLimit();
+                    rangeLimit = toRangeLimit(limit);
+                }
+            }
+        }
+        vars.release();
+        r.setOrigin(o);
+        r.setDirection(d);
+
+        return cols;
+    }
+
+    /**
+     * Finds the closest triangle hit by each ray of the batch, with the rays
+     * in the mesh coordinate space.
+     *
+     * @param batch the rays to trace, receives the hits (not null)
+     * @return the number of rays that hit a triangle
+     * @see #collideWithRays(RayBatch, Matrix4f, ForkJoinPool)
+     */
+    public int collideWithRays(RayBatch batch) {
+        return collideWithRays(batch, null, null);
+    }
+
+    /**
+     * Finds the closest triangle hit by each ray of the batch, with the rays
+     * in world space.
+     *
+     * @param batch the rays to trace, receives the hits (not null)
+     * @param worldMatrix the transform of the mesh, or null for the identity
+     * @return the number of rays that hit a triangle
+     * @see #collideWithRays(RayBatch, Matrix4f, ForkJoinPool)
+     */
+    public int collideWithRays(RayBatch batch, Matrix4f worldMatrix) {
+        return collideWithRays(batch, worldMatrix, null);
+    }
+
+    /**
+     * Finds the closest triangle hit by each ray of the batch. Only the
+     * closest hit is searched, so the traversal skips whatever lies behind
+     * it, and no result object is created. The hit distances are measured
+     * along the world space directions of the rays, which are usually unit
+     * vectors.
+     * <p>
+     * On a single thread, tracing does not allocate once the batch has been
+     * filled. The batch must not be modified until the call returns.
+     *
+     * @param batch the rays to trace, receives the hits (not null)
+     * @param worldMatrix the transform of the mesh, or null for the identity
+     * @param pool the pool to trace large batches on, or null to trace them
+     * on this thread
+     * @return the number of rays that hit a triangle
+     */
+    public int collideWithRays(RayBatch batch, Matrix4f worldMatrix, ForkJoinPool pool) {
+        if (nodes == null) {
+            throw new IllegalStateException("The tree has not been constructed");
+        }
+        Matrix4f inverse = null;
+        if (worldMatrix != null) {
+            inverse = batch.inverse.set(worldMatrix).invertLocal();
+        }
+
+        int size = batch.size();
+        if (pool != null && size > PARALLEL_RAY_THRESHOLD) {
+            pool.invoke(new RayTask(batch, inverse, 0, size));
+        } else {
+            traceRays(batch, inverse, 0, size, batch.nodeStack, batch.rangeStack);
+        }
+
+        int hits = 0;
+        for (int i = 0; i < size; i++) {
+            if (batch.triangles[i] >= 0) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private void traceRays(RayBatch batch, Matrix4f inverse, int start, int end,
+            int[] stack, float[] ranges) {
+        float[] rayOrigins = batch.origins;
+        float[] rayDirections = batch.directions;
+        for (int i = start; i < end; i++) {
+            float ox = rayOrigins[i * 3], oy = rayOrigins[i * 3 + 1], oz = rayOrigins[i * 3 + 2];
+            float dx = rayDirections[i * 3], dy = rayDirections[i * 3 + 1], dz = rayDirections[i * 3 + 2];
+            if (inverse != null) {
+                // the direction stays unnormalized, so distances remain in world units
+                float x = ox, y = oy, z = oz;
+                ox = inverse.m00 * x + inverse.m01 * y + inverse.m02 * z + inverse.m03;
+                oy = inverse.m10 * x + inverse.m11 * y + inverse.m12 * z + inverse.m13;
+                oz = inverse.m20 * x + inverse.m21 * y + inverse.m22 * z + inverse.m23;
+                x = dx;
+                y = dy;
+                z = dz;
+                dx = inverse.m00 * x + inverse.m01 * y + inverse.m02 * z;
+                dy = inverse.m10 * x + inverse.m11 * y + inverse.m12 * z;
+                dz = inverse.m20 * x + inverse.m21 * y + inverse.m22 * z;
+            }
+            batch.distances[i] = Float.POSITIVE_INFINITY;
+            batch.triangles[i] = -1;
+            traceRay(batch, i, ox, oy, oz, dx, dy, dz, stack, ranges);
+        }
+    }
+
+    private void traceRay(RayBatch batch, int ray,
+            float ox, float oy, float oz, float dx, float dy, float dz,
+            int[] stack, float[] ranges) {
+        float idx = 1f / dx, idy = 1f / dy, idz = 1f / dz;
+
+        // clip the ray against the bounds of the mesh
+        float tMin = 0f;
+        float tMax = batch.limits[ray];
+        for (int a = 0; a < 3; a++) {
+            float o = a == 0 ? ox : a == 1 ? oy : oz;
+            float inv = a == 0 ? idx : a == 1 ? idy : idz;
+            float t1 = (bounds[a] - o) * inv;
+            float t2 = (bounds[a + 3] - o) * inv;
+            if (inv < 0) {
+                float tmp = t1;
+                t1 = t2;
+                t2 = tmp;
+            }
+            tMin = t1 > tMin ? t1 : tMin;
+            tMax = t2 < tMax ? t2 : tMax;
+        }
+        if (!(tMin <= tMax)) {
+            return;
+        }
+
+        float closest = batch.limits[ray];
+        int hitTriangle = -1;
+        int stackSize = 0;
+        stack[stackSize] = 0;
+        ranges[0] = tMin;
+        ranges[1] = tMax;
+        stackSize++;
+        stackloop:
+        while (stackSize > 0) {
+            stackSize--;
+            int node = stack[stackSize];
+            tMin = ranges[stackSize * 2];
+            tMax = min(ranges[stackSize * 2 + 1], closest);
+
+            if (tMax < tMin) {
+                continue;
+            }
+
+            while ((nodes[node * 2] & LEAF) != LEAF) {
+                int a = nodes[node * 2];
+                float origin = a == 0 ? ox : a == 1 ? oy : oz;
+                float invDirection = a == 0 ? idx : a == 1 ? idy : idz;
+
+                float tNearSplit = (planes[node * 2] - origin) * invDirection;
+                float tFarSplit = (planes[node * 2 + 1] - origin) * invDirection;
+                int nearNode = nodes[node * 2 + 1];
+                int farNode = nearNode + 1;
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    int tmpNode = nearNode;
+                    nearNode = farNode;
+                    farNode = tmpNode;
+                }
+
+                if (tMin > tNearSplit && tMax < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tMax < tFarSplit) {
+                    tMax = min(tMax, tNearSplit);
+                    node = nearNode;
+                } else {
+                    stack[stackSize] = farNode;
+                    ranges[stackSize * 2] = max(tMin, tFarSplit);
+                    ranges[stackSize * 2 + 1] = tMax;
+                    stackSize++;
+                    tMax = min(tMax, tNearSplit);
+                    node = nearNode;
+                }
+            }
+
+            int last = nodes[node * 2 + 1];
+            for (int i = nodes[node * 2] >>> 2; i <= last; i++) {
+                float t = intersectTriangle(i * 9, ox, oy, oz, dx, dy, dz);
+                if (t < closest) {
+                    closest = t;
+                    hitTriangle = i;
+                }
+            }
+        }
+
+        if (hitTriangle >= 0) {
+            batch.distances[ray] = closest;
+            batch.triangles[ray] = triIndices[hitTriangle];
+        }
+    }
+
+    /**
+     * Intersects a ray with a stored triangle, with the same arithmetic as
+     * {@link Ray#intersects(Vector3f, Vector3f, Vector3f)}.
+     *
+     * @return the distance along the direction, or positive infinity if the
+     * triangle is not hit
+     */
+    private float intersectTriangle(int p,
+            float ox, float oy, float oz, float dx, float dy, float dz) {
+        float[] points = pointData;
+        float v0x = points[p], v0y = points[p + 1], v0z = points[p + 2];
+
+        float edge1X = points[p + 3] - v0x;
+        float edge1Y = points[p + 4] - v0y;
+        float edge1Z = points[p + 5] - v0z;
+
+        float edge2X = points[p + 6] - v0x;
+        float edge2Y = points[p + 7] - v0y;
+        float edge2Z = points[p + 8] - v0z;
+
+        float normX = ((edge1Y * edge2Z) - (edge1Z * edge2Y));
+        float normY = ((edge1Z * edge2X) - (edge1X * edge2Z));
+        float normZ = ((edge1X * edge2Y) - (edge1Y * edge2X));
+
+        float dirDotNorm = dx * normX + dy * normY + dz * normZ;
+
+        float diffX = ox - v0x;
+        float diffY = oy - v0y;
+        float diffZ = oz - v0z;
+
+        float sign;
+        if (dirDotNorm > FastMath.FLT_EPSILON) {
+            sign = 1;
+        } else if (dirDotNorm < -FastMath.FLT_EPSILON) {
+            sign = -1f;
+            dirDotNorm = -dirDotNorm;
+        } else {
+            // ray and triangle are parallel
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float diffEdge2X = ((diffY * edge2Z) - (diffZ * edge2Y));
+        float diffEdge2Y = ((diffZ * edge2X) - (diffX * edge2Z));
+        float diffEdge2Z = ((diffX * edge2Y) - (diffY * edge2X));
+
+        float dirDotDiffxEdge2 = sign * (dx * diffEdge2X + dy * diffEdge2Y + dz * diffEdge2Z);
+        if (dirDotDiffxEdge2 < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        diffEdge2X = ((edge1Y * diffZ) - (edge1Z * diffY));
+        diffEdge2Y = ((edge1Z * diffX) - (edge1X * diffZ));
+        diffEdge2Z = ((edge1X * diffY) - (edge1Y * diffX));
+
+        float dirDotEdge1xDiff = sign * (dx * diffEdge2X + dy * diffEdge2Y + dz * diffEdge2Z);
+        if (dirDotEdge1xDiff < 0.0f || dirDotDiffxEdge2 + dirDotEdge1xDiff > dirDotNorm) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float diffDotNorm = -sign * (diffX * normX + diffY * normY + diffZ * normZ);
+        if (diffDotNorm < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return diffDotNorm / dirDotNorm;
     }
 
     @Override
@@ -482,7 +1414,10 @@ public class BIHTree implements CollisionData {
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(mesh, "mesh", null);
-        oc.write(root, "root", null);
+        oc.write(nodes, "nodes", null);
+        oc.write(planes, "planes", null);
+        oc.write(splitMethod, "split_method", SplitMethod.Midpoint);
+        oc.write(rebuildThreshold, "rebuild_threshold", DEFAULT_REBUILD_THRESHOLD);
         oc.write(maxTrisPerNode, "tris_per_node", 0);
         oc.write(pointData, "points", null);
         oc.write(triIndices, "indices", null);
@@ -492,9 +1427,85 @@ public class BIHTree implements CollisionData {
     public void read(JmeImporter im) throws IOException {
         InputCapsule ic = im.getCapsule(this);
         mesh = (Mesh) ic.readSavable("mesh", null);
-        root = (BIHNode) ic.readSavable("root", null);
         maxTrisPerNode = ic.readInt("tris_per_node", 0);
+        splitMethod = ic.readEnum("split_method", SplitMethod.class, SplitMethod.Midpoint);
+        rebuildThreshold = ic.readFloat("rebuild_threshold", DEFAULT_REBUILD_THRESHOLD);
         pointData = ic.readFloatArray("points", null);
         triIndices = ic.readIntArray("indices", null);
+        numTris = triIndices == null ? 0 : triIndices.length;
+        bihSwapTmp = new float[9];
+        nodes = ic.readIntArray("nodes", null);
+        planes = ic.readFloatArray("planes", null);
+        if (nodes == null) {
+            // saved before the tree was flattened
+            BIHNode root = (BIHNode) ic.readSavable("root", null);
+            if (root != null) {
+                flatten(root);
+            }
+        } else {
+            updateBounds();
+            builtCost = computeNodeBounds(false);
+        }
+    }
+
+    private static final class BuildContext {
+
+        final boolean parallel;
+        final float[] swapTmp = new float[9];
+        final float[] centroidBounds = new float[6];
+        final int[] binCounts = new int[SAH_BINS];
+        final float[] binBounds = new float[SAH_BINS * 6];
+        final float[] binMaxCentroid = new float[SAH_BINS];
+        final float[] rightAreas = new float[SAH_BINS];
+        final float[] sweepBox = new float[6];
+        int splitAxis;
+        float split;
+
+        BuildContext(boolean parallel) {
+            this.parallel = parallel;
+        }
+    }
+
+    private final class BuildTask extends RecursiveTask<BIHNode> {
+
+        private final int l, r, depth;
+        private final BoundingBox nodeBbox;
+
+        BuildTask(int l, int r, BoundingBox nodeBbox, int depth) {
+            this.l = l;
+            this.r = r;
+            this.nodeBbox = nodeBbox;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BIHNode compute() {
+            return createNode(l, r, nodeBbox, depth, new BuildContext(true));
+        }
+    }
+
+    private final class RayTask extends RecursiveAction {
+
+        private final RayBatch batch;
+        private final Matrix4f inverse;
+        private final int start, end;
+
+        RayTask(RayBatch batch, Matrix4f inverse, int start, int end) {
+            this.batch = batch;
+            this.inverse = inverse;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_RAY_THRESHOLD) {
+                traceRays(batch, inverse, start, end, new int[STACK_SIZE], new float[STACK_SIZE * 2]);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new RayTask(batch, inverse, start, middle),
+                    new RayTask(batch, inverse, middle, end));
+        }
     }
 }
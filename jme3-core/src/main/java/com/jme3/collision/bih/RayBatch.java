@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+/**
+ * A reusable batch of rays to trace against a {@link BIHTree} in one call,
+ * which also receives the closest hit of each ray. The rays and the hits
+ * are kept in primitive arrays that only grow, so a batch that is cleared
+ * and refilled every frame does not allocate once it reached its size.
+ *
+ * @see BIHTree#collideWithRays(RayBatch, Matrix4f, java.util.concurrent.ForkJoinPool)
+ */
+public class RayBatch {
+
+    float[] origins;
+    float[] directions;
+    float[] limits;
+    float[] distances;
+    int[] triangles;
+    private int size;
+
+    // traversal state of the calling thread
+    final int[] nodeStack = new int[BIHTree.STACK_SIZE];
+    final float[] rangeStack = new float[BIHTree.STACK_SIZE * 2];
+    final Matrix4f inverse = new Matrix4f();
+
+    /**
+     * Creates a batch with room for 64 rays.
+     */
+    public RayBatch() {
+        this(64);
+    }
+
+    /**
+     * Creates a batch with room for the given number of rays.
+     *
+     * @param capacity the initial number of rays (&ge;1)
+     */
+    public RayBatch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity cannot be less than 1");
+        }
+        origins = new float[capacity * 3];
+        directions = new float[capacity * 3];
+        limits = new float[capacity];
+        distances = new float[capacity];
+        triangles = new int[capacity];
+    }
+
+    /**
+     * Adds a ray without a length limit.
+     *
+     * @param origin the origin of the ray (not null, unaffected)
+     * @param direction the direction of the ray, usually a unit vector (not
+     * null, unaffected)
+     * @return the index of the ray in the batch
+     */
+    public int addRay(Vector3f origin, Vector3f direction) {
+        return addRay(origin, direction, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Adds a ray to the batch.
+     *
+     * @param ray the ray to copy, with its limit (not null, unaffected)
+     * @return the index of the ray in the batch
+     */
+    public int addRay(Ray ray) {
+        return addRay(ray.getOrigin(), ray.getDirection(), ray.getLimit());
+    }
+
+    /**
+     * Adds a ray to the batch.
+     *
+     * @param origin the origin of the ray (not null, unaffected)
+     * @param direction the direction of the ray, usually a unit vector (not
+     * null, unaffected)
+     * @param limit the largest distance along the direction to report hits
+     * at
+     * @return the index of the ray in the batch
+     */
+    public int addRay(Vector3f origin, Vector3f direction, float limit) {
+        if (size == limits.length) {
+            int capacity = size * 2;
+            origins = Arrays.copyOf(origins, capacity * 3);
+            directions = Arrays.copyOf(directions, capacity * 3);
+            limits = Arrays.copyOf(limits, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            triangles = Arrays.copyOf(triangles, capacity);
+        }
+        int index = size++;
+        origins[index * 3] = origin.x;
+        origins[index * 3 + 1] = origin.y;
+        origins[index * 3 + 2] = origin.z;
+        directions[index * 3] = direction.x;
+        directions[index * 3 + 1] = direction.y;
+        directions[index * 3 + 2] = direction.z;
+        limits[index] = limit;
+        distances[index] = Float.POSITIVE_INFINITY;
+        triangles[index] = -1;
+        return index;
+    }
+
+    /**
+     * Removes all the rays, keeping the storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the number of rays in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the ray
+     * @return true if the ray hit a triangle in the last trace
+     */
+    public boolean hasHit(int index) {
+        return getTriangleIndex(index) >= 0;
+    }
+
+    /**
+     * @param index the index of the ray
+     * @return the distance of the closest hit along the direction of the
+     * ray, or positive infinity if it hit nothing
+     */
+    public float getDistance(int index) {
+        checkIndex(index);
+        return distances[index];
+    }
+
+    /**
+     * @param index the index of the ray
+     * @return the index of the closest triangle hit in its mesh, or -1 if
+     * the ray hit nothing
+     */
+    public int getTriangleIndex(int index) {
+        checkIndex(index);
+        return triangles[index];
+    }
+
+    /**
+     * Computes the point of the closest hit of a ray.
+     *
+     * @param index the index of the ray, which must have hit a triangle
+     * @param store storage for the result (modified if not null)
+     * @return the point in the space the ray was given in (either store or
+     * a new vector)
+     */
+    public Vector3f getContactPoint(int index, Vector3f store) {
+        if (!hasHit(index)) {
+            throw new IllegalStateException("Ray " + index + " did not hit");
+        }
+        if (store == null) {
+            store = new Vector3f();
+        }
+        float t = distances[index];
+        return store.set(origins[index * 3] + directions[index * 3] * t,
+                origins[index * 3 + 1] + directions[index * 3 + 1] * t,
+                origins[index * 3 + 2] + directions[index * 3 + 2] * t);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
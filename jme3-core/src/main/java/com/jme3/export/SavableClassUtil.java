@@ -89,6 +89,31 @@ public class SavableClassUtil {
         }
     }
 
+    /**
+     * Looks up the class saved under the given name, applying the same
+     * remappings as {@link #fromName(java.lang.String, java.util.List)} but
+     * without instantiating or initializing it.
+     *
+     * @param className the saved class name
+     * @param loaders additional class loaders to search, or null
+     * @return the class
+     * @throws ClassNotFoundException if no loader knows the class
+     */
+    public static Class<?> forName(String className, List<ClassLoader> loaders) throws ClassNotFoundException {
+        String newClassName = remapClass(className);
+        if (loaders != null) {
+            synchronized (loaders) {
+                for (ClassLoader classLoader : loaders) {
+                    try {
+                        return Class.forName(newClassName, false, classLoader);
+                    } catch (ClassNotFoundException e) {
+                    }
+                }
+            }
+        }
+        return Class.forName(newClassName, false, SavableClassUtil.class.getClassLoader());
+    }
+
     public static boolean isImplementingSavable(Class clazz){
         boolean result = Savable.class.isAssignableFrom(clazz);
         return result;
@@ -35,7 +35,6 @@ import com.jme3.export.*;
 import com.jme3.scene.Spatial;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.JmeCloneable;
-import com.jme3.util.SortUtil;
 import java.io.IOException;
 import java.util.*;
 
@@ -48,27 +47,12 @@ import java.util.*;
 public final class LightList implements Iterable<Light>, Savable, Cloneable, JmeCloneable {
 
     private Light[] list, tlist;
-    private float[] distToOwner;
+    private float[] distToOwner, tdist;
     private int listSize;
     private Spatial owner;
 
     private static final int DEFAULT_SIZE = 1;
 
-    private static final Comparator<Light> c = new Comparator<Light>() {
-        /**
-         * This assumes lastDistance have been computed in a previous step.
-         */
-        @Override
-        public int compare(Light l1, Light l2) {
-            if (l1.lastDistance < l2.lastDistance)
-                return -1;
-            else if (l1.lastDistance > l2.lastDistance)
-                return 1;
-            else
-                return 0;
-        }
-    };
-
     /**
      * constructor for serialization. Do not use
      */
@@ -189,7 +173,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
     }
 
     /**
-     * Sorts the elements in the list according to their Comparator.
+     * Sorts the elements in the list according to their distance to the owner.
      * There are two reasons why lights should be resorted.
      * First, if the lights have moved, that means their distance to
      * the spatial changed.
@@ -201,25 +185,71 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
      */
     public void sort(boolean transformChanged) {
         if (listSize > 1) {
-            // resize or populate our temporary array as necessary
+            // resize our temporary arrays as necessary
             if (tlist == null || tlist.length != list.length) {
-                tlist = list.clone();
-            } else {
-                System.arraycopy(list, 0, tlist, 0, list.length);
+                tlist = new Light[list.length];
+                tdist = new float[list.length];
             }
 
-            if (transformChanged){
-                // check distance of each light
-                for (int i = 0; i < listSize; i++){
-                    list[i].computeLastDistance(owner);
+            // The distance is cached per list rather than read back from
+            // the light during the sort, since the same light may be
+            // shared by spatials that are updated on other threads.
+            for (int i = 0; i < listSize; i++){
+                Light l = list[i];
+                if (transformChanged){
+                    // check distance of each light
+                    synchronized (l) {
+                        l.computeLastDistance(owner);
+                        distToOwner[i] = l.lastDistance;
+                    }
+                } else {
+                    distToOwner[i] = l.lastDistance;
                 }
             }
 
-            // now merge sort tlist into list
-            SortUtil.msort(tlist, list, 0, listSize - 1, c);
+            // now merge sort the list by distance
+            msort(0, listSize - 1);
         }
     }
 
+    private void msort(int low, int high) {
+        if (low < high) {
+            int center = (low + high) >>> 1;
+            msort(low, center);
+            msort(center + 1, high);
+            merge(low, center + 1, high);
+        }
+    }
+
+    private void merge(int low, int middle, int high) {
+        int start = low;
+        int leftEnd = middle - 1;
+        int pos = low;
+
+        while (low <= leftEnd && middle <= high) {
+            if (!(distToOwner[low] > distToOwner[middle])) {
+                tdist[pos] = distToOwner[low];
+                tlist[pos++] = list[low++];
+            } else {
+                tdist[pos] = distToOwner[middle];
+                tlist[pos++] = list[middle++];
+            }
+        }
+
+        while (low <= leftEnd) {
+            tdist[pos] = distToOwner[low];
+            tlist[pos++] = list[low++];
+        }
+
+        while (middle <= high) {
+            tdist[pos] = distToOwner[middle];
+            tlist[pos++] = list[middle++];
+        }
+
+        System.arraycopy(tlist, start, list, start, high - start + 1);
+        System.arraycopy(tdist, start, distToOwner, start, high - start + 1);
+    }
+
     /**
      * Updates a "world-space" light list, using the spatial's local-space
      * light list and its parent's world-space light list.
@@ -302,6 +332,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
             clone.list = list.clone();
             clone.distToOwner = distToOwner.clone();
             clone.tlist = null; // list used for sorting only
+            clone.tdist = null;
 
             return clone;
         }catch (CloneNotSupportedException ex){
@@ -314,6 +345,7 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         try{
             LightList clone = (LightList)super.clone();
             clone.tlist = null; // list used for sorting only
+            clone.tdist = null;
             return clone;
         }catch (CloneNotSupportedException ex){
             throw new AssertionError();
@@ -85,6 +85,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private boolean transparent = false;
     private boolean receivesShadows = false;
     private int sortingId = -1;
+    // changes whenever a parameter is set or cleared, see UniformCache
+    private long paramsStamp = UniformCache.nextStamp();
 
     public Material(MaterialDef def) {
         if (def == null) {
@@ -207,6 +209,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             }
 
             mat.sortingId = -1;
+            mat.paramsStamp = UniformCache.nextStamp();
             
             return mat;
         } catch (CloneNotSupportedException ex) {
@@ -495,6 +498,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             } else {
                 val.setValue(value);
             }
+            paramsStamp = UniformCache.nextStamp();
 
             if (technique != null) {
                 technique.notifyParamChanged(name, type, value);
@@ -514,6 +518,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
 
         paramValues.remove(name);
+        paramsStamp = UniformCache.nextStamp();
         if (matParam instanceof MatParamTexture) {
             sortingId = -1;
         }
@@ -546,6 +551,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             val.setTextureValue(value);
             val.setColorSpace(value.getImage() != null ? value.getImage().getColorSpace() : null);
         }
+        paramsStamp = UniformCache.nextStamp();
 
         if (technique != null) {
             technique.notifyParamChanged(name, type, value);
@@ -748,33 +754,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         // When choosing technique, we choose one that
         // supports all the caps.
         if (tech == null) {
-            EnumSet<Caps> rendererCaps = renderManager.getRenderer().getCaps();
-            List<TechniqueDef> techDefs = def.getTechniqueDefs(name);
-            if (techDefs == null || techDefs.isEmpty()) {
-                throw new IllegalArgumentException(
-                        String.format("The requested technique %s is not available on material %s", name, def.getName()));
-            }
-
-            TechniqueDef lastTech = null;
-            float weight = 0;
-            for (TechniqueDef techDef : techDefs) {
-                if (rendererCaps.containsAll(techDef.getRequiredCaps())) {
-                    float techWeight = techDef.getWeight() + (techDef.getLightMode() == renderManager.getPreferredLightMode() ? 10f : 0);
-                    if (techWeight > weight) {
-                        tech = new Technique(this, techDef);
-                        techniques.put(name, tech);
-                        weight = techWeight;
-                    }
-                }
-                lastTech = techDef;
-            }
-            if (tech == null) {
-                throw new UnsupportedOperationException(
-                        String.format("No technique '%s' on material "
-                                + "'%s' is supported by the video hardware. "
-                                + "The capabilities %s are required.",
-                                name, def.getName(), lastTech.getRequiredCaps()));
-            }
+            tech = new Technique(this, findTechniqueDef(name, renderManager));
+            techniques.put(name, tech);
             logger.log(Level.FINE, this.getMaterialDef().getName() + " selected technique def " + tech.getDef());
         } else if (technique == tech) {
             // attempting to switch to an already
@@ -789,7 +770,43 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         sortingId = -1;
     }
 
+    /**
+     * Chooses the technique definition with the given name that supports
+     * all the renderer's capabilities and suits its preferred light mode.
+     */
+    private TechniqueDef findTechniqueDef(String name, RenderManager renderManager) {
+        EnumSet<Caps> rendererCaps = renderManager.getRenderer().getCaps();
+        List<TechniqueDef> techDefs = def.getTechniqueDefs(name);
+        if (techDefs == null || techDefs.isEmpty()) {
+            throw new IllegalArgumentException(
+                    String.format("The requested technique %s is not available on material %s", name, def.getName()));
+        }
+
+        TechniqueDef lastTech = null;
+        TechniqueDef bestTech = null;
+        float weight = 0;
+        for (TechniqueDef techDef : techDefs) {
+            if (rendererCaps.containsAll(techDef.getRequiredCaps())) {
+                float techWeight = techDef.getWeight() + (techDef.getLightMode() == renderManager.getPreferredLightMode() ? 10f : 0);
+                if (techWeight > weight) {
+                    bestTech = techDef;
+                    weight = techWeight;
+                }
+            }
+            lastTech = techDef;
+        }
+        if (bestTech == null) {
+            throw new UnsupportedOperationException(
+                    String.format("No technique '%s' on material "
+                            + "'%s' is supported by the video hardware. "
+                            + "The capabilities %s are required.",
+                            name, def.getName(), lastTech.getRequiredCaps()));
+        }
+        return bestTech;
+    }
+
     private int applyOverrides(Renderer renderer, Shader shader, SafeArrayList<MatParamOverride> overrides, int unit) {
+        UniformCache cache = shader.getUniformCache();
         for (MatParamOverride override : overrides.getArray()) {
             VarType type = override.getVarType();
 
@@ -799,11 +816,20 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 continue;
             }
 
+            if (isBO(type)) {
+                if (override.getValue() != null) {
+                    final ShaderBufferBlock bufferBlock = shader.getBufferBlock(override.getPrefixedName());
+                    bufferBlock.setBufferObject((BufferObject) override.getValue());
+                }
+                continue;
+            }
+
             Uniform uniform = shader.getUniform(override.getPrefixedName());
 
             if (override.getValue() != null) {
                 if (type.isTextureType()) {
                     renderer.setTexture(unit, (Texture) override.getValue());
+                    cache.setTexture(unit, (Texture) override.getValue());
                     uniform.setValue(VarType.Int, unit);
                     unit++;
                 } else {
@@ -826,6 +852,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         if (forcedOverrides != null) {
             unit = applyOverrides(renderer, shader, forcedOverrides, unit);
         }
+        UniformCache cache = shader.getUniformCache();
 
         for (int i = 0; i < paramValues.size(); i++) {
 
@@ -846,6 +873,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
                 if (type.isTextureType()) {
                     renderer.setTexture(unit, (Texture) param.getValue());
+                    cache.setTexture(unit, (Texture) param.getValue());
                     uniform.setValue(VarType.Int, unit);
                     unit++;
                 } else {
@@ -904,10 +932,62 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         SafeArrayList<MatParamOverride> overrides = geometry.getWorldMatParamOverrides();
 
         Shader shader = technique.makeCurrent(renderManager, overrides, null, null, rendererCaps);
+        shader.getUniformCache().invalidateMaterial();
         updateShaderMaterialParameters(renderer, shader, overrides, null);
         renderManager.getRenderer().setShader(shader);
     }
 
+    /**
+     * Generates the shader sources the given technique needs to render the
+     * given geometry with this material, without compiling them or touching
+     * the material's render state. Unlike
+     * {@link #preload(com.jme3.renderer.RenderManager, com.jme3.scene.Geometry)}
+     * this may be called from any thread, so the include resolution and
+     * shader node assembly of many materials can be done ahead of time on
+     * worker threads. Rendering the material later only compiles the
+     * cached sources.
+     * <p>
+     * The defines are built the same way as at render time: from the
+     * material parameters, the world and forced material parameter
+     * overrides, and the world lights of the geometry. The
+     * {@link com.jme3.light.LightFilter light filter} of the render manager
+     * is not applied, so a technique whose defines depend on the lights may
+     * still need another shader if the filter removes some of them at render
+     * time.
+     * <p>
+     * The material, the geometry and its lights must not be modified while
+     * this method runs.
+     *
+     * @param techniqueName the name of the technique, e.g.
+     * {@link TechniqueDef#DEFAULT_TECHNIQUE_NAME}
+     * @param renderManager the render manager the material will be rendered
+     * with
+     * @param geometry the geometry the material will be rendered on
+     * @return the shader, or null if the technique does not render
+     */
+    public Shader prepareShader(String techniqueName, RenderManager renderManager, Geometry geometry) {
+        TechniqueDef techniqueDef = findTechniqueDef(techniqueName, renderManager);
+        if (techniqueDef.isNoRender()) {
+            return null;
+        }
+
+        DefineList defines = techniqueDef.createDefineList();
+        for (int i = 0; i < paramValues.size(); i++) {
+            MatParam param = paramValues.getValue(i);
+            Integer defineId = techniqueDef.getShaderParamDefineId(param.getName());
+            if (defineId != null) {
+                defines.set(defineId, param.getVarType(), param.getValue());
+            }
+        }
+        SafeArrayList<MatParamOverride> overrides = geometry.getWorldMatParamOverrides();
+        if (overrides != null) {
+            Technique.applyOverrides(techniqueDef, defines, overrides);
+        }
+        Technique.applyOverrides(techniqueDef, defines, renderManager.getForcedMatParams());
+        return techniqueDef.getLogic().makeCurrent(def.getAssetManager(), renderManager,
+                renderManager.getRenderer().getCaps(), geometry.getWorldLightList(), defines);
+    }
+
     private void clearUniformsSetByCurrent(Shader shader) {
         ListMap<String, Uniform> uniforms = shader.getUniformMap();
         int size = uniforms.size();
@@ -1010,20 +1090,34 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         // Get world overrides
         SafeArrayList<MatParamOverride> overrides = geometry.getWorldMatParamOverrides();
 
+        SafeArrayList<MatParamOverride> forcedOverrides = renderManager.getForcedMatParams();
+
         // Select shader to use
-        Shader shader = technique.makeCurrent(renderManager, overrides, renderManager.getForcedMatParams(), lights, rendererCaps);
-        
-        // Begin tracking which uniforms were changed by material.
-        clearUniformsSetByCurrent(shader);
+        Shader shader = technique.makeCurrent(renderManager, overrides, forcedOverrides, lights, rendererCaps);
         
         // Set uniform bindings
         renderManager.updateUniformBindings(shader);
-        
-        // Set material parameters
-        int unit = updateShaderMaterialParameters(renderer, shader, overrides, renderManager.getForcedMatParams());
 
-        // Clear any uniforms not changed by material.
-        resetUniformsNotSetByCurrent(shader);
+        int unit;
+        UniformCache cache = shader.getUniformCache();
+        MatParamOverride[] worldOverrideArray = overrides != null ? overrides.getArray() : null;
+        MatParamOverride[] forcedOverrideArray = forcedOverrides.getArray();
+        if (cache.isMaterialCurrent(paramsStamp, worldOverrideArray, forcedOverrideArray)) {
+            // The shader still holds this material's parameters, only the
+            // textures may have been unbound by other materials since.
+            unit = cache.bindTextures(renderer);
+        } else {
+            cache.setMaterial(paramsStamp, worldOverrideArray, forcedOverrideArray);
+
+            // Begin tracking which uniforms were changed by material.
+            clearUniformsSetByCurrent(shader);
+
+            // Set material parameters
+            unit = updateShaderMaterialParameters(renderer, shader, overrides, forcedOverrides);
+
+            // Clear any uniforms not changed by material.
+            resetUniformsNotSetByCurrent(shader);
+        }
         
         // Delegate rendering to the technique
         technique.render(renderManager, shader, geometry, lights, unit);
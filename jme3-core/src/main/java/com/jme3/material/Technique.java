@@ -109,7 +109,7 @@ public final class Technique {
         }
     }
 
-    private void applyOverrides(DefineList defineList, SafeArrayList<MatParamOverride> overrides) {
+    static void applyOverrides(TechniqueDef def, DefineList defineList, SafeArrayList<MatParamOverride> overrides) {
         for (MatParamOverride override : overrides.getArray()) {
             if (!override.isEnabled()) {
                 continue;
@@ -143,10 +143,10 @@ public final class Technique {
         dynamicDefines.setAll(paramDefines);
 
         if (worldOverrides != null) {
-            applyOverrides(dynamicDefines, worldOverrides);
+            applyOverrides(def, dynamicDefines, worldOverrides);
         }
         if (forcedOverrides != null) {
-            applyOverrides(dynamicDefines, forcedOverrides);
+            applyOverrides(def, dynamicDefines, forcedOverrides);
         }
 
         return logic.makeCurrent(assetManager, renderManager, rendererCaps, lights, dynamicDefines);
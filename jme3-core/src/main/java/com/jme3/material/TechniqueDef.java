@@ -41,6 +41,7 @@ import com.jme3.shader.Shader.ShaderType;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Describes a technique definition.
@@ -144,7 +145,7 @@ public class TechniqueDef implements Savable, Cloneable {
     private ArrayList<String> defineNames;
     private ArrayList<VarType> defineTypes;
     private HashMap<String, Integer> paramToDefineId;
-    private final HashMap<DefineList, Shader> definesToShaderMap;
+    private final ConcurrentHashMap<DefineList, Shader> definesToShaderMap;
     
     private boolean usesNodes = false;
     private List<ShaderNode> shaderNodes;
@@ -187,7 +188,7 @@ public class TechniqueDef implements Savable, Cloneable {
         defineNames = new ArrayList<String>();
         defineTypes = new ArrayList<VarType>();
         paramToDefineId = new HashMap<String, Integer>();
-        definesToShaderMap = new HashMap<DefineList, Shader>();
+        definesToShaderMap = new ConcurrentHashMap<DefineList, Shader>();
         worldBinds = new ArrayList<>();
     }
     
@@ -499,8 +500,11 @@ public class TechniqueDef implements Savable, Cloneable {
                 throw new UnsupportedOperationException("ShaderGenerator was not initialized, "
                         + "make sure assetManager.getGenerator(caps) has been called");
             }
-            shaderGenerator.initialize(this);
-            shader = shaderGenerator.generateShader(definesSourceCode);
+            // The generator is shared and keeps state between these calls.
+            synchronized (shaderGenerator) {
+                shaderGenerator.initialize(this);
+                shader = shaderGenerator.generateShader(definesSourceCode);
+            }
         } else {
             shader = new Shader();
             for (ShaderType type : ShaderType.values()) {
@@ -521,11 +525,27 @@ public class TechniqueDef implements Savable, Cloneable {
         return shader;
     }
     
+    /**
+     * Returns the shader for the given defines, generating its sources on
+     * first use. The shaders are cached per define list and may be
+     * generated from any thread, e.g. ahead of time through
+     * {@link Material#prepareShader(java.lang.String, com.jme3.renderer.RenderManager, com.jme3.scene.Geometry)},
+     * so the render thread only has to compile them.
+     *
+     * @param assetManager the asset manager to load shader sources from
+     * @param rendererCaps the capabilities of the renderer
+     * @param defines the defines to generate the shader with
+     * @return the shader
+     */
     public Shader getShader(AssetManager assetManager, EnumSet<Caps> rendererCaps, DefineList defines) {
           Shader shader = definesToShaderMap.get(defines);
           if (shader == null) {
               shader = loadShader(assetManager, rendererCaps, defines);
-              definesToShaderMap.put(defines.deepClone(), shader);
+              // Another thread may have generated the same shader meanwhile.
+              Shader existing = definesToShaderMap.putIfAbsent(defines.deepClone(), shader);
+              if (existing != null) {
+                  shader = existing;
+              }
           }
           return shader;
      }
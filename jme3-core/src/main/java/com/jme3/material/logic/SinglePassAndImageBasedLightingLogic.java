@@ -83,11 +83,21 @@ public final class SinglePassAndImageBasedLightingLogic extends DefaultTechnique
         //TODO here we have a problem, this is called once before render, so the define will be set for all passes (in case we have more than NB_LIGHTS lights)
         //Though the second pass should not render IBL as it is taken care of on first pass like ambient light in phong lighting.
         //We cannot change the define between passes and the old technique, and for some reason the code fails on mac (renders nothing).
+        //The probes and ambient light are only counted here, render() extracts them again,
+        //so that shaders can be prepared while this logic is rendering on another thread.
         if(lights != null) {
-            lightProbes.clear();
-            extractIndirectLights(lights, false);
-            defines.set(nbProbesDefineId, lightProbes.size());
-            defines.set(useAmbientLightDefineId, useAmbientLight);
+            int nbProbes = 0;
+            boolean hasAmbientLight = false;
+            for (int i = 0; i < lights.size(); i++) {
+                Light l = lights.get(i);
+                if (l instanceof AmbientLight) {
+                    hasAmbientLight = true;
+                } else if (l instanceof LightProbe) {
+                    nbProbes++;
+                }
+            }
+            defines.set(nbProbesDefineId, nbProbes);
+            defines.set(useAmbientLightDefineId, hasAmbientLight);
         }
 
         return super.makeCurrent(assetManager, renderManager, rendererCaps, lights, defines);
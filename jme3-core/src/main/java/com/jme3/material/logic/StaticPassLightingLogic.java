@@ -86,10 +86,33 @@ public final class StaticPassLightingLogic extends DefaultTechniqueDefLogic {
     @Override
     public Shader makeCurrent(AssetManager assetManager, RenderManager renderManager,
             EnumSet<Caps> rendererCaps, LightList lights, DefineList defines) {
+        // Only count the lights here, so that shaders can be prepared
+        // while this logic is rendering on another thread.
+        int numDirLights = 0;
+        int numPointLights = 0;
+        int numSpotLights = 0;
+        for (Light light : lights) {
+            switch (light.getType()) {
+                case Directional:
+                    numDirLights++;
+                    break;
+                case Point:
+                    numPointLights++;
+                    break;
+                case Spot:
+                    numSpotLights++;
+                    break;
+            }
+        }
+
+        defines.set(numDirLightsDefineId, numDirLights);
+        defines.set(numPointLightsDefineId, numPointLights);
+        defines.set(numSpotLightsDefineId, numSpotLights);
+
+        return techniqueDef.getShader(assetManager, rendererCaps, defines);
+    }
 
-        // TODO: if it ever changes that render isn't called
-        // right away with the same geometry after makeCurrent, it would be
-        // a problem.
+    private void sortLights(LightList lights) {
         // Do a radix sort.
         tempDirLights.clear();
         tempPointLights.clear();
@@ -107,12 +130,6 @@ public final class StaticPassLightingLogic extends DefaultTechniqueDefLogic {
                     break;
             }
         }
-
-        defines.set(numDirLightsDefineId, tempDirLights.size());
-        defines.set(numPointLightsDefineId, tempPointLights.size());
-        defines.set(numSpotLightsDefineId, tempSpotLights.size());
-
-        return techniqueDef.getShader(assetManager, rendererCaps, defines);
     }
 
     private void transformDirection(Matrix4f viewMatrix, Vector3f direction) {
@@ -174,6 +191,7 @@ public final class StaticPassLightingLogic extends DefaultTechniqueDefLogic {
     public void render(RenderManager renderManager, Shader shader, Geometry geometry, LightList lights, int lastTexUnit) {
         Renderer renderer = renderManager.getRenderer();
         Matrix4f viewMatrix = renderManager.getCurrentCamera().getViewMatrix();
+        sortLights(lights);
         updateLightListUniforms(viewMatrix, shader, lights);
         renderer.setShader(shader);
         renderMeshFromGeometry(renderer, geometry);
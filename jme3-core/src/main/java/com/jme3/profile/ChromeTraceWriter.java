@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import com.jme3.profile.TraceRingBuffer.Event;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts recorded trace events into the Chrome trace event format, which
+ * can be opened with chrome://tracing or the Perfetto UI.
+ * <p>
+ * Profiler steps only mark where something begins, so a step ends when the
+ * next step at the same or an outer level begins: a frame contains the
+ * application steps, those contain the viewport steps, which in turn contain
+ * the bucket and scene processor steps. User scopes are matched by thread.
+ * Steps and scopes that are still open at the end of the capture, or whose
+ * beginning was already overwritten, are left out.
+ */
+final class ChromeTraceWriter {
+
+    private static final int MAX_LEVELS = 4;
+    private static final int GPU_TID = 0;
+
+    private final Writer out;
+    private final long baseTime;
+    private boolean first = true;
+
+    private ChromeTraceWriter(Writer out, long baseTime) {
+        this.out = out;
+        this.baseTime = baseTime;
+    }
+
+    static void write(List<Event> events, Writer out) throws IOException {
+        long baseTime = Long.MAX_VALUE;
+        Map<Thread, List<Event>> byThread = new IdentityHashMap<Thread, List<Event>>();
+        List<Thread> order = new ArrayList<Thread>();
+        List<Event> gpu = new ArrayList<Event>();
+        for (Event e : events) {
+            baseTime = Math.min(baseTime, e.time);
+            if (e.kind == TraceRingBuffer.GPU) {
+                gpu.add(e);
+                continue;
+            }
+            List<Event> list = byThread.get(e.thread);
+            if (list == null) {
+                list = new ArrayList<Event>();
+                byThread.put(e.thread, list);
+                order.add(e.thread);
+            }
+            list.add(e);
+        }
+
+        ChromeTraceWriter writer = new ChromeTraceWriter(out, baseTime == Long.MAX_VALUE ? 0 : baseTime);
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (Thread thread : order) {
+            writer.writeThreadName(thread.getId(), thread.getName());
+            writer.writeThread(thread.getId(), byThread.get(thread));
+        }
+        if (!gpu.isEmpty()) {
+            writer.writeThreadName(GPU_TID, "GPU");
+            for (Event e : gpu) {
+                writer.writeComplete(GPU_TID, "gpu", getName(e), e.time, e.value);
+            }
+        }
+        out.write("\n]}\n");
+        out.flush();
+    }
+
+    private void writeThread(long tid, List<Event> events) throws IOException {
+        Event[] open = new Event[MAX_LEVELS];
+        Deque<Event> scopes = new ArrayDeque<Event>();
+        for (Event e : events) {
+            switch (e.kind) {
+                case TraceRingBuffer.SCOPE_BEGIN:
+                    scopes.push(e);
+                    break;
+                case TraceRingBuffer.SCOPE_END:
+                    if (!scopes.isEmpty()) {
+                        Event begin = scopes.pop();
+                        writeComplete(tid, "scope", getName(begin), begin.time, e.time - begin.time);
+                    }
+                    break;
+                default:
+                    int level = getLevel(e);
+                    for (int i = MAX_LEVELS - 1; i >= level; i--) {
+                        if (open[i] != null) {
+                            writeComplete(tid, getCategory(open[i]), getName(open[i]),
+                                    open[i].time, e.time - open[i].time);
+                            open[i] = null;
+                        }
+                    }
+                    if (!isEnd(e)) {
+                        open[level] = e;
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static int getLevel(Event e) {
+        switch (e.kind) {
+            case TraceRingBuffer.APP_STEP:
+                AppStep step = (AppStep) e.subject;
+                return step == AppStep.BeginFrame || step == AppStep.EndFrame ? 0 : 1;
+            case TraceRingBuffer.APP_SUB_STEP:
+                return 2;
+            case TraceRingBuffer.VP_STEP:
+                return e.extra != null ? 3 : 2;
+            default:
+                return 3;
+        }
+    }
+
+    private static boolean isEnd(Event e) {
+        return e.subject == AppStep.EndFrame || e.subject == VpStep.EndRender;
+    }
+
+    private static String getCategory(Event e) {
+        switch (e.kind) {
+            case TraceRingBuffer.APP_STEP:
+            case TraceRingBuffer.APP_SUB_STEP:
+                return "app";
+            case TraceRingBuffer.VP_STEP:
+                return "viewport";
+            default:
+                return "processor";
+        }
+    }
+
+    /**
+     * Names an event from what it records rather than its kind, so GPU
+     * timings are named after the step they measured.
+     */
+    static String getName(Event e) {
+        if (e.subject instanceof AppStep) {
+            return e.subject == AppStep.BeginFrame ? "Frame" : e.subject.toString();
+        } else if (e.subject instanceof VpStep) {
+            Bucket bucket = (Bucket) e.extra;
+            return e.detail + "/" + (bucket == null ? e.subject.toString() : bucket.name() + " Bucket");
+        } else if (e.subject instanceof SpStep) {
+            return join(e.subject.toString(), (String[]) e.extra);
+        } else if (e.subject == null) {
+            return join(null, (String[]) e.extra);
+        }
+        return e.subject.toString();
+    }
+
+    private static String join(String fallback, String[] parts) {
+        if (parts == null || parts.length == 0) {
+            return String.valueOf(fallback);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            sb.append(parts[i]);
+        }
+        return sb.toString();
+    }
+
+    private void writeThreadName(long tid, String name) throws IOException {
+        beginEvent();
+        out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+        out.write(Long.toString(tid));
+        out.write(",\"args\":{\"name\":");
+        writeString(name);
+        out.write("}}");
+    }
+
+    private void writeComplete(long tid, String category, String name,
+                               long start, long duration) throws IOException {
+        beginEvent();
+        out.write("{\"name\":");
+        writeString(name);
+        out.write(",\"cat\":\"");
+        out.write(category);
+        out.write("\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+        out.write(Long.toString(tid));
+        out.write(",\"ts\":");
+        writeMicros(start - baseTime);
+        out.write(",\"dur\":");
+        writeMicros(Math.max(0, duration));
+        out.write('}');
+    }
+
+    private void beginEvent() throws IOException {
+        out.write(first ? "\n" : ",\n");
+        first = false;
+    }
+
+    private void writeMicros(long nanos) throws IOException {
+        out.write(Long.toString(nanos / 1000));
+        long fraction = nanos % 1000;
+        out.write('.');
+        if (fraction < 100) {
+            out.write('0');
+        }
+        if (fraction < 10) {
+            out.write('0');
+        }
+        out.write(Long.toString(fraction));
+    }
+
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ *  An AppProfiler that records frame steps and user defined scopes
+ *  into a fixed size ring buffer, so that the last few hundred frames
+ *  can be exported as a Chrome trace and analyzed offline, e.g. in
+ *  chrome://tracing or the Perfetto UI.
+ *
+ *  <p>Recording does not allocate or lock. User scopes may be opened
+ *  from any thread with {@link #beginScope(String)} and closed with
+ *  {@link #endScope()}; the application steps are expected to come from
+ *  the render thread.</p>
+ *
+ *  <p>When a renderer is set, GPU times are measured for every step
+ *  with the renderer's profiling tasks and show up on a separate "GPU"
+ *  track, aligned with the CPU start of the step they measured.  As with
+ *  {@link com.jme3.app.DetailedProfiler}, GPU results arrive a few frames
+ *  late.</p>
+ *
+ *  <pre>
+ *  TraceProfiler profiler = new TraceProfiler();
+ *  profiler.setRenderer(app.getRenderer());
+ *  app.setAppProfiler(profiler);
+ *  ...
+ *  // when a stutter is noticed
+ *  profiler.setCapturing(false);
+ *  profiler.writeChromeTrace(new File("stutter.json"));
+ *  </pre>
+ */
+public class TraceProfiler implements AppProfiler {
+
+    /**
+     * The default number of recorded events, enough for a few hundred
+     * frames of a typical application.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int TASK_POOL_SIZE = 100;
+
+    private final TraceRingBuffer buffer;
+    private volatile boolean capturing = true;
+
+    private Renderer renderer;
+    // unboxed stack of free GPU task ids
+    private int[] idsPool = new int[TASK_POOL_SIZE];
+    private int idsCount;
+    private final ArrayDeque<GpuTask> pendingTasks = new ArrayDeque<>();
+    private final ArrayDeque<GpuTask> freeTasks = new ArrayDeque<>();
+    private GpuTask currentTask;
+
+    /**
+     * Creates a profiler keeping the last {@link #DEFAULT_CAPACITY} events.
+     */
+    public TraceProfiler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a profiler keeping the last <code>capacity</code> events.
+     *
+     * @param capacity the number of events to keep, rounded up to a power
+     * of two
+     */
+    public TraceProfiler(int capacity) {
+        buffer = new TraceRingBuffer(capacity);
+    }
+
+    /**
+     * @return the number of events kept before the oldest ones are
+     * overwritten
+     */
+    public int getCapacity() {
+        return buffer.getCapacity();
+    }
+
+    /**
+     * Pauses or resumes recording. Pausing keeps the recorded events,
+     * which is how a stutter is captured before it scrolls out of the
+     * buffer.
+     *
+     * @param capturing true to record events
+     */
+    public void setCapturing(boolean capturing) {
+        this.capturing = capturing;
+    }
+
+    /**
+     * @return true if events are being recorded
+     */
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * Discards all recorded events. Should not be called while other
+     * threads are recording scopes.
+     */
+    public void clear() {
+        buffer.clear();
+    }
+
+    /**
+     * Enables GPU timings of the profiled steps.
+     *
+     * @param renderer the renderer used to time the steps, or null to
+     * record CPU times only
+     */
+    public void setRenderer(Renderer renderer) {
+        this.renderer = renderer;
+        idsCount = 0;
+        pendingTasks.clear();
+        currentTask = null;
+    }
+
+    /**
+     * Opens a user scope on the calling thread. Scopes nest and must be
+     * closed with {@link #endScope()} on the same thread.
+     *
+     * @param name the name shown in the trace
+     */
+    public void beginScope(String name) {
+        if (capturing) {
+            buffer.add(TraceRingBuffer.SCOPE_BEGIN, System.nanoTime(), 0,
+                    Thread.currentThread(), name, null, null);
+        }
+    }
+
+    /**
+     * Closes the innermost scope opened on the calling thread.
+     */
+    public void endScope() {
+        if (capturing) {
+            buffer.add(TraceRingBuffer.SCOPE_END, System.nanoTime(), 0,
+                    Thread.currentThread(), null, null, null);
+        }
+    }
+
+    @Override
+    public void appStep(AppStep step) {
+        if (step == AppStep.BeginFrame) {
+            collectGpuTimes();
+        }
+        if (capturing) {
+            step(TraceRingBuffer.APP_STEP, step, null, null, step != AppStep.EndFrame);
+        } else if (step == AppStep.EndFrame) {
+            stopGpuTask();
+        }
+    }
+
+    @Override
+    public void appSubStep(String... additionalInfo) {
+        if (capturing) {
+            step(TraceRingBuffer.APP_SUB_STEP, null, null, additionalInfo, true);
+        }
+    }
+
+    @Override
+    public void vpStep(VpStep step, ViewPort vp, Bucket bucket) {
+        if (capturing) {
+            step(TraceRingBuffer.VP_STEP, step, vp.getName(), bucket, step != VpStep.EndRender);
+        }
+    }
+
+    @Override
+    public void spStep(SpStep step, String... additionalInfo) {
+        if (capturing) {
+            step(TraceRingBuffer.SP_STEP, step, null, additionalInfo, true);
+        }
+    }
+
+    private void step(int kind, Object subject, Object detail, Object extra, boolean timeGpu) {
+        long time = System.nanoTime();
+        buffer.add(kind, time, 0, Thread.currentThread(), subject, detail, extra);
+        if (renderer != null) {
+            stopGpuTask();
+            if (timeGpu) {
+                startGpuTask(time, subject, detail, extra);
+            }
+        }
+    }
+
+    private void startGpuTask(long time, Object subject, Object detail, Object extra) {
+        if (idsCount == 0) {
+            for (int id : renderer.generateProfilingTasks(TASK_POOL_SIZE)) {
+                pushId(id);
+            }
+            if (idsCount == 0) {
+                return;
+            }
+        }
+        GpuTask task = freeTasks.isEmpty() ? new GpuTask() : freeTasks.pop();
+        task.id = idsPool[--idsCount];
+        task.time = time;
+        task.thread = Thread.currentThread();
+        task.subject = subject;
+        task.detail = detail;
+        task.extra = extra;
+        renderer.startProfiling(task.id);
+        currentTask = task;
+    }
+
+    private void stopGpuTask() {
+        if (currentTask != null) {
+            renderer.stopProfiling();
+            pendingTasks.add(currentTask);
+            currentTask = null;
+        }
+    }
+
+    private void pushId(int id) {
+        if (idsCount == idsPool.length) {
+            idsPool = Arrays.copyOf(idsPool, idsCount * 2);
+        }
+        idsPool[idsCount++] = id;
+    }
+
+    private void collectGpuTimes() {
+        if (renderer == null) {
+            return;
+        }
+        stopGpuTask();
+        // Results come back in submission order.
+        while (!pendingTasks.isEmpty()
+                && renderer.isTaskResultAvailable(pendingTasks.peek().id)) {
+            GpuTask task = pendingTasks.poll();
+            long duration = renderer.getProfilingTime(task.id);
+            if (capturing) {
+                buffer.add(TraceRingBuffer.GPU, task.time, duration, task.thread,
+                        task.subject, task.detail, task.extra);
+            }
+            pushId(task.id);
+            task.thread = null;
+            task.subject = task.detail = task.extra = null;
+            freeTasks.push(task);
+        }
+    }
+
+    /**
+     * Writes the recorded events in the Chrome trace event format. For a
+     * consistent trace, pause capturing first; events overwritten while
+     * exporting are skipped.
+     *
+     * @param out the writer to write to, not closed by this method
+     * @throws IOException if writing fails
+     */
+    public void writeChromeTrace(Writer out) throws IOException {
+        ChromeTraceWriter.write(buffer.snapshot(), out);
+    }
+
+    /**
+     * Writes the recorded events in the Chrome trace event format to a file.
+     *
+     * @param file the file to write, usually with a .json extension
+     * @throws IOException if writing fails
+     * @see #writeChromeTrace(Writer)
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writeChromeTrace(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class GpuTask {
+        int id;
+        long time;
+        Thread thread;
+        Object subject;
+        Object detail;
+        Object extra;
+    }
+}
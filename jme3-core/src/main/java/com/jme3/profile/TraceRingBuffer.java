@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, multi-producer ring of trace events used by
+ * {@link TraceProfiler}.
+ * <p>
+ * Slots are preallocated as parallel arrays, so recording an event does not
+ * allocate. Producers claim a slot with a single atomic increment and publish
+ * it through a per-slot sequence number; once the ring is full the oldest
+ * events are overwritten.
+ */
+final class TraceRingBuffer {
+
+    static final int APP_STEP = 0;
+    static final int APP_SUB_STEP = 1;
+    static final int VP_STEP = 2;
+    static final int SP_STEP = 3;
+    static final int SCOPE_BEGIN = 4;
+    static final int SCOPE_END = 5;
+    static final int GPU = 6;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final int[] kinds;
+    private final long[] times;
+    private final long[] values;
+    private final Thread[] threads;
+    private final Object[] subjects;
+    private final Object[] details;
+    private final Object[] extras;
+
+    /**
+     * @param capacity the number of events kept, rounded up to a power of two
+     */
+    TraceRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        kinds = new int[size];
+        times = new long[size];
+        values = new long[size];
+        threads = new Thread[size];
+        subjects = new Object[size];
+        details = new Object[size];
+        extras = new Object[size];
+    }
+
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    void add(int kind, long time, long value, Thread thread,
+             Object subject, Object detail, Object extra) {
+        long seq = cursor.getAndIncrement();
+        int slot = (int) seq & mask;
+        // Readers skip the slot while it is being written.
+        sequences.set(slot, 0);
+        kinds[slot] = kind;
+        times[slot] = time;
+        values[slot] = value;
+        threads[slot] = thread;
+        subjects[slot] = subject;
+        details[slot] = detail;
+        extras[slot] = extra;
+        sequences.lazySet(slot, seq + 1);
+    }
+
+    void clear() {
+        long end = cursor.get();
+        for (int i = 0; i <= mask; i++) {
+            sequences.set(i, 0);
+            threads[i] = null;
+            subjects[i] = null;
+            details[i] = null;
+            extras[i] = null;
+        }
+        cursor.compareAndSet(end, 0);
+    }
+
+    /**
+     * Copies the currently held events, oldest first. Events that are
+     * overwritten while the snapshot is taken are skipped.
+     */
+    List<Event> snapshot() {
+        long end = cursor.get();
+        long start = Math.max(0, end - mask - 1);
+        List<Event> result = new ArrayList<Event>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) seq & mask;
+            if (sequences.get(slot) != seq + 1) {
+                continue;
+            }
+            Event e = new Event(kinds[slot], times[slot], values[slot], threads[slot],
+                    subjects[slot], details[slot], extras[slot]);
+            if (sequences.get(slot) == seq + 1) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A copied event, as returned by {@link #snapshot()}.
+     */
+    static final class Event {
+        final int kind;
+        final long time;
+        final long value;
+        final Thread thread;
+        final Object subject;
+        final Object detail;
+        final Object extra;
+
+        Event(int kind, long time, long value, Thread thread,
+              Object subject, Object detail, Object extra) {
+            this.kind = kind;
+            this.time = time;
+            this.value = value;
+            this.thread = thread;
+            this.subject = subject;
+            this.detail = detail;
+            this.extra = extra;
+        }
+    }
+}
@@ -441,7 +441,21 @@ public enum Caps {
     Depth24,     
 
     
-    UnpackRowLength
+    UnpackRowLength,
+
+    /**
+     * Supports immutable buffer storage that can stay persistently mapped
+     * (OpenGL 4.4 or GL_ARB_buffer_storage) together with fence sync
+     * objects.
+     */
+    BufferStorage,
+
+    /**
+     * Supports retrieving linked shader programs as binaries and loading
+     * them back (OpenGL 4.1 or GL_ARB_get_program_binary), with at least
+     * one binary format offered by the driver.
+     */
+    ProgramBinary
     ;
 
     /**
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.light.LightList;
+import com.jme3.material.MatParam;
+import com.jme3.material.MatParamOverride;
+import com.jme3.material.Material;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.shader.VarType;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.SafeArrayList;
+import com.jme3.util.TempVars;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Groups the geometries of a sorted {@link GeometryList} that share the
+ * same mesh and material and draws each group with a single instanced
+ * draw call.
+ * <p>
+ * Only geometries that are next to each other in the list and use the same
+ * material are grouped, so the material order chosen by the list's
+ * comparator is kept. Within such a run, a group is drawn where its first
+ * geometry was. Geometries that cannot be instanced are drawn one by one
+ * as usual.
+ * <p>
+ * Each batch of a list writes its instance transforms to a stream buffer of
+ * its own, reused by the batch at the same position in the next lists. The
+ * renderer keeps several copies of each stream buffer in flight, so the
+ * upload of a batch does not wait for the GPU to draw the batches before it.
+ *
+ * @see RenderManager#setAutoInstancing(boolean)
+ */
+final class InstanceBatcher {
+
+    private static final String USE_INSTANCING = "UseInstancing";
+    private static final int INSTANCE_SIZE = 16;
+
+    private final RenderManager renderManager;
+    private final ArrayList<BatchGeometry> batchGeometries = new ArrayList<>();
+    private int batchGeometriesUsed = 0;
+    private final IdentityHashMap<Mesh, Batch> batchesByMesh = new IdentityHashMap<>();
+    private final ArrayList<Batch> batches = new ArrayList<>();
+    private final ArrayList<Batch> batchPool = new ArrayList<>();
+
+    InstanceBatcher(RenderManager renderManager) {
+        this.renderManager = renderManager;
+    }
+
+    /**
+     * Renders the given (already sorted) list.
+     *
+     * @param list the list to render
+     */
+    void render(GeometryList list) {
+        batchGeometriesUsed = 0;
+        int size = list.size();
+        int i = 0;
+        while (i < size) {
+            Geometry geom = list.get(i);
+            if (!canInstance(geom)) {
+                renderManager.renderGeometry(geom);
+                i++;
+                continue;
+            }
+
+            Material material = geom.getMaterial();
+            int end = i + 1;
+            while (end < size && list.get(end).getMaterial() == material) {
+                end++;
+            }
+            if (end - i == 1) {
+                renderManager.renderGeometry(geom);
+            } else {
+                renderRun(list, i, end);
+            }
+            i = end;
+        }
+    }
+
+    private void renderRun(GeometryList list, int start, int end) {
+        for (int i = start; i < end; i++) {
+            Geometry geom = list.get(i);
+            if (!canInstance(geom)) {
+                // Keeps its place between the groups of the run
+                addBatch(geom, null);
+                continue;
+            }
+            Batch batch = batchesByMesh.get(geom.getMesh());
+            Batch last = null;
+            while (batch != null && !batch.accepts(geom)) {
+                last = batch;
+                batch = batch.next;
+            }
+            if (batch != null) {
+                batch.add(geom);
+            } else if (last != null) {
+                last.next = addBatch(geom, geom.getMesh());
+            } else {
+                batchesByMesh.put(geom.getMesh(), addBatch(geom, geom.getMesh()));
+            }
+        }
+
+        for (int i = 0; i < batches.size(); i++) {
+            Batch batch = batches.get(i);
+            if (batch.size == 1) {
+                renderManager.renderGeometry(batch.geometries[0]);
+            } else {
+                renderBatch(batch);
+            }
+            batch.clear();
+            batchPool.add(batch);
+        }
+        batches.clear();
+        batchesByMesh.clear();
+    }
+
+    private Batch addBatch(Geometry geom, Mesh mesh) {
+        Batch batch = batchPool.isEmpty()
+                ? new Batch()
+                : batchPool.remove(batchPool.size() - 1);
+        batch.mesh = mesh;
+        batch.add(geom);
+        batches.add(batch);
+        return batch;
+    }
+
+    private void renderBatch(Batch batch) {
+        if (batchGeometriesUsed == batchGeometries.size()) {
+            batchGeometries.add(new BatchGeometry());
+        }
+        BatchGeometry batchGeometry = batchGeometries.get(batchGeometriesUsed++);
+        batchGeometry.setBatch(batch);
+        renderManager.renderGeometry(batchGeometry);
+        batchGeometry.reset();
+    }
+
+    /**
+     * Checks whether the geometry may be drawn as an instance: its
+     * material needs the UseInstancing parameter (as Unshaded.j3md and
+     * Lighting.j3md have) without having it set already, and the geometry
+     * must not do instancing of its own.
+     */
+    private static boolean canInstance(Geometry geom) {
+        if (geom instanceof InstancedGeometry || geom.isIgnoreTransform()) {
+            return false;
+        }
+        Material material = geom.getMaterial();
+        if (material.getMaterialDef().getMaterialParam(USE_INSTANCING) == null) {
+            return false;
+        }
+        MatParam param = material.getParam(USE_INSTANCING);
+        return param == null || !Boolean.TRUE.equals(param.getValue());
+    }
+
+    /**
+     * Geometries with the same mesh and material within a run of the list.
+     */
+    private static final class Batch {
+
+        Mesh mesh;
+        Geometry[] geometries = new Geometry[8];
+        int size;
+        Batch next;
+
+        void add(Geometry geom) {
+            if (size == geometries.length) {
+                Geometry[] grown = new Geometry[size * 2];
+                System.arraycopy(geometries, 0, grown, 0, size);
+                geometries = grown;
+            }
+            geometries[size++] = geom;
+        }
+
+        /**
+         * Instances share the lights, material parameter overrides and LOD
+         * level of the first geometry of the batch, so only geometries
+         * where these are the same can join it.
+         */
+        boolean accepts(Geometry geom) {
+            Geometry first = geometries[0];
+            return geom.getLodLevel() == first.getLodLevel()
+                    && sameOverrides(geom.getWorldMatParamOverrides(), first.getWorldMatParamOverrides())
+                    && sameLights(geom.getWorldLightList(), first.getWorldLightList());
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                geometries[i] = null;
+            }
+            size = 0;
+            mesh = null;
+            next = null;
+        }
+
+        private static boolean sameOverrides(SafeArrayList<MatParamOverride> a, SafeArrayList<MatParamOverride> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            MatParamOverride[] arrayA = a.getArray();
+            MatParamOverride[] arrayB = b.getArray();
+            for (int i = 0; i < arrayA.length; i++) {
+                if (arrayA[i] != arrayB[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameLights(LightList a, LightList b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stands in for the geometries of a batch while it is rendered. The
+     * per-instance world transforms are written to an instance data buffer,
+     * and the material is rendered with UseInstancing enabled through a
+     * parameter override, so the geometries' own material is not touched.
+     */
+    private static final class BatchGeometry extends InstancedGeometry {
+
+        private final MatParamOverride useInstancing
+                = new MatParamOverride(VarType.Boolean, USE_INSTANCING, true);
+        private final VertexBuffer instanceData = new VertexBuffer(Type.InstanceData);
+        private final VertexBuffer[] allInstanceData = {instanceData};
+        private final LightList noLights = new LightList(null);
+        private FloatBuffer instanceBuffer;
+        private int numInstances;
+
+        BatchGeometry() {
+            super("Instanced Batch");
+            instanceData.setInstanced(true);
+            instanceBuffer = BufferUtils.createFloatBuffer(64 * INSTANCE_SIZE);
+            instanceData.setupData(Usage.Stream, INSTANCE_SIZE, Format.Float, instanceBuffer);
+        }
+
+        void setBatch(Batch batch) {
+            Geometry first = batch.geometries[0];
+            mesh = batch.mesh;
+            material = first.getMaterial();
+            lodLevel = first.getLodLevel();
+            worldLights = first.getWorldLightList();
+            worldOverrides.clear();
+            worldOverrides.addAll(first.getWorldMatParamOverrides());
+            worldOverrides.add(useInstancing);
+
+            BoundingVolume bound = first.getWorldBound();
+            worldBound = bound == null ? null : bound.clone(worldBound);
+            for (int i = 1; i < batch.size && worldBound != null; i++) {
+                bound = batch.geometries[i].getWorldBound();
+                if (bound != null) {
+                    worldBound.mergeLocal(bound);
+                }
+            }
+
+            if (instanceBuffer.capacity() < batch.size * INSTANCE_SIZE) {
+                BufferUtils.destroyDirectBuffer(instanceBuffer);
+                int capacity = instanceBuffer.capacity();
+                while (capacity < batch.size * INSTANCE_SIZE) {
+                    capacity *= 2;
+                }
+                instanceBuffer = BufferUtils.createFloatBuffer(capacity);
+            }
+            instanceBuffer.clear();
+            TempVars vars = TempVars.get();
+            float[] temp = vars.matrixWrite;
+            for (int i = 0; i < batch.size; i++) {
+                updateInstance(batch.geometries[i].getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+                instanceBuffer.put(temp, 0, INSTANCE_SIZE);
+            }
+            vars.release();
+            instanceBuffer.flip();
+            instanceData.updateData(instanceBuffer);
+            numInstances = batch.size;
+        }
+
+        void reset() {
+            mesh = null;
+            material = null;
+            worldLights = noLights;
+            worldOverrides.clear();
+            numInstances = 0;
+        }
+
+        @Override
+        public int getActualNumInstances() {
+            return numInstances;
+        }
+
+        @Override
+        public VertexBuffer[] getAllInstanceData() {
+            return allInstanceData;
+        }
+    }
+}
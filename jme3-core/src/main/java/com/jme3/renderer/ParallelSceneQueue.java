@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.IndexedNode;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.util.SafeArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>ParallelSceneQueue</code> culls a scene and collects its visible
+ * geometries on the worker threads of a {@link ForkJoinPool}, then adds them
+ * to the render queue of the viewport on the calling thread.
+ * <p>
+ * Each task records its results in its own chunks, which are merged in
+ * scene graph order, so the render queue receives the geometries in the same
+ * order as with the sequential scene traversal. Spatials with controls and
+ * {@link IndexedNode}s are not visited by the workers; they are recorded in
+ * place and rendered with the sequential traversal during the merge, since
+ * {@link com.jme3.scene.control.Control#render(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort)}
+ * must run on the render thread.
+ *
+ * @see RenderManager#setSceneCullingPool(java.util.concurrent.ForkJoinPool)
+ */
+final class ParallelSceneQueue {
+
+    /**
+     * Nodes with more children than this are culled by several tasks.
+     */
+    static final int SPLIT_THRESHOLD = 64;
+    /**
+     * Number of sibling subtrees visited by one task.
+     */
+    static final int LEAF_SIZE = 32;
+
+    private static final Bucket[] BUCKETS = Bucket.values();
+    private static final int DEFERRED = 256;
+
+    /**
+     * A copy of the viewport camera per worker thread, since culling
+     * modifies the plane state of the camera.
+     */
+    private static final class CullingCamera {
+        final Camera camera = new Camera(1, 1);
+        int stamp = -1;
+    }
+
+    private static final class Chunk {
+        Spatial[] spatials = new Spatial[64];
+        int[] codes = new int[64];
+        int size;
+
+        void add(Spatial spatial, int code) {
+            if (size == spatials.length) {
+                spatials = Arrays.copyOf(spatials, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            spatials[size] = spatial;
+            codes[size++] = code;
+        }
+
+        void clear() {
+            Arrays.fill(spatials, 0, size, null);
+            size = 0;
+        }
+    }
+
+    private final RenderManager renderManager;
+    private final ThreadLocal<CullingCamera> cameras = new ThreadLocal<CullingCamera>() {
+        @Override
+        protected CullingCamera initialValue() {
+            return new CullingCamera();
+        }
+    };
+    private final ArrayList<Chunk> chunks = new ArrayList<>();
+    private int usedChunks;
+    private Camera viewCamera;
+    private int stamp;
+
+    ParallelSceneQueue(RenderManager renderManager) {
+        this.renderManager = renderManager;
+    }
+
+    /**
+     * Culls the scene and adds its visible geometries to the queue of the
+     * viewport.
+     */
+    void renderScene(Spatial scene, ViewPort vp, ForkJoinPool pool) {
+        viewCamera = vp.getCamera();
+        stamp++;
+        usedChunks = 0;
+
+        CullingTask root = new CullingTask(new Spatial[]{scene}, 0, 1, viewCamera.getPlaneState());
+        try {
+            pool.invoke(root);
+            root.flush(vp);
+        } finally {
+            for (int i = 0; i < usedChunks; i++) {
+                chunks.get(i).clear();
+            }
+            viewCamera = null;
+        }
+    }
+
+    private Camera getCamera() {
+        CullingCamera cc = cameras.get();
+        if (cc.stamp != stamp) {
+            cc.camera.copyFrom(viewCamera);
+            cc.stamp = stamp;
+        }
+        return cc.camera;
+    }
+
+    private synchronized Chunk acquireChunk() {
+        if (usedChunks == chunks.size()) {
+            chunks.add(new Chunk());
+        }
+        return chunks.get(usedChunks++);
+    }
+
+    private final class CullingTask extends RecursiveAction {
+
+        private final Spatial[] spatials;
+        private final int from;
+        private final int to;
+        private final int planeState;
+        // chunks and subtasks, in scene graph order
+        private final ArrayList<Object> parts = new ArrayList<>();
+        private Chunk chunk;
+
+        CullingTask(Spatial[] spatials, int from, int to, int planeState) {
+            this.spatials = spatials;
+            this.from = from;
+            this.to = to;
+            this.planeState = planeState;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                CullingTask left = new CullingTask(spatials, from, middle, planeState);
+                CullingTask right = new CullingTask(spatials, middle, to, planeState);
+                parts.add(left);
+                parts.add(right);
+                invokeAll(left, right);
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                visit(spatials[i], planeState);
+            }
+        }
+
+        private void add(Spatial spatial, int code) {
+            if (chunk == null) {
+                chunk = acquireChunk();
+                parts.add(chunk);
+            }
+            chunk.add(spatial, code);
+        }
+
+        private void visit(Spatial scene, int state) {
+            if (scene.getNumControls() > 0 || scene instanceof IndexedNode) {
+                add(scene, DEFERRED | state);
+                return;
+            }
+
+            Camera cam = getCamera();
+            cam.setPlaneState(state);
+            if (!scene.checkCulling(cam)) {
+                return;
+            }
+
+            if (scene instanceof Node) {
+                List<Spatial> children = ((Node) scene).getChildren();
+                int childState = cam.getPlaneState();
+                if (children.size() > SPLIT_THRESHOLD) {
+                    Spatial[] array = ((SafeArrayList<Spatial>) children).getArray();
+                    CullingTask task = new CullingTask(array, 0, array.length, childState);
+                    chunk = null;
+                    parts.add(task);
+                    task.compute();
+                } else {
+                    for (int i = 0; i < children.size(); i++) {
+                        visit(children.get(i), childState);
+                    }
+                }
+            } else if (scene instanceof Geometry) {
+                Geometry gm = (Geometry) scene;
+                if (gm.getMaterial() == null) {
+                    throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+                }
+                add(gm, scene.getQueueBucket().ordinal());
+            }
+        }
+
+        void flush(ViewPort vp) {
+            for (int p = 0; p < parts.size(); p++) {
+                Object part = parts.get(p);
+                if (part instanceof CullingTask) {
+                    ((CullingTask) part).flush(vp);
+                    continue;
+                }
+                Chunk c = (Chunk) part;
+                for (int i = 0; i < c.size; i++) {
+                    int code = c.codes[i];
+                    if ((code & DEFERRED) != 0) {
+                        vp.getCamera().setPlaneState(code & ~DEFERRED);
+                        renderManager.renderSubScene(c.spatials[i], vp);
+                    } else {
+                        vp.getQueue().addToQueue((Geometry) c.spatials[i], BUCKETS[code]);
+                    }
+                }
+            }
+        }
+    }
+}
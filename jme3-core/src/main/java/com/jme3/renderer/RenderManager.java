@@ -57,6 +57,7 @@ import com.jme3.util.SafeArrayList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -90,6 +91,13 @@ public class RenderManager {
     private LightFilter lightFilter = new DefaultLightFilter();
     private TechniqueDef.LightMode preferredLightMode = TechniqueDef.LightMode.MultiPass;
     private int singlePassLightBatchSize = 1;
+    // lists of visible children of nested IndexedNodes
+    private final ArrayList<List<Spatial>> indexedChildren = new ArrayList<>();
+    private int indexedChildrenDepth = 0;
+    private ForkJoinPool sceneCullingPool;
+    private ParallelSceneQueue parallelSceneQueue;
+    private boolean autoInstancing = false;
+    private InstanceBatcher instanceBatcher;
 
 
     /**
@@ -632,6 +640,33 @@ public class RenderManager {
         }
     }
 
+    /**
+     * Renders the given sorted list of opaque geometries.
+     * <p>
+     * With {@link #setAutoInstancing(boolean) automatic instancing},
+     * neighbouring geometries that share their mesh and material are
+     * rendered together with a single instanced draw call. Otherwise this is
+     * the same as {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList) }.
+     * This is called by the {@link RenderQueue} for the opaque bucket.
+     *
+     * @param gl The geometry list to render.
+     */
+    public void renderOpaqueGeometryList(GeometryList gl) {
+        if (!isAutoInstancingUsable()) {
+            renderGeometryList(gl);
+            return;
+        }
+        if (instanceBatcher == null) {
+            instanceBatcher = new InstanceBatcher(this);
+        }
+        instanceBatcher.render(gl);
+    }
+
+    private boolean isAutoInstancingUsable() {
+        return autoInstancing && forcedMaterial == null && forcedTechnique == null
+                && renderer.getCaps().contains(Caps.MeshInstancing);
+    }
+
     /**
      * Preloads a scene for rendering.
      * <p>
@@ -707,11 +742,18 @@ public class RenderManager {
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
         //rendering the scene
-        renderSubScene(scene, vp);
+        if (sceneCullingPool != null && scene instanceof Node) {
+            if (parallelSceneQueue == null) {
+                parallelSceneQueue = new ParallelSceneQueue(this);
+            }
+            parallelSceneQueue.renderScene(scene, vp, sceneCullingPool);
+        } else {
+            renderSubScene(scene, vp);
+        }
     }
     
     // recursively renders the scene
-    private void renderSubScene(Spatial scene, ViewPort vp) {
+    void renderSubScene(Spatial scene, ViewPort vp) {
 
         // check culling first.
         if (!scene.checkCulling(vp.getCamera())) {
@@ -719,7 +761,17 @@ public class RenderManager {
         }
 
         scene.runControlRender(this, vp);
-        if (scene instanceof Node) {
+        if (scene instanceof IndexedNode && isIndexUsable((IndexedNode) scene)) {
+            // Recurse for the children found in the index only
+            List<Spatial> children = acquireIndexedChildren();
+            ((IndexedNode) scene).getChildrenInFrustum(vp.getCamera(), children);
+            int camState = vp.getCamera().getPlaneState();
+            for (int i = 0; i < children.size(); i++) {
+                vp.getCamera().setPlaneState(camState);
+                renderSubScene(children.get(i), vp);
+            }
+            releaseIndexedChildren();
+        } else if (scene instanceof Node) {
             // Recurse for all children
             Node n = (Node) scene;
             List<Spatial> children = n.getChildren();
@@ -741,6 +793,28 @@ public class RenderManager {
         }
     }
 
+    /**
+     * The index is not worth querying when the node is entirely inside the
+     * frustum, and can't be used when its children are never culled or
+     * culled against the GUI area.
+     */
+    private boolean isIndexUsable(IndexedNode node) {
+        return node.getLastFrustumIntersection() != Camera.FrustumIntersect.Inside
+                && node.getCullHint() != Spatial.CullHint.Never
+                && node.getQueueBucket() != Bucket.Gui;
+    }
+
+    private List<Spatial> acquireIndexedChildren() {
+        if (indexedChildrenDepth == indexedChildren.size()) {
+            indexedChildren.add(new ArrayList<Spatial>());
+        }
+        return indexedChildren.get(indexedChildrenDepth++);
+    }
+
+    private void releaseIndexedChildren() {
+        indexedChildren.get(--indexedChildrenDepth).clear();
+    }
+
     /**
      * Returns the camera currently used for rendering.
      * <p>
@@ -793,6 +867,65 @@ public class RenderManager {
         vp.getQueue().clear();
     }
 
+    /**
+     * Sets the pool used to cull scenes and collect their visible geometries
+     * in parallel during {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort)}.
+     * <p>
+     * Independent subtrees are culled on the pool's worker threads, and the
+     * geometries they find are added to the render queue on the calling
+     * thread, in the same order as with the sequential traversal.
+     * Spatials with controls are still culled and rendered on the calling
+     * thread, so that {@link com.jme3.scene.control.Control#render(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort) }
+     * is not called concurrently. No rendering calls are made on the worker
+     * threads.
+     *
+     * @param pool the pool to use, or null to cull on the calling thread only (default)
+     */
+    public void setSceneCullingPool(ForkJoinPool pool) {
+        this.sceneCullingPool = pool;
+    }
+
+    /**
+     * Returns the pool used to cull scenes in parallel.
+     *
+     * @return the pool, or null if scenes are culled on the calling thread only
+     * @see #setSceneCullingPool(java.util.concurrent.ForkJoinPool)
+     */
+    public ForkJoinPool getSceneCullingPool() {
+        return sceneCullingPool;
+    }
+
+    /**
+     * Enables automatic instancing of the opaque bucket.
+     * <p>
+     * When enabled, geometries of the opaque bucket that share the same
+     * mesh and material, and that sort next to each other, are drawn with
+     * a single instanced draw call, as if they had been put in an
+     * {@link com.jme3.scene.instancing.InstancedNode}. The scene graph is
+     * not modified. Only materials whose definition has a
+     * <code>UseInstancing</code> parameter (such as Unshaded.j3md and
+     * Lighting.j3md) are batched, and only while no forced material or
+     * technique is set. Geometries are only grouped with others that have
+     * the same lights, material parameter overrides and LOD level.
+     * <p>
+     * Automatic instancing requires {@link Caps#MeshInstancing}, it is
+     * ignored by renderers that do not support it.
+     *
+     * @param autoInstancing true to batch geometries into instanced draw calls,
+     * false to draw them one by one (default)
+     */
+    public void setAutoInstancing(boolean autoInstancing) {
+        this.autoInstancing = autoInstancing;
+    }
+
+    /**
+     * @return true if the opaque bucket is drawn with automatic instancing
+     * @see #setAutoInstancing(boolean)
+     */
+    public boolean isAutoInstancing() {
+        return autoInstancing;
+    }
+
     /**
      * Sets the light filter to use when rendering lit Geometries.
      * 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ProgramBinaryCache} keeping one file per program in a directory,
+ * so program binaries persist between runs.
+ */
+public class FileProgramBinaryCache implements ProgramBinaryCache {
+
+    private static final Logger logger = Logger.getLogger(FileProgramBinaryCache.class.getName());
+
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+
+    /**
+     * Creates a cache storing its files in the given directory, which is
+     * created if needed.
+     *
+     * @param directory the cache directory
+     */
+    public FileProgramBinaryCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the directory holding the program binaries
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public byte[] load(String key) {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                byte[] data = new byte[(int) file.length()];
+                in.readFully(data);
+                return data;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot read program binary " + file, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void store(String key, byte[] data) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.log(Level.WARNING, "Cannot create program binary directory {0}", directory);
+            return;
+        }
+        File file = new File(directory, key + SUFFIX);
+        File temp = null;
+        try {
+            temp = File.createTempFile("program", ".tmp", directory);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            // Replace the file at once so a crash never leaves half a binary.
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write program binary " + file, ex);
+        } finally {
+            if (temp != null && temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+}
@@ -31,6 +31,9 @@
  */
 package com.jme3.renderer.opengl;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
 /**
  * GL functions only available on vanilla desktop OpenGL 4.0.
  * 
@@ -68,6 +71,28 @@ public interface GL4 extends GL3 {
     public static final int GL_MAX_SHADER_STORAGE_BLOCK_SIZE = 0x90DE;
     public static final int GL_SHADER_STORAGE_BUFFER_OFFSET_ALIGNMENT = 0x90DF;
 
+    /**
+     * Accepted by the {@code flags} parameter of BufferStorage and the {@code access} parameter of MapBufferRange.
+     */
+    public static final int GL_MAP_WRITE_BIT = 0x0002;
+    public static final int GL_MAP_PERSISTENT_BIT = 0x0040;
+    public static final int GL_MAP_COHERENT_BIT = 0x0080;
+
+    /**
+     * Accepted by the {@code pname} parameter of ProgramParameteri and GetProgramiv.
+     */
+    public static final int GL_PROGRAM_BINARY_RETRIEVABLE_HINT = 0x8257;
+
+    /**
+     * Accepted by the {@code pname} parameter of GetProgramiv.
+     */
+    public static final int GL_PROGRAM_BINARY_LENGTH = 0x8741;
+
+    /**
+     * Accepted by the {@code pname} parameter of GetIntegerv.
+     */
+    public static final int GL_NUM_PROGRAM_BINARY_FORMATS = 0x87FE;
+
     /**
      * <p><a target="_blank" href="http://docs.gl/gl4/glPatchParameteri">Reference Page</a></p>
      * <p>
@@ -100,4 +125,74 @@ public interface GL4 extends GL3 {
      * @param storageBlockBinding The index storage block binding to associate with the specified storage block.
      */
     public void glShaderStorageBlockBinding(int program, int storageBlockIndex, int storageBlockBinding);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glBufferStorage">Reference Page</a></p>
+     * <p>
+     * Creates the immutable data store of the buffer object currently bound to {@code target}. Requires OpenGL 4.4 or
+     * GL_ARB_buffer_storage.
+     *
+     * @param target the target to which the buffer object is bound.
+     * @param size   the size in bytes of the buffer object's new data store.
+     * @param flags  the intended usage of the data store, e.g. {@link #GL_MAP_PERSISTENT_BIT}.
+     */
+    public void glBufferStorage(int target, long size, int flags);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glMapBufferRange">Reference Page</a></p>
+     * <p>
+     * Maps all or part of the data store of the buffer object bound to {@code target} into client memory.
+     *
+     * @param target the target to which the buffer object is bound.
+     * @param offset the starting offset within the buffer of the range to be mapped.
+     * @param length the length of the range to be mapped.
+     * @param access a combination of access flags indicating the desired access to the range.
+     * @return the mapped memory, or null if the mapping failed.
+     */
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glUnmapBuffer">Reference Page</a></p>
+     * <p>
+     * Releases the mapping of the buffer object bound to {@code target}.
+     *
+     * @param target the target to which the buffer object is bound.
+     * @return false if the data store contents have become corrupt during the time the data store was mapped.
+     */
+    public boolean glUnmapBuffer(int target);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glGetProgramBinary">Reference Page</a></p>
+     * <p>
+     * Returns the binary representation of a linked program. Requires OpenGL 4.1 or GL_ARB_get_program_binary.
+     *
+     * @param program      the name of a program object whose binary representation to retrieve.
+     * @param length       receives the number of bytes written into {@code binary}.
+     * @param binaryFormat receives the format of the binary data.
+     * @param binary       receives the binary data, its remaining bytes limit how much is written.
+     */
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glProgramBinary">Reference Page</a></p>
+     * <p>
+     * Loads a program object with a program binary previously returned by {@link #glGetProgramBinary}. Whether
+     * the driver accepted it is reported through the link status of the program.
+     *
+     * @param program      the name of a program object into which to load a program binary.
+     * @param binaryFormat the format of the binary data.
+     * @param binary       the binary data.
+     */
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glProgramParameteri">Reference Page</a></p>
+     * <p>
+     * Specifies a parameter of a program object, e.g. {@link #GL_PROGRAM_BINARY_RETRIEVABLE_HINT}.
+     *
+     * @param program the name of a program object whose parameter to modify.
+     * @param pname   the name of the parameter to modify.
+     * @param value   the new value of the parameter.
+     */
+    public void glProgramParameteri(int program, int pname, int value);
 }
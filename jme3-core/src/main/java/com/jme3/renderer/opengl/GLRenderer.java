@@ -57,16 +57,20 @@ import com.jme3.texture.Texture.ShadowCompareMode;
 import com.jme3.texture.Texture.WrapAxis;
 import com.jme3.texture.image.LastTextureState;
 import com.jme3.util.BufferUtils;
+import com.jme3.util.IntMap;
 import com.jme3.util.ListMap;
 import com.jme3.util.MipMapGenerator;
 import com.jme3.util.NativeObjectManager;
 import jme3tools.shader.ShaderDebug;
 
+import java.io.UnsupportedEncodingException;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -97,6 +101,10 @@ public final class GLRenderer implements Renderer {
     private int defaultAnisotropicFilter = 1;
     private boolean linearizeSrgbImages;
     private HashSet<String> extensions;
+    private final IntMap<StreamBufferRing> streamRings = new IntMap<StreamBufferRing>();
+    private boolean streamRingsEnabled;
+    private ProgramBinaryCache programBinaryCache;
+    private String programBinaryDriver;
 
     private final GL gl;
     private final GL2 gl2;
@@ -545,6 +553,19 @@ public final class GLRenderer implements Renderer {
             caps.add(Caps.UnpackRowLength);
         }
 
+        if (gl4 != null && (caps.contains(Caps.OpenGL44) || hasExtension("GL_ARB_buffer_storage"))
+                && (caps.contains(Caps.OpenGL32) || hasExtension("GL_ARB_sync"))) {
+            caps.add(Caps.BufferStorage);
+        }
+
+        if (gl4 != null && (caps.contains(Caps.OpenGL41) || hasExtension("GL_ARB_get_program_binary"))
+                && getInteger(GL4.GL_NUM_PROGRAM_BINARY_FORMATS) > 0) {
+            caps.add(Caps.ProgramBinary);
+            programBinaryDriver = gl.glGetString(GL.GL_VENDOR) + "\n"
+                    + gl.glGetString(GL.GL_RENDERER) + "\n"
+                    + gl.glGetString(GL.GL_VERSION);
+        }
+
         // Print context information
         logger.log(Level.INFO, "OpenGL Renderer Information\n" +
                         " * Vendor: {0}\n" +
@@ -609,6 +630,7 @@ public final class GLRenderer implements Renderer {
     @Override
     public void initialize() {
         loadCapabilities();
+        streamRingsEnabled = caps.contains(Caps.BufferStorage);
 
         // Initialize default state..
         gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, 1);
@@ -645,6 +667,7 @@ public final class GLRenderer implements Renderer {
     public void resetGLObjects() {
         logger.log(Level.FINE, "Reseting objects and invalidating state");
         objManager.resetObjects();
+        streamRings.clear();
         statistics.clearMemory();
         invalidateState();
     }
@@ -654,6 +677,7 @@ public final class GLRenderer implements Renderer {
         logger.log(Level.FINE, "Deleting objects and invalidating state");
         objManager.deleteAllObjects(this);
         OpenCLObjectManager.getInstance().deleteAllObjects();
+        streamRings.clear();
         statistics.clearMemory();
         invalidateState();
     }
@@ -1310,7 +1334,7 @@ public final class GLRenderer implements Renderer {
             case UniformBufferObject: {
                 final int blockIndex = gl3.glGetUniformBlockIndex(shaderId, bufferBlock.getName());
                 gl3.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, bufferObject.getBinding(), bufferObject.getId());
-                gl3.glUniformBlockBinding(GL3.GL_UNIFORM_BUFFER, blockIndex, bufferObject.getBinding());
+                gl3.glUniformBlockBinding(shaderId, blockIndex, bufferObject.getBinding());
                 break;
             }
             case ShaderStorageBufferObject: {
@@ -1372,20 +1396,12 @@ public final class GLRenderer implements Renderer {
         }
     }
 
-    public void updateShaderSourceData(ShaderSource source) {
-        int id = source.getId();
-        if (id == -1) {
-            // Create id
-            id = gl.glCreateShader(convertShaderType(source.getType()));
-            if (id <= 0) {
-                throw new RendererException("Invalid ID received when trying to create shader.");
-            }
-
-            source.setId(id);
-        } else {
-            throw new RendererException("Cannot recompile shader source");
-        }
-
+    /**
+     * Puts the complete source of the shader stage, with the version,
+     * defines and precision qualifiers this renderer adds, into
+     * <code>stringBuf</code>.
+     */
+    private void buildShaderSource(ShaderSource source) {
         boolean gles3 = caps.contains(Caps.OpenGLES30);
         boolean gles2 = caps.contains(Caps.OpenGLES20);
         String language = source.getLanguage();
@@ -1463,6 +1479,24 @@ public final class GLRenderer implements Renderer {
             stringBuf.insert(idx + 1, "precision highp float;\n");
         }
 
+    }
+
+    public void updateShaderSourceData(ShaderSource source) {
+        int id = source.getId();
+        if (id == -1) {
+            // Create id
+            id = gl.glCreateShader(convertShaderType(source.getType()));
+            if (id <= 0) {
+                throw new RendererException("Invalid ID received when trying to create shader.");
+            }
+
+            source.setId(id);
+        } else {
+            throw new RendererException("Cannot recompile shader source");
+        }
+
+        buildShaderSource(source);
+
         intBuf1.clear();
         intBuf1.put(0, stringBuf.length());
         gl.glShaderSource(id, new String[]{ stringBuf.toString() }, intBuf1);
@@ -1517,6 +1551,18 @@ public final class GLRenderer implements Renderer {
             needRegister = true;
         }
 
+        String binaryKey = null;
+        if (needRegister && programBinaryCache != null && caps.contains(Caps.ProgramBinary)) {
+            binaryKey = getProgramBinaryKey(shader);
+            if (loadProgramBinary(id, binaryKey)) {
+                shader.clearUpdateNeeded();
+                objManager.registerObject(shader);
+                statistics.onNewShader();
+                return;
+            }
+            gl4.glProgramParameteri(id, GL4.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
+        }
+
         // If using GLSL 1.5, we bind the outputs for the user
         // For versions 3.3 and up, user should use layout qualifiers instead.
         boolean bindFragDataRequired = false;
@@ -1565,6 +1611,9 @@ public final class GLRenderer implements Renderer {
                 logger.fine("Shader linked successfully.");
             }
             shader.clearUpdateNeeded();
+            if (binaryKey != null) {
+                storeProgramBinary(id, binaryKey);
+            }
             if (needRegister) {
                 // Register shader for clean up if it was created in this method.
                 objManager.registerObject(shader);
@@ -1582,6 +1631,97 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Sets the cache used to store linked shader programs and to load them
+     * back instead of compiling their sources, or null to always compile
+     * them. Only used when the renderer supports
+     * {@link Caps#ProgramBinary}.
+     *
+     * @param programBinaryCache the cache, or null
+     */
+    public void setProgramBinaryCache(ProgramBinaryCache programBinaryCache) {
+        this.programBinaryCache = programBinaryCache;
+    }
+
+    /**
+     * @return the program binary cache, or null if there is none
+     */
+    public ProgramBinaryCache getProgramBinaryCache() {
+        return programBinaryCache;
+    }
+
+    /**
+     * Hashes the final sources of all stages of the shader, together with
+     * the driver, into the key of its program binary.
+     */
+    private String getProgramBinaryKey(Shader shader) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new UnsupportedOperationException("SHA-1 is not available", ex);
+        }
+        try {
+            digest.update(programBinaryDriver.getBytes("UTF-8"));
+            for (ShaderSource source : shader.getSources()) {
+                buildShaderSource(source);
+                digest.update((byte) source.getType().ordinal());
+                digest.update(stringBuf.toString().getBytes("UTF-8"));
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new AssertionError(ex);
+        }
+
+        StringBuilder sb = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private boolean loadProgramBinary(int id, String key) {
+        byte[] data = programBinaryCache.load(key);
+        if (data == null || data.length <= 4) {
+            return false;
+        }
+        ByteBuffer binary = BufferUtils.createByteBuffer(data.length - 4);
+        binary.put(data, 4, data.length - 4).flip();
+        int format = ByteBuffer.wrap(data).getInt(0);
+        gl4.glProgramBinary(id, format, binary);
+
+        gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+        if (intBuf1.get(0) != GL.GL_TRUE) {
+            logger.log(Level.FINE, "Program binary {0} was rejected, compiling the sources instead.", key);
+            return false;
+        }
+        return true;
+    }
+
+    private void storeProgramBinary(int id, String key) {
+        gl.glGetProgram(id, GL4.GL_PROGRAM_BINARY_LENGTH, intBuf1);
+        int length = intBuf1.get(0);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        intBuf1.clear();
+        intBuf16.clear().limit(1);
+        gl4.glGetProgramBinary(id, intBuf1, intBuf16, binary);
+        int written = intBuf1.get(0);
+        int format = intBuf16.get(0);
+        intBuf16.clear();
+        if (written <= 0) {
+            return;
+        }
+
+        byte[] data = new byte[4 + written];
+        ByteBuffer.wrap(data).putInt(format);
+        binary.position(0).limit(written);
+        binary.get(data, 4, written);
+        programBinaryCache.store(key, data);
+    }
+
     @Override
     public void setShader(Shader shader) {
         if (shader == null) {
@@ -2691,6 +2831,16 @@ public final class GLRenderer implements Renderer {
             created = true;
         }
 
+        if (isStreamRingUsable(vb)) {
+            if (updateStreamRing(vb, bufId)) {
+                vb.clearUpdateNeeded();
+                return;
+            }
+        } else if (streamRings.size() > 0) {
+            // Usage changed since the last upload.
+            deleteStreamRing(bufId);
+        }
+
         // bind buffer
         int target;
         if (vb.getBufferType() == VertexBuffer.Type.Index) {
@@ -2739,6 +2889,71 @@ public final class GLRenderer implements Renderer {
         vb.clearUpdateNeeded();
     }
 
+    private boolean isStreamRingUsable(VertexBuffer vb) {
+        return streamRingsEnabled
+                && vb.getUsage() == Usage.Stream
+                && vb.getBufferType() != VertexBuffer.Type.Index
+                && vb.getBufferType() != VertexBuffer.Type.InterleavedData;
+    }
+
+    /**
+     * Uploads a stream buffer through a persistently mapped ring, so the
+     * upload neither stalls on nor reallocates storage the GPU is still
+     * reading from.
+     *
+     * @return false if persistent mapping is not available after all, the
+     * caller then falls back to orphaning the buffer's own storage.
+     */
+    private boolean updateStreamRing(VertexBuffer vb, int bufId) {
+        int bytes = vb.getData().limit() * vb.getFormat().getComponentSize();
+        StreamBufferRing ring = streamRings.get(bufId);
+        if (ring == null || ring.getRegionSize() < bytes) {
+            deleteStreamRing(bufId);
+
+            intBuf1.clear();
+            gl.glGenBuffers(intBuf1);
+            int ringId = intBuf1.get(0);
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, ringId);
+            context.boundArrayVBO = ringId;
+
+            ring = new StreamBufferRing(ringId, StreamBufferRing.getRegionSizeFor(bytes));
+            if (!ring.map(gl4)) {
+                logger.warning("Failed to map stream buffer ring, "
+                        + "falling back to orphaning for stream buffers");
+                streamRingsEnabled = false;
+                deleteBufferId(ringId);
+                return false;
+            }
+            streamRings.put(bufId, ring);
+        }
+        ring.write(glext, vb.getData(), vb.getFormat());
+        return true;
+    }
+
+    private void deleteStreamRing(int bufId) {
+        StreamBufferRing ring = streamRings.remove(bufId);
+        if (ring == null) {
+            return;
+        }
+        ring.deleteFences(glext);
+        if (context.boundArrayVBO != ring.getBufferId()) {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, ring.getBufferId());
+            context.boundArrayVBO = ring.getBufferId();
+        }
+        gl4.glUnmapBuffer(GL.GL_ARRAY_BUFFER);
+        deleteBufferId(ring.getBufferId());
+    }
+
+    private void deleteBufferId(int bufId) {
+        intBuf1.put(0, bufId);
+        intBuf1.position(0).limit(1);
+        gl.glDeleteBuffers(intBuf1);
+        if (context.boundArrayVBO == bufId) {
+            // Deleting a bound buffer reverts the binding to zero.
+            context.boundArrayVBO = 0;
+        }
+    }
+
     @Override
     public void updateBufferData(final BufferObject bo) {
 
@@ -2795,6 +3010,8 @@ public final class GLRenderer implements Renderer {
     public void deleteBuffer(VertexBuffer vb) {
         int bufId = vb.getId();
         if (bufId != -1) {
+            deleteStreamRing(bufId);
+
             // delete buffer
             intBuf1.put(0, bufId);
             intBuf1.position(0).limit(1);
@@ -2878,19 +3095,31 @@ public final class GLRenderer implements Renderer {
             slotsRequired = vb.getNumComponents() / 4;
         }
 
+        // Stream rings move between regions and may be dropped on upload,
+        // so their attribute pointers can't be reused from the last draw.
+        boolean respecify = false;
         if (vb.isUpdateNeeded() && idb == null) {
+            respecify = streamRings.containsKey(vb.getId());
             updateBufferData(vb);
         }
 
+        // NOTE: Use id from interleaved buffer if specified
+        int bufId = idb != null ? idb.getId() : vb.getId();
+        int baseOffset = 0;
+        StreamBufferRing ring = streamRings.size() > 0 ? streamRings.get(bufId) : null;
+        if (ring != null) {
+            bufId = ring.getBufferId();
+            baseOffset = ring.getOffset();
+            respecify = true;
+        }
+
         WeakReference<VertexBuffer>[] attribs = context.boundAttribs;
         for (int i = 0; i < slotsRequired; i++) {
             if (!context.attribIndexList.moveToNew(loc + i)) {
                 gl.glEnableVertexAttribArray(loc + i);
             }
         }
-        if (attribs[loc]==null||attribs[loc].get() != vb) {
-            // NOTE: Use id from interleaved buffer if specified
-            int bufId = idb != null ? idb.getId() : vb.getId();
+        if (respecify || attribs[loc]==null||attribs[loc].get() != vb) {
             assert bufId != -1;
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
@@ -2906,7 +3135,7 @@ public final class GLRenderer implements Renderer {
                         convertFormat(vb.getFormat()),
                         vb.isNormalized(),
                         vb.getStride(),
-                        vb.getOffset());
+                        baseOffset + vb.getOffset());
             } else {
                 for (int i = 0; i < slotsRequired; i++) {
                     // The pointer maps the next 4 floats in the slot.
@@ -2922,7 +3151,7 @@ public final class GLRenderer implements Renderer {
                             convertFormat(vb.getFormat()),
                             vb.isNormalized(),
                             4 * 4 * slotsRequired,
-                            4 * 4 * i);
+                            baseOffset + 4 * 4 * i);
                 }
             }
 
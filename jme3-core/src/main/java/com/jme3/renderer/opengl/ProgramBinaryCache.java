@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+/**
+ * Stores linked shader programs in the driver's binary format, so that
+ * {@link GLRenderer} can load them back instead of compiling and linking
+ * their sources again, which is often the main cause of stutter the first
+ * time a shader is used.
+ * <p>
+ * Keys identify the exact sources of a program together with the driver
+ * that linked it, so a driver update simply misses the cache. Drivers may
+ * still reject a stored binary, in which case the program is compiled from
+ * source and stored anew.
+ *
+ * @see GLRenderer#setProgramBinaryCache(com.jme3.renderer.opengl.ProgramBinaryCache)
+ * @see FileProgramBinaryCache
+ */
+public interface ProgramBinaryCache {
+
+    /**
+     * Returns the data stored under the given key.
+     *
+     * @param key the key of the program
+     * @return the stored data, or null if there is none
+     */
+    public byte[] load(String key);
+
+    /**
+     * Stores data under the given key, replacing any previous data.
+     *
+     * @param key the key of the program
+     * @param data the data to store, its content is opaque to the cache
+     */
+    public void store(String key, byte[] data);
+}
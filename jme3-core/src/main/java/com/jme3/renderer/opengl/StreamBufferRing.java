@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.scene.VertexBuffer.Format;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Internal utility class used by {@link GLRenderer} to upload
+ * {@link com.jme3.scene.VertexBuffer.Usage#Stream stream} vertex buffers.
+ * <p>
+ * The ring owns a GL buffer with immutable storage that stays persistently
+ * mapped, split into {@link #REGION_COUNT} regions. Every upload advances to
+ * the next region and writes straight into mapped memory, so the CPU fills
+ * one region while the GPU may still be reading the previous ones. A fence is
+ * placed on a region once the renderer moves past it, and is waited on before
+ * that region gets written again.
+ */
+final class StreamBufferRing {
+
+    /**
+     * Number of regions, triple buffering.
+     */
+    static final int REGION_COUNT = 3;
+
+    private static final int REGION_ALIGNMENT = 256;
+    private static final long FENCE_TIMEOUT = 1000000000L;
+    private static final int MAP_FLAGS = GL4.GL_MAP_WRITE_BIT
+            | GL4.GL_MAP_PERSISTENT_BIT
+            | GL4.GL_MAP_COHERENT_BIT;
+
+    private final int bufferId;
+    private final int regionSize;
+    private final ByteBuffer[] regions = new ByteBuffer[REGION_COUNT];
+    private final Object[] fences = new Object[REGION_COUNT];
+    private int region = -1;
+
+    StreamBufferRing(int bufferId, int regionSize) {
+        this.bufferId = bufferId;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Computes the region size to allocate for data of the given size, with
+     * some headroom so that slowly growing buffers don't reallocate on every
+     * upload.
+     *
+     * @param bytes the size of the data in bytes
+     * @return the region size in bytes, a multiple of the region alignment
+     */
+    static int getRegionSizeFor(int bytes) {
+        int size = Math.max(bytes + (bytes >> 1), REGION_ALIGNMENT);
+        return (size + REGION_ALIGNMENT - 1) & ~(REGION_ALIGNMENT - 1);
+    }
+
+    /**
+     * Allocates the immutable storage and maps it. The ring's buffer must be
+     * bound to {@link GL#GL_ARRAY_BUFFER}.
+     *
+     * @param gl4 the GL 4 interface
+     * @return false if the storage could not be mapped, in which case the
+     * caller should delete the buffer and fall back to orphaning.
+     */
+    boolean map(GL4 gl4) {
+        long size = (long) regionSize * REGION_COUNT;
+        gl4.glBufferStorage(GL.GL_ARRAY_BUFFER, size, MAP_FLAGS);
+        ByteBuffer mapped = gl4.glMapBufferRange(GL.GL_ARRAY_BUFFER, 0, size, MAP_FLAGS);
+        if (mapped == null) {
+            return false;
+        }
+        for (int i = 0; i < REGION_COUNT; i++) {
+            mapped.clear();
+            mapped.position(i * regionSize);
+            mapped.limit((i + 1) * regionSize);
+            regions[i] = mapped.slice().order(ByteOrder.nativeOrder());
+        }
+        return true;
+    }
+
+    /**
+     * Copies the data into the next region, waiting for the GPU to release it
+     * first if needed.
+     *
+     * @param glext the GL extension interface, used for fences
+     * @param data the data to upload, must fit in {@link #getRegionSize()}
+     * @param format the format of the data
+     * @return the byte offset of the written region in the ring's buffer
+     */
+    int write(GLExt glext, Buffer data, Format format) {
+        if (region >= 0) {
+            // All draws reading the current region are already submitted.
+            fences[region] = glext.glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+        region = (region + 1) % REGION_COUNT;
+        waitForRegion(glext, region);
+
+        ByteBuffer dst = regions[region];
+        dst.clear();
+        data.rewind();
+        switch (format) {
+            case Byte:
+            case UnsignedByte:
+                dst.put((ByteBuffer) data);
+                break;
+            case Short:
+            case UnsignedShort:
+                dst.asShortBuffer().put((ShortBuffer) data);
+                break;
+            case Int:
+            case UnsignedInt:
+                dst.asIntBuffer().put((IntBuffer) data);
+                break;
+            case Float:
+                dst.asFloatBuffer().put((FloatBuffer) data);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown buffer format.");
+        }
+        data.rewind();
+        return getOffset();
+    }
+
+    private void waitForRegion(GLExt glext, int index) {
+        Object fence = fences[index];
+        if (fence == null) {
+            return;
+        }
+        while (true) {
+            int status = glext.glClientWaitSync(fence, GLExt.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+            if (status != GLExt.GL_TIMEOUT_EXPIRED) {
+                // Signaled, or the wait failed and there is nothing left to do.
+                break;
+            }
+        }
+        glext.glDeleteSync(fence);
+        fences[index] = null;
+    }
+
+    /**
+     * Deletes all pending fences. The caller is responsible for unmapping
+     * and deleting the buffer.
+     *
+     * @param glext the GL extension interface
+     */
+    void deleteFences(GLExt glext) {
+        for (int i = 0; i < REGION_COUNT; i++) {
+            if (fences[i] != null) {
+                glext.glDeleteSync(fences[i]);
+                fences[i] = null;
+            }
+        }
+    }
+
+    /**
+     * @return the GL buffer owned by this ring
+     */
+    int getBufferId() {
+        return bufferId;
+    }
+
+    /**
+     * @return the capacity of a single region in bytes
+     */
+    int getRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * @return the byte offset of the most recently written region
+     */
+    int getOffset() {
+        return region < 0 ? 0 : region * regionSize;
+    }
+}
@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer.queue;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -55,6 +56,11 @@ public class GeometryList implements Iterable<Geometry>{
     private int size;
     private GeometryComparator comparator;
 
+    // radix sort buffers, only allocated for SortKeyComparators
+    private long[] sortKeys, tempKeys;
+    private Geometry[] tempGeometries;
+    private int[] radixCounts;
+
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
      * to use for comparing geometries.
@@ -148,10 +154,14 @@ public class GeometryList implements Iterable<Geometry>{
 
     /**
      * Sorts the elements in the list according to their Comparator.
+     * If the comparator is a {@link SortKeyComparator}, a radix sort on the
+     * geometries' sort keys is used.
      */
     @SuppressWarnings("unchecked")
     public void sort() {
-        if (size > 1) {
+        if (size > 1 && comparator instanceof SortKeyComparator) {
+            radixSort((SortKeyComparator) comparator);
+        } else if (size > 1) {
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -160,6 +170,67 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    /**
+     * Sorts the geometries by their sort key with a stable LSD radix sort,
+     * one byte at a time. Bytes that are the same for all keys are skipped.
+     */
+    private void radixSort(SortKeyComparator keyComparator) {
+        if (sortKeys == null || sortKeys.length < size) {
+            sortKeys = new long[geometries.length];
+            tempKeys = new long[geometries.length];
+            tempGeometries = new Geometry[geometries.length];
+        }
+        if (radixCounts == null) {
+            radixCounts = new int[8 * 256];
+        } else {
+            Arrays.fill(radixCounts, 0);
+        }
+
+        long[] keys = sortKeys;
+        for (int i = 0; i < size; i++) {
+            long key = keyComparator.getSortKey(geometries[i]);
+            keys[i] = key;
+            for (int b = 0; b < 8; b++) {
+                radixCounts[(b << 8) | (int) ((key >>> (b << 3)) & 0xFF)]++;
+            }
+        }
+
+        long[] srcKeys = keys, dstKeys = tempKeys;
+        Geometry[] src = geometries, dst = tempGeometries;
+        for (int b = 0; b < 8; b++) {
+            int offset = b << 8;
+            int shift = b << 3;
+            if (radixCounts[offset | (int) ((srcKeys[0] >>> shift) & 0xFF)] == size) {
+                // all keys share this byte
+                continue;
+            }
+            // turn the counts into start positions
+            int position = 0;
+            for (int i = 0; i < 256; i++) {
+                int count = radixCounts[offset + i];
+                radixCounts[offset + i] = position;
+                position += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int target = radixCounts[offset | (int) ((key >>> shift) & 0xFF)]++;
+                dstKeys[target] = key;
+                dst[target] = src[i];
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            Geometry[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != geometries) {
+            System.arraycopy(src, 0, geometries, 0, size);
+        }
+        Arrays.fill(tempGeometries, 0, size, null);
+    }
+
     @Override
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.scene.Geometry;
+
+/**
+ * <code>OpaqueSortKeyComparator</code> sorts geometries like the
+ * {@link OpaqueComparator}, by material first and front to back within
+ * the same material, but packs both criteria into a single sort key so the
+ * {@link GeometryList} can use a radix sort.
+ * <p>
+ * The upper 32 bits of the key hold the {@link com.jme3.material.Material#getSortId() material sort id},
+ * which identifies the technique and textures, and the lower 32 bits hold the
+ * distance to the camera plane.
+ * It can be set on the opaque bucket with
+ * {@link RenderQueue#setGeometryComparator(com.jme3.renderer.queue.RenderQueue.Bucket, com.jme3.renderer.queue.GeometryComparator)}.
+ */
+public class OpaqueSortKeyComparator extends OpaqueComparator implements SortKeyComparator {
+
+    @Override
+    public long getSortKey(Geometry geom) {
+        // flip the sign bits so signed values are ordered as unsigned ones
+        long sortId = (geom.getMaterial().getSortId() ^ 0x80000000) & 0xFFFFFFFFL;
+        // adding 0 turns -0 into +0, which compare equal as floats
+        int bits = Float.floatToIntBits(distanceToCam(geom) + 0f);
+        bits ^= (bits >> 31) | 0x80000000;
+        return (sortId << 32) | (bits & 0xFFFFFFFFL);
+    }
+}
@@ -271,6 +271,26 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Renders the opaque bucket, letting the render manager draw it as
+     * instances when automatic instancing is enabled.
+     */
+    private void renderOpaqueList(RenderManager rm, Camera cam, boolean clear) {
+        if (!rm.isAutoInstancing()) {
+            renderGeometryList(opaqueList, rm, cam, clear);
+            return;
+        }
+        opaqueList.setCamera(cam);
+        opaqueList.sort();
+        rm.renderOpaqueGeometryList(opaqueList);
+        for (int i = 0; i < opaqueList.size(); i++) {
+            opaqueList.get(i).queueDistance = Float.NEGATIVE_INFINITY;
+        }
+        if (clear) {
+            opaqueList.clear();
+        }
+    }
+
     public void renderShadowQueue(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
         renderGeometryList(list, rm, cam, clear);
     }
@@ -302,7 +322,7 @@ public class RenderQueue {
                 renderGeometryList(guiList, rm, cam, clear);
                 break;
             case Opaque:
-                renderGeometryList(opaqueList, rm, cam, clear);
+                renderOpaqueList(rm, cam, clear);
                 break;
             case Sky:
                 renderGeometryList(skyList, rm, cam, clear);
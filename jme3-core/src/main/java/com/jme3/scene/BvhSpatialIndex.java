@@ -0,0 +1,590 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.util.clone.Cloner;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * <code>BvhSpatialIndex</code> is a {@link SpatialIndex} backed by a
+ * dynamic bounding volume hierarchy of axis aligned boxes.
+ * <p>
+ * Each spatial is stored in a leaf whose box is its world bound enlarged by
+ * a margin, so spatials moving a little do not require any change to the
+ * tree. Leaves are inserted next to the sibling that minimizes the increase
+ * of surface area and the tree is kept balanced with rotations, so updates
+ * and queries are logarithmic in the number of spatials.
+ * The nodes are stored in primitive arrays to avoid an object per node.
+ */
+public class BvhSpatialIndex implements SpatialIndex {
+
+    private static final int NULL = -1;
+
+    private float margin = 0.1f;
+
+    private int root = NULL;
+    private int nodeCount = 0;
+    private int capacity = 0;
+    private int freeList = NULL;
+    private int size = 0;
+
+    // node data, children are NULL for leaves
+    private int[] parents, children1, children2, heights;
+    private float[] boxes;
+    private Spatial[] spatials;
+
+    private IdentityHashMap<Spatial, Integer> leaves = new IdentityHashMap<>();
+
+    // query temporaries
+    private int[] stack = new int[64];
+    private int[] stackStates = new int[64];
+    private final BoundingBox tempBox = new BoundingBox();
+    private final float[] tempAabb = new float[6];
+
+    /**
+     * Creates an empty index.
+     */
+    public BvhSpatialIndex() {
+        grow(16);
+    }
+
+    /**
+     * Sets the margin added around the world bound of the spatials, relative
+     * to the bound's size. Larger margins reduce the tree updates of moving
+     * spatials, at the cost of looser culling. Only affects spatials updated
+     * afterwards.
+     *
+     * @param margin the relative margin (&ge;0, default 0.1)
+     */
+    public void setMargin(float margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin cannot be negative");
+        }
+        this.margin = margin;
+    }
+
+    /**
+     * @return the margin added around the world bound of the spatials
+     */
+    public float getMargin() {
+        return margin;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the height of the tree, 0 if empty
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : heights[root] + 1;
+    }
+
+    @Override
+    public void clear() {
+        root = NULL;
+        nodeCount = 0;
+        freeList = NULL;
+        size = 0;
+        Arrays.fill(spatials, null);
+        leaves.clear();
+    }
+
+    private void grow(int newCapacity) {
+        parents = parents == null ? new int[newCapacity] : Arrays.copyOf(parents, newCapacity);
+        children1 = children1 == null ? new int[newCapacity] : Arrays.copyOf(children1, newCapacity);
+        children2 = children2 == null ? new int[newCapacity] : Arrays.copyOf(children2, newCapacity);
+        heights = heights == null ? new int[newCapacity] : Arrays.copyOf(heights, newCapacity);
+        boxes = boxes == null ? new float[newCapacity * 6] : Arrays.copyOf(boxes, newCapacity * 6);
+        spatials = spatials == null ? new Spatial[newCapacity] : Arrays.copyOf(spatials, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private int allocateNode() {
+        int node;
+        if (freeList != NULL) {
+            node = freeList;
+            freeList = parents[node];
+        } else {
+            if (nodeCount == capacity) {
+                grow(capacity * 2);
+            }
+            node = nodeCount++;
+        }
+        parents[node] = NULL;
+        children1[node] = NULL;
+        children2[node] = NULL;
+        heights[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        spatials[node] = null;
+        parents[node] = freeList;
+        heights[node] = -1;
+        freeList = node;
+    }
+
+    /**
+     * Computes the axis aligned box of a world bound.
+     */
+    private static void computeAabb(BoundingVolume bound, float[] store) {
+        Vector3f center = bound.getCenter();
+        float x, y, z;
+        if (bound instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bound;
+            x = box.getXExtent();
+            y = box.getYExtent();
+            z = box.getZExtent();
+        } else if (bound instanceof BoundingSphere) {
+            x = y = z = ((BoundingSphere) bound).getRadius();
+        } else {
+            throw new UnsupportedOperationException("Unsupported bounding volume: " + bound.getType());
+        }
+        store[0] = center.x - x;
+        store[1] = center.y - y;
+        store[2] = center.z - z;
+        store[3] = center.x + x;
+        store[4] = center.y + y;
+        store[5] = center.z + z;
+    }
+
+    private boolean contains(int node, float[] aabb) {
+        int b = node * 6;
+        return boxes[b] <= aabb[0] && boxes[b + 1] <= aabb[1] && boxes[b + 2] <= aabb[2]
+                && boxes[b + 3] >= aabb[3] && boxes[b + 4] >= aabb[4] && boxes[b + 5] >= aabb[5];
+    }
+
+    private static float halfArea(float dx, float dy, float dz) {
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private float halfArea(int node) {
+        int b = node * 6;
+        return halfArea(boxes[b + 3] - boxes[b], boxes[b + 4] - boxes[b + 1], boxes[b + 5] - boxes[b + 2]);
+    }
+
+    private float unionHalfArea(int a, int b) {
+        a *= 6;
+        b *= 6;
+        return halfArea(Math.max(boxes[a + 3], boxes[b + 3]) - Math.min(boxes[a], boxes[b]),
+                Math.max(boxes[a + 4], boxes[b + 4]) - Math.min(boxes[a + 1], boxes[b + 1]),
+                Math.max(boxes[a + 5], boxes[b + 5]) - Math.min(boxes[a + 2], boxes[b + 2]));
+    }
+
+    private void setUnion(int node, int a, int b) {
+        int n = node * 6;
+        a *= 6;
+        b *= 6;
+        for (int i = 0; i < 3; i++) {
+            boxes[n + i] = Math.min(boxes[a + i], boxes[b + i]);
+            boxes[n + i + 3] = Math.max(boxes[a + i + 3], boxes[b + i + 3]);
+        }
+    }
+
+    @Override
+    public void update(Spatial spatial) {
+        BoundingVolume bound = spatial.getWorldBound();
+        if (bound == null) {
+            remove(spatial);
+            return;
+        }
+        computeAabb(bound, tempAabb);
+
+        Integer existing = leaves.get(spatial);
+        if (existing != null) {
+            if (contains(existing, tempAabb)) {
+                // still inside the enlarged box
+                return;
+            }
+            removeLeaf(existing);
+        } else {
+            size++;
+        }
+
+        int leaf = allocateNode();
+        spatials[leaf] = spatial;
+        int b = leaf * 6;
+        for (int i = 0; i < 3; i++) {
+            float m = (tempAabb[i + 3] - tempAabb[i]) * 0.5f * margin;
+            boxes[b + i] = tempAabb[i] - m;
+            boxes[b + i + 3] = tempAabb[i + 3] + m;
+        }
+        insertLeaf(leaf);
+        leaves.put(spatial, leaf);
+    }
+
+    @Override
+    public boolean remove(Spatial spatial) {
+        Integer leaf = leaves.remove(spatial);
+        if (leaf == null) {
+            return false;
+        }
+        removeLeaf(leaf);
+        size--;
+        return true;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            return;
+        }
+
+        // find the best sibling
+        int index = root;
+        while (children1[index] != NULL) {
+            int child1 = children1[index];
+            int child2 = children2[index];
+
+            float area = halfArea(index);
+            float combinedArea = unionHalfArea(index, leaf);
+
+            // cost of creating a new parent for this node and the new leaf
+            float cost = 2f * combinedArea;
+            // minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2f * (combinedArea - area);
+
+            float cost1 = unionHalfArea(child1, leaf) + inheritanceCost;
+            if (children1[child1] != NULL) {
+                cost1 -= halfArea(child1);
+            }
+            float cost2 = unionHalfArea(child2, leaf) + inheritanceCost;
+            if (children1[child2] != NULL) {
+                cost2 -= halfArea(child2);
+            }
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        heights[newParent] = heights[sibling] + 1;
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        if (oldParent != NULL) {
+            if (children1[oldParent] == sibling) {
+                children1[oldParent] = newParent;
+            } else {
+                children2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+
+        refitAncestors(newParent);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            freeNode(leaf);
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+        if (grandParent != NULL) {
+            if (children1[grandParent] == parent) {
+                children1[grandParent] = sibling;
+            } else {
+                children2[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            freeNode(parent);
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL;
+            freeNode(parent);
+        }
+        freeNode(leaf);
+    }
+
+    /**
+     * Rebalances and recomputes the boxes and heights from the given node
+     * up to the root.
+     */
+    private void refitAncestors(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int child1 = children1[index];
+            int child2 = children2[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            setUnion(index, child1, child2);
+            index = parents[index];
+        }
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NULL) {
+            root = newChild;
+        } else if (children1[parent] == oldChild) {
+            children1[parent] = newChild;
+        } else {
+            children2[parent] = newChild;
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the node is imbalanced.
+     *
+     * @return the new root of the subtree
+     */
+    private int balance(int a) {
+        if (children1[a] == NULL || heights[a] < 2) {
+            return a;
+        }
+
+        int b = children1[a];
+        int c = children2[a];
+        int balance = heights[c] - heights[b];
+
+        if (balance > 1) {
+            // rotate c up
+            int f = children1[c];
+            int g = children2[c];
+
+            children1[c] = a;
+            parents[c] = parents[a];
+            parents[a] = c;
+            replaceChild(parents[c], a, c);
+
+            if (heights[f] > heights[g]) {
+                children2[c] = f;
+                children2[a] = g;
+                parents[g] = a;
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                heights[a] = 1 + Math.max(heights[b], heights[g]);
+                heights[c] = 1 + Math.max(heights[a], heights[f]);
+            } else {
+                children2[c] = g;
+                children2[a] = f;
+                parents[f] = a;
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                heights[a] = 1 + Math.max(heights[b], heights[f]);
+                heights[c] = 1 + Math.max(heights[a], heights[g]);
+            }
+            return c;
+        }
+
+        if (balance < -1) {
+            // rotate b up
+            int d = children1[b];
+            int e = children2[b];
+
+            children1[b] = a;
+            parents[b] = parents[a];
+            parents[a] = b;
+            replaceChild(parents[b], a, b);
+
+            if (heights[d] > heights[e]) {
+                children2[b] = d;
+                children1[a] = e;
+                parents[e] = a;
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                heights[a] = 1 + Math.max(heights[c], heights[e]);
+                heights[b] = 1 + Math.max(heights[a], heights[d]);
+            } else {
+                children2[b] = e;
+                children1[a] = d;
+                parents[d] = a;
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                heights[a] = 1 + Math.max(heights[c], heights[d]);
+                heights[b] = 1 + Math.max(heights[a], heights[e]);
+            }
+            return b;
+        }
+
+        return a;
+    }
+
+    private void push(int depth, int node, int planeState) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            stackStates = Arrays.copyOf(stackStates, depth * 2);
+        }
+        stack[depth] = node;
+        stackStates[depth] = planeState;
+    }
+
+    private void addLeaves(int node, List<Spatial> store) {
+        if (children1[node] == NULL) {
+            store.add(spatials[node]);
+        } else {
+            addLeaves(children1[node], store);
+            addLeaves(children2[node], store);
+        }
+    }
+
+    @Override
+    public void findInFrustum(Camera cam, List<Spatial> store) {
+        if (root == NULL) {
+            return;
+        }
+        int savedState = cam.getPlaneState();
+        int depth = 0;
+        push(depth++, root, 0);
+        while (depth > 0) {
+            depth--;
+            int node = stack[depth];
+            int b = node * 6;
+            tempBox.setCenter((boxes[b] + boxes[b + 3]) * 0.5f,
+                    (boxes[b + 1] + boxes[b + 4]) * 0.5f,
+                    (boxes[b + 2] + boxes[b + 5]) * 0.5f);
+            tempBox.setXExtent((boxes[b + 3] - boxes[b]) * 0.5f);
+            tempBox.setYExtent((boxes[b + 4] - boxes[b + 1]) * 0.5f);
+            tempBox.setZExtent((boxes[b + 5] - boxes[b + 2]) * 0.5f);
+
+            cam.setPlaneState(stackStates[depth]);
+            Camera.FrustumIntersect intersect = cam.contains(tempBox);
+            if (intersect == Camera.FrustumIntersect.Outside) {
+                continue;
+            }
+            if (intersect == Camera.FrustumIntersect.Inside || children1[node] == NULL) {
+                addLeaves(node, store);
+                continue;
+            }
+            int planeState = cam.getPlaneState();
+            push(depth++, children2[node], planeState);
+            push(depth++, children1[node], planeState);
+        }
+        cam.setPlaneState(savedState);
+    }
+
+    @Override
+    public void findIntersecting(Ray ray, List<Spatial> store) {
+        if (root == NULL) {
+            return;
+        }
+        Vector3f origin = ray.getOrigin();
+        Vector3f direction = ray.getDirection();
+        float invX = 1f / direction.x;
+        float invY = 1f / direction.y;
+        float invZ = 1f / direction.z;
+        float limit = ray.getLimit();
+
+        int depth = 0;
+        push(depth++, root, 0);
+        while (depth > 0) {
+            int node = stack[--depth];
+            int b = node * 6;
+            float tMin = 0f;
+            float tMax = limit;
+            float t1 = (boxes[b] - origin.x) * invX;
+            float t2 = (boxes[b + 3] - origin.x) * invX;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            t1 = (boxes[b + 1] - origin.y) * invY;
+            t2 = (boxes[b + 4] - origin.y) * invY;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            t1 = (boxes[b + 2] - origin.z) * invZ;
+            t2 = (boxes[b + 5] - origin.z) * invZ;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            // NaN from a ray lying in a face plane counts as a hit
+            if (tMin > tMax) {
+                continue;
+            }
+            if (children1[node] == NULL) {
+                store.add(spatials[node]);
+            } else {
+                push(depth++, children2[node], 0);
+                push(depth++, children1[node], 0);
+            }
+        }
+    }
+
+    @Override
+    public void findIntersecting(BoundingVolume volume, List<Spatial> store) {
+        if (root == NULL) {
+            return;
+        }
+        computeAabb(volume, tempAabb);
+
+        int depth = 0;
+        push(depth++, root, 0);
+        while (depth > 0) {
+            int node = stack[--depth];
+            int b = node * 6;
+            if (boxes[b] > tempAabb[3] || boxes[b + 3] < tempAabb[0]
+                    || boxes[b + 1] > tempAabb[4] || boxes[b + 4] < tempAabb[1]
+                    || boxes[b + 2] > tempAabb[5] || boxes[b + 5] < tempAabb[2]) {
+                continue;
+            }
+            if (children1[node] == NULL) {
+                store.add(spatials[node]);
+            } else {
+                push(depth++, children2[node], 0);
+                push(depth++, children1[node], 0);
+            }
+        }
+    }
+
+    @Override
+    public BvhSpatialIndex jmeClone() {
+        BvhSpatialIndex clone = new BvhSpatialIndex();
+        clone.margin = margin;
+        return clone;
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        // the spatials are added back by their owner
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>GeometricStateUpdateTask</code> refreshes the geometric state of
+ * a range of sibling spatials, splitting wide ranges into fork-join
+ * subtasks.
+ * <p>
+ * Each spatial only depends on the state of its ancestors, which is always
+ * refreshed before its children are visited, and a node merges its children
+ * bounds in order once they are all done, so the results are identical to
+ * a sequential {@link Spatial#updateGeometricState()}.
+ *
+ * @see Node#updateGeometricState(java.util.concurrent.ForkJoinPool)
+ */
+final class GeometricStateUpdateTask extends RecursiveAction {
+
+    /**
+     * Ranges of at most this many siblings are updated on the
+     * current thread.
+     */
+    static final int SEQUENTIAL_THRESHOLD = 32;
+
+    private static final ConcurrentHashMap<Class<?>, Boolean> splittable
+            = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private final Spatial[] spatials;
+    private final int from;
+    private final int to;
+
+    GeometricStateUpdateTask(Spatial[] spatials, int from, int to) {
+        this.spatials = spatials;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > SEQUENTIAL_THRESHOLD) {
+            int middle = (from + to) >>> 1;
+            invokeAll(new GeometricStateUpdateTask(spatials, from, middle),
+                      new GeometricStateUpdateTask(spatials, middle, to));
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            update(spatials[i]);
+        }
+    }
+
+    private static boolean isSplittable(Class<?> type) {
+        Boolean result = splittable.get(type);
+        if (result == null) {
+            if (GeometryGroupNode.class.isAssignableFrom(type)) {
+                // grouped geometries would notify their group node concurrently
+                result = false;
+            } else {
+                try {
+                    result = type.getMethod("updateGeometricState").getDeclaringClass() == Node.class;
+                } catch (NoSuchMethodException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+            splittable.put(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Refreshes the given spatial and its children. Nodes that override
+     * {@link Spatial#updateGeometricState()} or group their geometries
+     * are updated sequentially through that method.
+     */
+    static void update(Spatial spatial) {
+        if (spatial.refreshFlags == 0) {
+            return;
+        }
+        if (!(spatial instanceof Node) || !isSplittable(spatial.getClass())) {
+            spatial.updateGeometricState();
+            return;
+        }
+
+        Node node = (Node) spatial;
+        node.updateOwnGeometricState();
+        Spatial[] children = node.children.getArray();
+        if (children.length > 0) {
+            new GeometricStateUpdateTask(children, 0, children.length).compute();
+        }
+        node.updateOwnWorldBound();
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.renderer.Camera;
+import com.jme3.util.clone.Cloner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <code>IndexedNode</code> is a {@link Node} that keeps the world bounds of
+ * its children in a {@link SpatialIndex}, so that the
+ * {@link com.jme3.renderer.RenderManager} and the shadow renderers only visit
+ * the children that are potentially visible instead of culling each of them.
+ * This is worth it for nodes with many children spread over a large area,
+ * where most of them are outside of the view frustum.
+ * <p>
+ * The index is refreshed incrementally during
+ * {@link #updateGeometricState()}, for the children whose world bound
+ * changed, and children detached from this node are removed from it right
+ * away. Only the direct children are indexed; the children found in the
+ * frustum are then culled and rendered as usual, together with their own
+ * children.
+ * <p>
+ * Children that are never culled ({@link Spatial.CullHint#Never}), either
+ * through their own cull hint or through the one of this node, are rendered
+ * even when outside of the frustum. Setting the cull hint of a child queues
+ * it for the next update of the geometric state of this node.
+ * <p>
+ * The index also serves {@link #collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) collisions}
+ * with rays, bounding boxes and bounding spheres, which only visit the
+ * children whose world bound they may reach.
+ */
+public class IndexedNode extends Node {
+
+    // lists of children found by nested collisions, per thread
+    private static final ThreadLocal<ScratchLists> scratchLists = new ThreadLocal<ScratchLists>() {
+        @Override
+        protected ScratchLists initialValue() {
+            return new ScratchLists();
+        }
+    };
+
+    private SpatialIndex index;
+
+    private ArrayList<Spatial> neverCulled = new ArrayList<>();
+    // children whose world bound changed, at most once each
+    private Set<Spatial> dirty = createDirtySet();
+
+    // position of each child, rebuilt when needed after the children changed
+    private IdentityHashMap<Spatial, Integer> childOrder = new IdentityHashMap<>();
+    private boolean childOrderValid = false;
+    private Comparator<Spatial> childComparator = createChildComparator();
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public IndexedNode() {
+        this(null);
+    }
+
+    /**
+     * Creates a node indexing its children in a {@link BvhSpatialIndex}.
+     *
+     * @param name the name of the node
+     */
+    public IndexedNode(String name) {
+        this(name, new BvhSpatialIndex());
+    }
+
+    /**
+     * Creates a node indexing its children in the given index.
+     *
+     * @param name the name of the node
+     * @param index the empty index to use (not null)
+     */
+    public IndexedNode(String name, SpatialIndex index) {
+        super(name);
+        if (index == null) {
+            throw new IllegalArgumentException("index cannot be null");
+        }
+        this.index = index;
+    }
+
+    /**
+     * @return the index of the children's world bounds
+     */
+    public SpatialIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Adds to the given list the children that are never culled and the
+     * ones whose world bound may intersect the frustum of the camera.
+     * While the world bound or the cull hint of a child changed since the
+     * last update of the geometric state of this node, or while this node is
+     * never culled, every child is added instead.
+     * The plane state of the camera is left unchanged.
+     *
+     * @param cam the camera to cull against
+     * @param store the list to add the children to
+     */
+    public void getChildrenInFrustum(Camera cam, List<Spatial> store) {
+        if (!dirty.isEmpty() || getCullHint() == CullHint.Never) {
+            // the index is stale, e.g. bounds were refreshed on demand, or
+            // the children inherit a cull hint set above since
+            store.addAll(children);
+            return;
+        }
+        index.findInFrustum(cam, store);
+        if (neverCulled.isEmpty()) {
+            return;
+        }
+        int planeState = cam.getPlaneState();
+        for (int i = 0, size = neverCulled.size(); i < size; i++) {
+            Spatial child = neverCulled.get(i);
+            cam.setPlaneState(0);
+            if (child.getCullHint() == CullHint.Never
+                    && cam.contains(child.getWorldBound()) == Camera.FrustumIntersect.Outside) {
+                store.add(child);
+            }
+        }
+        cam.setPlaneState(planeState);
+    }
+
+    @Override
+    public int attachChildAt(Spatial child, int index) {
+        childOrderValid = false;
+        return super.attachChildAt(child, index);
+    }
+
+    @Override
+    public Spatial detachChildAt(int index) {
+        Spatial child = super.detachChildAt(index);
+        if (child != null) {
+            this.index.remove(child);
+            neverCulled.remove(child);
+            synchronized (dirty) {
+                dirty.remove(child);
+            }
+        }
+        childOrderValid = false;
+        return child;
+    }
+
+    @Override
+    public void swapChildren(int index1, int index2) {
+        super.swapChildren(index1, index2);
+        childOrderValid = false;
+    }
+
+    /**
+     * Collides the children with the given collidable. Rays, bounding boxes
+     * and bounding spheres are only tested against the children found in
+     * the index, in the order of the children, so the results are the same
+     * as the ones of {@link Node}. Other collidables, and any collision
+     * while the world bound of a child is not up to date or not yet in the
+     * index, test every child.
+     *
+     * @param other the collidable to test against
+     * @param results the collision results to add to
+     * @return the number of collisions found
+     */
+    @Override
+    public int collideWith(Collidable other, CollisionResults results) {
+        if ((refreshFlags & RF_BOUND) != 0 || !dirty.isEmpty()
+                || !(other instanceof Ray || other instanceof BoundingBox || other instanceof BoundingSphere)) {
+            return super.collideWith(other, results);
+        }
+
+        ScratchLists scratch = scratchLists.get();
+        ArrayList<Spatial> found = scratch.acquire();
+        try {
+            if (other instanceof Ray) {
+                index.findIntersecting((Ray) other, found);
+            } else {
+                index.findIntersecting((BoundingVolume) other, found);
+            }
+            if (found.size() > 1) {
+                updateChildOrder();
+                Collections.sort(found, childComparator);
+            }
+
+            int total = 0;
+            for (int i = 0, size = found.size(); i < size; i++) {
+                total += found.get(i).collideWith(other, results);
+            }
+            return total;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private void updateChildOrder() {
+        if (childOrderValid) {
+            return;
+        }
+        childOrder.clear();
+        Spatial[] array = children.getArray();
+        for (int i = 0; i < array.length; i++) {
+            childOrder.put(array[i], i);
+        }
+        childOrderValid = true;
+    }
+
+    private Comparator<Spatial> createChildComparator() {
+        return new Comparator<Spatial>() {
+            @Override
+            public int compare(Spatial a, Spatial b) {
+                return childOrder.get(a) - childOrder.get(b);
+            }
+        };
+    }
+
+    private static Set<Spatial> createDirtySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Spatial, Boolean>());
+    }
+
+    /**
+     * @return the number of children whose world bound changed since the
+     * last update of the index
+     */
+    int getDirtyCount() {
+        synchronized (dirty) {
+            return dirty.size();
+        }
+    }
+
+    @Override
+    void childBoundUpdated(Spatial child) {
+        // children may be updated in parallel, or on demand before this node
+        synchronized (dirty) {
+            dirty.add(child);
+        }
+    }
+
+    @Override
+    void childCullHintChanged(Spatial child) {
+        synchronized (dirty) {
+            dirty.add(child);
+        }
+        // make sure the next updateGeometricState() visits this node
+        Spatial p = this;
+        while (p != null && (p.refreshFlags & RF_CHILD_LIGHTLIST) == 0) {
+            p.refreshFlags |= RF_CHILD_LIGHTLIST;
+            p = p.parent;
+        }
+    }
+
+    private void updateDirtyChildren() {
+        for (Spatial child : dirty) {
+            if (child.getParent() != this) {
+                // detached since
+                continue;
+            }
+            index.update(child);
+            if (child.getCullHint() == CullHint.Never) {
+                if (!neverCulled.contains(child)) {
+                    neverCulled.add(child);
+                }
+            } else {
+                neverCulled.remove(child);
+            }
+        }
+        dirty.clear();
+    }
+
+    @Override
+    public void updateGeometricState() {
+        super.updateGeometricState();
+        // bounds refreshed on demand leave this node without refresh flags
+        if (!dirty.isEmpty()) {
+            updateDirtyChildren();
+        }
+    }
+
+    @Override
+    public void updateGeometricState(ForkJoinPool pool) {
+        super.updateGeometricState(pool);
+        if (!dirty.isEmpty()) {
+            updateDirtyChildren();
+        }
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+
+        // the children are added back to the index on the next update
+        this.index = cloner.clone(index);
+        this.neverCulled = new ArrayList<>();
+        this.dirty = createDirtySet();
+        this.childOrder = new IdentityHashMap<>();
+        this.childOrderValid = false;
+        this.childComparator = createChildComparator();
+    }
+
+    /**
+     * Stack of lists reused by the collisions of nested indexed nodes.
+     */
+    private static class ScratchLists {
+
+        private final ArrayList<ArrayList<Spatial>> lists = new ArrayList<>();
+        private int depth = 0;
+
+        ArrayList<Spatial> acquire() {
+            if (depth == lists.size()) {
+                lists.add(new ArrayList<Spatial>());
+            }
+            return lists.get(depth++);
+        }
+
+        void release() {
+            lists.get(--depth).clear();
+        }
+    }
+}
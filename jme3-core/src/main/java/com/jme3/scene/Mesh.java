@@ -158,6 +158,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
     private BoundingVolume meshBound = new BoundingBox();
 
     private CollisionData collisionTree = null;
+    private boolean collisionTreeOutdated = false;
 
     private SafeArrayList<VertexBuffer> buffersList = new SafeArrayList<>(VertexBuffer.class);
     private IntMap<VertexBuffer> buffers = new IntMap<>();
@@ -229,6 +230,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
             // TODO: Collision tree cloning
             //clone.collisionTree = collisionTree != null ? collisionTree : null;
             clone.collisionTree = null; // it will get re-generated in any case
+            clone.collisionTreeOutdated = false;
 
             clone.buffers = new IntMap<>();
             clone.buffersList = new SafeArrayList<>(VertexBuffer.class);
@@ -312,6 +314,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
     public void cloneFields(Cloner cloner, Object original) {
         // Probably could clone this now but it will get regenerated anyway.
         this.collisionTree = null;
+        this.collisionTreeOutdated = false;
 
         this.meshBound = cloner.clone(meshBound);
         this.buffersList = cloner.clone(buffersList);
@@ -992,6 +995,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         BIHTree tree = new BIHTree(this);
         tree.construct();
         collisionTree = tree;
+        collisionTreeOutdated = false;
     }
 
     /**
@@ -1001,6 +1005,19 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
      */
     public void clearCollisionData() {
         collisionTree = null;
+        collisionTreeOutdated = false;
+    }
+
+    /**
+     * Marks the collision data as outdated after the positions of the mesh
+     * changed but its triangles did not, for example after skinning or
+     * morphing on the CPU. The next collision check refits the existing
+     * BIHTree to the new positions instead of building a new one.
+     *
+     * @see BIHTree#refit()
+     */
+    public void invalidateCollisionData() {
+        collisionTreeOutdated = collisionTree != null;
     }
 
     /**
@@ -1031,6 +1048,13 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
 
         if (collisionTree == null) {
             createCollisionData();
+        } else if (collisionTreeOutdated) {
+            collisionTreeOutdated = false;
+            if (collisionTree instanceof BIHTree) {
+                ((BIHTree) collisionTree).refit();
+            } else {
+                createCollisionData();
+            }
         }
 
         return collisionTree.collideWith(other, worldMatrix, worldBound, results);
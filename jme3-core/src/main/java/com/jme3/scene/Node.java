@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -146,6 +147,24 @@ public class Node extends Spatial {
         }
     }
 
+    /**
+     * Called when the world bound of a child gets recomputed, either during
+     * {@link #updateGeometricState()} or on demand. It may be called from
+     * several threads at once. Does nothing by default.
+     *
+     * @param child the child whose world bound is updated
+     */
+    void childBoundUpdated(Spatial child) {
+    }
+
+    /**
+     * Called when the cull hint of a child is set. Does nothing by default.
+     *
+     * @param child the child whose cull hint is set
+     */
+    void childCullHintChanged(Spatial child) {
+    }
+
     @Override
     protected void updateWorldBound() {
         super.updateWorldBound();
@@ -246,6 +265,57 @@ public class Node extends Spatial {
             // This branch has no geometric state that requires updates.
             return;
         }
+        updateOwnGeometricState();
+
+        if (!children.isEmpty()) {
+            // the important part- make sure child geometric state is refreshed
+            // first before updating own world bound. This saves
+            // a round-trip later on.
+            // NOTE 9/19/09
+            // Although it does save a round trip,
+            for (Spatial child : children.getArray()) {
+                child.updateGeometricState();
+            }
+        }
+
+        updateOwnWorldBound();
+    }
+
+    /**
+     * Same as {@link #updateGeometricState()}, except that independent
+     * subtrees are refreshed as fork-join tasks on the given pool.
+     * Nodes with many children that need refreshing are split across
+     * the pool's worker threads, while small branches are refreshed on the
+     * thread that visits them. The resulting world transforms, bounds and
+     * light lists are the same as with the sequential update.
+     * <p>
+     * {@link GeometryGroupNode}s and Node subclasses that override
+     * {@link #updateGeometricState()} are refreshed as a whole through that
+     * method, on whichever worker thread reaches them.
+     * Like {@link #updateGeometricState()}, this should only be called on
+     * a Node having no parent.
+     *
+     * @param pool the pool to run the update on (not null)
+     */
+    public void updateGeometricState(ForkJoinPool pool) {
+        if (refreshFlags == 0) {
+            return;
+        }
+        updateOwnGeometricState();
+
+        Spatial[] array = children.getArray();
+        if (array.length > 0) {
+            pool.invoke(new GeometricStateUpdateTask(array, 0, array.length));
+        }
+
+        updateOwnWorldBound();
+    }
+
+    /**
+     * Refreshes the state of this node that its children depend on:
+     * the world light list, transform and material parameter overrides.
+     */
+    void updateOwnGeometricState() {
         if ((refreshFlags & RF_LIGHTLIST) != 0) {
             updateWorldLightList();
         }
@@ -259,17 +329,13 @@ public class Node extends Spatial {
         }
 
         refreshFlags &= ~RF_CHILD_LIGHTLIST;
-        if (!children.isEmpty()) {
-            // the important part- make sure child geometric state is refreshed
-            // first before updating own world bound. This saves
-            // a round-trip later on.
-            // NOTE 9/19/09
-            // Although it does save a round trip,
-            for (Spatial child : children.getArray()) {
-                child.updateGeometricState();
-            }
-        }
+    }
 
+    /**
+     * Refreshes the world bound of this node, once the geometric state
+     * of all its children is up to date.
+     */
+    void updateOwnWorldBound() {
         if ((refreshFlags & RF_BOUND) != 0) {
             updateWorldBound();
         }
@@ -72,6 +72,22 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         CloneableSmartAsset, JmeCloneable, HasLocalTransform {
     private static final Logger logger = Logger.getLogger(Spatial.class.getName());
 
+    private static final int CLONE_SHARED = 0;
+    private static final int CLONE_MATERIALS = 1;
+    private static final int CLONE_DEEP = 2;
+
+    /**
+     * Cloners kept per thread and kind of clone, so spawning many copies
+     * of a model reuses their identity index and resolved clone plans
+     * instead of setting up a new cloner for every copy.
+     */
+    private static final ThreadLocal<Cloner[]> cloners = new ThreadLocal<Cloner[]>() {
+        @Override
+        protected Cloner[] initialValue() {
+            return new Cloner[3];
+        }
+    };
+
     /**
      * Specifies how frustum culling should be handled by
      * this spatial.
@@ -577,6 +593,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         // bounds
         // -> handled by subclass
         refreshFlags &= ~RF_BOUND;
+        if (parent != null) {
+            parent.childBoundUpdated(this);
+        }
     }
 
     protected void updateWorldLightList() {
@@ -1346,15 +1365,19 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      * @see Mesh#cloneForAnim()
      */
     public Spatial clone(boolean cloneMaterial) {
+        return cloneWith(cloneMaterial ? CLONE_MATERIALS : CLONE_SHARED);
+    }
+
+    private static Cloner createCloner(int kind) {
         // Setup the cloner for the type of cloning we want to do.
         Cloner cloner = new Cloner();
-
-        // First, we definitely do not want to clone our own parent
-        cloner.setClonedValue(parent, null);
+        if (kind == CLONE_DEEP) {
+            return cloner;
+        }
 
         // If we aren't cloning materials then we will make sure those
         // aren't cloned also
-        if (!cloneMaterial) {
+        if (kind == CLONE_SHARED) {
             cloner.setCloneFunction(Material.class, new IdentityCloneFunction<Material>());
         }
 
@@ -1362,17 +1385,38 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         // may choose to selectively force them to be cloned but
         // normally they will be shared
         cloner.setCloneFunction(Mesh.class, new IdentityCloneFunction<Mesh>());
+        return cloner;
+    }
+
+    private Spatial cloneWith(int kind) {
+        // Take the cloner out while it is used, so clones started from
+        // within this one get their own.
+        Cloner[] reusable = cloners.get();
+        Cloner cloner = reusable[kind];
+        reusable[kind] = null;
+        if (cloner == null) {
+            cloner = createCloner(kind);
+        }
+
+        try {
+            // First, we definitely do not want to clone our own parent
+            cloner.setClonedValue(parent, null);
 
-        // Clone it!
-        Spatial clone = cloner.clone(this);
+            // Clone it!
+            Spatial clone = cloner.clone(this);
 
-        // Because we've nulled the parent out we need to make sure
-        // the transforms and stuff get refreshed.
-        clone.setTransformRefresh();
-        clone.setLightListRefresh();
-        clone.setMatParamOverrideRefresh();
+            // Because we've nulled the parent out we need to make sure
+            // the transforms and stuff get refreshed.
+            clone.setTransformRefresh();
+            clone.setLightListRefresh();
+            clone.setMatParamOverrideRefresh();
 
-        return clone;
+            return clone;
+        } finally {
+            // Do not keep the originals and their clones reachable.
+            cloner.clearIndex();
+            reusable[kind] = cloner;
+        }
     }
 
     /**
@@ -1405,21 +1449,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      * @see Spatial#clone()
      */
     public Spatial deepClone() {
-        // Setup the cloner for the type of cloning we want to do.
-        Cloner cloner = new Cloner();
-
-        // First, we definitely do not want to clone our own parent
-        cloner.setClonedValue(parent, null);
-
-        Spatial clone = cloner.clone(this);
-
-        // Because we've nulled the parent out we need to make sure
-        // the transforms and stuff get refreshed.
-        clone.setTransformRefresh();
-        clone.setLightListRefresh();
-        clone.setMatParamOverrideRefresh();
-
-        return clone;
+        return cloneWith(CLONE_DEEP);
     }
 
     /**
@@ -1626,6 +1656,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     public void setCullHint(CullHint hint) {
         cullHint = hint;
+        if (parent != null) {
+            parent.childCullHintChanged(this);
+        }
     }
 
     /**
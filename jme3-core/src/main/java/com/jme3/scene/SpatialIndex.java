@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Ray;
+import com.jme3.renderer.Camera;
+import com.jme3.util.clone.JmeCloneable;
+import java.util.List;
+
+/**
+ * A <code>SpatialIndex</code> is an acceleration structure over the world
+ * bounds of a set of {@link Spatial}s, used to find the ones that are
+ * potentially visible without testing each of them.
+ * <p>
+ * The index does not track the spatials by itself, {@link #update(com.jme3.scene.Spatial)}
+ * must be called once the world bound of a spatial changed.
+ * Queries may return spatials that turn out to be culled or not to collide,
+ * but never miss one that is inside the query volume.
+ * <p>
+ * Cloning an index results in an empty index with the same settings.
+ *
+ * @see IndexedNode
+ */
+public interface SpatialIndex extends JmeCloneable {
+
+    /**
+     * Adds the spatial to the index, or refreshes it if it was already added,
+     * using its current world bound.
+     *
+     * @param spatial the spatial to add or refresh
+     */
+    public void update(Spatial spatial);
+
+    /**
+     * Removes the spatial from the index.
+     *
+     * @param spatial the spatial to remove
+     * @return true if the spatial was in the index
+     */
+    public boolean remove(Spatial spatial);
+
+    /**
+     * Removes all spatials from the index.
+     */
+    public void clear();
+
+    /**
+     * @return the number of spatials in the index
+     */
+    public int size();
+
+    /**
+     * Adds to the given list the spatials whose world bound may intersect
+     * the frustum of the camera.
+     * The plane state of the camera is left unchanged.
+     *
+     * @param cam the camera to cull against
+     * @param store the list to add the spatials to
+     */
+    public void findInFrustum(Camera cam, List<Spatial> store);
+
+    /**
+     * Adds to the given list the spatials whose world bound may be hit by
+     * the ray, up to its limit.
+     *
+     * @param ray the ray to test against
+     * @param store the list to add the spatials to
+     */
+    public void findIntersecting(Ray ray, List<Spatial> store);
+
+    /**
+     * Adds to the given list the spatials whose world bound may intersect
+     * the bounding volume.
+     *
+     * @param volume the bounding box or sphere to test against
+     * @param store the list to add the spatials to
+     */
+    public void findIntersecting(BoundingVolume volume, List<Spatial> store);
+}
@@ -137,7 +137,11 @@ public class InstancedGeometry extends Geometry {
         return transformInstanceData;
     }
 
-    private void updateInstance(Matrix4f worldMatrix, float[] store,
+    /**
+     * Encodes a world matrix into the 16 floats of an instance data
+     * entry, as expected by Instancing.glsllib.
+     */
+    protected void updateInstance(Matrix4f worldMatrix, float[] store,
                                 int offset, Matrix3f tempMat3,
                                 Quaternion tempQuat) {
         worldMatrix.toRotationMatrix(tempMat3);
@@ -353,7 +353,7 @@ public class BufferObject extends NativeObject {
                 return estimateArray(field.getValue(), multiplier);
             }
             case Matrix4Array: {
-                final int multiplier = 4 * 4 * 16;
+                final int multiplier = 4 * 4 * 4;
                 return estimateArray(field.getValue(), multiplier);
             }
             default: {
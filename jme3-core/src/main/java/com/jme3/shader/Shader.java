@@ -69,6 +69,11 @@ public final class Shader extends NativeObject {
      */
     private final IntMap<Attribute> attribs;
 
+    /**
+     * What was last written to the uniforms, see {@link UniformCache}.
+     */
+    private final UniformCache uniformCache = new UniformCache();
+
     /**
      * Type of shader. The shader will control the pipeline of its type.
      */
@@ -360,6 +365,15 @@ public final class Shader extends NativeObject {
         return boundUniforms;
     }
 
+    /**
+     * Internal use only.
+     *
+     * @return the record of what was last written to the uniforms
+     */
+    public UniformCache getUniformCache() {
+        return uniformCache;
+    }
+
     public Collection<ShaderSource> getSources(){
         return shaderSourceList;
     }
@@ -410,6 +424,7 @@ public final class Shader extends NativeObject {
      * time when the variable locations need to be refreshed.
      */
     public void resetLocations() {
+        uniformCache.invalidate();
         if (uniforms != null) {
             // NOTE: Shader sources will be reset separately from the shader itself.
             for (Uniform uniform : uniforms.values()) {
@@ -80,6 +80,9 @@ public class UniformBindingManager {
     private Vector2f resolution = new Vector2f();
     private Vector2f resolutionInv = new Vector2f();
     private Vector2f nearFar = new Vector2f();
+    // stamps of the binding inputs and of the current render pass, see UniformCache
+    private long bindingsStamp = UniformCache.nextStamp();
+    private long passStamp = UniformCache.nextStamp();
 
     /**
      * Internal use only.
@@ -87,6 +90,14 @@ public class UniformBindingManager {
      * based on the current world state.
      */
     public void updateUniformBindings(Shader shader) {
+        UniformCache cache = shader.getUniformCache();
+        cache.beginPass(passStamp);
+        if (cache.getBindingsStamp() == bindingsStamp) {
+            // nothing the bindings depend on changed since they were set
+            return;
+        }
+        cache.setBindingsStamp(bindingsStamp);
+
         ArrayList<Uniform> params = shader.getBoundUniforms();
         for (int i = 0; i < params.size(); i++) {
             Uniform u = params.get(i);
@@ -227,7 +238,10 @@ public class UniformBindingManager {
      * @param mat The world matrix to set
      */
     public void setWorldMatrix(Matrix4f mat) {
-        worldMatrix.set(mat);
+        if (!worldMatrix.equals(mat)) {
+            worldMatrix.set(mat);
+            bindingsStamp = UniformCache.nextStamp();
+        }
     }
 
     /**
@@ -238,6 +252,7 @@ public class UniformBindingManager {
      */
     public void setTimer(com.jme3.system.Timer timer) {
         this.timer = timer;
+        bindingsStamp = UniformCache.nextStamp();
     }
 
     public void setCamera(Camera cam, Matrix4f viewMatrix, Matrix4f projMatrix, Matrix4f viewProjMatrix) {
@@ -252,6 +267,9 @@ public class UniformBindingManager {
 
         near = cam.getFrustumNear();
         far = cam.getFrustumFar();
+
+        bindingsStamp = UniformCache.nextStamp();
+        passStamp = UniformCache.nextStamp();
     }
 
     public void setViewPort(int viewX, int viewY, int viewWidth, int viewHeight) {
@@ -259,6 +277,7 @@ public class UniformBindingManager {
         this.viewY = viewY;
         this.viewWidth = viewWidth;
         this.viewHeight = viewHeight;
+        bindingsStamp = UniformCache.nextStamp();
     }
  
     /**
@@ -270,5 +289,7 @@ public class UniformBindingManager {
         // time for this frame to avoid inter-frame drift.
         time = timer.getTimeInSeconds();
         tpf = timer.getTimePerFrame();
+        bindingsStamp = UniformCache.nextStamp();
+        passStamp = UniformCache.nextStamp();
     }
 }
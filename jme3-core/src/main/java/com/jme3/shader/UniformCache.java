@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shader;
+
+import com.jme3.material.MatParamOverride;
+import com.jme3.renderer.Renderer;
+import com.jme3.texture.Texture;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers what was last written to the uniforms of a {@link Shader}, so
+ * that {@link com.jme3.material.Material} and {@link UniformBindingManager}
+ * can skip re-evaluating values that did not change since.
+ * <p>
+ * Changes are tracked with stamps: every time the material parameters or
+ * the inputs of the uniform bindings change, their owner takes a new stamp
+ * from {@link #nextStamp()}. Stamps are never reused, so a stamp stored
+ * here can only match the exact state it was stored for.
+ * <p>
+ * Internal use only.
+ */
+public final class UniformCache {
+
+    private static final AtomicLong STAMPS = new AtomicLong();
+
+    private long bindingsStamp = -1;
+    private long passStamp = -1;
+    private long materialStamp = -1;
+    private MatParamOverride[] worldOverrides;
+    private MatParamOverride[] forcedOverrides;
+    private Texture[] textures = new Texture[4];
+    private int textureCount;
+
+    UniformCache() {
+    }
+
+    /**
+     * @return a new stamp, different from all stamps returned before
+     */
+    public static long nextStamp() {
+        return STAMPS.incrementAndGet();
+    }
+
+    /**
+     * @return the stamp of the uniform bindings last written to the shader
+     */
+    public long getBindingsStamp() {
+        return bindingsStamp;
+    }
+
+    public void setBindingsStamp(long bindingsStamp) {
+        this.bindingsStamp = bindingsStamp;
+    }
+
+    /**
+     * Starts a render pass. The material parameters written during an
+     * earlier pass are not trusted anymore, since their values may have
+     * been modified in place since then.
+     *
+     * @param passStamp the stamp of the pass
+     */
+    public void beginPass(long passStamp) {
+        if (this.passStamp != passStamp) {
+            this.passStamp = passStamp;
+            invalidateMaterial();
+        }
+    }
+
+    /**
+     * Checks if the material parameters last written to the shader are
+     * the ones of the given state.
+     *
+     * @param materialStamp the stamp of the material parameters
+     * @param worldOverrides the overrides of the geometry being rendered
+     * @param forcedOverrides the overrides forced by the render manager,
+     * or null
+     * @return true if the shader's material uniforms are up to date
+     */
+    public boolean isMaterialCurrent(long materialStamp, MatParamOverride[] worldOverrides,
+            MatParamOverride[] forcedOverrides) {
+        return this.materialStamp == materialStamp
+                && sameOverrides(this.worldOverrides, worldOverrides)
+                && sameOverrides(this.forcedOverrides, forcedOverrides);
+    }
+
+    /**
+     * Records the material state that is about to be written to the shader.
+     * The textures it uses are recorded with
+     * {@link #setTexture(int, com.jme3.texture.Texture) }.
+     */
+    public void setMaterial(long materialStamp, MatParamOverride[] worldOverrides,
+            MatParamOverride[] forcedOverrides) {
+        this.materialStamp = materialStamp;
+        this.worldOverrides = worldOverrides;
+        this.forcedOverrides = forcedOverrides;
+        Arrays.fill(textures, 0, textureCount, null);
+        textureCount = 0;
+    }
+
+    /**
+     * Records the texture the material bound to a texture unit.
+     */
+    public void setTexture(int unit, Texture texture) {
+        if (unit >= textures.length) {
+            textures = Arrays.copyOf(textures, Math.max(unit + 1, textures.length * 2));
+        }
+        textures[unit] = texture;
+        textureCount = Math.max(textureCount, unit + 1);
+    }
+
+    /**
+     * Binds the textures recorded for the current material again, other
+     * shaders may have used the texture units since.
+     *
+     * @param renderer the renderer to bind the textures with
+     * @return the first texture unit not used by the material
+     */
+    public int bindTextures(Renderer renderer) {
+        for (int i = 0; i < textureCount; i++) {
+            renderer.setTexture(i, textures[i]);
+        }
+        return textureCount;
+    }
+
+    /**
+     * Forgets the material last written to the shader.
+     */
+    public void invalidateMaterial() {
+        materialStamp = -1;
+        worldOverrides = null;
+        forcedOverrides = null;
+        Arrays.fill(textures, 0, textureCount, null);
+        textureCount = 0;
+    }
+
+    /**
+     * Forgets everything written to the shader.
+     */
+    public void invalidate() {
+        bindingsStamp = -1;
+        invalidateMaterial();
+    }
+
+    private static boolean sameOverrides(MatParamOverride[] a, MatParamOverride[] b) {
+        if (a == b) {
+            return true;
+        }
+        int lengthA = a == null ? 0 : a.length;
+        int lengthB = b == null ? 0 : b.length;
+        if (lengthA != lengthB) {
+            return false;
+        }
+        for (int i = 0; i < lengthA; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -43,11 +43,13 @@ import com.jme3.renderer.ViewPort;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.IndexedNode;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.util.TempVars;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -61,6 +63,16 @@ import java.util.List;
  */
 public class ShadowUtil {
 
+    // children found in the indexes of IndexedNodes, used as a stack by the
+    // recursive traversals: each level appends its children and then
+    // truncates the list back to where it started
+    private static final ThreadLocal<ArrayList<Spatial>> indexedChildren = new ThreadLocal<ArrayList<Spatial>>() {
+        @Override
+        protected ArrayList<Spatial> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+
     /**
      * Updates a points arrays with the frustum corners of the provided camera.
      *
@@ -668,19 +680,37 @@ public class ShadowUtil {
         if (scene.getCullHint() == Spatial.CullHint.Always) return;
         camera.setPlaneState(0);
         if (camera.contains(scene.getWorldBound()) != Camera.FrustumIntersect.Outside) {
-            for (Spatial child: scene.getChildren()) {
-                if (child instanceof Node) addGeometriesInCamFrustumFromNode(camera, (Node)child, mode, outputGeometryList);
-                else if (child instanceof Geometry && child.getCullHint() != Spatial.CullHint.Always) {
-                    camera.setPlaneState(0);
-                    if (checkShadowMode(child.getShadowMode(), mode) &&
-                            !((Geometry)child).isGrouped() &&
-                            camera.contains(child.getWorldBound()) != Camera.FrustumIntersect.Outside) {
-                      outputGeometryList.add((Geometry)child);
-                    }
+            if (scene instanceof IndexedNode) {
+                ArrayList<Spatial> children = indexedChildren.get();
+                int start = children.size();
+                ((IndexedNode) scene).getChildrenInFrustum(camera, children);
+                for (int i = start, end = children.size(); i < end; i++) {
+                    addGeometryInCamFrustum(camera, children.get(i), mode, outputGeometryList);
+                }
+                truncate(children, start);
+            } else {
+                for (Spatial child: scene.getChildren()) {
+                    addGeometryInCamFrustum(camera, child, mode, outputGeometryList);
                 }
             }
         }
     }
+
+    private static void addGeometryInCamFrustum(Camera camera, Spatial child, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
+        if (child instanceof Node) addGeometriesInCamFrustumFromNode(camera, (Node)child, mode, outputGeometryList);
+        else if (child instanceof Geometry && child.getCullHint() != Spatial.CullHint.Always) {
+            camera.setPlaneState(0);
+            if (checkShadowMode(child.getShadowMode(), mode) &&
+                    !((Geometry)child).isGrouped() &&
+                    camera.contains(child.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+              outputGeometryList.add((Geometry)child);
+            }
+        }
+    }
+
+    private static void truncate(ArrayList<Spatial> list, int size) {
+        list.subList(size, list.size()).clear();
+    }
     
     /**
      * Populates the outputGeometryList with the geometry of the
@@ -751,8 +781,18 @@ public class ShadowUtil {
             if (scene instanceof Node)
             {
                 Node node = (Node)scene;
-                for (Spatial child: node.getChildren()) {
-                    addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, child, mode, outputGeometryList);
+                if (scene instanceof IndexedNode && cameras.length == 1) {
+                    ArrayList<Spatial> children = indexedChildren.get();
+                    int start = children.size();
+                    ((IndexedNode) scene).getChildrenInFrustum(cameras[0], children);
+                    for (int i = start, end = children.size(); i < end; i++) {
+                        addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, children.get(i), mode, outputGeometryList);
+                    }
+                    truncate(children, start);
+                } else {
+                    for (Spatial child: node.getChildren()) {
+                        addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, child, mode, outputGeometryList);
+                    }
                 }
             }
             else if (scene instanceof Geometry) {
@@ -1276,6 +1276,9 @@ public final class BufferUtils {
      * and cleans the direct buffers. However, as this doesn't happen
      * immediately after discarding all references to a direct buffer, it's easy
      * to OutOfMemoryError yourself using direct buffers.
+     * <p>
+     * Views of a memory mapped file are left alone, as releasing them would
+     * unmap the whole file.
      *
      * @param toBeDestroyed the buffer to de-allocate (not null)
      */
@@ -31,10 +31,12 @@
  */
 package com.jme3.util;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +49,7 @@ public final class ReflectionAllocator implements BufferAllocator {
     private static Method cleanMethod = null;
     private static Method viewedBufferMethod = null;
     private static Method freeMethod = null;
+    private static Field mappedFileField = null;
 
     static {
         // Oracle JRE / OpenJDK
@@ -58,6 +61,15 @@ public final class ReflectionAllocator implements BufferAllocator {
             viewedBufferMethod = loadMethod("sun.nio.ch.DirectBuffer", "attachment");
         }
 
+        // set on the buffers returned by FileChannel.map only
+        try {
+            mappedFileField = MappedByteBuffer.class.getDeclaredField("fd");
+            mappedFileField.setAccessible(true);
+        } catch (Throwable t) {
+            // not available, or in an unexported module
+            mappedFileField = null;
+        }
+
         // Apache Harmony (allocated directly, to not trigger allocator used
         // logic in BufferUtils)
         ByteBuffer bb = ByteBuffer.allocateDirect(1);
@@ -89,6 +101,15 @@ public final class ReflectionAllocator implements BufferAllocator {
         }
     }
 
+    /**
+     * Tests whether the buffer is a memory mapped file, as returned by
+     * FileChannel.map.
+     */
+    private static boolean isMappedFile(Object buffer) throws IllegalAccessException {
+        return mappedFileField != null && buffer instanceof MappedByteBuffer
+                && mappedFileField.get(buffer) != null;
+    }
+
     @Override
     /**
      * This function explicitly calls the Cleaner method of a direct buffer.
@@ -149,7 +170,13 @@ public final class ReflectionAllocator implements BufferAllocator {
                             // first
                             Object viewedBuffer = localViewedBufferMethod.invoke(toBeDestroyed);
                             if (viewedBuffer != null) {
-                                if (viewedBuffer instanceof Buffer) {
+                                if (isMappedFile(viewedBuffer)) {
+                                    // A view of a mapped file, e.g. loaded by
+                                    // the BinaryImporter: unmapping the file
+                                    // would invalidate all its other views
+                                    Logger.getLogger(BufferUtils.class.getName()).log(Level.FINE,
+                                            "Buffer is a view of a mapped file, not destroyed: {0}", toBeDestroyed);
+                                } else if (viewedBuffer instanceof Buffer) {
                                     destroyDirectBuffer((Buffer) viewedBuffer);
                                 }
                                 // Else nothing to do, we may be on android which has an
@@ -34,6 +34,7 @@ package com.jme3.util;
 import com.jme3.bounding.BoundingBox;
 import com.jme3.collision.CollisionResults;
 import com.jme3.collision.bih.BIHNode.BIHStackData;
+import com.jme3.collision.bih.BIHTree;
 import com.jme3.math.*;
 import com.jme3.scene.Spatial;
 import java.nio.FloatBuffer;
@@ -84,6 +85,7 @@ public class TempVars {
     private boolean isUsed = false;
 
     private TempVars() {
+        collisionResults.setPooled(true);
     }
 
     /**
@@ -226,4 +228,9 @@ public class TempVars {
     public final CollisionResults collisionResults = new CollisionResults();
     public final float[] bihSwapTmp = new float[9];
     public final ArrayList<BIHStackData> bihStack = new ArrayList<BIHStackData>();
+    public final int[] bihNodeStack = new int[BIHTree.MAX_TREE_DEPTH + 2];
+    public final float[] bihRangeStack = new float[(BIHTree.MAX_TREE_DEPTH + 2) * 2];
+    public final float[] bihRayOrigin = new float[3];
+    public final float[] bihRayInvDirection = new float[3];
+    public final Ray bihRay = new Ray();
 }
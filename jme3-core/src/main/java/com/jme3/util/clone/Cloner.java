@@ -116,6 +116,13 @@ public class Cloner {
      */
     private static final Map<Class, Method> methodCache = new ConcurrentHashMap<>();
 
+    /**
+     *  How instances of each type are cloned, resolved on first use so
+     *  that later clones of the same type skip the function search and
+     *  the reflective method lookup.
+     */
+    private Map<Class<?>, ClonePlan> plans = new HashMap<Class<?>, ClonePlan>();
+
     /**
      *  Creates a new cloner with only default clone functions and an empty
      *  object index.
@@ -215,58 +222,61 @@ public class Cloner {
             return type.cast(clone);
         }
 
-        // See if there is a custom function... that trumps everything.
-        CloneFunction<T> f = getCloneFunction(type);
-        if( f != null ) {
-            T result = f.cloneObject(this, object);
-
-            // Store the object in the identity map so that any circular references
-            // are resolvable.
-            index.put(object, result);
-
-            // Now call the function again to deep clone the fields
-            f.cloneFields(this, result, object);
-
-            if( log.isLoggable(Level.FINER) ) {
-                if( result == null ) {
-                    log.finer("cloned:" + object.getClass() + "@" + System.identityHashCode(object)
-                                + " as transformed:null");
-                } else {
-                    log.finer("clone:" + object.getClass() + "@" + System.identityHashCode(object)
-                                + " as transformed:" + result.getClass() + "@" + System.identityHashCode(result));
+        ClonePlan plan = getPlan(type);
+        switch( plan.kind ) {
+            case ClonePlan.FUNCTION:
+                // See if there is a custom function... that trumps everything.
+                @SuppressWarnings("unchecked")
+                CloneFunction<T> f = (CloneFunction<T>)plan.function;
+                T result = f.cloneObject(this, object);
+
+                // Store the object in the identity map so that any circular references
+                // are resolvable.
+                index.put(object, result);
+
+                // Now call the function again to deep clone the fields
+                f.cloneFields(this, result, object);
+
+                if( log.isLoggable(Level.FINER) ) {
+                    if( result == null ) {
+                        log.finer("cloned:" + object.getClass() + "@" + System.identityHashCode(object)
+                                    + " as transformed:null");
+                    } else {
+                        log.finer("clone:" + object.getClass() + "@" + System.identityHashCode(object)
+                                    + " as transformed:" + result.getClass() + "@" + System.identityHashCode(result));
+                    }
+                }
+                return result;
+            case ClonePlan.ARRAY:
+                // Perform an array clone
+                clone = arrayClone(object);
+
+                // Array clone already indexes the clone
+                break;
+            case ClonePlan.JME_CLONEABLE:
+                // Use the two-step cloning semantics
+                clone = ((JmeCloneable)object).jmeClone();
+
+                // Store the object in the identity map so that any circular references
+                // are resolvable
+                index.put(object, clone);
+
+                ((JmeCloneable)clone).cloneFields(this, object);
+                break;
+            case ClonePlan.JAVA_CLONE:
+                // Perform a regular Java shallow clone
+                try {
+                    clone = javaClone(object, plan.method);
+                } catch( CloneNotSupportedException e ) {
+                    throw new IllegalArgumentException("Object is not cloneable, type:" + type, e);
                 }
-            }
-            return result;
-        }
-
-        if( object.getClass().isArray() ) {
-            // Perform an array clone
-            clone = arrayClone(object);
-
-            // Array clone already indexes the clone
-        } else if( object instanceof JmeCloneable ) {
-            // Use the two-step cloning semantics
-            clone = ((JmeCloneable)object).jmeClone();
-
-            // Store the object in the identity map so that any circular references
-            // are resolvable
-            index.put(object, clone);
-
-            ((JmeCloneable)clone).cloneFields(this, object);
-        } else if( object instanceof Cloneable ) {
-
-            // Perform a regular Java shallow clone
-            try {
-                clone = javaClone(object);
-            } catch( CloneNotSupportedException e ) {
-                throw new IllegalArgumentException("Object is not cloneable, type:" + type, e);
-            }
 
-            // Store the object in the identity map so that any circular references
-            // are resolvable
-            index.put(object, clone);
-        } else {
-            throw new IllegalArgumentException("Object is not cloneable, type:" + type);
+                // Store the object in the identity map so that any circular references
+                // are resolvable
+                index.put(object, clone);
+                break;
+            default:
+                throw new IllegalArgumentException("Object is not cloneable, type:" + type);
         }
 
         if( log.isLoggable(Level.FINER) ) {
@@ -290,6 +300,7 @@ public class Cloner {
         } else {
             functions.put(type, function);
         }
+        plans.clear();
     }
 
     /**
@@ -357,25 +368,63 @@ public class Cloner {
         if( object == null ) {
             return null;
         }
-        Method m = methodCache.get(object.getClass());
+        return javaClone(object, findCloneMethod(object.getClass()));
+    }
+
+    private <T> T javaClone( T object, Method m ) throws CloneNotSupportedException {
+        if( m == null ) {
+            throw new CloneNotSupportedException("No public clone method found for:" + object.getClass());
+        }
+        try {
+            Class<? extends T> type = objectClass(object);
+            return type.cast(m.invoke(object));
+        } catch( IllegalAccessException | InvocationTargetException e ) {
+            throw new RuntimeException("Error cloning object of type:" + object.getClass(), e);
+        }
+    }
+
+    /**
+     *  Returns the public clone() method of the type, or null if it
+     *  has none.
+     */
+    private static Method findCloneMethod( Class<?> type ) {
+        Method m = methodCache.get(type);
         if( m == null ) {
             try {
                 // Lookup the method and cache it
-                m = object.getClass().getMethod("clone");
+                m = type.getMethod("clone");
             } catch( NoSuchMethodException e ) {
-                throw new CloneNotSupportedException("No public clone method found for:" + object.getClass());
+                return null;
             }
-            methodCache.put(object.getClass(), m);
+            methodCache.put(type, m);
 
             // Note: yes we might cache the method twice... but so what?
         }
+        return m;
+    }
 
-        try {
-            Class<? extends T> type = objectClass(object);
-            return type.cast(m.invoke(object));
-        } catch( IllegalAccessException | InvocationTargetException e ) {
-            throw new RuntimeException("Error cloning object of type:" + object.getClass(), e);
+    /**
+     *  Returns how instances of the specified type are cloned, resolving
+     *  it on first use.
+     */
+    private ClonePlan getPlan( Class<?> type ) {
+        ClonePlan plan = plans.get(type);
+        if( plan == null ) {
+            CloneFunction<?> f = getCloneFunction(type);
+            if( f != null ) {
+                plan = new ClonePlan(ClonePlan.FUNCTION, f, null);
+            } else if( type.isArray() ) {
+                plan = new ClonePlan(ClonePlan.ARRAY, null, null);
+            } else if( JmeCloneable.class.isAssignableFrom(type) ) {
+                plan = new ClonePlan(ClonePlan.JME_CLONEABLE, null, null);
+            } else if( Cloneable.class.isAssignableFrom(type) ) {
+                plan = new ClonePlan(ClonePlan.JAVA_CLONE, null, findCloneMethod(type));
+            } else {
+                plan = new ClonePlan(ClonePlan.NOT_CLONEABLE, null, null);
+            }
+            plans.put(type, plan);
         }
+        return plan;
     }
 
     /**
@@ -404,12 +453,34 @@ public class Cloner {
             System.arraycopy(object, 0, clone, 0, size);
         } else {
             // Else it's an object array so we'll clone it and its children
+            Object[] source = (Object[])object;
+            Object[] target = (Object[])clone;
             for( int i = 0; i < size; i++ ) {
-                Object element = clone(Array.get(object, i));
-                Array.set(clone, i, element);
+                target[i] = clone(source[i]);
             }
         }
 
         return type.cast(clone);
     }
+
+    /**
+     *  The resolved way of cloning instances of one type.
+     */
+    private static final class ClonePlan {
+        static final int FUNCTION = 0;
+        static final int ARRAY = 1;
+        static final int JME_CLONEABLE = 2;
+        static final int JAVA_CLONE = 3;
+        static final int NOT_CLONEABLE = 4;
+
+        final int kind;
+        final CloneFunction<?> function;
+        final Method method;
+
+        ClonePlan( int kind, CloneFunction<?> function, Method method ) {
+            this.kind = kind;
+            this.function = function;
+            this.method = method;
+        }
+    }
 }
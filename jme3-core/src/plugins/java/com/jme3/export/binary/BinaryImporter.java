@@ -32,14 +32,24 @@
 package com.jme3.export.binary;
 
 import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.MaterialKey;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
+import com.jme3.scene.Geometry;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,7 +78,8 @@ public final class BinaryImporter implements JmeImporter {
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    private ByteBuffer data;
+    private boolean memoryMapped;
     private int aliasWidth;
     private int formatVersion;
 
@@ -133,9 +144,98 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(InputStream is, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
-        contentTable.clear();
         BufferedInputStream bis = new BufferedInputStream(is);
-        
+        int id = readHeader(bis, listener);
+        byte[] dataArray = readData(bis, listener, baos);
+        return readRoot(ByteBuffer.wrap(dataArray), id);
+    }
+
+    /**
+     * Reads the object data following the header.
+     */
+    private byte[] readData(InputStream bis, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
+        if (baos == null) {
+                // usually the rest of the file, or what can be read without blocking
+                baos = new ByteArrayOutputStream(Math.max(4096, bis.available()));
+        } else {
+                baos.reset();
+        }
+        int size = -1;
+        byte[] cache = new byte[4096];
+        while((size = bis.read(cache)) != -1) {
+            baos.write(cache, 0, size);
+            if (listener != null) listener.readBytes(size);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Collects the assets a binary file refers to without loading it: the
+     * keys of textures and linked models, and the J3M materials assigned to
+     * geometries. Only those objects are decoded, so this is much cheaper
+     * than a load and lets the dependencies be fetched ahead of, and in
+     * parallel to, the file itself.
+     *
+     * @param is the stream to read the file from
+     * @return the keys referenced by the file, in file order, without
+     * duplicates
+     * @throws IOException if the file cannot be read
+     */
+    public List<AssetKey> readDependencies(InputStream is) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(is);
+        readHeader(bis, null);
+        data = ByteBuffer.wrap(readData(bis, null, null));
+        try {
+            List<ClassLoader> loaders = assetManager != null ? assetManager.getClassLoaders() : null;
+            HashMap<String, Class<?>> types = new HashMap<String, Class<?>>();
+            for (Map.Entry<String, BinaryClassObject> entry : classes.entrySet()) {
+                try {
+                    types.put(entry.getKey(), SavableClassUtil.forName(entry.getValue().className, loaders));
+                } catch (ClassNotFoundException ex) {
+                    // Cannot be a dependency, skip it.
+                }
+            }
+
+            LinkedHashSet<AssetKey> keys = new LinkedHashSet<AssetKey>();
+            for (Map.Entry<Integer, Integer> entry : locationTable.entrySet()) {
+                int loc = entry.getValue();
+                String alias = readString(aliasWidth, loc);
+                Class<?> type = types.get(alias);
+                if (type == null) {
+                    continue;
+                }
+                if (AssetKey.class.isAssignableFrom(type)) {
+                    Savable key = readObject(entry.getKey());
+                    if (key != null) {
+                        keys.add((AssetKey) key);
+                    }
+                } else if (Geometry.class.isAssignableFrom(type)) {
+                    loc += aliasWidth;
+                    int dataLength = data.getInt(loc);
+                    loc += 4;
+                    BinaryInputCapsule cap = new BinaryInputCapsule(this, null, classes.get(alias));
+                    cap.setContent(data, loc, loc + dataLength);
+                    String matName = cap.readString("materialName", null);
+                    if (matName != null) {
+                        keys.add(new MaterialKey(matName));
+                    }
+                }
+            }
+            return new ArrayList<AssetKey>(keys);
+        } finally {
+            data = null;
+            contentTable.clear();
+        }
+    }
+
+    /**
+     * Reads the class and location tables.
+     *
+     * @return the id of the root object
+     */
+    private int readHeader(InputStream bis, ReadListener listener) throws IOException {
+        contentTable.clear();
+
         int numClasses;
         
         // Try to read signature
@@ -225,32 +325,23 @@ public final class BinaryImporter implements JmeImporter {
         int id = ByteUtils.readInt(bis);
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
+        return id;
+    }
 
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
-        } else {
-                baos.reset();
-        }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
-        }
-        bis = null;
-
-        dataArray = baos.toByteArray();
-        baos = null;
-
-        Savable rVal = readObject(id);
-        if (debug) {
-            logger.fine("Importer Stats: ");
-            logger.log(Level.FINE, "Tags: {0}", numClasses);
-            logger.log(Level.FINE, "Objects: {0}", numLocs);
-            logger.log(Level.FINE, "Data Size: {0}", dataArray.length);
+    private Savable readRoot(ByteBuffer data, int id) {
+        this.data = data;
+        try {
+            Savable rVal = readObject(id);
+            if (debug) {
+                logger.fine("Importer Stats: ");
+                logger.log(Level.FINE, "Tags: {0}", classes.size());
+                logger.log(Level.FINE, "Objects: {0}", locationTable.size());
+                logger.log(Level.FINE, "Data Size: {0}", data.capacity());
+            }
+            return rVal;
+        } finally {
+            this.data = null;
         }
-        dataArray = null;
-        return rVal;
     }
 
     public Savable load(URL f) throws IOException {
@@ -269,6 +360,9 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(File f, ReadListener listener) throws IOException {
+        if (memoryMapped) {
+            return loadMapped(f, listener);
+        }
         FileInputStream fis = new FileInputStream(f);
         try {
             return load(fis, listener);
@@ -277,6 +371,62 @@ public final class BinaryImporter implements JmeImporter {
         }
     }
 
+    /**
+     * Memory maps the file and decodes objects straight from the mapping,
+     * instead of first copying the whole file onto the heap. Writable files
+     * are mapped copy-on-write and large buffers are returned as views of
+     * the mapping, so changes to them never reach the file;
+     * {@link com.jme3.util.BufferUtils#destroyDirectBuffer(java.nio.Buffer)}
+     * leaves such buffers to the garbage collector, which unmaps the file
+     * once none of them is referenced anymore.
+     * Read-only files have their buffers copied out of the mapping.
+     */
+    private Savable loadMapped(File f, ReadListener listener) throws IOException {
+        boolean writable = f.canWrite();
+        MappedByteBuffer mapped;
+        RandomAccessFile raf = new RandomAccessFile(f, writable ? "rw" : "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cannot map files larger than 2 GB: " + f);
+            }
+            // The mapping stays valid once the channel is closed.
+            mapped = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY,
+                                 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        ByteBufferInputStream header = new ByteBufferInputStream(mapped.duplicate());
+        int id = readHeader(header, listener);
+        mapped.position(header.getPosition());
+        ByteBuffer dataBuffer = mapped.slice();
+        if (listener != null) listener.readBytes(dataBuffer.capacity());
+
+        return readRoot(dataBuffer, id);
+    }
+
+    /**
+     * Enables memory mapped loading of files through {@link #load(File)}.
+     * Large .j3o files then neither need to fit on the heap twice nor be
+     * read completely before decoding starts, and large float, int, short
+     * and byte buffers are exposed as direct views of the file instead of
+     * being copied.
+     *
+     * @param memoryMapped true to memory map files
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return true if files are memory mapped
+     * @see #setMemoryMapped(boolean)
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
     public Savable load(byte[] data) throws IOException {
         ByteArrayInputStream bais = new ByteArrayInputStream(data);
         Savable rVal = load(bais);
@@ -299,12 +449,12 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     protected String readString(int length, int offset) throws IOException {
-        byte[] data = new byte[length];
+        byte[] bytes = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            bytes[j] = data.get(j+offset);
         }
 
-        return new String(data);
+        return new String(bytes);
     }
 
     public Savable readObject(int id) {
@@ -326,7 +476,7 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = data.getInt(loc);
             loc+=4;
 
             Savable out = null;
@@ -337,7 +487,7 @@ public final class BinaryImporter implements JmeImporter {
             }
 
             BinaryInputCapsule cap = new BinaryInputCapsule(this, out, bco);
-            cap.setContent(dataArray, loc, loc+dataLength);
+            cap.setContent(data, loc, loc+dataLength);
 
             capsuleTable.put(out, cap);
             contentTable.put(id, out);
@@ -353,4 +503,35 @@ public final class BinaryImporter implements JmeImporter {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the header of a memory mapped file.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int getPosition() {
+            return buffer.position();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
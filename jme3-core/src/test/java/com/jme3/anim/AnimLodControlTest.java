@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.math.Transform;
+import com.jme3.scene.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the update reductions applied by {@link AnimLodControl}.
+ */
+public class AnimLodControlTest {
+
+    @Test
+    public void testUpdateInterval() {
+        Node model = AnimationBatchTest.createModel(0f);
+        AnimLodControl lod = new AnimLodControl();
+        lod.addLevel(1f, 3, -1);
+        lod.setFreezeOffscreen(false);
+        model.addControl(lod);
+        AnimComposer composer = model.getControl(AnimComposer.class);
+
+        int updates = 0;
+        double time = composer.getTime();
+        for (int frame = 0; frame < 9; frame++) {
+            model.updateLogicalState(0.1f);
+            if (composer.getTime() != time) {
+                updates++;
+                time = composer.getTime();
+                // skipped frames are caught up, not lost
+                Assert.assertEquals(0.1 * (frame + 1), time, 1e-5);
+            }
+            Assert.assertEquals(updates, lod.getPoseCount());
+        }
+        Assert.assertEquals(3, updates);
+        Assert.assertEquals(0, lod.getCurrentLevel());
+    }
+
+    @Test
+    public void testUpdatesStaggered() {
+        int models = 6;
+        AnimComposer[] composers = new AnimComposer[models];
+        Node[] nodes = new Node[models];
+        for (int i = 0; i < models; i++) {
+            nodes[i] = AnimationBatchTest.createModel(0f);
+            AnimLodControl lod = new AnimLodControl();
+            lod.addLevel(1f, 3, -1);
+            lod.setFreezeOffscreen(false);
+            nodes[i].addControl(lod);
+            composers[i] = nodes[i].getControl(AnimComposer.class);
+        }
+
+        int[] updates = new int[models];
+        for (int frame = 0; frame < 3; frame++) {
+            int updatedThisFrame = 0;
+            for (int i = 0; i < models; i++) {
+                AnimLodControl lod = nodes[i].getControl(AnimLodControl.class);
+                int poses = lod.getPoseCount();
+                nodes[i].updateLogicalState(0.1f);
+                if (lod.getPoseCount() != poses) {
+                    updatedThisFrame++;
+                    updates[i]++;
+                }
+            }
+            Assert.assertEquals(2, updatedThisFrame);
+        }
+        for (int i = 0; i < models; i++) {
+            Assert.assertEquals(1, updates[i]);
+        }
+    }
+
+    @Test
+    public void testSkinningBeforeComposer() {
+        Node model = AnimationBatchTest.createModel(0f);
+        // move the composer after the skinning control
+        AnimComposer composer = model.getControl(AnimComposer.class);
+        model.removeControl(composer);
+        model.addControl(composer);
+        AnimLodControl lod = new AnimLodControl();
+        lod.addLevel(1f, 2, -1);
+        lod.setFreezeOffscreen(false);
+        model.addControl(lod);
+        Armature armature = model.getControl(SkinningControl.class).getArmature();
+        Joint joint = armature.getJoint(armature.getJointCount() - 1);
+
+        // each evaluation reaches the armature on the next frame
+        int armatureUpdates = 0;
+        Transform last = joint.getModelTransform().clone();
+        for (int frame = 0; frame < 8; frame++) {
+            model.updateLogicalState(0.1f);
+            if (!joint.getModelTransform().equals(last)) {
+                armatureUpdates++;
+                last = joint.getModelTransform().clone();
+            }
+        }
+        int evaluations = lod.getPoseCount();
+        model.updateLogicalState(0.1f);
+        if (!joint.getModelTransform().equals(last)) {
+            armatureUpdates++;
+        }
+        Assert.assertEquals(4, evaluations);
+        Assert.assertEquals(evaluations, armatureUpdates);
+    }
+
+    @Test
+    public void testFreezeOffscreen() {
+        Node model = AnimationBatchTest.createModel(0f);
+        AnimLodControl lod = new AnimLodControl();
+        model.addControl(lod);
+        AnimComposer composer = model.getControl(AnimComposer.class);
+
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(0.1, composer.getTime(), 1e-6);
+
+        // never rendered since the last update
+        model.updateLogicalState(0.1f);
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(0.1, composer.getTime(), 1e-6);
+        Assert.assertEquals(1, lod.getPoseCount());
+
+        lod.render(null, null);
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(0.4, composer.getTime(), 1e-6);
+
+        lod.setFreezeOffscreen(false);
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(0.5, composer.getTime(), 1e-6);
+    }
+
+    @Test
+    public void testJointDepth() {
+        Node model = AnimationBatchTest.createModel(0.5f);
+        AnimLodControl lod = new AnimLodControl();
+        lod.addLevel(0.5f, 1, 1);
+        lod.setFreezeOffscreen(false);
+        model.addControl(lod);
+        Armature armature = model.getControl(SkinningControl.class).getArmature();
+        Transform[] initial = new Transform[armature.getJointCount()];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = armature.getJoint(i).getLocalTransform().clone();
+        }
+
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(-1, lod.getCurrentLevel());
+        model.updateLogicalState(0.1f);
+        Assert.assertEquals(0, lod.getCurrentLevel());
+
+        // depth 0 and 1 animate, the deeper joints only moved on the first frame
+        Transform[] first = new Transform[initial.length];
+        for (int i = 0; i < initial.length; i++) {
+            first[i] = armature.getJoint(i).getLocalTransform().clone();
+        }
+        model.updateLogicalState(0.1f);
+        Assert.assertNotEquals(first[0], armature.getJoint(0).getLocalTransform());
+        Assert.assertNotEquals(first[1], armature.getJoint(1).getLocalTransform());
+        Assert.assertEquals(first[2], armature.getJoint(2).getLocalTransform());
+        Assert.assertEquals(first[3], armature.getJoint(3).getLocalTransform());
+    }
+
+    @Test
+    public void testLevelsSortedByCoverage() {
+        AnimLodControl lod = new AnimLodControl();
+        lod.addLevel(0.01f, 4, 2);
+        lod.addLevel(0.1f, 2, -1);
+        lod.setFreezeOffscreen(false);
+        Node model = AnimationBatchTest.createModel(0f);
+        model.addControl(lod);
+
+        Assert.assertEquals(2, lod.getNumLevels());
+        model.updateLogicalState(0.1f);
+        model.updateLogicalState(0.1f);
+        // not rendered, so the coverage is 0 and the smallest level applies
+        Assert.assertEquals(1, lod.getCurrentLevel());
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Cylinder;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that animations evaluated by an {@link AnimationBatch} match the
+ * ones evaluated by their controls.
+ */
+public class AnimationBatchTest {
+
+    private static final int JOINTS = 4;
+
+    @Test
+    public void testBatchMatchesSequentialUpdate() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Node[] sequential = new Node[6];
+            Node[] batched = new Node[sequential.length];
+            AnimationBatch batch = new AnimationBatch(pool);
+            for (int i = 0; i < sequential.length; i++) {
+                sequential[i] = createModel(i * 0.1f);
+                batched[i] = createModel(i * 0.1f);
+                batch.add(batched[i].getControl(AnimComposer.class));
+                batch.add(batched[i].getControl(SkinningControl.class));
+            }
+
+            for (int frame = 0; frame < 5; frame++) {
+                batch.update(0.05f);
+                for (int i = 0; i < sequential.length; i++) {
+                    sequential[i].updateLogicalState(0.05f);
+                    batched[i].updateLogicalState(0.05f);
+                    sequential[i].getControl(SkinningControl.class).controlRender(null, null);
+                    batched[i].getControl(SkinningControl.class).controlRender(null, null);
+
+                    assertSamePose(sequential[i], batched[i]);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemoveRestoresControlUpdate() {
+        Node model = createModel(0f);
+        AnimComposer composer = model.getControl(AnimComposer.class);
+        SkinningControl skinning = model.getControl(SkinningControl.class);
+        AnimationBatch batch = new AnimationBatch(ForkJoinPool.commonPool());
+        batch.add(composer);
+        batch.add(skinning);
+        Assert.assertSame(ForkJoinPool.commonPool(), skinning.getSoftwareSkinningPool());
+
+        model.updateLogicalState(0.25f);
+        Assert.assertEquals(0.0, composer.getTime(), 0.0);
+
+        Assert.assertTrue(batch.remove(composer));
+        Assert.assertTrue(batch.remove(skinning));
+        Assert.assertFalse(batch.remove(composer));
+        Assert.assertNull(skinning.getSoftwareSkinningPool());
+
+        model.updateLogicalState(0.25f);
+        Assert.assertEquals(0.25, composer.getTime(), 1e-6);
+    }
+
+    @Test
+    public void testClonesAreNotBatched() {
+        Node model = createModel(0f);
+        AnimationBatch batch = new AnimationBatch(ForkJoinPool.commonPool());
+        batch.add(model.getControl(AnimComposer.class));
+
+        Node clone = (Node) model.clone(false);
+        AnimComposer composer = clone.getControl(AnimComposer.class);
+        composer.setCurrentAction("bend");
+        clone.updateLogicalState(0.25f);
+        Assert.assertEquals(0.25, composer.getTime(), 1e-6);
+
+        batch.add(composer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddTwice() {
+        AnimComposer composer = new AnimComposer();
+        new AnimationBatch(ForkJoinPool.commonPool()).add(composer);
+        new AnimationBatch(ForkJoinPool.commonPool()).add(composer);
+    }
+
+    private static void assertSamePose(Node expected, Node actual) {
+        Armature expectedArmature = expected.getControl(SkinningControl.class).getArmature();
+        Armature actualArmature = actual.getControl(SkinningControl.class).getArmature();
+        for (int i = 0; i < JOINTS; i++) {
+            Assert.assertEquals(expectedArmature.getJoint(i).getModelTransform(),
+                    actualArmature.getJoint(i).getModelTransform());
+        }
+
+        FloatBuffer expectedPositions = ((Geometry) expected.getChild(0)).getMesh()
+                .getFloatBuffer(VertexBuffer.Type.Position);
+        FloatBuffer actualPositions = ((Geometry) actual.getChild(0)).getMesh()
+                .getFloatBuffer(VertexBuffer.Type.Position);
+        Assert.assertEquals(expectedPositions.limit(), actualPositions.limit());
+        for (int i = 0; i < expectedPositions.limit(); i++) {
+            Assert.assertEquals(expectedPositions.get(i), actualPositions.get(i), 0f);
+        }
+    }
+
+    /**
+     * Creates a software skinned cylinder, large enough to be skinned in
+     * several ranges, playing a bending animation.
+     */
+    static Node createModel(float phase) {
+        Mesh mesh = new Cylinder(64, 48, 0.5f, JOINTS, true);
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        int vertexCount = mesh.getVertexCount();
+        Assert.assertTrue(vertexCount > SkinningControl.PARALLEL_SKINNING_THRESHOLD);
+        ByteBuffer indices = BufferUtils.createByteBuffer(vertexCount * 4);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(vertexCount * 4);
+        for (int v = 0; v < vertexCount; v++) {
+            float z = positions.get(v * 3 + 2) + JOINTS / 2f;
+            int joint = Math.min((int) z, JOINTS - 1);
+            int next = Math.min(joint + 1, JOINTS - 1);
+            float blend = FastMath.clamp(z - joint, 0f, 1f);
+            indices.put((byte) joint).put((byte) next).put((byte) 0).put((byte) 0);
+            weights.put(1f - blend).put(blend).put(0f).put(0f);
+        }
+        indices.flip();
+        weights.flip();
+
+        VertexBuffer indexBuffer = new VertexBuffer(VertexBuffer.Type.BoneIndex);
+        indexBuffer.setupData(VertexBuffer.Usage.Static, 4, VertexBuffer.Format.UnsignedByte, indices);
+        mesh.setBuffer(indexBuffer);
+        VertexBuffer weightBuffer = new VertexBuffer(VertexBuffer.Type.BoneWeight);
+        weightBuffer.setupData(VertexBuffer.Usage.Static, 4, VertexBuffer.Format.Float, weights);
+        mesh.setBuffer(weightBuffer);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose();
+
+        Joint[] joints = new Joint[JOINTS];
+        AnimTrack[] tracks = new AnimTrack[JOINTS];
+        float[] times = {0f, 0.5f, 1f};
+        for (int i = 0; i < JOINTS; i++) {
+            joints[i] = new Joint("Joint " + i);
+            Vector3f translation = i == 0 ? new Vector3f(0, 0, -JOINTS / 2f) : new Vector3f(0, 0, 1);
+            joints[i].setLocalTranslation(translation);
+            if (i > 0) {
+                joints[i - 1].addChild(joints[i]);
+            }
+            Quaternion[] rotations = new Quaternion[times.length];
+            for (int k = 0; k < times.length; k++) {
+                rotations[k] = new Quaternion().fromAngles(0.4f * (k + phase), 0, 0);
+            }
+            Vector3f[] translations = {translation, translation, translation};
+            tracks[i] = new TransformTrack(joints[i], times, translations, rotations, null);
+        }
+        Armature armature = new Armature(joints);
+        armature.saveBindPose();
+        armature.saveInitialPose();
+
+        AnimClip clip = new AnimClip("bend");
+        clip.setTracks(tracks);
+
+        Node model = new Node("Model");
+        model.attachChild(new Geometry("Skinned", mesh));
+        AnimComposer composer = new AnimComposer();
+        composer.addAnimClip(clip);
+        model.addControl(composer);
+        SkinningControl skinning = new SkinningControl(armature);
+        skinning.setHardwareSkinningPreferred(false);
+        model.addControl(skinning);
+        composer.setCurrentAction("bend");
+        return model;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.anim.interpolator.FrameInterpolator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the keyframe reduction and quantization of
+ * {@link QuantizedTransformTrack}.
+ */
+public class QuantizedTransformTrackTest {
+
+    private static final int FRAMES = 121;
+
+    @Test
+    public void testRotationEncoding() {
+        Random random = new Random(42);
+        Quaternion expected = new Quaternion();
+        Quaternion decoded = new Quaternion();
+        for (int i = 0; i < 1000; i++) {
+            expected.set(random.nextFloat() * 2f - 1f, random.nextFloat() * 2f - 1f,
+                    random.nextFloat() * 2f - 1f, random.nextFloat() * 2f - 1f).normalizeLocal();
+            QuantizedTransformTrack.decodeRotation(QuantizedTransformTrack.encodeRotation(expected), decoded);
+            Assert.assertEquals(1f, Math.abs(expected.dot(decoded)), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testMatchesSourceTrack() {
+        TransformTrack source = createMotionTrack();
+        float tolerance = 1e-3f;
+        QuantizedTransformTrack track = new QuantizedTransformTrack(source, tolerance);
+
+        Assert.assertTrue(track.getKeyframeCount() < FRAMES);
+        Assert.assertEquals(source.getLength(), track.getLength(), 0.0);
+
+        Transform expected = new Transform();
+        Transform actual = new Transform();
+        for (double t = -0.5; t < source.getLength() + 0.5; t += 0.013) {
+            source.getDataAtTime(t, expected);
+            track.getDataAtTime(t, actual);
+            assertClose(expected, actual, tolerance + 1e-5f);
+        }
+    }
+
+    @Test
+    public void testQuantizationWithinTolerance() {
+        // a wide range makes the quantization steps close to the tolerance
+        float[] times = new float[FRAMES];
+        Vector3f[] translations = new Vector3f[FRAMES];
+        Quaternion[] rotations = new Quaternion[FRAMES];
+        Vector3f[] scales = new Vector3f[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            times[i] = i / 30f;
+            translations[i] = new Vector3f(FastMath.sin(times[i]) * 50f, 0f, times[i] * 100f);
+            rotations[i] = new Quaternion();
+            scales[i] = new Vector3f(1f, 1f, 1f);
+        }
+        TransformTrack source = new TransformTrack(null, times, translations, rotations, scales);
+        float tolerance = 1e-2f;
+        QuantizedTransformTrack track = new QuantizedTransformTrack(source, tolerance);
+
+        Transform expected = new Transform();
+        Transform actual = new Transform();
+        for (float t : source.getTimes()) {
+            source.getDataAtTime(t, expected);
+            track.getDataAtTime(t, actual);
+            assertClose(expected, actual, tolerance + 1e-6f);
+        }
+    }
+
+    @Test
+    public void testLargeRangeWithinTolerance() throws IOException {
+        // a long root motion, whose quantization step exceeds the tolerance
+        float[] times = new float[FRAMES];
+        Vector3f[] translations = new Vector3f[FRAMES];
+        Quaternion[] rotations = new Quaternion[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            times[i] = i / 30f;
+            translations[i] = new Vector3f(FastMath.sin(times[i]), 0f, times[i] * 2500f);
+            rotations[i] = new Quaternion().fromAngles(0f, times[i], 0f);
+        }
+        TransformTrack source = new TransformTrack(null, times, translations, rotations, null);
+
+        for (float tolerance : new float[]{1e-3f, 0f}) {
+            QuantizedTransformTrack track = new QuantizedTransformTrack(source, tolerance);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryExporter.getInstance().save(track, out);
+            QuantizedTransformTrack loaded = (QuantizedTransformTrack) BinaryImporter.getInstance()
+                    .load(new ByteArrayInputStream(out.toByteArray()));
+
+            Transform expected = new Transform();
+            Transform actual = new Transform();
+            for (float t : times) {
+                source.getDataAtTime(t, expected);
+                track.getDataAtTime(t, actual);
+                assertClose(expected, actual, tolerance + 1e-6f);
+                loaded.getDataAtTime(t, actual);
+                assertClose(expected, actual, tolerance + 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void testLinearMotionKeepsEndKeyframes() {
+        float[] times = new float[FRAMES];
+        Vector3f[] translations = new Vector3f[FRAMES];
+        Quaternion[] rotations = new Quaternion[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            times[i] = i / 30f;
+            translations[i] = new Vector3f(i, 2f * i, 0f);
+            rotations[i] = new Quaternion();
+        }
+        QuantizedTransformTrack track = new QuantizedTransformTrack(null, times, translations, rotations, null, 1e-2f);
+
+        Assert.assertEquals(2, track.getKeyframeCount());
+        Assert.assertNull(track.getScales());
+        Transform transform = new Transform();
+        track.getDataAtTime(times[30], transform);
+        Assert.assertEquals(30f, transform.getTranslation().x, 1e-3f);
+        Assert.assertEquals(60f, transform.getTranslation().y, 1e-3f);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        QuantizedTransformTrack track = new QuantizedTransformTrack(createMotionTrack(), 1e-3f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(track, out);
+        QuantizedTransformTrack loaded = (QuantizedTransformTrack) BinaryImporter.getInstance()
+                .load(new ByteArrayInputStream(out.toByteArray()));
+
+        Assert.assertEquals(track.getKeyframeCount(), loaded.getKeyframeCount());
+        Assert.assertEquals(track.getLength(), loaded.getLength(), 0.0);
+        Transform expected = new Transform();
+        Transform actual = new Transform();
+        for (double t = 0; t < track.getLength(); t += 0.05) {
+            track.getDataAtTime(t, expected);
+            loaded.getDataAtTime(t, actual);
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testCompressClip() {
+        AnimClip clip = new AnimClip("walk");
+        TransformTrack source = createMotionTrack();
+        clip.setTracks(new AnimTrack[]{source});
+        QuantizedTransformTrack.compress(clip, 1e-3f);
+
+        Assert.assertTrue(clip.getTracks()[0] instanceof QuantizedTransformTrack);
+        Assert.assertEquals(source.getLength(), clip.getLength(), 0.0);
+    }
+
+    @Test
+    public void testSeparateKeyframes() {
+        TransformTrack source = createMotionTrack();
+        QuantizedTransformTrack track = new QuantizedTransformTrack(createMotionTrack(), 1e-3f);
+        track.setTimes(source.getTimes());
+        Assert.assertNull(track.getTranslations());
+        track.setKeyframesTranslation(source.getTranslations());
+        track.setKeyframesRotation(source.getRotations());
+        track.setKeyframesScale(source.getScales());
+
+        Assert.assertEquals(FRAMES, track.getKeyframeCount());
+        Transform expected = new Transform();
+        Transform actual = new Transform();
+        for (double t = 0; t < source.getLength(); t += 0.013) {
+            source.getDataAtTime(t, expected);
+            track.getDataAtTime(t, actual);
+            assertClose(expected, actual, 1e-4f);
+        }
+    }
+
+    @Test
+    public void testRetimeKeyframes() {
+        QuantizedTransformTrack track = new QuantizedTransformTrack(createMotionTrack(), 1e-3f);
+        Vector3f[] translations = track.getTranslations();
+        float[] times = new float[track.getKeyframeCount()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = track.getTimes()[i] * 2f;
+        }
+        track.setTimes(times);
+
+        Assert.assertEquals(times[times.length - 1] - times[0], track.getLength(), 1e-6);
+        Transform transform = new Transform();
+        track.getDataAtTime(times[1], transform);
+        Assert.assertEquals(translations[1], transform.getTranslation());
+    }
+
+    @Test
+    public void testFrameInterpolator() {
+        QuantizedTransformTrack track = new QuantizedTransformTrack(createMotionTrack(), 1e-3f);
+        Transform expected = new Transform();
+        Transform actual = new Transform();
+        double t = track.getTimes()[1] * 0.3 + track.getTimes()[2] * 0.7;
+        track.getDataAtTime(t, expected);
+
+        track.setFrameInterpolator(new FrameInterpolator());
+        track.getDataAtTime(t, actual);
+        assertClose(expected, actual, 1e-5f);
+
+        // keyframes set afterwards are decoded again for the interpolator
+        track.setKeyframes(new float[]{0f, 1f}, new Vector3f[]{new Vector3f(), new Vector3f(2f, 0f, 0f)},
+                null, null);
+        track.getDataAtTime(0.5, actual);
+        Assert.assertEquals(1f, actual.getTranslation().x, 1e-4f);
+    }
+
+    /**
+     * Creates a densely sampled track moving smoothly, like motion capture.
+     */
+    private static TransformTrack createMotionTrack() {
+        float[] times = new float[FRAMES];
+        Vector3f[] translations = new Vector3f[FRAMES];
+        Quaternion[] rotations = new Quaternion[FRAMES];
+        Vector3f[] scales = new Vector3f[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            float t = i / 30f;
+            times[i] = t;
+            translations[i] = new Vector3f(FastMath.sin(t) * 0.5f, 1f + FastMath.cos(2f * t) * 0.1f, t);
+            rotations[i] = new Quaternion().fromAngles(FastMath.sin(t) * 0.8f, t * 0.3f, 0.1f);
+            scales[i] = new Vector3f(1f, 1f, 1f);
+        }
+        return new TransformTrack(null, times, translations, rotations, scales);
+    }
+
+    private static void assertClose(Transform expected, Transform actual, float tolerance) {
+        Assert.assertEquals(expected.getTranslation().x, actual.getTranslation().x, tolerance);
+        Assert.assertEquals(expected.getTranslation().y, actual.getTranslation().y, tolerance);
+        Assert.assertEquals(expected.getTranslation().z, actual.getTranslation().z, tolerance);
+        Assert.assertEquals(1f, Math.abs(expected.getRotation().dot(actual.getRotation())), tolerance);
+        Assert.assertEquals(expected.getScale().x, actual.getScale().x, tolerance);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.anim;
+
+import com.jme3.material.MatParamOverride;
+import com.jme3.material.Material;
+import com.jme3.math.Matrix4f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.Limits;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.shader.BufferObject;
+import com.jme3.shader.Shader;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link SkinningControl} passes the joint matrices in a
+ * uniform buffer when it is supported.
+ */
+public class SkinningControlUniformBufferTest {
+
+    private final EnumSet<Caps> caps = EnumSet.of(Caps.GLSL100, Caps.GLSL110, Caps.GLSL120,
+            Caps.GLSL130, Caps.GLSL140, Caps.GLSL150, Caps.UniformBufferObject);
+    private final EnumMap<Limits, Integer> limits = new EnumMap<>(Limits.class);
+    private Shader current;
+    private final RenderManager renderManager = new RenderManager(new NullRenderer() {
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public EnumMap<Limits, Integer> getLimits() {
+            return limits;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            current = shader;
+        }
+    });
+    private final ViewPort viewPort = new ViewPort("Test", new Camera(640, 480));
+
+    @Test
+    public void testUniformBufferUsed() {
+        limits.put(Limits.UniformBufferObjectMaxBlockSize, 16384);
+        Node model = createModel("Common/MatDefs/Misc/Unshaded.j3md");
+        SkinningControl skinning = model.getControl(SkinningControl.class);
+        skinning.controlRender(renderManager, viewPort);
+
+        Assert.assertTrue(skinning.isHardwareSkinningUsed());
+        Assert.assertTrue(skinning.isUniformBufferUsed());
+        Assert.assertTrue(current.getSources().iterator().next().getDefines().contains("BONE_MATRICES_BLOCK"));
+
+        MatParamOverride block = findOverride(model, "BoneMatricesBlock");
+        Assert.assertNotNull(block);
+        Assert.assertFalse(findOverride(model, "BoneMatrices").isEnabled());
+
+        // padded to the number of bones declared to the shader
+        Matrix4f[] palette = ((BufferObject) block.getValue()).getFieldValue("BoneMatrices");
+        Assert.assertEquals(10, palette.length);
+        Assert.assertSame(skinning.getArmature().computeSkinningMatrices()[0], palette[0]);
+        Assert.assertEquals(Matrix4f.IDENTITY, palette[9]);
+
+        Node clone = (Node) model.clone(false);
+        MatParamOverride cloneBlock = findOverride(clone, "BoneMatricesBlock");
+        Assert.assertNotSame(block.getValue(), cloneBlock.getValue());
+    }
+
+    @Test
+    public void testFallbackWithoutLimit() {
+        Node model = createModel("Common/MatDefs/Misc/Unshaded.j3md");
+        SkinningControl skinning = model.getControl(SkinningControl.class);
+        skinning.controlRender(renderManager, viewPort);
+
+        Assert.assertTrue(skinning.isHardwareSkinningUsed());
+        Assert.assertFalse(skinning.isUniformBufferUsed());
+        Assert.assertFalse(findOverride(model, "BoneMatricesBlock").isEnabled());
+        Assert.assertTrue(findOverride(model, "BoneMatrices").isEnabled());
+    }
+
+    @Test
+    public void testFallbackWithoutMaterialSupport() {
+        limits.put(Limits.UniformBufferObjectMaxBlockSize, 16384);
+        Node model = createModel("Common/MatDefs/Misc/ShowNormals.j3md");
+        SkinningControl skinning = model.getControl(SkinningControl.class);
+        skinning.controlRender(renderManager, viewPort);
+
+        Assert.assertFalse(skinning.isUniformBufferUsed());
+        Assert.assertTrue(findOverride(model, "BoneMatrices").isEnabled());
+    }
+
+    private static Node createModel(String matDef) {
+        Node model = AnimationBatchTest.createModel(0f);
+        Geometry geometry = (Geometry) model.getChild(0);
+        geometry.setMaterial(new Material(TestUtil.createAssetManager(), matDef));
+        // loaders declare empty hardware skinning buffers, filled on demand
+        geometry.getMesh().setBuffer(new VertexBuffer(VertexBuffer.Type.HWBoneIndex));
+        geometry.getMesh().setBuffer(new VertexBuffer(VertexBuffer.Type.HWBoneWeight));
+        SkinningControl skinning = model.getControl(SkinningControl.class);
+        skinning.setHardwareSkinningPreferred(true);
+        skinning.setUniformBufferPreferred(true);
+        model.updateLogicalState(0f);
+        model.updateGeometricState();
+        return model;
+    }
+
+    private static MatParamOverride findOverride(Node model, String name) {
+        for (MatParamOverride override : model.getLocalMatParamOverrides()) {
+            if (override.getName().equals(name)) {
+                return override;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that loaded assets are served from the disk cache until their
+ * content or the content of their dependencies changes.
+ */
+public class DiskAssetCacheTest {
+
+    private static final AtomicInteger parsed = new AtomicInteger();
+
+    /**
+     * Loads "x y z" per line as a point mesh, with lines starting with
+     * "include" naming another file whose points are appended.
+     */
+    public static class PointsLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws IOException {
+            parsed.incrementAndGet();
+            StringBuilder points = new StringBuilder();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(assetInfo.openStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("include ")) {
+                        points.append(assetInfo.getManager().loadAsset(new AssetKey<String>(line.substring(8))));
+                    } else {
+                        points.append(line).append(' ');
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (assetInfo.getKey().getExtension().equals("inc")) {
+                return points.toString();
+            }
+
+            String[] values = points.toString().trim().split("\\s+");
+            float[] positions = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                positions[i] = Float.parseFloat(values[i]);
+            }
+            Mesh mesh = new Mesh();
+            mesh.setMode(Mesh.Mode.Points);
+            mesh.setBuffer(Type.Position, 3, positions);
+            return mesh;
+        }
+    }
+
+    private File root;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        parsed.set(0);
+        root = File.createTempFile("assets", "");
+        root.delete();
+        root.mkdirs();
+        root.deleteOnExit();
+        cacheDir = new File(root, "cache");
+        write("a.pts", "1 2 3\ninclude b.inc\n");
+        write("b.inc", "4 5 6\n");
+    }
+
+    private void write(String name, String content) throws IOException {
+        File file = new File(root, name);
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private Mesh load(DiskAssetCache cache) {
+        DesktopAssetManager assetManager = new DesktopAssetManager(false);
+        assetManager.registerLocator(root.getAbsolutePath(), FileLocator.class);
+        assetManager.registerLoader(PointsLoader.class, "pts", "inc");
+        assetManager.setDiskCache(cache);
+        return (Mesh) assetManager.loadAsset(new AssetKey<Mesh>("a.pts"));
+    }
+
+    private static float[] positions(Mesh mesh) {
+        FloatBuffer buffer = mesh.getFloatBuffer(Type.Position);
+        float[] result = new float[buffer.limit()];
+        buffer.clear();
+        buffer.get(result);
+        return result;
+    }
+
+    @Test
+    public void testServedFromCache() {
+        DiskAssetCache cache = new DiskAssetCache(cacheDir);
+        float[] expected = positions(load(cache));
+        assertEquals(2, parsed.get());
+
+        Mesh cached = load(new DiskAssetCache(cacheDir));
+        assertEquals(2, parsed.get());
+        assertArrayEquals(expected, positions(cached), 0f);
+        assertEquals(Mesh.Mode.Points, cached.getMode());
+
+        cache.clear();
+        load(cache);
+        assertEquals(4, parsed.get());
+    }
+
+    @Test
+    public void testSourceChanged() throws IOException {
+        DiskAssetCache cache = new DiskAssetCache(cacheDir);
+        load(cache);
+        write("a.pts", "7 8 9\ninclude b.inc\n");
+
+        Mesh mesh = load(cache);
+        assertEquals(4, parsed.get());
+        assertEquals(7f, positions(mesh)[0], 0f);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testDependencyChanged() throws IOException {
+        DiskAssetCache cache = new DiskAssetCache(cacheDir);
+        load(cache);
+        write("b.inc", "10 11 12\n");
+
+        Mesh mesh = load(cache);
+        assertEquals(4, parsed.get());
+        assertEquals(10f, positions(mesh)[3], 0f);
+
+        load(cache);
+        assertEquals(4, parsed.get());
+        assertEquals(1, cache.getHits());
+    }
+}
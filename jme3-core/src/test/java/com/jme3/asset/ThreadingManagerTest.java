@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the priorities, cancellation and dependency fetching of
+ * asynchronous loads.
+ */
+public class ThreadingManagerTest {
+
+    private static final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+    private static volatile CountDownLatch started;
+    private static volatile CountDownLatch release;
+
+    public static class AnyLocator implements AssetLocator {
+
+        @Override
+        public void setRootPath(String rootPath) {
+        }
+
+        @Override
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            };
+        }
+    }
+
+    public static class NameLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws IOException {
+            String name = assetInfo.getKey().getName();
+            if (name.startsWith("block")) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            loaded.add(name);
+            return name;
+        }
+    }
+
+    private DesktopAssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        loaded.clear();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        assetManager = new DesktopAssetManager(false);
+        assetManager.registerLocator("/", AnyLocator.class);
+        assetManager.registerLoader(NameLoader.class, "txt");
+    }
+
+    @Test
+    public void testPriorities() throws Exception {
+        ThreadingManager manager = new ThreadingManager(assetManager, 1);
+        CompletableFuture<Object> block = manager.loadAssetAsync(new AssetKey<>("block.txt"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> low = manager.loadAssetAsync(new AssetKey<>("low.txt"), 0);
+        CompletableFuture<Object> high = manager.loadAssetAsync(new AssetKey<>("high.txt"), 5);
+        CompletableFuture<Object> mid = manager.loadAssetAsync(new AssetKey<>("mid.txt"), 1);
+        CompletableFuture<Object> low2 = manager.loadAssetAsync(new AssetKey<>("low2.txt"), 0);
+        release.countDown();
+
+        CompletableFuture.allOf(block, low, high, mid, low2).get(10, TimeUnit.SECONDS);
+        assertEquals("high.txt", high.get());
+        assertEquals(Arrays.asList("block.txt", "high.txt", "mid.txt", "low.txt", "low2.txt"), loaded);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ThreadingManager manager = new ThreadingManager(assetManager, 1);
+        manager.loadAssetAsync(new AssetKey<>("block.txt"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> cancelled = manager.loadAssetAsync(new AssetKey<>("cancelled.txt"));
+        assertTrue(cancelled.cancel(false));
+        CompletableFuture<Object> kept = manager.loadAssetAsync(new AssetKey<>("kept.txt"));
+        release.countDown();
+
+        assertEquals("kept.txt", kept.get(10, TimeUnit.SECONDS));
+        assertFalse(loaded.contains("cancelled.txt"));
+    }
+
+    @Test
+    public void testDependenciesLoadFirst() throws Exception {
+        ThreadingManager manager = new ThreadingManager(assetManager, 2) {
+            @Override
+            protected List<AssetKey> findDependencies(AssetKey<?> assetKey) {
+                if (assetKey.getName().startsWith("model")) {
+                    return Arrays.<AssetKey>asList(new AssetKey<>("tex1.txt"), new AssetKey<>("tex2.txt"),
+                                                   new AssetKey<>("model.txt"));
+                }
+                return null;
+            }
+        };
+
+        assertEquals("model.txt", manager.loadAssetAsync(new AssetKey<>("model.txt")).get(10, TimeUnit.SECONDS));
+        assertEquals(3, loaded.size());
+        assertEquals("model.txt", loaded.get(2));
+        assertTrue(loaded.contains("tex1.txt"));
+        assertTrue(loaded.contains("tex2.txt"));
+    }
+
+    @Test
+    public void testCancelSkipsDependencies() throws Exception {
+        ThreadingManager manager = new ThreadingManager(assetManager, 1) {
+            @Override
+            protected List<AssetKey> findDependencies(AssetKey<?> assetKey) {
+                if (assetKey.getName().startsWith("model")) {
+                    return Arrays.<AssetKey>asList(new AssetKey<>("block.txt"), new AssetKey<>("tex.txt"));
+                }
+                return null;
+            }
+        };
+
+        CompletableFuture<Object> model = manager.loadAssetAsync(new AssetKey<>("model.txt"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        model.cancel(false);
+        release.countDown();
+
+        assertEquals("after.txt", manager.loadAssetAsync(new AssetKey<>("after.txt")).get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("block.txt", "after.txt"), loaded);
+    }
+
+    @Test
+    public void testSubmitToExecutor() throws Exception {
+        ThreadingManager manager = new ThreadingManager(assetManager, 1);
+        CompletableFuture<Object> block = manager.loadAssetAsync(new AssetKey<>("block.txt"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // plain tasks queue up behind prioritized loads
+        Future<String> task = manager.executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                loaded.add("task");
+                return "done";
+            }
+        });
+        CompletableFuture<Object> high = manager.loadAssetAsync(new AssetKey<>("high.txt"), 5);
+        release.countDown();
+
+        assertEquals("done", task.get(10, TimeUnit.SECONDS));
+        CompletableFuture.allOf(block, high).get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("block.txt", "high.txt", "task"), loaded);
+    }
+}
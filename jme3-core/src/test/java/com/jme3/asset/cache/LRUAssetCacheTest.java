@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.TextureKey;
+import com.jme3.asset.plugins.ClasspathLocator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.MockJmeSystemDelegate;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.texture.plugins.ktx.KTXLoader;
+import com.jme3.util.BufferUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the size accounting and eviction order of {@link LRUAssetCache}.
+ */
+public class LRUAssetCacheTest {
+
+    private static final long KB = 1024;
+
+    private static Texture2D createTexture(int size) {
+        Image image = new Image(Image.Format.RGBA8, size, size,
+                BufferUtils.createByteBuffer(size * size * 4), ColorSpace.Linear);
+        return new Texture2D(image);
+    }
+
+    @Test
+    public void testSizeEstimates() {
+        LRUAssetCache cache = new LRUAssetCache();
+        long textureSize = cache.estimateSize(null, createTexture(64));
+        assertEquals(LRUAssetCache.BASE_SIZE + 64 * 64 * 4, textureSize);
+
+        Mesh box = new Box(1, 1, 1);
+        long meshSize = cache.estimateSize(null, box) - LRUAssetCache.BASE_SIZE;
+        assertTrue(meshSize > 0);
+
+        // A mesh shared by two geometries is only counted once.
+        Node node = new Node("Node");
+        node.attachChild(new Geometry("A", box));
+        node.attachChild(new Geometry("B", box));
+        assertEquals(LRUAssetCache.BASE_SIZE + meshSize, cache.estimateSize(null, node));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        long textureSize = LRUAssetCache.BASE_SIZE + 16 * KB;
+        LRUAssetCache cache = new LRUAssetCache(3 * textureSize);
+        AssetKey<Texture> a = new AssetKey<Texture>("a.png");
+        AssetKey<Texture> b = new AssetKey<Texture>("b.png");
+        AssetKey<Texture> c = new AssetKey<Texture>("c.png");
+        AssetKey<Texture> d = new AssetKey<Texture>("d.png");
+
+        cache.addToCache(a, createTexture(64));
+        cache.addToCache(b, createTexture(64));
+        cache.addToCache(c, createTexture(64));
+        assertEquals(3 * textureSize, cache.getStats().getSize());
+
+        // Touch "a" so that "b" becomes the least recently used asset.
+        assertNotNull(cache.getFromCache(a));
+        cache.addToCache(d, createTexture(64));
+
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(a));
+        assertNotNull(cache.getFromCache(c));
+        assertNotNull(cache.getFromCache(d));
+
+        AssetCacheStats stats = cache.getStats();
+        assertEquals(3, stats.getAssetCount());
+        assertEquals(3 * textureSize, stats.getSize());
+        assertEquals(4, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(0.8, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testBudgetChangesAndOversizedAssets() {
+        LRUAssetCache cache = new LRUAssetCache(100 * KB);
+        for (int i = 0; i < 4; i++) {
+            cache.addToCache(new AssetKey<Texture>(i + ".png"), createTexture(64));
+        }
+        assertEquals(4, cache.getStats().getAssetCount());
+
+        cache.setBudget(40 * KB);
+        assertEquals(2, cache.getStats().getAssetCount());
+        assertNotNull(cache.getFromCache(new AssetKey<Texture>("3.png")));
+
+        // Larger than the whole budget, not cached and nothing evicted.
+        cache.addToCache(new AssetKey<Texture>("big.png"), createTexture(256));
+        assertNull(cache.getFromCache(new AssetKey<Texture>("big.png")));
+        assertEquals(2, cache.getStats().getAssetCount());
+
+        assertTrue(cache.deleteFromCache(new AssetKey<Texture>("3.png")));
+        assertEquals(1, cache.getStats().getAssetCount());
+        cache.clearCache();
+        assertEquals(0, cache.getStats().getSize());
+
+        cache.resetStats();
+        assertEquals(0, cache.getStats().getHitCount());
+    }
+
+    @Test
+    public void testUsedByAssetManager() {
+        JmeSystem.setSystemDelegate(new MockJmeSystemDelegate());
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, ClasspathLocator.class);
+        assetManager.registerLoader(KTXLoader.class, "ktx");
+
+        LRUAssetCache cache = new LRUAssetCache();
+        assetManager.setAssetCache(WeakRefCloneAssetCache.class, cache);
+
+        TextureKey key = new TextureKey("Common/Textures/integrateBRDF.ktx");
+        Texture first = assetManager.loadTexture(key);
+        Texture second = assetManager.loadTexture(key);
+        assertNotSame(first, second);
+        assertSame(first.getImage(), second.getImage());
+
+        AssetCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getAssetCount());
+        assertEquals(1, stats.getHitCount());
+        assertTrue(stats.getSize() > LRUAssetCache.BASE_SIZE);
+    }
+}
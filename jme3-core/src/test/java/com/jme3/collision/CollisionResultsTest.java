@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Torus;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the top-k and pooled modes of {@link CollisionResults}.
+ */
+public class CollisionResultsTest {
+
+    private static CollisionResult result(float distance) {
+        return new CollisionResult(new Vector3f(), distance);
+    }
+
+    @Test
+    public void testMaxResults() {
+        CollisionResults results = new CollisionResults();
+        results.setMaxResults(2);
+        Assert.assertEquals(Float.POSITIVE_INFINITY, results.getDistanceLimit(), 0f);
+
+        results.addCollision(result(5f));
+        Assert.assertEquals(Float.POSITIVE_INFINITY, results.getDistanceLimit(), 0f);
+        results.addCollision(result(1f));
+        Assert.assertEquals(5f, results.getDistanceLimit(), 0f);
+        results.addCollision(result(4f));
+        results.addCollision(result(2f));
+        results.addCollision(result(3f));
+        Assert.assertEquals(2f, results.getDistanceLimit(), 0f);
+
+        Assert.assertEquals(1f, results.getClosestCollision().getDistance(), 0f);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(2f, results.getFarthestCollision().getDistance(), 0f);
+
+        results.clear();
+        Assert.assertEquals(0, results.size());
+        Assert.assertEquals(Float.POSITIVE_INFINITY, results.getDistanceLimit(), 0f);
+    }
+
+    @Test
+    public void testPooledResultsAreReused() {
+        CollisionResults results = new CollisionResults();
+        results.setPooled(true);
+
+        CollisionResult first = results.obtainCollision();
+        first.setContactPoint(1f, 2f, 3f);
+        first.setContactNormal(0f, 1f, 0f);
+        first.setDistance(4f);
+        first.setTriangleIndex(5);
+        Vector3f point = first.getContactPoint();
+        results.addCollision(first);
+        results.clear();
+
+        CollisionResult second = results.obtainCollision();
+        Assert.assertSame(first, second);
+        Assert.assertNull(second.getContactPoint());
+        Assert.assertNull(second.getContactNormal());
+        Assert.assertEquals(0f, second.getDistance(), 0f);
+        Assert.assertEquals(0, second.getTriangleIndex());
+
+        second.setContactPoint(6f, 7f, 8f);
+        Assert.assertSame(point, second.getContactPoint());
+        Assert.assertEquals(new Vector3f(6f, 7f, 8f), second.getContactPoint());
+
+        results.setPooled(false);
+        Assert.assertNotSame(first, results.obtainCollision());
+    }
+
+    @Test
+    public void testClosestOnlyMatchesAllResults() {
+        Geometry geometry = new Geometry("Torus", new Torus(64, 32, 2f, 6f));
+        geometry.setLocalRotation(new Quaternion().fromAngles(0.4f, 0.2f, 0.7f));
+        geometry.setLocalScale(1.5f);
+        geometry.updateGeometricState();
+
+        CollisionResults all = new CollisionResults();
+        CollisionResults closest = new CollisionResults();
+        closest.setMaxResults(1);
+        closest.setPooled(true);
+
+        Random random = new Random(3);
+        int hits = 0;
+        for (int i = 0; i < 500; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .normalizeLocal().multLocal(30f);
+            Vector3f target = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .multLocal(16f);
+            Ray ray = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+
+            all.clear();
+            closest.clear();
+            geometry.collideWith(ray, all);
+            geometry.collideWith(ray, closest);
+
+            if (all.size() == 0) {
+                Assert.assertEquals(0, closest.size());
+                continue;
+            }
+            hits++;
+            CollisionResult expected = all.getClosestCollision();
+            CollisionResult actual = closest.getClosestCollision();
+            Assert.assertEquals(1, closest.size());
+            Assert.assertEquals(expected.getDistance(), actual.getDistance(), 0f);
+            Assert.assertEquals(expected.getTriangleIndex(), actual.getTriangleIndex());
+            Assert.assertEquals(expected.getContactPoint(), actual.getContactPoint());
+            Assert.assertSame(geometry, actual.getGeometry());
+        }
+        Assert.assertTrue(hits > 100);
+    }
+}
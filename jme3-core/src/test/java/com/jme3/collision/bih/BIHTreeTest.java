@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Torus;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the flat {@link BIHTree} and its batched ray queries.
+ */
+public class BIHTreeTest {
+
+    private final Mesh mesh = new Torus(128, 64, 2f, 6f);
+    private final Geometry geometry = new Geometry("Torus", mesh);
+    private final Ray[] rays = new Ray[1000];
+
+    public BIHTreeTest() {
+        geometry.setLocalTranslation(1f, 2f, 3f);
+        geometry.setLocalRotation(new Quaternion().fromAngles(0.3f, 0.5f, 0.1f));
+        geometry.setLocalScale(1.5f);
+        geometry.updateGeometricState();
+
+        Random random = new Random(7);
+        for (int i = 0; i < rays.length; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .normalizeLocal().multLocal(40f);
+            Vector3f target = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .multLocal(20f);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+    }
+
+    @Test
+    public void testBatchMatchesClosestCollision() {
+        for (BIHTree.SplitMethod method : BIHTree.SplitMethod.values()) {
+            BIHTree tree = new BIHTree(mesh);
+            tree.setSplitMethod(method);
+            tree.construct();
+            RayBatch batch = trace(tree);
+
+            int expectedHits = 0;
+            for (int i = 0; i < rays.length; i++) {
+                CollisionResults results = new CollisionResults();
+                tree.collideWith(rays[i].clone(), geometry.getWorldMatrix(), geometry.getWorldBound(), results);
+                if (results.size() == 0) {
+                    Assert.assertFalse(batch.hasHit(i));
+                    continue;
+                }
+                expectedHits++;
+                CollisionResult closest = results.getClosestCollision();
+                Assert.assertEquals(closest.getTriangleIndex(), batch.getTriangleIndex(i));
+                Assert.assertEquals(closest.getDistance(), batch.getDistance(i), 1e-3f);
+                Vector3f point = batch.getContactPoint(i, null);
+                Assert.assertTrue(point.distance(closest.getContactPoint()) < 1e-3f);
+            }
+            Assert.assertTrue(expectedHits > rays.length / 2);
+            Assert.assertEquals(expectedHits, tree.collideWithRays(batch, geometry.getWorldMatrix()));
+        }
+    }
+
+    @Test
+    public void testParallelConstruction() {
+        BIHTree sequential = new BIHTree(mesh);
+        sequential.construct();
+        BIHTree parallel = new BIHTree(mesh);
+        RayBatch expected = trace(sequential);
+        RayBatch batch = new RayBatch();
+        for (Ray ray : rays) {
+            batch.addRay(ray);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.construct(pool);
+            parallel.collideWithRays(batch, geometry.getWorldMatrix(), pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < rays.length; i++) {
+            Assert.assertEquals(expected.getTriangleIndex(i), batch.getTriangleIndex(i));
+            Assert.assertEquals(expected.getDistance(i), batch.getDistance(i), 0f);
+        }
+    }
+
+    @Test
+    public void testRayLimit() {
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct();
+        RayBatch batch = new RayBatch(1);
+        batch.addRay(new Vector3f(20f, 0f, 0f), new Vector3f(-1f, 0f, 0f));
+        batch.addRay(new Vector3f(20f, 0f, 0f), new Vector3f(-1f, 0f, 0f), 10f);
+        batch.addRay(new Vector3f(20f, 0f, 0f), new Vector3f(1f, 0f, 0f));
+
+        Assert.assertEquals(1, tree.collideWithRays(batch));
+        Assert.assertEquals(12f, batch.getDistance(0), 1e-2f);
+        Assert.assertFalse(batch.hasHit(1));
+        Assert.assertEquals(Float.POSITIVE_INFINITY, batch.getDistance(2), 0f);
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        BIHTree tree = new BIHTree(mesh);
+        tree.setSplitMethod(BIHTree.SplitMethod.SurfaceAreaHeuristic);
+        tree.construct();
+        RayBatch expected = trace(tree);
+
+        AssetManager assetManager = TestUtil.createAssetManager();
+        BIHTree loaded = BinaryExporter.saveAndLoad(assetManager, tree);
+        Assert.assertEquals(BIHTree.SplitMethod.SurfaceAreaHeuristic, loaded.getSplitMethod());
+        RayBatch batch = trace(loaded);
+        for (int i = 0; i < rays.length; i++) {
+            Assert.assertEquals(expected.getTriangleIndex(i), batch.getTriangleIndex(i));
+        }
+    }
+
+    @Test
+    public void testRefitMatchesNewTree() {
+        Mesh deformed = new Torus(128, 64, 2f, 6f);
+        BIHTree tree = new BIHTree(deformed);
+        tree.setRebuildThreshold(Float.POSITIVE_INFINITY);
+        tree.construct();
+
+        bend(deformed, 2f);
+        Assert.assertFalse(tree.refit());
+        BIHTree rebuilt = new BIHTree(deformed);
+        rebuilt.construct();
+        assertSameHits(trace(rebuilt), trace(tree));
+    }
+
+    @Test
+    public void testRefitRebuildsWhenDegraded() {
+        Mesh deformed = new Torus(128, 64, 2f, 6f);
+        BIHTree tree = new BIHTree(deformed);
+        tree.construct();
+
+        bend(deformed, 0.1f);
+        Assert.assertFalse(tree.refit());
+
+        // scatter the vertices so every leaf spans the whole mesh
+        FloatBuffer positions = deformed.getFloatBuffer(VertexBuffer.Type.Position);
+        Random random = new Random(11);
+        for (int i = positions.limit() / 3 - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            for (int a = 0; a < 3; a++) {
+                float tmp = positions.get(i * 3 + a);
+                positions.put(i * 3 + a, positions.get(j * 3 + a));
+                positions.put(j * 3 + a, tmp);
+            }
+        }
+        Assert.assertTrue(tree.refit());
+        BIHTree rebuilt = new BIHTree(deformed);
+        rebuilt.construct();
+        assertSameHits(trace(rebuilt), trace(tree));
+    }
+
+    @Test
+    public void testInvalidateCollisionData() {
+        Mesh moved = new Torus(128, 64, 2f, 6f);
+        Geometry torus = new Geometry("Moved", moved);
+        Ray ray = new Ray(new Vector3f(20f, 0f, 0f), new Vector3f(-1f, 0f, 0f));
+        CollisionResults results = new CollisionResults();
+        torus.collideWith(ray, results);
+        Assert.assertEquals(12f, results.getClosestCollision().getDistance(), 1e-2f);
+
+        FloatBuffer positions = moved.getFloatBuffer(VertexBuffer.Type.Position);
+        for (int i = 0; i < positions.limit(); i += 3) {
+            positions.put(i, positions.get(i) - 5f);
+        }
+        moved.updateBound();
+        torus.updateModelBound();
+        moved.invalidateCollisionData();
+
+        results.clear();
+        torus.collideWith(ray, results);
+        Assert.assertEquals(17f, results.getClosestCollision().getDistance(), 1e-2f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotConstructed() {
+        new BIHTree(mesh).collideWithRays(new RayBatch());
+    }
+
+    /**
+     * Bends the mesh around the Z axis and stretches it along Y.
+     */
+    private static void bend(Mesh mesh, float amount) {
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        for (int i = 0; i < positions.limit(); i += 3) {
+            float x = positions.get(i);
+            float y = positions.get(i + 1);
+            positions.put(i + 1, y * (1f + amount * 0.25f) + FastMath.sin(x * 0.5f) * amount);
+        }
+    }
+
+    private void assertSameHits(RayBatch expected, RayBatch batch) {
+        int hits = 0;
+        for (int i = 0; i < rays.length; i++) {
+            Assert.assertEquals(expected.hasHit(i), batch.hasHit(i));
+            if (expected.hasHit(i)) {
+                hits++;
+                Assert.assertEquals(expected.getTriangleIndex(i), batch.getTriangleIndex(i));
+                Assert.assertEquals(expected.getDistance(i), batch.getDistance(i), 0f);
+            }
+        }
+        Assert.assertTrue(hits > 0);
+    }
+
+    private RayBatch trace(BIHTree tree) {
+        RayBatch batch = new RayBatch(16);
+        for (Ray ray : rays) {
+            batch.addRay(ray);
+        }
+        tree.collideWithRays(batch, geometry.getWorldMatrix());
+        return batch;
+    }
+}
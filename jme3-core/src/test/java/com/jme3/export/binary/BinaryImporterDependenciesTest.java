@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.MaterialKey;
+import com.jme3.asset.TextureKey;
+import com.jme3.material.Material;
+import com.jme3.material.MaterialDef;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.VarType;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the assets referenced by a binary file are found without
+ * loading it.
+ */
+public class BinaryImporterDependenciesTest {
+
+    @Test
+    public void testReadDependencies() throws Exception {
+        MaterialDef def = new MaterialDef(null, "Test");
+        def.addMaterialParamTexture(VarType.Texture2D, "ColorMap", ColorSpace.sRGB, null);
+
+        Texture2D texture = new Texture2D(new Image(Image.Format.RGBA8, 1, 1,
+                BufferUtils.createByteBuffer(4), ColorSpace.Linear));
+        texture.setKey(new TextureKey("Textures/Color.png"));
+
+        Material material = new Material(def);
+        material.setTexture("ColorMap", texture);
+        material.setKey(new MaterialKey("Materials/Box.j3m"));
+
+        Geometry box = new Geometry("Box", new Box(1, 1, 1));
+        box.setMaterial(material);
+        Geometry other = new Geometry("Other", new Box(1, 1, 1));
+        other.setMaterial(material);
+        Node root = new Node("Root");
+        root.attachChild(box);
+        root.attachChild(other);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(root, out);
+
+        List<AssetKey> keys = BinaryImporter.getInstance()
+                .readDependencies(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(new TextureKey("Textures/Color.png")));
+        assertTrue(keys.contains(new MaterialKey("Materials/Box.j3m")));
+    }
+
+    @Test
+    public void testNoDependencies() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(new Node("Root"), out);
+
+        List<AssetKey> keys = BinaryImporter.getInstance()
+                .readDependencies(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(keys.isEmpty());
+    }
+}
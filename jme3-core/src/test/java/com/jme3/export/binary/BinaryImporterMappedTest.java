@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that memory mapped loading decodes the same objects as stream
+ * loading.
+ */
+public class BinaryImporterMappedTest {
+
+    private static final int VERTICES = 4096;
+
+    private static Node createScene() {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(VERTICES * 3);
+        for (int i = 0; i < VERTICES * 3; i++) {
+            positions.put(i * 0.5f);
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.Index, 3, BufferUtils.createShortBuffer(new short[]{0, 1, 2}));
+        mesh.updateBound();
+
+        Node root = new Node("Root");
+        root.attachChild(new Geometry("Big", mesh));
+        return root;
+    }
+
+    private static File save(Node scene) throws Exception {
+        File file = File.createTempFile("mapped", ".j3o");
+        file.deleteOnExit();
+        BinaryExporter.getInstance().save(scene, file);
+        return file;
+    }
+
+    private static void assertSameMesh(Mesh expected, Mesh actual) {
+        FloatBuffer a = expected.getFloatBuffer(Type.Position);
+        FloatBuffer b = actual.getFloatBuffer(Type.Position);
+        assertEquals(a.limit(), b.limit());
+        for (int i = 0; i < a.limit(); i++) {
+            assertEquals(a.get(i), b.get(i), 0f);
+        }
+        ShortBuffer ia = (ShortBuffer) expected.getBuffer(Type.Index).getData();
+        ShortBuffer ib = (ShortBuffer) actual.getBuffer(Type.Index).getData();
+        assertEquals(ia, ib);
+    }
+
+    @Test
+    public void testMappedLoadMatchesStreamLoad() throws Exception {
+        Node scene = createScene();
+        File file = save(scene);
+
+        BinaryImporter importer = new BinaryImporter();
+        assertFalse(importer.isMemoryMapped());
+        Node streamed;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            streamed = (Node) importer.load(in);
+        } finally {
+            in.close();
+        }
+
+        importer.setMemoryMapped(true);
+        Node mapped = (Node) importer.load(file);
+
+        assertEquals("Root", mapped.getName());
+        assertEquals("Big", mapped.getChild(0).getName());
+        Mesh mesh = ((Geometry) scene.getChild(0)).getMesh();
+        assertSameMesh(mesh, ((Geometry) streamed.getChild(0)).getMesh());
+        assertSameMesh(mesh, ((Geometry) mapped.getChild(0)).getMesh());
+        assertTrue(((Geometry) mapped.getChild(0)).getMesh().getFloatBuffer(Type.Position).isDirect());
+    }
+
+    @Test
+    public void testMappedBuffersDoNotWriteThrough() throws Exception {
+        File file = save(createScene());
+        BinaryImporter importer = new BinaryImporter();
+        importer.setMemoryMapped(true);
+
+        Node first = (Node) importer.load(file);
+        FloatBuffer positions = ((Geometry) first.getChild(0)).getMesh().getFloatBuffer(Type.Position);
+        positions.put(0, 42f);
+        assertEquals(42f, positions.get(0), 0f);
+
+        Node second = (Node) importer.load(file);
+        FloatBuffer reloaded = ((Geometry) second.getChild(0)).getMesh().getFloatBuffer(Type.Position);
+        assertEquals(0f, reloaded.get(0), 0f);
+        assertEquals(0.5f, reloaded.get(1), 0f);
+    }
+
+    @Test
+    public void testDestroyingMappedBufferKeepsMapping() throws Exception {
+        Node scene = createScene();
+        Mesh mesh = ((Geometry) scene.getChild(0)).getMesh();
+        scene.attachChild(new Geometry("Other", mesh.deepClone()));
+        File file = save(scene);
+        BinaryImporter importer = new BinaryImporter();
+        importer.setMemoryMapped(true);
+
+        // both meshes are views of the same mapping, freeing one of them
+        // must not unmap the file under the other
+        Node mapped = (Node) importer.load(file);
+        Mesh first = ((Geometry) mapped.getChild(0)).getMesh();
+        Mesh second = ((Geometry) mapped.getChild(1)).getMesh();
+        BufferUtils.destroyDirectBuffer(first.getFloatBuffer(Type.Position));
+        assertSameMesh(mesh, second);
+    }
+}
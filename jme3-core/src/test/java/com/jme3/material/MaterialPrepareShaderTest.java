@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.light.AmbientLight;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.shader.VarType;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that shaders prepared ahead of time, from any thread, are the ones
+ * used for rendering.
+ */
+public class MaterialPrepareShaderTest {
+
+    private final EnumSet<Caps> caps = EnumSet.of(Caps.GLSL100, Caps.GLSL110, Caps.GLSL120, Caps.GLSL150);
+    private Shader current;
+    private final RenderManager renderManager = new RenderManager(new NullRenderer() {
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            current = shader;
+        }
+    });
+
+    @Test
+    public void testPreparedShaderIsUsed() throws Exception {
+        final Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("VertexColor", true);
+        material.setColor("Color", ColorRGBA.Red);
+
+        final Geometry geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(material);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Shader>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Shader>() {
+                    @Override
+                    public Shader call() {
+                        return material.prepareShader(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager, geometry);
+                    }
+                }));
+            }
+            Shader prepared = results.get(0).get();
+            assertNotNull(prepared);
+            for (Future<Shader> result : results) {
+                assertSame(prepared, result.get());
+            }
+
+            material.preload(renderManager, geometry);
+            assertSame(prepared, current);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDefinesSelectShader() {
+        Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        Geometry geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(material);
+        Shader plain = material.prepareShader(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager, geometry);
+        material.setBoolean("VertexColor", true);
+        Shader colored = material.prepareShader(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager, geometry);
+
+        assertNotSame(plain, colored);
+        assertTrue(colored.getSources().iterator().next().getDefines().contains("HAS_VERTEXCOLOR"));
+    }
+
+    @Test
+    public void testOverridesSelectShader() {
+        Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        Node scene = new Node("Scene");
+        Geometry geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(material);
+        scene.attachChild(geometry);
+        scene.addMatParamOverride(new MatParamOverride(VarType.Boolean, "VertexColor", true));
+        scene.updateGeometricState();
+
+        Shader prepared = material.prepareShader(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager, geometry);
+        assertTrue(prepared.getSources().iterator().next().getDefines().contains("HAS_VERTEXCOLOR"));
+
+        material.preload(renderManager, geometry);
+        assertSame(prepared, current);
+    }
+
+    @Test
+    public void testLightsSelectShader() {
+        Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Light/PBRLighting.j3md");
+        Node scene = new Node("Scene");
+        Geometry geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(material);
+        scene.attachChild(geometry);
+        scene.addLight(new AmbientLight(ColorRGBA.White));
+        scene.updateGeometricState();
+
+        Shader prepared = material.prepareShader(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager, geometry);
+        assertTrue(prepared.getSources().iterator().next().getDefines().contains("USE_AMBIENT_LIGHT"));
+
+        renderManager.setCamera(new Camera(640, 480), false);
+        material.render(geometry, geometry.getWorldLightList(), renderManager);
+        assertSame(prepared, current);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.shader.VarType;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link Material#render} only skips re-applying material
+ * parameters to a shader when they cannot have changed.
+ */
+public class MaterialUniformCacheTest {
+
+    private AssetManager assetManager;
+    private Shader usedShader;
+    private final Texture[] usedTextures = new Texture[8];
+    private final RenderManager renderManager = new RenderManager(new NullRenderer() {
+        @Override
+        public void setShader(Shader shader) {
+            usedShader = shader;
+        }
+
+        @Override
+        public void setTexture(int unit, Texture texture) {
+            usedTextures[unit] = texture;
+        }
+    });
+    private final Camera cam = new Camera(1, 1);
+    private final Node root = new Node("Root");
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager.setCamera(cam, false);
+    }
+
+    private Material material(ColorRGBA color) {
+        Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        mat.setColor("Color", color);
+        return mat;
+    }
+
+    private Geometry geometry(Material mat) {
+        Geometry geom = new Geometry("Geom", new Box(1, 1, 1));
+        geom.setMaterial(mat);
+        root.attachChild(geom);
+        root.updateGeometricState();
+        return geom;
+    }
+
+    private Object render(Geometry geom) {
+        geom.getMaterial().render(geom, geom.getWorldLightList(), renderManager);
+        return usedShader.getUniform("m_Color").getValue();
+    }
+
+    private static Texture2D texture() {
+        return new Texture2D(new Image(Image.Format.RGBA8, 1, 1, BufferUtils.createByteBuffer(4), ColorSpace.Linear));
+    }
+
+    @Test
+    public void testUnchangedMaterialIsNotReapplied() {
+        Material mat = material(ColorRGBA.Red);
+        Geometry a = geometry(mat);
+        Geometry b = geometry(mat);
+
+        assertEquals(ColorRGBA.Red, render(a));
+
+        // Anything written behind the material's back is left alone...
+        usedShader.getUniform("m_Color").setValue(VarType.Vector4, ColorRGBA.Green);
+        assertEquals(ColorRGBA.Green, render(b));
+
+        // ...until the material changes
+        mat.setColor("Color", ColorRGBA.Blue);
+        assertEquals(ColorRGBA.Blue, render(a));
+    }
+
+    @Test
+    public void testMaterialsSharingShader() {
+        Geometry a = geometry(material(ColorRGBA.Red));
+        Geometry b = geometry(material(ColorRGBA.Blue));
+
+        assertEquals(ColorRGBA.Red, render(a));
+        Shader shader = usedShader;
+        assertEquals(ColorRGBA.Blue, render(b));
+        assertSame(shader, usedShader);
+        assertEquals(ColorRGBA.Red, render(a));
+    }
+
+    @Test
+    public void testInPlaceChangeIsSeenInNextPass() {
+        ColorRGBA color = new ColorRGBA(ColorRGBA.Red);
+        Geometry a = geometry(material(color));
+
+        assertEquals(ColorRGBA.Red, render(a));
+        color.set(ColorRGBA.Blue);
+        renderManager.setCamera(cam, false);
+        assertEquals(ColorRGBA.Blue, render(a));
+    }
+
+    @Test
+    public void testOverridesAreApplied() {
+        Material mat = material(ColorRGBA.Red);
+        Geometry a = geometry(mat);
+        Geometry b = geometry(mat);
+        b.addMatParamOverride(new MatParamOverride(VarType.Vector4, "Color", ColorRGBA.Blue));
+        root.updateGeometricState();
+
+        assertEquals(ColorRGBA.Red, render(a));
+        assertEquals(ColorRGBA.Blue, render(b));
+        assertEquals(ColorRGBA.Red, render(a));
+    }
+
+    @Test
+    public void testTexturesAreRebound() {
+        Texture2D tex1 = texture();
+        Texture2D tex2 = texture();
+        Material mat1 = material(ColorRGBA.White);
+        mat1.setTexture("ColorMap", tex1);
+        Material mat2 = material(ColorRGBA.White);
+        mat2.setTexture("ColorMap", tex2);
+        // uses another shader, so mat1 is still current in its own
+        mat2.setBoolean("VertexColor", true);
+        Geometry a = geometry(mat1);
+        Geometry b = geometry(mat2);
+
+        render(a);
+        assertSame(tex1, usedTextures[0]);
+        Shader shader = usedShader;
+        render(b);
+        assertSame(tex2, usedTextures[0]);
+        assertNotSame(shader, usedShader);
+        render(a);
+        assertSame(tex1, usedTextures[0]);
+    }
+}
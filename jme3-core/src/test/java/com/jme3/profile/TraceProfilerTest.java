@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.system.NullRenderer;
+import java.io.StringWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link TraceProfiler} turns profiler steps and user scopes
+ * into Chrome trace events.
+ */
+public class TraceProfilerTest {
+
+    private final ViewPort viewPort = new ViewPort("Main", new Camera(16, 16));
+
+    private void renderFrame(TraceProfiler profiler) {
+        profiler.appStep(AppStep.BeginFrame);
+        profiler.appStep(AppStep.StateManagerUpdate);
+        profiler.beginScope("AI");
+        profiler.endScope();
+        profiler.appStep(AppStep.RenderMainViewPorts);
+        profiler.vpStep(VpStep.BeginRender, viewPort, null);
+        profiler.vpStep(VpStep.RenderBucket, viewPort, Bucket.Opaque);
+        profiler.vpStep(VpStep.EndRender, viewPort, null);
+        profiler.appStep(AppStep.EndFrame);
+    }
+
+    private static String export(TraceProfiler profiler) throws Exception {
+        StringWriter out = new StringWriter();
+        profiler.writeChromeTrace(out);
+        return out.toString();
+    }
+
+    private static int count(String s, String part) {
+        int count = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testStepsAndScopesAreExported() throws Exception {
+        TraceProfiler profiler = new TraceProfiler();
+        renderFrame(profiler);
+        renderFrame(profiler);
+
+        String json = export(profiler);
+        assertTrue(json.startsWith("{"));
+        assertTrue(json.trim().endsWith("]}"));
+        assertEquals(2, count(json, "\"name\":\"Frame\""));
+        assertEquals(2, count(json, "\"name\":\"StateManagerUpdate\""));
+        assertEquals(2, count(json, "\"name\":\"AI\",\"cat\":\"scope\""));
+        assertEquals(2, count(json, "\"name\":\"Main/BeginRender\""));
+        assertEquals(2, count(json, "\"name\":\"Main/Opaque Bucket\""));
+        // End markers close steps but aren't events of their own.
+        assertEquals(0, count(json, "EndFrame"));
+        assertEquals(0, count(json, "EndRender"));
+        assertEquals(1, count(json, "\"thread_name\""));
+    }
+
+    @Test
+    public void testOpenStepsAreLeftOut() throws Exception {
+        TraceProfiler profiler = new TraceProfiler();
+        profiler.appStep(AppStep.BeginFrame);
+        profiler.appStep(AppStep.StateManagerUpdate);
+        profiler.beginScope("Unfinished");
+
+        String json = export(profiler);
+        assertEquals(0, count(json, "\"ph\":\"X\""));
+    }
+
+    @Test
+    public void testRingKeepsNewestEvents() throws Exception {
+        TraceProfiler profiler = new TraceProfiler(16);
+        assertEquals(16, profiler.getCapacity());
+        for (int i = 0; i < 10; i++) {
+            renderFrame(profiler);
+        }
+        String json = export(profiler);
+        // 9 events per frame, so only the last frame is complete.
+        assertEquals(1, count(json, "\"name\":\"Frame\""));
+    }
+
+    @Test
+    public void testCapturingCanBePaused() throws Exception {
+        TraceProfiler profiler = new TraceProfiler();
+        renderFrame(profiler);
+        profiler.setCapturing(false);
+        renderFrame(profiler);
+        assertEquals(1, count(export(profiler), "\"name\":\"Frame\""));
+
+        profiler.clear();
+        assertEquals(0, count(export(profiler), "\"name\":\"Frame\""));
+    }
+
+    @Test
+    public void testScopesFromOtherThreads() throws Exception {
+        final TraceProfiler profiler = new TraceProfiler();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    profiler.beginScope("Job \"" + i + "\"");
+                    profiler.endScope();
+                }
+            }
+        }, "Worker");
+        worker.start();
+        renderFrame(profiler);
+        worker.join();
+
+        String json = export(profiler);
+        assertEquals(2, count(json, "\"thread_name\""));
+        assertTrue(json.contains("\"name\":\"Worker\""));
+        assertTrue(json.contains("\"name\":\"Job \\\"99\\\"\""));
+        assertEquals(101, count(json, "\"cat\":\"scope\""));
+    }
+
+    @Test
+    public void testGpuTimesOnSeparateTrack() throws Exception {
+        TraceProfiler profiler = new TraceProfiler();
+        profiler.setRenderer(new NullRenderer() {
+            private int next;
+
+            @Override
+            public int[] generateProfilingTasks(int numTasks) {
+                int[] ids = new int[numTasks];
+                for (int i = 0; i < numTasks; i++) {
+                    ids[i] = next++;
+                }
+                return ids;
+            }
+
+            @Override
+            public boolean isTaskResultAvailable(int taskId) {
+                return true;
+            }
+
+            @Override
+            public long getProfilingTime(int taskId) {
+                return 1500;
+            }
+        });
+        renderFrame(profiler);
+        profiler.appStep(AppStep.BeginFrame);
+
+        String json = export(profiler);
+        assertTrue(json.contains("\"args\":{\"name\":\"GPU\"}"));
+        // Frame, StateManagerUpdate, RenderMainViewPorts, BeginRender, Opaque bucket.
+        assertEquals(5, count(json, "\"cat\":\"gpu\""));
+        assertTrue(json.contains("\"name\":\"Main/Opaque Bucket\",\"cat\":\"gpu\""));
+        assertTrue(json.contains("\"dur\":1.500"));
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Quad;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the draw calls made by {@link RenderManager#setAutoInstancing(boolean)}.
+ */
+public class AutoInstancingTest {
+
+    private static class DrawCall {
+        final Mesh mesh;
+        final int count;
+        final float[] instanceData;
+        final VertexBuffer instanceBuffer;
+
+        DrawCall(Mesh mesh, int count, VertexBuffer[] instanceData) {
+            this.mesh = mesh;
+            this.count = count;
+            if (instanceData == null) {
+                this.instanceData = null;
+                this.instanceBuffer = null;
+            } else {
+                this.instanceBuffer = instanceData[0];
+                FloatBuffer fb = (FloatBuffer) instanceData[0].getData();
+                this.instanceData = new float[fb.limit()];
+                fb.duplicate().get(this.instanceData);
+            }
+        }
+    }
+
+    private final List<DrawCall> drawCalls = new ArrayList<>();
+    private AssetManager assetManager;
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private Node scene;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager = new RenderManager(new NullRenderer() {
+            @Override
+            public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+                drawCalls.add(new DrawCall(mesh, count, instanceData));
+            }
+        });
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 100));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        viewPort = renderManager.createMainView("Test", cam);
+        scene = new Node("Scene");
+        viewPort.attachScene(scene);
+    }
+
+    private Material unshaded() {
+        Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        mat.setColor("Color", ColorRGBA.Blue);
+        return mat;
+    }
+
+    private Geometry addGeometry(Mesh mesh, Material mat, float x) {
+        Geometry geom = new Geometry("Geom", mesh);
+        geom.setMaterial(mat);
+        geom.setLocalTranslation(x, 0, 0);
+        scene.attachChild(geom);
+        return geom;
+    }
+
+    private void render() {
+        drawCalls.clear();
+        scene.updateGeometricState();
+        renderManager.renderViewPort(viewPort, 0);
+    }
+
+    @Test
+    public void testSharedMeshAndMaterialIsInstanced() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material mat = unshaded();
+        for (int i = 0; i < 10; i++) {
+            addGeometry(mesh, mat, i * 3);
+        }
+
+        render();
+        assertEquals(10, drawCalls.size());
+
+        renderManager.setAutoInstancing(true);
+        render();
+        assertEquals(1, drawCalls.size());
+        DrawCall call = drawCalls.get(0);
+        assertSame(mesh, call.mesh);
+        assertEquals(10, call.count);
+        assertEquals(10 * 16, call.instanceData.length);
+
+        // Every instance carries the translation of its geometry
+        boolean[] seen = new boolean[10];
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0f, call.instanceData[i * 16 + 13], 0f);
+            int x = (int) call.instanceData[i * 16 + 12];
+            seen[x / 3] = true;
+        }
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+    }
+
+    @Test
+    public void testBatchesPerMesh() {
+        Mesh box = new Box(1, 1, 1);
+        Mesh quad = new Quad(1, 1);
+        Material mat = unshaded();
+        for (int i = 0; i < 4; i++) {
+            addGeometry(box, mat, i * 3);
+            addGeometry(quad, mat, i * 3 + 1);
+        }
+        addGeometry(new Box(1, 1, 1), mat, -5);
+
+        renderManager.setAutoInstancing(true);
+        render();
+        assertEquals(3, drawCalls.size());
+        int instanced = 0;
+        for (DrawCall call : drawCalls) {
+            if (call.mesh == box || call.mesh == quad) {
+                assertEquals(4, call.count);
+                assertNotNull(call.instanceData);
+                instanced++;
+            } else {
+                assertEquals(1, call.count);
+                assertNull(call.instanceData);
+            }
+        }
+        assertEquals(2, instanced);
+    }
+
+    @Test
+    public void testBatchesUseTheirOwnInstanceBuffer() {
+        Mesh mesh = new Box(1, 1, 1);
+        for (int m = 0; m < 5; m++) {
+            Material mat = unshaded();
+            for (int i = 0; i < 3; i++) {
+                addGeometry(mesh, mat, i * 3 + m * 10);
+            }
+        }
+
+        renderManager.setAutoInstancing(true);
+        render();
+        assertEquals(5, drawCalls.size());
+        List<VertexBuffer> buffers = new ArrayList<>();
+        for (DrawCall call : drawCalls) {
+            assertEquals(3, call.count);
+            assertFalse(buffers.contains(call.instanceBuffer));
+            buffers.add(call.instanceBuffer);
+        }
+
+        // the next frame reuses the same buffers
+        render();
+        for (DrawCall call : drawCalls) {
+            assertTrue(buffers.contains(call.instanceBuffer));
+        }
+    }
+
+    @Test
+    public void testGeometryListIsNotInstanced() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material mat = unshaded();
+        GeometryList list = new GeometryList(new OpaqueComparator());
+        for (int i = 0; i < 5; i++) {
+            list.add(addGeometry(mesh, mat, i * 3));
+        }
+        scene.updateGeometricState();
+
+        renderManager.setAutoInstancing(true);
+        renderManager.renderGeometryList(list);
+        assertEquals(5, drawCalls.size());
+    }
+
+    @Test
+    public void testDifferentMaterialsAreNotBatched() {
+        Mesh mesh = new Box(1, 1, 1);
+        for (int i = 0; i < 5; i++) {
+            addGeometry(mesh, unshaded(), i * 3);
+        }
+
+        renderManager.setAutoInstancing(true);
+        render();
+        assertEquals(5, drawCalls.size());
+        for (DrawCall call : drawCalls) {
+            assertEquals(1, call.count);
+        }
+    }
+
+    @Test
+    public void testMaterialWithoutInstancingSupport() {
+        Mesh mesh = new Box(1, 1, 1);
+        Material mat = new Material(assetManager, "Common/MatDefs/Misc/Particle.j3md");
+        for (int i = 0; i < 5; i++) {
+            addGeometry(mesh, mat, i * 3);
+        }
+
+        renderManager.setAutoInstancing(true);
+        render();
+        assertEquals(5, drawCalls.size());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.OpaqueSortKeyComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that sorting with the {@link OpaqueSortKeyComparator} gives the
+ * same order as the {@link OpaqueComparator}.
+ */
+public class OpaqueSortKeyComparatorTest {
+
+    private static class SortIdMaterial extends Material {
+
+        private final int sortId;
+
+        SortIdMaterial(int sortId) {
+            this.sortId = sortId;
+        }
+
+        @Override
+        public int getSortId() {
+            return sortId;
+        }
+    }
+
+    private static void fill(GeometryList list, int count, long seed) {
+        Random random = new Random(seed);
+        Box box = new Box(1, 1, 1);
+        Material[] materials = {
+            new SortIdMaterial(-1), new SortIdMaterial(0), new SortIdMaterial(5),
+            new SortIdMaterial(0x7FFF0011), new SortIdMaterial(0x80001234)
+        };
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("geom" + i, box);
+            geom.setMaterial(materials[random.nextInt(materials.length)]);
+            // some geometries at the same distance, some behind the camera
+            geom.setLocalTranslation(0, 0, random.nextInt(40) - 10);
+            geom.updateGeometricState();
+            list.add(geom);
+        }
+    }
+
+    @Test
+    public void testSameOrderAsOpaqueComparator() {
+        Camera cam = new Camera(100, 100);
+        cam.setLocation(Vector3f.ZERO);
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+
+        for (int count : new int[]{0, 1, 2, 31, 500}) {
+            GeometryList expected = new GeometryList(new OpaqueComparator());
+            GeometryList actual = new GeometryList(new OpaqueSortKeyComparator());
+            fill(expected, count, count);
+            fill(actual, count, count);
+            expected.setCamera(cam);
+            actual.setCamera(cam);
+            expected.sort();
+            actual.sort();
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            }
+        }
+    }
+}
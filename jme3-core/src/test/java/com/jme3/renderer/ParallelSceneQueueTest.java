@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.IndexedNode;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that culling with {@link RenderManager#setSceneCullingPool(java.util.concurrent.ForkJoinPool)}
+ * fills the render queue with the same geometries, in the same order, as the
+ * sequential scene traversal.
+ */
+public class ParallelSceneQueueTest {
+
+    /**
+     * Keeps the queue order so that it can be compared.
+     */
+    private static final GeometryComparator QUEUE_ORDER = new GeometryComparator() {
+        @Override
+        public void setCamera(Camera cam) {
+        }
+
+        @Override
+        public int compare(Geometry a, Geometry b) {
+            return 0;
+        }
+    };
+
+    private static class RenderCountControl extends AbstractControl {
+        int renderCount;
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+            renderCount++;
+        }
+    }
+
+    private final List<Geometry> rendered = new ArrayList<>();
+    private final List<RenderCountControl> controls = new ArrayList<>();
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private Material material;
+    private Mesh mesh;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        renderManager = new RenderManager(new NullRenderer()) {
+            @Override
+            public void renderGeometry(Geometry geom) {
+                rendered.add(geom);
+            }
+        };
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 0, 100));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        viewPort = renderManager.createMainView("Test", cam);
+        for (Bucket bucket : Bucket.values()) {
+            if (bucket != Bucket.Inherit) {
+                viewPort.getQueue().setGeometryComparator(bucket, QUEUE_ORDER);
+            }
+        }
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        mesh = new Box(1, 1, 1);
+        random = new Random(7);
+    }
+
+    private Geometry createGeometry(String name) {
+        Geometry geom = new Geometry(name, mesh);
+        geom.setMaterial(material);
+        // Some of them are out of view
+        geom.setLocalTranslation(random.nextFloat() * 200f - 100f, random.nextFloat() * 200f - 100f,
+                random.nextFloat() * 20f);
+        switch (random.nextInt(8)) {
+            case 0:
+                geom.setQueueBucket(Bucket.Transparent);
+                break;
+            case 1:
+                geom.setQueueBucket(Bucket.Translucent);
+                break;
+            case 2:
+                geom.setQueueBucket(Bucket.Sky);
+                break;
+            case 3:
+                geom.setCullHint(Spatial.CullHint.Always);
+                break;
+            case 4:
+                geom.setCullHint(Spatial.CullHint.Never);
+                break;
+            default:
+                break;
+        }
+        return geom;
+    }
+
+    private void fill(Node node, int children, int depth) {
+        for (int i = 0; i < children; i++) {
+            if (depth > 0 && i % 10 == 0) {
+                Node child = new Node(node.getName() + "/" + i);
+                child.setLocalTranslation(random.nextFloat() * 20f - 10f, 0, 0);
+                fill(child, children / 2, depth - 1);
+                node.attachChild(child);
+            } else {
+                node.attachChild(createGeometry(node.getName() + "/" + i));
+            }
+        }
+    }
+
+    private Node createScene() {
+        Node scene = new Node("Scene");
+        // Above the split threshold with nested nodes that are split too
+        fill(scene, 5 * ParallelSceneQueue.SPLIT_THRESHOLD, 2);
+
+        // Spatials with controls and indexed nodes are rendered in place
+        for (int i = 0; i < 3; i++) {
+            Node withControl = new Node("Controlled" + i);
+            fill(withControl, 20, 1);
+            RenderCountControl control = new RenderCountControl();
+            withControl.addControl(control);
+            controls.add(control);
+            // Every tenth child of the scene is a node
+            ((Node) scene.getChild(i * 10)).attachChildAt(withControl, 1);
+        }
+        IndexedNode indexed = new IndexedNode("Indexed");
+        fill(indexed, 100, 0);
+        scene.attachChildAt(indexed, 100);
+
+        scene.updateLogicalState(0f);
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private List<Geometry> cullAndRender(Spatial scene) {
+        rendered.clear();
+        renderManager.renderScene(scene, viewPort);
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Sky, Bucket.Transparent, Bucket.Translucent, Bucket.Gui}) {
+            rendered.add(null); // marks the start of each bucket
+            viewPort.getQueue().renderQueue(bucket, renderManager, viewPort.getCamera(), true);
+        }
+        return new ArrayList<>(rendered);
+    }
+
+    private int[] renderCounts() {
+        int[] result = new int[controls.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = controls.get(i).renderCount;
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameQueueAsSequential() {
+        Spatial scene = createScene();
+        List<Geometry> expected = cullAndRender(scene);
+        int[] expectedCounts = renderCounts();
+        assertTrue(expected.size() > 100);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            renderManager.setSceneCullingPool(pool);
+            // Twice, since the second frame reuses the chunks of the first
+            for (int frame = 1; frame <= 2; frame++) {
+                assertEquals(expected, cullAndRender(scene));
+                for (int i = 0; i < expectedCounts.length; i++) {
+                    assertEquals((frame + 1) * expectedCounts[i], controls.get(i).renderCount);
+                }
+            }
+        } finally {
+            renderManager.setSceneCullingPool(null);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMovedCamera() {
+        Spatial scene = createScene();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Camera cam = viewPort.getCamera();
+            for (int i = 0; i < 5; i++) {
+                cam.setLocation(new Vector3f(random.nextFloat() * 100f - 50f, 0, 100));
+                cam.lookAt(new Vector3f(random.nextFloat() * 100f - 50f, 0, 0), Vector3f.UNIT_Y);
+
+                renderManager.setSceneCullingPool(null);
+                List<Geometry> expected = cullAndRender(scene);
+                renderManager.setSceneCullingPool(pool);
+                assertEquals(expected, cullAndRender(scene));
+            }
+        } finally {
+            renderManager.setSceneCullingPool(null);
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.util.BufferUtils;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link StreamBufferRing} against a mock GL that hands out plain
+ * direct buffers as mapped memory and records fence usage.
+ */
+public class StreamBufferRingTest {
+
+    private final List<Object> createdFences = new ArrayList<Object>();
+    private final List<Object> waitedFences = new ArrayList<Object>();
+    private final List<Object> deletedFences = new ArrayList<Object>();
+    private ByteBuffer mapped;
+    private boolean failMapping;
+    private GL4 gl4;
+    private GLExt glext;
+
+    @Before
+    public void setUp() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("glMapBufferRange")) {
+                    if (failMapping) {
+                        return null;
+                    }
+                    mapped = BufferUtils.createByteBuffer((int) (long) (Long) args[2]);
+                    return mapped;
+                } else if (name.equals("glFenceSync")) {
+                    Object fence = new Object();
+                    createdFences.add(fence);
+                    return fence;
+                } else if (name.equals("glClientWaitSync")) {
+                    waitedFences.add(args[0]);
+                    return GLExt.GL_CONDITION_SATISFIED;
+                } else if (name.equals("glDeleteSync")) {
+                    deletedFences.add(args[0]);
+                    return null;
+                }
+                return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        };
+        gl4 = (GL4) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GL4.class}, handler);
+        glext = (GLExt) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GLExt.class}, handler);
+    }
+
+    @Test
+    public void testRegionSizeIsAlignedWithHeadroom() {
+        assertEquals(256, StreamBufferRing.getRegionSizeFor(1));
+        assertEquals(256, StreamBufferRing.getRegionSizeFor(100));
+        assertEquals(512, StreamBufferRing.getRegionSizeFor(300));
+        assertTrue(StreamBufferRing.getRegionSizeFor(4096) >= 4096);
+    }
+
+    @Test
+    public void testWritesCycleThroughRegions() {
+        StreamBufferRing ring = new StreamBufferRing(7, 256);
+        assertTrue(ring.map(gl4));
+        assertEquals(256 * StreamBufferRing.REGION_COUNT, mapped.capacity());
+
+        FloatBuffer data = BufferUtils.createFloatBuffer(1f, 2f, 3f);
+        int[] offsets = new int[StreamBufferRing.REGION_COUNT + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            data.put(0, i);
+            offsets[i] = ring.write(glext, data, Format.Float);
+            assertEquals(0, data.position());
+        }
+
+        assertEquals(0, offsets[0]);
+        assertEquals(256, offsets[1]);
+        assertEquals(512, offsets[2]);
+        assertEquals(0, offsets[3]);
+        assertEquals(offsets[3], ring.getOffset());
+
+        // Region 0 was rewritten with the last upload, the others kept theirs.
+        mapped.clear();
+        FloatBuffer view = mapped.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        assertEquals(3f, view.get(0), 0f);
+        assertEquals(1f, view.get(64), 0f);
+        assertEquals(2f, view.get(128), 0f);
+    }
+
+    @Test
+    public void testRegionIsFencedBeforeReuse() {
+        StreamBufferRing ring = new StreamBufferRing(7, 256);
+        assertTrue(ring.map(gl4));
+        FloatBuffer data = BufferUtils.createFloatBuffer(4);
+
+        for (int i = 0; i < StreamBufferRing.REGION_COUNT; i++) {
+            ring.write(glext, data, Format.Float);
+        }
+        // Every region was written once, nothing had to be waited on.
+        assertEquals(StreamBufferRing.REGION_COUNT - 1, createdFences.size());
+        assertTrue(waitedFences.isEmpty());
+
+        // Wrapping around must wait on the fence placed after the first region.
+        ring.write(glext, data, Format.Float);
+        assertEquals(1, waitedFences.size());
+        assertSame(createdFences.get(0), waitedFences.get(0));
+        assertSame(createdFences.get(0), deletedFences.get(0));
+
+        ring.deleteFences(glext);
+        assertEquals(createdFences.size(), deletedFences.size());
+    }
+
+    @Test
+    public void testMappingFailureIsReported() {
+        failMapping = true;
+        StreamBufferRing ring = new StreamBufferRing(7, 256);
+        assertFalse(ring.map(gl4));
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link IndexedNode} finds all of its children inside the
+ * view frustum while its children move, get attached and get detached.
+ */
+public class IndexedNodeTest {
+
+    private static final Random random = new Random(7);
+
+    private static Camera createCamera() {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 100f);
+        cam.setLocation(new Vector3f(0, 10, 0));
+        cam.lookAt(new Vector3f(50, 0, 50), Vector3f.UNIT_Y);
+        return cam;
+    }
+
+    private static Spatial createChild(int i) {
+        Spatial child;
+        if (i % 3 == 0) {
+            Node node = new Node("node" + i);
+            node.attachChild(new Geometry("geom" + i, new Box(1, 2, 1)));
+            child = node;
+        } else {
+            child = new Geometry("geom" + i, new Box(0.5f, 0.5f, 0.5f));
+        }
+        moveRandomly(child);
+        return child;
+    }
+
+    private static void moveRandomly(Spatial child) {
+        child.setLocalTranslation(random.nextFloat() * 400f - 200f, random.nextFloat() * 10f,
+                random.nextFloat() * 400f - 200f);
+    }
+
+    private static void assertFindsVisibleChildren(IndexedNode node, Camera cam) {
+        assertEquals(node.getQuantity(), node.getIndex().size());
+
+        List<Spatial> found = new ArrayList<>();
+        node.getChildrenInFrustum(cam, found);
+        Set<Spatial> foundSet = new HashSet<>(found);
+        assertEquals("duplicate children", found.size(), foundSet.size());
+
+        int visible = 0;
+        for (Spatial child : node.getChildren()) {
+            cam.setPlaneState(0);
+            if (cam.contains(child.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+                visible++;
+                assertTrue(child.getName() + " is visible", foundSet.contains(child));
+            }
+        }
+        for (Spatial child : found) {
+            assertSame(node, child.getParent());
+        }
+        assertTrue(visible > 0);
+        assertTrue(found.size() < node.getQuantity());
+    }
+
+    @Test
+    public void testFindInFrustum() {
+        Camera cam = createCamera();
+        IndexedNode node = new IndexedNode("indexed");
+        for (int i = 0; i < 2000; i++) {
+            node.attachChild(createChild(i));
+        }
+        node.updateGeometricState();
+        assertFindsVisibleChildren(node, cam);
+
+        // move some children and detach some others
+        for (int i = 0; i < 300; i++) {
+            moveRandomly(node.getChild(random.nextInt(node.getQuantity())));
+        }
+        for (int i = 0; i < 200; i++) {
+            node.detachChildAt(random.nextInt(node.getQuantity()));
+        }
+        for (int i = 0; i < 100; i++) {
+            node.attachChild(createChild(i));
+        }
+        node.updateGeometricState();
+        assertFindsVisibleChildren(node, cam);
+
+        // clones get their own index
+        IndexedNode clone = (IndexedNode) node.clone();
+        assertNotSame(node.getIndex(), clone.getIndex());
+        clone.updateGeometricState();
+        assertFindsVisibleChildren(clone, cam);
+
+        node.detachAllChildren();
+        assertEquals(0, node.getIndex().size());
+    }
+
+    @Test
+    public void testNeverCulledChildren() {
+        Camera cam = createCamera();
+        IndexedNode node = new IndexedNode("indexed");
+        Spatial behind = createChild(1);
+        behind.setLocalTranslation(-50, 0, -50);
+        behind.setCullHint(Spatial.CullHint.Never);
+        node.attachChild(behind);
+        node.updateGeometricState();
+
+        List<Spatial> found = new ArrayList<>();
+        node.getChildrenInFrustum(cam, found);
+        assertEquals(1, found.size());
+        assertSame(behind, found.get(0));
+    }
+
+    @Test
+    public void testCullHintSetAfterUpdate() {
+        Camera cam = createCamera();
+        Node root = new Node("root");
+        IndexedNode node = new IndexedNode("indexed");
+        root.attachChild(node);
+        Spatial behind = createChild(1);
+        behind.setLocalTranslation(-50, 0, -50);
+        Spatial other = createChild(2);
+        other.setLocalTranslation(-60, 0, -40);
+        node.attachChild(behind);
+        node.attachChild(other);
+        root.updateGeometricState();
+
+        List<Spatial> found = new ArrayList<>();
+        node.getChildrenInFrustum(cam, found);
+        assertTrue(found.isEmpty());
+
+        behind.setCullHint(Spatial.CullHint.Never);
+        root.updateGeometricState();
+        assertEquals(0, node.getDirtyCount());
+        node.getChildrenInFrustum(cam, found);
+        assertEquals(1, found.size());
+        assertSame(behind, found.get(0));
+
+        behind.setCullHint(Spatial.CullHint.Dynamic);
+        root.updateGeometricState();
+        found.clear();
+        node.getChildrenInFrustum(cam, found);
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    public void testCullHintInheritedFromAncestor() {
+        Camera cam = createCamera();
+        Node root = new Node("root");
+        IndexedNode node = new IndexedNode("indexed");
+        root.attachChild(node);
+        Spatial behind = createChild(1);
+        behind.setLocalTranslation(-50, 0, -50);
+        Spatial culled = createChild(2);
+        culled.setLocalTranslation(-60, 0, -40);
+        culled.setCullHint(Spatial.CullHint.Dynamic);
+        node.attachChild(behind);
+        node.attachChild(culled);
+        root.setCullHint(Spatial.CullHint.Never);
+        root.updateGeometricState();
+
+        // the inheriting child reaches the render manager, which culls the
+        // other one as a plain node would
+        List<Spatial> found = new ArrayList<>();
+        node.getChildrenInFrustum(cam, found);
+        assertTrue(found.contains(behind));
+        for (Spatial child : found) {
+            cam.setPlaneState(0);
+            assertEquals(child == behind, child.checkCulling(cam));
+        }
+
+        root.setCullHint(Spatial.CullHint.Dynamic);
+        found.clear();
+        node.getChildrenInFrustum(cam, found);
+        assertTrue(found.isEmpty());
+    }
+
+    private static void assertSameCollisions(Node expected, IndexedNode node, Collidable other) {
+        CollisionResults expectedResults = new CollisionResults();
+        CollisionResults results = new CollisionResults();
+        assertEquals(expected.collideWith(other, expectedResults), node.collideWith(other, results));
+        assertEquals(expectedResults.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            CollisionResult a = expectedResults.getCollisionDirect(i);
+            CollisionResult b = results.getCollisionDirect(i);
+            assertEquals(a.getGeometry().getName(), b.getGeometry().getName());
+            assertEquals(a.getDistance(), b.getDistance(), 0f);
+            assertEquals(a.getTriangleIndex(), b.getTriangleIndex());
+        }
+    }
+
+    private static void assertSameCollisions(Node expected, IndexedNode node) {
+        int hits = 0;
+        for (int i = 0; i < 100; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() * 400f - 200f, 5f,
+                    random.nextFloat() * 400f - 200f);
+            Vector3f direction = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() * 0.1f - 0.05f,
+                    random.nextFloat() - 0.5f).normalizeLocal();
+            Ray ray = new Ray(origin, direction);
+            if (i % 4 == 0) {
+                ray.setLimit(random.nextFloat() * 50f);
+            }
+            CollisionResults results = new CollisionResults();
+            hits += node.collideWith(ray, results);
+            assertSameCollisions(expected, node, ray);
+            assertSameCollisions(expected, node, new BoundingBox(origin, 10f, 5f, 10f));
+            assertSameCollisions(expected, node, new BoundingSphere(10f, origin));
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testCollideWith() {
+        Node expected = new Node("expected");
+        IndexedNode node = new IndexedNode("indexed");
+        for (int i = 0; i < 1000; i++) {
+            Spatial child = createChild(i);
+            node.attachChild(child);
+            expected.attachChild(child.clone(false));
+        }
+        expected.updateGeometricState();
+        node.updateGeometricState();
+        assertSameCollisions(expected, node);
+
+        // reorder and move children, with and without updating the bounds
+        node.swapChildren(0, 999);
+        expected.swapChildren(0, 999);
+        for (int i = 0; i < 100; i++) {
+            int index = random.nextInt(node.getQuantity());
+            moveRandomly(node.getChild(index));
+            expected.getChild(index).setLocalTranslation(node.getChild(index).getLocalTranslation());
+        }
+        assertSameCollisions(expected, node);
+        expected.updateGeometricState();
+        node.updateGeometricState();
+        assertSameCollisions(expected, node);
+    }
+
+    @Test
+    public void testBoundsUpdatedOnDemand() {
+        Camera cam = createCamera();
+        Node expected = new Node("expected");
+        IndexedNode node = new IndexedNode("indexed");
+        for (int i = 0; i < 500; i++) {
+            Spatial child = createChild(i);
+            node.attachChild(child);
+            expected.attachChild(child.clone(false));
+        }
+        expected.updateGeometricState();
+        node.updateGeometricState();
+
+        for (int frame = 0; frame < 50; frame++) {
+            int index = random.nextInt(node.getQuantity());
+            moveRandomly(node.getChild(index));
+            expected.getChild(index).setLocalTranslation(node.getChild(index).getLocalTranslation());
+
+            // refreshes the bounds, and the refresh flags, before the update
+            node.getWorldBound();
+            expected.getWorldBound();
+            assertSameCollisions(expected, node);
+            List<Spatial> found = new ArrayList<>();
+            node.getChildrenInFrustum(cam, found);
+            assertTrue(found.contains(node.getChild(index))
+                    || cam.contains(node.getChild(index).getWorldBound()) == Camera.FrustumIntersect.Outside);
+
+            node.updateGeometricState();
+            expected.updateGeometricState();
+            assertEquals(0, node.getDirtyCount());
+            assertSameCollisions(expected, node);
+            assertFindsVisibleChildren(node, cam);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.light.PointLight;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link Node#updateGeometricState(java.util.concurrent.ForkJoinPool)}
+ * produces the same geometric state as the sequential update.
+ */
+public class ParallelGeometricStateTest {
+
+    private static Node createScene() {
+        Random random = new Random(1234);
+        Node root = new Node("root");
+        root.addLight(new PointLight(new Vector3f(1, 2, 3)));
+        root.addLight(new PointLight(new Vector3f(-50, 2, 3)));
+        for (int i = 0; i < 40; i++) {
+            Node node = new Node("node" + i);
+            node.setLocalTranslation(random.nextFloat() * 10f, random.nextFloat(), 0);
+            root.attachChild(node);
+            for (int j = 0; j < 80; j++) {
+                Geometry geom = new Geometry("geom" + j, new Box(1, 1, 1));
+                geom.setLocalTranslation(random.nextFloat() * 100f, random.nextFloat() * 10f, random.nextFloat());
+                geom.setLocalRotation(new Quaternion().fromAngles(random.nextFloat(), random.nextFloat(), 0));
+                node.attachChild(geom);
+            }
+        }
+        return root;
+    }
+
+    private static void assertSameState(Spatial expected, Spatial actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(0, actual.refreshFlags);
+        assertEquals(expected.getWorldTranslation(), actual.getWorldTranslation());
+        assertEquals(expected.getWorldRotation(), actual.getWorldRotation());
+        assertEquals(expected.getWorldBound().toString(), actual.getWorldBound().toString());
+        assertEquals(expected.getWorldLightList().size(), actual.getWorldLightList().size());
+        for (int i = 0; i < expected.getWorldLightList().size(); i++) {
+            PointLight e = (PointLight) expected.getWorldLightList().get(i);
+            PointLight a = (PointLight) actual.getWorldLightList().get(i);
+            assertEquals(e.getPosition(), a.getPosition());
+        }
+        if (expected instanceof Node) {
+            Node expectedNode = (Node) expected;
+            Node actualNode = (Node) actual;
+            assertEquals(expectedNode.getQuantity(), actualNode.getQuantity());
+            for (int i = 0; i < expectedNode.getQuantity(); i++) {
+                assertSameState(expectedNode.getChild(i), actualNode.getChild(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsSequential() {
+        Node sequential = createScene();
+        Node parallel = createScene();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            sequential.updateGeometricState();
+            parallel.updateGeometricState(pool);
+            assertSameState(sequential, parallel);
+
+            // only refresh a dirty branch the second time around
+            ((Node) sequential.getChild(3)).getChild(7).move(5f, 0, 0);
+            ((Node) parallel.getChild(3)).getChild(7).move(5f, 0, 0);
+            sequential.updateGeometricState();
+            parallel.updateGeometricState(pool);
+            assertSameState(sequential, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util.clone;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that cloners reused across clones, with their resolved clone
+ * plans, behave like fresh ones.
+ */
+public class ClonerTest {
+
+    public static class Holder implements JmeCloneable {
+        public Vector3f vector = new Vector3f(1, 2, 3);
+        public Object[] array;
+        public int[] numbers = {1, 2, 3};
+
+        @Override
+        public Object jmeClone() {
+            try {
+                return super.clone();
+            } catch (CloneNotSupportedException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+
+        @Override
+        public void cloneFields(Cloner cloner, Object original) {
+            vector = cloner.clone(vector);
+            array = cloner.clone(array);
+            numbers = cloner.clone(numbers);
+        }
+    }
+
+    /**
+     * Clones another spatial while its own spatial is being cloned.
+     */
+    public static class NestedCloneControl extends AbstractControl {
+        public Spatial other;
+
+        @Override
+        public void cloneFields(Cloner cloner, Object original) {
+            super.cloneFields(cloner, original);
+            other = other.clone();
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    @Test
+    public void testReusedCloner() {
+        Holder holder = new Holder();
+        holder.array = new Object[]{holder.vector, new Vector3f(4, 5, 6), null};
+
+        Cloner cloner = new Cloner();
+        for (int i = 0; i < 3; i++) {
+            Holder clone = cloner.clone(holder);
+            assertNotSame(holder.vector, clone.vector);
+            assertEquals(holder.vector, clone.vector);
+            assertSame(clone.vector, clone.array[0]);
+            assertEquals(new Vector3f(4, 5, 6), clone.array[1]);
+            assertNull(clone.array[2]);
+            assertNotSame(holder.numbers, clone.numbers);
+            assertArrayEquals(holder.numbers, clone.numbers);
+            cloner.clearIndex();
+        }
+
+        // Functions set after the type was cloned are still honored.
+        cloner.setCloneFunction(Vector3f.class, new IdentityCloneFunction<Vector3f>());
+        assertSame(holder.vector, cloner.clone(holder).vector);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotCloneable() {
+        Cloner cloner = new Cloner();
+        try {
+            cloner.clone(new Object());
+        } catch (IllegalArgumentException ex) {
+            // Resolved plans must fail the same way again.
+            cloner.clone(new Object());
+        }
+    }
+
+    @Test
+    public void testSpatialClones() {
+        Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        Geometry geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(material);
+        Node model = new Node("Model");
+        model.attachChild(geometry);
+
+        Node other = new Node("Other");
+        NestedCloneControl control = new NestedCloneControl();
+        control.other = other;
+        model.addControl(control);
+
+        Spatial first = model.clone(false);
+        Spatial second = model.clone(true);
+        Spatial deep = model.deepClone();
+
+        for (Spatial clone : new Spatial[]{first, second, deep}) {
+            Geometry copy = (Geometry) ((Node) clone).getChild("Box");
+            assertNotSame(geometry, copy);
+            assertNull(clone.getParent());
+            assertSame(clone, copy.getParent());
+            NestedCloneControl copiedControl = clone.getControl(NestedCloneControl.class);
+            assertSame(clone, copiedControl.getSpatial());
+            assertNotSame(other, copiedControl.other);
+        }
+        Geometry firstBox = (Geometry) ((Node) first).getChild("Box");
+        Geometry secondBox = (Geometry) ((Node) second).getChild("Box");
+        Geometry deepBox = (Geometry) ((Node) deep).getChild("Box");
+        assertSame(material, firstBox.getMaterial());
+        assertSame(geometry.getMesh(), firstBox.getMesh());
+        assertNotSame(material, secondBox.getMaterial());
+        assertSame(geometry.getMesh(), secondBox.getMesh());
+        assertNotSame(geometry.getMesh(), deepBox.getMesh());
+
+        // The original is not affected by any of the clones.
+        assertSame(model, geometry.getParent());
+        assertSame(other, control.other);
+    }
+}
@@ -647,4 +647,48 @@ public class LwjglGL extends LwjglRender implements GL, GL2, GL3, GL4 {
     public void glUniformBlockBinding(final int program, final int uniformBlockIndex, final int uniformBlockBinding) {
         GL31.glUniformBlockBinding(program, uniformBlockIndex, uniformBlockBinding);
     }
+
+    @Override
+    public void glBufferStorage(final int target, final long size, final int flags) {
+        GL44.glBufferStorage(target, size, flags);
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(final int target, final long offset, final long length, final int access) {
+        return GL30.glMapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean glUnmapBuffer(final int target) {
+        return GL15.glUnmapBuffer(target);
+    }
+
+    @Override
+    public void glGetProgramBinary(final int program, final IntBuffer length, final IntBuffer binaryFormat,
+                                   final ByteBuffer binary) {
+        // 4.0 and older contexts may only have GL_ARB_get_program_binary
+        if (org.lwjgl.opengl.GL.getCapabilities().OpenGL41) {
+            GL41.glGetProgramBinary(program, length, binaryFormat, binary);
+        } else {
+            ARBGetProgramBinary.glGetProgramBinary(program, length, binaryFormat, binary);
+        }
+    }
+
+    @Override
+    public void glProgramBinary(final int program, final int binaryFormat, final ByteBuffer binary) {
+        if (org.lwjgl.opengl.GL.getCapabilities().OpenGL41) {
+            GL41.glProgramBinary(program, binaryFormat, binary);
+        } else {
+            ARBGetProgramBinary.glProgramBinary(program, binaryFormat, binary);
+        }
+    }
+
+    @Override
+    public void glProgramParameteri(final int program, final int pname, final int value) {
+        if (org.lwjgl.opengl.GL.getCapabilities().OpenGL41) {
+            GL41.glProgramParameteri(program, pname, value);
+        } else {
+            ARBGetProgramBinary.glProgramParameteri(program, pname, value);
+        }
+    }
 }
@@ -33,15 +33,16 @@ package com.jme3.network.base;
 
 import com.jme3.network.*;
 import com.jme3.network.base.protocol.SerializerMessageProtocol;
+import com.jme3.network.kernel.AbstractKernel;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.PooledBuffer;
 import com.jme3.network.message.ChannelInfoMessage;
 import com.jme3.network.message.ClientRegistrationMessage;
 import com.jme3.network.message.DisconnectMessage;
 import com.jme3.network.service.HostedServiceManager;
 import com.jme3.network.service.serializer.ServerSerializerRegistrationsService;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -163,6 +164,32 @@ public class DefaultServer implements Server
         } 
     } 
 
+    /**
+     *  Converts the message to a pooled buffer, going through a plain
+     *  ByteBuffer if the protocol cannot produce pooled buffers itself.
+     */
+    protected PooledBuffer toPooledBuffer( Message message )
+    {
+        if( protocol instanceof SerializerMessageProtocol ) {
+            return ((SerializerMessageProtocol)protocol).toPooledBuffer(message);
+        }
+        return PooledBuffer.wrap(protocol.toByteBuffer(message, null));
+    }
+
+    /**
+     *  Sends the pooled data through the endpoint's kernel, which can
+     *  queue it without a copy.  Endpoints of other kernels get a copy.
+     */
+    protected static void send( Endpoint endpoint, PooledBuffer data )
+    {
+        Kernel kernel = endpoint.getKernel();
+        if( kernel instanceof AbstractKernel ) {
+            ((AbstractKernel)kernel).send( endpoint, data );
+        } else {
+            endpoint.send( data.toByteBuffer() );
+        }
+    }
+
     protected void checkChannel( int channel )
     {
         if( channel < MessageConnection.CHANNEL_DEFAULT_RELIABLE 
@@ -240,16 +267,20 @@ public class DefaultServer implements Server
         if( connections.isEmpty() )
             return;
  
-        ByteBuffer buffer = protocol.toByteBuffer(message, null);
+        PooledBuffer buffer = toPooledBuffer(message);
  
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
                
-        if( message.isReliable() || fastAdapter == null ) {
-            // Don't need to copy the data because message protocol is already
-            // giving us a fresh buffer
-            reliableAdapter.broadcast( adapter, buffer, true, false );
-        } else {
-            fastAdapter.broadcast( adapter, buffer, false, false );
+        try {
+            // The endpoints share the buffer and keep their own references
+            // until it has been written
+            if( message.isReliable() || fastAdapter == null ) {
+                reliableAdapter.broadcast( adapter, buffer, true );
+            } else {
+                fastAdapter.broadcast( adapter, buffer, false );
+            }
+        } finally {
+            buffer.release();
         }               
     }
 
@@ -265,11 +296,15 @@ public class DefaultServer implements Server
 
         checkChannel(channel);
         
-        ByteBuffer buffer = protocol.toByteBuffer(message, null);
+        PooledBuffer buffer = toPooledBuffer(message);
  
         FilterAdapter adapter = filter == null ? null : new FilterAdapter(filter);
 
-        channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true, false );               
+        try {
+            channels.get(channel+CH_FIRST).broadcast( adapter, buffer, true );
+        } finally {
+            buffer.release();
+        }               
     }
 
     @Override
@@ -581,11 +616,15 @@ public class DefaultServer implements Server
             if( log.isLoggable(Level.FINER) ) {
                 log.log(Level.FINER, "send({0})", message);
             }
-            ByteBuffer buffer = protocol.toByteBuffer(message, null);
-            if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
-                channels[CH_RELIABLE].send( buffer );
-            } else {
-                channels[CH_UNRELIABLE].send( buffer );
+            PooledBuffer buffer = toPooledBuffer(message);
+            try {
+                if( message.isReliable() || channels[CH_UNRELIABLE] == null ) {
+                    DefaultServer.send( channels[CH_RELIABLE], buffer );
+                } else {
+                    DefaultServer.send( channels[CH_UNRELIABLE], buffer );
+                }
+            } finally {
+                buffer.release();
             }
         }
 
@@ -596,8 +635,12 @@ public class DefaultServer implements Server
                 log.log(Level.FINER, "send({0}, {1})", new Object[]{channel, message});
             }
             checkChannel(channel);
-            ByteBuffer buffer = protocol.toByteBuffer(message, null);
-            channels[channel+CH_FIRST].send(buffer);
+            PooledBuffer buffer = toPooledBuffer(message);
+            try {
+                DefaultServer.send( channels[channel+CH_FIRST], buffer );
+            } finally {
+                buffer.release();
+            }
         }
  
         protected void closeConnection()
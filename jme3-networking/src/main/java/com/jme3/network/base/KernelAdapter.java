@@ -35,10 +35,12 @@ import com.jme3.network.Filter;
 import com.jme3.network.HostedConnection;
 import com.jme3.network.Message;
 import com.jme3.network.MessageListener;
+import com.jme3.network.kernel.AbstractKernel;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.EndpointEvent;
 import com.jme3.network.kernel.Envelope;
 import com.jme3.network.kernel.Kernel;
+import com.jme3.network.kernel.PooledBuffer;
 import com.jme3.network.message.ClientRegistrationMessage;
 import java.nio.ByteBuffer;
 import java.util.Map;
@@ -109,6 +111,16 @@ public class KernelAdapter extends Thread
         kernel.broadcast( filter, data, reliable, copy );
     }                           
  
+    public void broadcast( Filter<? super Endpoint> filter, PooledBuffer data, boolean reliable )
+    {
+        if( kernel instanceof AbstractKernel ) {
+            ((AbstractKernel)kernel).broadcast( filter, data, reliable );
+        } else {
+            // Other kernels only take ByteBuffers so they get a copy
+            kernel.broadcast( filter, data.toByteBuffer(), reliable, false );
+        }
+    }                           
+ 
     public void close() throws InterruptedException
     {
         go.set(false);
@@ -217,24 +229,28 @@ public class KernelAdapter extends Thread
     {
         MessageBuffer protocol = getMessageBuffer(env.getSource()); 
     
-        byte[] data = env.getData();
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+        ByteBuffer buffer = env.getBuffer();
 
-        if( !protocol.addBytes(buffer) ) {
-            // This can happen if there was only a partial message
-            // received.  However, this should never happen for unreliable
-            // connections.
-            if( !reliable ) {
-                // Log some additional information about the packet.
-                int len = Math.min( 10, data.length );
-                StringBuilder sb = new StringBuilder();
-                for( int i = 0; i < len; i++ ) {
-                    sb.append( "[" + Integer.toHexString(data[i]) + "]" ); 
-                }
-                log.log( Level.FINE, "First 10 bytes of incomplete nessage:" + sb );         
-                throw new RuntimeException( "Envelope contained incomplete data:" + env );
-            }                
-        }            
+        try {
+            if( !protocol.addBytes(buffer) ) {
+                // This can happen if there was only a partial message
+                // received.  However, this should never happen for unreliable
+                // connections.
+                if( !reliable ) {
+                    // Log some additional information about the packet.
+                    int len = Math.min( 10, buffer.limit() );
+                    StringBuilder sb = new StringBuilder();
+                    for( int i = 0; i < len; i++ ) {
+                        sb.append( "[" + Integer.toHexString(buffer.get(i)) + "]" ); 
+                    }
+                    log.log( Level.FINE, "First 10 bytes of incomplete nessage:" + sb );         
+                    throw new RuntimeException( "Envelope contained incomplete data:" + env );
+                }                
+            }            
+        } finally {
+            // The message buffer has copied what it needs
+            env.release();
+        }
         
         // Should be complete... and maybe we should check but we don't
         Message m = null;
@@ -34,7 +34,7 @@ package com.jme3.network.base.protocol;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
@@ -51,13 +51,17 @@ import com.jme3.network.base.MessageProtocol;
  *  behavior in a way that affects later messages then problems occur
  *  when those messages are all in one block.
  *
+ *  <p>Since messages are deserialized right away, a single working
+ *  buffer is reused for all of them.</p>
+ *
  *  @author    Paul Speed
  */
 public class GreedyMessageBuffer implements MessageBuffer {
 
     private MessageProtocol protocol;
-    private final LinkedList<Message> messages = new LinkedList<Message>();
+    private final ArrayDeque<Message> messages = new ArrayDeque<Message>();
     private ByteBuffer current;
+    private ByteBuffer working;
     private int size;
     private Byte carry;
     
@@ -74,7 +78,7 @@ public class GreedyMessageBuffer implements MessageBuffer {
         if( messages.isEmpty() ) {
             return null;
         }                
-        return messages.removeFirst();
+        return messages.poll();
     }
     
     /**
@@ -123,9 +127,14 @@ public class GreedyMessageBuffer implements MessageBuffer {
                     size = buffer.getShort();
                 }               
  
-                // Allocate the buffer into which we'll feed the
-                // data as we get it               
-                current = ByteBuffer.allocate(size);
+                // Reuse the buffer into which we'll feed the
+                // data as we get it, growing it as needed
+                if( working == null || working.capacity() < size ) {
+                    working = ByteBuffer.allocate(size);
+                }
+                current = working;
+                current.clear();
+                current.limit(size);
             } 
 
             if( current.remaining() <= buffer.remaining() ) {
@@ -34,11 +34,13 @@ package com.jme3.network.base.protocol;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
 import com.jme3.network.base.MessageProtocol;
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.PooledBuffer;
 
 
 /**
@@ -48,18 +50,34 @@ import com.jme3.network.base.MessageProtocol;
  *  are deserialized, thus allowing the serialization process itself to be
  *  altered mid-stream.
  *
+ *  <p>When given a BufferPool, the bytes of the pending messages are
+ *  kept in pooled buffers that are released as the messages are
+ *  polled.</p>
+ *
  *  @author    Paul Speed
  */
 public class LazyMessageBuffer implements MessageBuffer {
 
     private MessageProtocol protocol;
-    private final LinkedList<ByteBuffer> messages = new LinkedList<ByteBuffer>();
+    private BufferPool pool;
+    private final ArrayDeque<PooledBuffer> messages = new ArrayDeque<PooledBuffer>();
+    private PooledBuffer currentBuffer;
     private ByteBuffer current;
     private int size;
     private Byte carry;
     
     public LazyMessageBuffer( MessageProtocol protocol ) {
+        this(protocol, null);
+    }
+    
+    /**
+     *  Creates a message buffer keeping the pending message bytes in
+     *  buffers from the specified pool, or in newly allocated buffers
+     *  if the pool is null.
+     */
+    public LazyMessageBuffer( MessageProtocol protocol, BufferPool pool ) {
         this.protocol = protocol;
+        this.pool = pool;
     }
     
     /**
@@ -71,8 +89,12 @@ public class LazyMessageBuffer implements MessageBuffer {
         if( messages.isEmpty() ) {
             return null;
         }
-        ByteBuffer bytes = messages.removeFirst();
-        return protocol.toMessage(bytes);                
+        PooledBuffer bytes = messages.poll();
+        try {
+            return protocol.toMessage(bytes.getBuffer());
+        } finally {
+            bytes.release();
+        }                
     }
     
     /**
@@ -123,7 +145,12 @@ public class LazyMessageBuffer implements MessageBuffer {
  
                 // Allocate the buffer into which we'll feed the
                 // data as we get it               
-                current = ByteBuffer.allocate(size);
+                if( pool != null ) {
+                    currentBuffer = pool.acquire(size);
+                } else {
+                    currentBuffer = PooledBuffer.wrap(ByteBuffer.allocate(size));
+                }
+                current = currentBuffer.getBuffer();
             } 
 
             if( current.remaining() <= buffer.remaining() ) {
@@ -143,8 +170,9 @@ public class LazyMessageBuffer implements MessageBuffer {
                 buffer.limit(buffer.position() + extra);
  
                 // Just push the bytes and let the serialization happen later.
-                messages.add(current);
+                messages.add(currentBuffer);
  
+                currentBuffer = null;
                 current = null;
                 
                 // Note: I originally thought that lazy deserialization was
@@ -38,6 +38,8 @@ import java.util.LinkedList;
 import com.jme3.network.Message;
 import com.jme3.network.base.MessageBuffer;
 import com.jme3.network.base.MessageProtocol;
+import com.jme3.network.kernel.BufferPool;
+import com.jme3.network.kernel.PooledBuffer;
 import com.jme3.network.serializing.Serializer;
 
 /**
@@ -48,25 +50,77 @@ import com.jme3.network.serializing.Serializer;
  *  where two bytes represent the (short) length of the data
  *  and the rest is the raw data for the Serializers class.</p>
  *
+ *  <p>Messages are serialized into a per-thread working buffer and then
+ *  copied into a buffer of their own size, taken from a BufferPool for
+ *  toPooledBuffer() and for the MessageBuffers this protocol creates.</p>
+ *
  *  @version   $Revision$
  *  @author    Paul Speed
  */ 
 public class SerializerMessageProtocol implements MessageProtocol {
  
+    private static final int MAX_MESSAGE_SIZE = 32767 + 2;
+ 
+    private final BufferPool pool;
+    private final ThreadLocal<ByteBuffer> working = new ThreadLocal<ByteBuffer>();
+ 
     public SerializerMessageProtocol() {
+        this(new BufferPool(false));
+    }
+ 
+    public SerializerMessageProtocol( BufferPool pool ) {
+        if( pool == null ) {
+            throw new IllegalArgumentException("Buffer pool cannot be null.");
+        }
+        this.pool = pool;
+    }
+ 
+    public BufferPool getBufferPool() {
+        return pool;
     }
  
     /**
      *  Converts a message to a ByteBuffer using the com.jme3.network.serializing.Serializer
      *  and the (short length) + data protocol.  If target is null
-     *  then a 32k byte buffer will be created and filled.
+     *  then a new buffer of the message's size will be created and filled.
      */
     @Override
     public ByteBuffer toByteBuffer( Message message, ByteBuffer target ) {
-    
-        // Could let the caller pass their own in       
-        ByteBuffer buffer = target == null ? ByteBuffer.allocate(32767 + 2) : target;
-        
+        if( target != null ) {
+            return serialize(message, target);
+        }
+        ByteBuffer data = serialize(message, getWorkingBuffer());
+        ByteBuffer result = ByteBuffer.allocate(data.remaining());
+        result.put(data);
+        result.flip();
+        return result;
+    }
+ 
+    /**
+     *  Converts a message to a buffer from this protocol's pool using the 
+     *  com.jme3.network.serializing.Serializer and the (short length) + data 
+     *  protocol.  The caller owns the one reference to the buffer and
+     *  must release it once it has been handed to the kernels.
+     */
+    public PooledBuffer toPooledBuffer( Message message ) {
+        ByteBuffer data = serialize(message, getWorkingBuffer());
+        PooledBuffer result = pool.acquire(data.remaining());
+        result.getBuffer().put(data);
+        result.getBuffer().flip();
+        return result;
+    }
+ 
+    private ByteBuffer getWorkingBuffer() {
+        ByteBuffer buffer = working.get();
+        if( buffer == null ) {
+            buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+            working.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+ 
+    private ByteBuffer serialize( Message message, ByteBuffer buffer ) {
         try {
             buffer.position(2);
             Serializer.writeClassAndObject(buffer, message);
@@ -97,7 +151,7 @@ public class SerializerMessageProtocol implements MessageProtocol {
     @Override
     public MessageBuffer createBuffer() {
         // Defaulting to LazyMessageBuffer
-        return new LazyMessageBuffer(this);
+        return new LazyMessageBuffer(this, pool);
     }
      
 }
@@ -31,6 +31,7 @@
  */
 package com.jme3.network.kernel;
 
+import com.jme3.network.Filter;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -65,10 +66,56 @@ public abstract class AbstractKernel implements Kernel
      */
     private LinkedBlockingQueue<Envelope> envelopes = new LinkedBlockingQueue<Envelope>();
 
+    /**
+     *  Provides the buffers for received data and for copies of
+     *  outbound data.
+     */
+    private volatile BufferPool bufferPool = new BufferPool(false);
+
     protected AbstractKernel()
     {
     }
 
+    /**
+     *  Sets the pool this kernel takes its buffers from.  It should be
+     *  set before the kernel is initialized.
+     */
+    public void setBufferPool( BufferPool bufferPool )
+    {
+        if( bufferPool == null ) {
+            throw new IllegalArgumentException( "Buffer pool cannot be null." );
+        }
+        this.bufferPool = bufferPool;
+    }
+
+    public BufferPool getBufferPool()
+    {
+        return bufferPool;
+    }
+
+    /**
+     *  Dispatches the pooled data to all endpoints managed by this
+     *  kernel that match the specified endpoint filter.  The caller
+     *  can release its own reference as soon as this returns.  This
+     *  default implementation copies the data and calls the ByteBuffer
+     *  version of broadcast().  Kernels whose endpoints can queue the
+     *  buffer itself override it to avoid the copy.
+     */
+    public void broadcast( Filter<? super Endpoint> filter, PooledBuffer data, boolean reliable )
+    {
+        broadcast( filter, data.toByteBuffer(), reliable, false );
+    }
+
+    /**
+     *  Sends the pooled data to one of this kernel's endpoints.  The
+     *  caller can release its own reference as soon as this returns.
+     *  This default implementation sends a copy of the data.
+     */
+    public void send( Endpoint endpoint, PooledBuffer data )
+    {
+        endpoint.send( data.toByteBuffer() );
+    }
+
     protected void reportError( Exception e )
     {
         // Should really be queued up so the outer thread can
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *  Hands out PooledBuffers and takes them back once they are released,
+ *  so that steady message traffic does not keep allocating buffers.
+ *  Buffers are kept in power of two size classes from MIN_BUFFER_SIZE
+ *  to MAX_BUFFER_SIZE.  Larger requests get buffers that are not
+ *  pooled.  This class is thread safe.
+ *
+ *  <p>Direct buffers save the copy the JDK makes when writing heap
+ *  buffers to a channel, but they have no backing array.  The UDP
+ *  kernel sends through DatagramPackets, which need one, so it copies
+ *  direct buffers before sending them.</p>
+ */
+public class BufferPool
+{
+    public static final int MIN_BUFFER_SIZE = 256;
+    public static final int MAX_BUFFER_SIZE = 65536;
+    public static final int DEFAULT_MAX_POOLED = 256;
+
+    private static final int MIN_SHIFT = 8;
+    private static final int SIZE_CLASSES = 9;
+
+    private final boolean direct;
+    private final int maxPooled;
+    private final PooledBuffer[][] free;
+    private final int[] freeCounts;
+
+    /**
+     *  Creates a pool keeping up to DEFAULT_MAX_POOLED released buffers
+     *  per size class.
+     */
+    public BufferPool( boolean direct )
+    {
+        this(direct, DEFAULT_MAX_POOLED);
+    }
+
+    /**
+     *  Creates a pool keeping up to 'maxPooled' released buffers per
+     *  size class.  Buffers released past that are left to the garbage
+     *  collector.
+     */
+    public BufferPool( boolean direct, int maxPooled )
+    {
+        if( maxPooled < 0 ) {
+            throw new IllegalArgumentException( "maxPooled cannot be negative." );
+        }
+        this.direct = direct;
+        this.maxPooled = maxPooled;
+        this.free = new PooledBuffer[SIZE_CLASSES][maxPooled];
+        this.freeCounts = new int[SIZE_CLASSES];
+    }
+
+    public boolean isDirect()
+    {
+        return direct;
+    }
+
+    /**
+     *  Returns a buffer with a limit of 'size' bytes, its position at 0
+     *  and one reference owned by the caller.
+     */
+    public PooledBuffer acquire( int size )
+    {
+        if( size < 0 ) {
+            throw new IllegalArgumentException( "Size cannot be negative:" + size );
+        }
+        if( size > MAX_BUFFER_SIZE ) {
+            PooledBuffer result = new PooledBuffer( allocate(size), null );
+            result.reset(size);
+            return result;
+        }
+
+        int index = sizeClass(size);
+        PooledBuffer result = null;
+        PooledBuffer[] stack = free[index];
+        synchronized( stack ) {
+            int count = freeCounts[index];
+            if( count > 0 ) {
+                result = stack[--count];
+                stack[count] = null;
+                freeCounts[index] = count;
+            }
+        }
+        if( result == null ) {
+            result = new PooledBuffer( allocate(MIN_BUFFER_SIZE << index), this );
+        }
+        result.reset(size);
+        return result;
+    }
+
+    /**
+     *  Called by a PooledBuffer when its last reference is released.
+     */
+    void recycle( PooledBuffer buffer )
+    {
+        int index = sizeClass(buffer.getBuffer().capacity());
+        PooledBuffer[] stack = free[index];
+        synchronized( stack ) {
+            int count = freeCounts[index];
+            if( count < maxPooled ) {
+                stack[count] = buffer;
+                freeCounts[index] = count + 1;
+            }
+        }
+    }
+
+    private ByteBuffer allocate( int capacity )
+    {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int sizeClass( int size )
+    {
+        if( size <= MIN_BUFFER_SIZE ) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BufferPool[direct=" + direct + ", maxPooled=" + maxPooled + "]";
+    }
+}
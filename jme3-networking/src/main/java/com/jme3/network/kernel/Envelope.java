@@ -31,6 +31,8 @@
  */
 package com.jme3.network.kernel;
 
+import java.nio.ByteBuffer;
+
 /**
  *  Encapsulates a received piece of data.  This is used by the Kernel
  *  to track incoming chunks of data.  
@@ -42,6 +44,7 @@ public class Envelope
 {
     private Endpoint source;  
     private byte[] data;
+    private PooledBuffer buffer;
     private boolean reliable;
     
     /**
@@ -56,15 +59,72 @@ public class Envelope
         this.reliable = reliable;
     }
     
+    /**
+     *  Creates an incoming envelope holding the pooled data from the
+     *  specified source.  The envelope takes over the caller's reference
+     *  to the buffer, which is given back by release().
+     */
+    public Envelope( Endpoint source, PooledBuffer buffer, boolean reliable )
+    {
+        this.source = source;
+        this.buffer = buffer;
+        this.reliable = reliable;
+    }
+    
     public Endpoint getSource()
     {
         return source;
     }
     
+    /**
+     *  Returns the data as an array, copying it out of the pooled
+     *  buffer if there is one.  getBuffer() avoids the copy.
+     */
     public byte[] getData()
     {
+        if( data == null && buffer != null ) {
+            ByteBuffer bytes = buffer.getBuffer().duplicate();
+            bytes.position(0);
+            data = new byte[bytes.limit()];
+            bytes.get(data);
+        }
         return data;
     }
+
+    /**
+     *  Returns a buffer over the data from 0 to its limit.  For a pooled
+     *  envelope, the buffer is only valid until release() is called.
+     */
+    public ByteBuffer getBuffer()
+    {
+        if( buffer != null ) {
+            ByteBuffer bytes = buffer.getBuffer();
+            bytes.position(0);
+            return bytes;
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     *  Returns the number of bytes of data.
+     */
+    public int getSize()
+    {
+        return buffer != null ? buffer.size() : data.length;
+    }
+
+    /**
+     *  Gives the pooled data back once the envelope has been processed.
+     *  Does nothing for envelopes created from an array.
+     */
+    public void release()
+    {
+        if( buffer != null ) {
+            PooledBuffer b = buffer;
+            buffer = null;
+            b.release();
+        }
+    }
     
     public boolean isReliable()
     {
@@ -74,6 +134,6 @@ public class Envelope
     @Override
     public String toString()
     {
-        return "Envelope[" + source + ", " + (reliable?"reliable":"unreliable") + ", " + data.length + "]";
+        return "Envelope[" + source + ", " + (reliable?"reliable":"unreliable") + ", " + getSize() + "]";
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ *  A reference counted ByteBuffer that goes back to its BufferPool
+ *  when the last reference is released.  This lets the same bytes be
+ *  queued on many endpoints without copying them and without
+ *  allocating a new buffer for every message.
+ *
+ *  <p>The content of the buffer is the bytes from 0 to its limit.
+ *  Whoever acquires a buffer fills it and then flips it before handing
+ *  it on.  After that, the content must not change and the position
+ *  belongs to the kernel thread that writes it out.</p>
+ *
+ *  <p>A new or wrapped buffer has one reference, owned by its creator.
+ *  Code that keeps the buffer past the call that gave it must
+ *  retain() it and then release() it when done.</p>
+ */
+public final class PooledBuffer
+{
+    private final ByteBuffer buffer;
+    private final BufferPool pool;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    PooledBuffer( ByteBuffer buffer, BufferPool pool )
+    {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    /**
+     *  Wraps the bytes between the position and the limit of the
+     *  specified buffer without copying them.  The result is not pooled
+     *  and the caller must not change those bytes while it is in use.
+     */
+    public static PooledBuffer wrap( ByteBuffer data )
+    {
+        return new PooledBuffer( data.slice(), null );
+    }
+
+    /**
+     *  Returns the underlying buffer.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     *  Returns the number of content bytes.
+     */
+    public int size()
+    {
+        return buffer.limit();
+    }
+
+    /**
+     *  Returns a new heap buffer holding a copy of the content, for
+     *  code that does not take pooled buffers.
+     */
+    public ByteBuffer toByteBuffer()
+    {
+        ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        ByteBuffer result = ByteBuffer.allocate(source.limit());
+        result.put(source);
+        result.flip();
+        return result;
+    }
+
+    /**
+     *  Adds a reference to this buffer and returns it.
+     */
+    public PooledBuffer retain()
+    {
+        int count;
+        do {
+            count = refs.get();
+            if( count <= 0 ) {
+                throw new IllegalStateException( "Buffer has already been released." );
+            }
+        } while( !refs.compareAndSet(count, count + 1) );
+        return this;
+    }
+
+    /**
+     *  Removes a reference to this buffer, returning it to its pool
+     *  if it was the last one.
+     */
+    public void release()
+    {
+        int count = refs.decrementAndGet();
+        if( count == 0 ) {
+            if( pool != null ) {
+                pool.recycle(this);
+            }
+        } else if( count < 0 ) {
+            refs.incrementAndGet();
+            throw new IllegalStateException( "Buffer has already been released." );
+        }
+    }
+
+    /**
+     *  Prepares a recycled buffer to be handed out again.
+     */
+    void reset( int size )
+    {
+        buffer.clear();
+        buffer.limit(size);
+        refs.set(1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PooledBuffer[size=" + buffer.limit() + ", refs=" + refs.get() + "]";
+    }
+}
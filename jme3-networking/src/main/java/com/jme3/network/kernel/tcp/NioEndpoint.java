@@ -34,6 +34,7 @@ package com.jme3.network.kernel.tcp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.PooledBuffer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -50,13 +51,20 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class NioEndpoint implements Endpoint
 {
-    protected static final ByteBuffer CLOSE_MARKER = ByteBuffer.allocate(0);
+    protected static final PooledBuffer CLOSE_MARKER = PooledBuffer.wrap(ByteBuffer.allocate(0));
 
     private long id;
     private SocketChannel socket;
     private SelectorKernel kernel;
-    private ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+    private ConcurrentLinkedQueue<PooledBuffer> outbound = new ConcurrentLinkedQueue<PooledBuffer>();
     private boolean closing = false;
+    
+    /**
+     *  How much of the top pending buffer has been written.  The
+     *  buffers can be shared with other endpoints so we track our
+     *  own progress through them.  Only used by the selector thread.
+     */
+    private int pendingPosition = 0;
 
     public NioEndpoint( SelectorKernel kernel, long id, SocketChannel socket )
     {
@@ -85,7 +93,7 @@ public class NioEndpoint implements Endpoint
             
             // Enqueue a close marker message to let the server
             // know we should close
-            send( CLOSE_MARKER, false, true );
+            send( CLOSE_MARKER, true );
             
             return;
         }
@@ -121,25 +129,13 @@ public class NioEndpoint implements Endpoint
     /**
      *  The wakeup option is used internally when the kernel is
      *  broadcasting out to a bunch of endpoints and doesn't want to
-     *  necessarily wakeup right away.
+     *  necessarily wakeup right away.  The buffer is queued as is, 
+     *  so the caller hands its reference over to the endpoint.
      */
-    protected void send( ByteBuffer data, boolean copy, boolean wakeup )
+    protected void send( PooledBuffer data, boolean wakeup )
     {
-        // We create a ByteBuffer per endpoint since we
-        // use it to track the data sent to each endpoint
-        // separately.
-        ByteBuffer buffer;
-        if( !copy ) {
-            buffer = data;
-        } else {
-            // Copy the buffer
-            buffer = ByteBuffer.allocate(data.remaining());
-            buffer.put(data);
-            buffer.flip();
-        }
-
         // Queue it up
-        outbound.add(buffer);
+        outbound.add(data);
 
         if( wakeup )
             kernel.wakeupSelector();
@@ -149,18 +145,53 @@ public class NioEndpoint implements Endpoint
      *  Called by the SelectorKernel to get the current top
      *  buffer for writing.
      */
-    protected ByteBuffer peekPending()
+    protected PooledBuffer peekPending()
     {
         return outbound.peek();
     }
 
+    /**
+     *  Called by the SelectorKernel to write as much of the top 
+     *  buffer as the channel will take.  Once the buffer has been 
+     *  completely written it is removed and released.
+     */
+    protected void writePending( SocketChannel c ) throws IOException
+    {
+        PooledBuffer current = outbound.peek();
+        ByteBuffer data = current.getBuffer();
+        data.position(pendingPosition);
+        c.write(data);
+
+        if( data.remaining() == 0 ) {
+            removePending();
+        } else {
+            pendingPosition = data.position();
+        }
+    }
+
     /**
      *  Called by the SelectorKernel when the top buffer
      *  has been exhausted.
      */
-    protected ByteBuffer removePending()
+    protected PooledBuffer removePending()
+    {
+        PooledBuffer result = outbound.poll();
+        pendingPosition = 0;
+        if( result != null && result != CLOSE_MARKER ) {
+            result.release();
+        }
+        return result;
+    }
+
+    /**
+     *  Called by the SelectorKernel when the endpoint is closed to
+     *  give back any buffers that will never be written.
+     */
+    protected void clearPending()
     {
-        return outbound.poll();
+        while( hasPending() ) {
+            removePending();
+        }
     }
 
     protected boolean hasPending()
@@ -177,7 +208,29 @@ public class NioEndpoint implements Endpoint
         if( closing ) {
             throw new KernelException( "Endpoint has been closed:" + socket );
         }
-        send( data, true, true );
+        
+        // Copy the buffer since the caller may reuse it
+        PooledBuffer buffer = kernel.getBufferPool().acquire(data.remaining());
+        buffer.getBuffer().put(data);
+        buffer.getBuffer().flip();
+        send( buffer, true );
+    }
+
+    /**
+     *  Sends the data to the other end of the connection without
+     *  copying it.  The endpoint retains the buffer until the data has
+     *  been written out.  The caller keeps its own reference, which it
+     *  must still release.
+     */
+    public void send( PooledBuffer data )
+    {   
+        if( data == null ) {
+            throw new IllegalArgumentException( "Data cannot be null." );
+        }
+        if( closing ) {
+            throw new KernelException( "Endpoint has been closed:" + socket );
+        }
+        send( data.retain(), true );
     }
 
     @Override
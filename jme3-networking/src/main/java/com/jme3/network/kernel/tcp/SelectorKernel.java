@@ -123,23 +123,39 @@ public class SelectorKernel extends AbstractKernel
         if( !reliable )
             throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
 
+        PooledBuffer buffer;
         if( copy ) {
             // Copy the data just once
-            byte[] temp = new byte[data.remaining()];
-            System.arraycopy(data.array(), data.position(), temp, 0, data.remaining());
-            data = ByteBuffer.wrap(temp);
+            buffer = getBufferPool().acquire(data.remaining());
+            buffer.getBuffer().put(data.duplicate());
+            buffer.getBuffer().flip();
+        } else {
+            buffer = PooledBuffer.wrap(data);
         }
 
+        try {
+            broadcast( filter, buffer, reliable );
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public void broadcast( Filter<? super Endpoint> filter, PooledBuffer data, boolean reliable )
+    {
+        if( !reliable )
+            throw new UnsupportedOperationException( "Unreliable send not supported by this kernel." );
+
         // Hand it to all of the endpoints that match our routing
         for( NioEndpoint p : endpoints.values() ) {
             // Does it match the filter?
             if( filter != null && !filter.apply(p) )
                 continue;
 
-            // Give it the data... but let each endpoint track their
-            // own completion over the shared array of bytes by
-            // duplicating it
-            p.send( data.duplicate(), false, false );
+            // Give it the data... each endpoint tracks its own 
+            // completion over the shared bytes and keeps its own
+            // reference until they are written
+            p.send( data.retain(), false );
         }
 
         // Wake up the selector so it can reinitialize its
@@ -147,6 +163,17 @@ public class SelectorKernel extends AbstractKernel
         wakeupSelector();
     }
 
+    @Override
+    public void send( Endpoint endpoint, PooledBuffer data )
+    {
+        if( endpoint instanceof NioEndpoint ) {
+            // Our endpoints can queue the shared buffer as is
+            ((NioEndpoint)endpoint).send( data );
+        } else {
+            super.send( endpoint, data );
+        }
+    }
+
     protected NioEndpoint addEndpoint( SocketChannel c )
     {
         // Note: we purposely do NOT put the key in the endpoint.
@@ -165,6 +192,7 @@ public class SelectorKernel extends AbstractKernel
     protected void removeEndpoint( NioEndpoint p, SocketChannel c )
     {
         endpoints.remove( p.getId() );
+        p.clearPending();
         log.log( Level.FINE, "Endpoints size:{0}", endpoints.size() );
 
         // Enqueue an endpoint event for the listeners
@@ -204,8 +232,9 @@ public class SelectorKernel extends AbstractKernel
         //       bulk anyway.
 
         // Must copy the shared data before we use it
-        byte[] dataCopy = new byte[size];
-		System.arraycopy(shared.array(), 0, dataCopy, 0, size);
+        PooledBuffer dataCopy = getBufferPool().acquire(size);
+        dataCopy.getBuffer().put(shared.array(), 0, size);
+        dataCopy.getBuffer().flip();
 
         Envelope env = new Envelope( p, dataCopy, true );
         addEnvelope( env );
@@ -383,7 +412,7 @@ public class SelectorKernel extends AbstractKernel
             SocketChannel c = (SocketChannel)key.channel();
 
             // We will send what we can and move on.
-            ByteBuffer current = p.peekPending();
+            PooledBuffer current = p.peekPending();
             if( current == NioEndpoint.CLOSE_MARKER ) {
                 // This connection wants to be closed now
                 closeEndpoint(p);
@@ -392,12 +421,8 @@ public class SelectorKernel extends AbstractKernel
                 return;
             }
 
-            c.write( current );
-
-            // If we wrote all of that packet then we need to remove it
-            if( current.remaining() == 0 ) {
-                p.removePending();
-            }
+            // If we write all of that packet then it gets removed
+            p.writePending( c );
 
             // If we happened to empty the pending queue then let's read
             // again.
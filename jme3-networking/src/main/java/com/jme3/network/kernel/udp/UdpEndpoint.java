@@ -34,6 +34,7 @@ package com.jme3.network.kernel.udp;
 import com.jme3.network.kernel.Endpoint;
 import com.jme3.network.kernel.Kernel;
 import com.jme3.network.kernel.KernelException;
+import com.jme3.network.kernel.PooledBuffer;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -146,6 +147,44 @@ public class UdpEndpoint implements Endpoint
         }
     }
 
+    /**
+     *  Sends the data to the other end of the connection without
+     *  copying it.  The endpoint retains the buffer until the kernel
+     *  has written the datagram.  The caller keeps its own reference,
+     *  which it must still release.
+     */
+    public void send( PooledBuffer data )
+    {
+        if( !isConnected() ) {
+            throw new KernelException( "Endpoint is not connected:" + this );
+        }
+        
+        ByteBuffer bytes = data.getBuffer();
+        if( !bytes.hasArray() ) {
+            // Datagram packets need an array so direct buffers
+            // get copied... and then there is nothing to keep
+            byte[] temp = new byte[data.size()];
+            ByteBuffer source = bytes.duplicate();
+            source.position(0);
+            source.get(temp);
+            send( ByteBuffer.wrap(temp) );
+            return;
+        }
+        
+        DatagramPacket p = new DatagramPacket( bytes.array(), bytes.arrayOffset(), 
+                                               data.size(), address );
+                                               
+        // Just queue it up for the kernel threads to write
+        // out, keeping the bytes until then
+        data.retain();
+        try {
+            kernel.enqueueWrite( this, p, data );
+        } catch( RuntimeException e ) {
+            data.release();
+            throw e;
+        }
+    }
+
     @Override
     public String toString()
     {
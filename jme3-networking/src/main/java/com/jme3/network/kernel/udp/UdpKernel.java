@@ -133,9 +133,15 @@ public class UdpKernel extends AbstractKernel
 
         if( copy ) {
             // Copy the data just once
-            byte[] temp = new byte[data.remaining()];
-            System.arraycopy(data.array(), data.position(), temp, 0, data.remaining());
-            data = ByteBuffer.wrap(temp);
+            PooledBuffer buffer = getBufferPool().acquire(data.remaining());
+            buffer.getBuffer().put(data.duplicate());
+            buffer.getBuffer().flip();
+            try {
+                broadcast( filter, buffer, reliable );
+            } finally {
+                buffer.release();
+            }
+            return;
         }
 
         // Hand it to all of the endpoints that match our routing
@@ -149,6 +155,35 @@ public class UdpKernel extends AbstractKernel
         }
     }
 
+    @Override
+    public void broadcast( Filter<? super Endpoint> filter, PooledBuffer data, boolean reliable )
+    {
+        if( reliable )
+            throw new UnsupportedOperationException( "Reliable send not supported by this kernel." );
+
+        // Hand it to all of the endpoints that match our routing
+        for( UdpEndpoint p : socketEndpoints.values() ) {
+            // Does it match the filter?
+            if( filter != null && !filter.apply(p) )
+                continue;
+    
+            // Send the data, the endpoint keeps its own reference
+            // until the datagram is written
+            p.send( data );
+        }
+    }
+
+    @Override
+    public void send( Endpoint endpoint, PooledBuffer data )
+    {
+        if( endpoint instanceof UdpEndpoint ) {
+            // Our endpoints can keep the buffer until it is written
+            ((UdpEndpoint)endpoint).send( data );
+        } else {
+            super.send( endpoint, data );
+        }
+    }
+
     protected Endpoint getEndpoint( SocketAddress address, boolean create )
     {
         UdpEndpoint p = socketEndpoints.get(address);
@@ -189,8 +224,9 @@ public class UdpKernel extends AbstractKernel
         Endpoint p = getEndpoint( packet.getSocketAddress(), true );
 
         // We'll copy the data to trim it.
-        byte[] data = new byte[packet.getLength()];
-        System.arraycopy(packet.getData(), 0, data, 0, data.length);
+        PooledBuffer data = getBufferPool().acquire(packet.getLength());
+        data.getBuffer().put(packet.getData(), packet.getOffset(), packet.getLength());
+        data.getBuffer().flip();
 
         Envelope env = new Envelope( p, data, false );
         addEnvelope( env );
@@ -198,35 +234,56 @@ public class UdpKernel extends AbstractKernel
 
     protected void enqueueWrite( Endpoint endpoint, DatagramPacket packet )
     {
-        writer.execute( new MessageWriter(endpoint, packet) );
+        writer.execute( new MessageWriter(endpoint, packet, null) );
+    } 
+
+    /**
+     *  Queues the packet for writing and releases the buffer holding
+     *  its data once it has been written.  The caller's reference to
+     *  the buffer is handed over to the writer.
+     */
+    protected void enqueueWrite( Endpoint endpoint, DatagramPacket packet, PooledBuffer buffer )
+    {
+        writer.execute( new MessageWriter(endpoint, packet, buffer) );
     } 
 
     protected class MessageWriter implements Runnable
     {
         private Endpoint endpoint;
         private DatagramPacket packet;
+        private PooledBuffer buffer;
         
         public MessageWriter( Endpoint endpoint, DatagramPacket packet )
+        {
+            this(endpoint, packet, null);
+        }
+        
+        public MessageWriter( Endpoint endpoint, DatagramPacket packet, PooledBuffer buffer )
         {
             this.endpoint = endpoint;
             this.packet = packet;
+            this.buffer = buffer;
         }
         
         @Override
         public void run()
         {
-            // Not guaranteed to always work but an extra datagram
-            // to a dead connection isn't so big of a deal.
-            if( !endpoint.isConnected() ) {
-                return;
-            }
-            
             try {
+                // Not guaranteed to always work but an extra datagram
+                // to a dead connection isn't so big of a deal.
+                if( !endpoint.isConnected() ) {
+                    return;
+                }
+            
                 thread.getSocket().send(packet);
             } catch( Exception e ) {
                 KernelException exc = new KernelException( "Error sending datagram to:" + address, e );
                 exc.fillInStackTrace();
                 reportError(exc);
+            } finally {
+                if( buffer != null ) {
+                    buffer.release();
+                }
             }
         } 
     }
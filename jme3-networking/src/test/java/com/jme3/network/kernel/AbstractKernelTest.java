@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import com.jme3.network.Filter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks that kernels and endpoints that only know about ByteBuffers
+ *  get copies of pooled data.
+ */
+public class AbstractKernelTest
+{
+    private static PooledBuffer createMessage( BufferPool pool )
+    {
+        PooledBuffer buffer = pool.acquire(4);
+        buffer.getBuffer().putInt(42);
+        buffer.getBuffer().flip();
+        return buffer;
+    }
+
+    @Test
+    public void testPooledBroadcastIsCopied()
+    {
+        final List<ByteBuffer> sent = new ArrayList<ByteBuffer>();
+        AbstractKernel kernel = new AbstractKernel() {
+                @Override
+                public void initialize()
+                {
+                }
+
+                @Override
+                public void terminate()
+                {
+                }
+
+                @Override
+                public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, 
+                                       boolean reliable, boolean copy )
+                {
+                    sent.add(data);
+                }
+            };
+
+        PooledBuffer buffer = createMessage(kernel.getBufferPool());
+        kernel.broadcast(null, buffer, true);
+        buffer.release();
+
+        // The buffer can be reused while the kernel still has the data
+        PooledBuffer reused = kernel.getBufferPool().acquire(4);
+        assertSame(buffer, reused);
+        reused.getBuffer().putInt(0, 7);
+
+        assertEquals(1, sent.size());
+        assertEquals(4, sent.get(0).remaining());
+        assertEquals(42, sent.get(0).getInt(0));
+    }
+
+    @Test
+    public void testPooledSendIsCopied()
+    {
+        AbstractKernel kernel = new AbstractKernel() {
+                @Override
+                public void initialize()
+                {
+                }
+
+                @Override
+                public void terminate()
+                {
+                }
+
+                @Override
+                public void broadcast( Filter<? super Endpoint> filter, ByteBuffer data, 
+                                       boolean reliable, boolean copy )
+                {
+                }
+            };
+        RecordingEndpoint endpoint = new RecordingEndpoint(kernel);
+
+        PooledBuffer buffer = createMessage(kernel.getBufferPool());
+        kernel.send(endpoint, buffer);
+        buffer.release();
+        kernel.getBufferPool().acquire(4).getBuffer().putInt(0, 7);
+
+        assertEquals(1, endpoint.sent.size());
+        assertEquals(42, endpoint.sent.get(0).getInt(0));
+    }
+
+    private static class RecordingEndpoint implements Endpoint
+    {
+        private final Kernel kernel;
+        private final List<ByteBuffer> sent = new ArrayList<ByteBuffer>();
+
+        public RecordingEndpoint( Kernel kernel )
+        {
+            this.kernel = kernel;
+        }
+
+        @Override
+        public long getId()
+        {
+            return 1;
+        }
+
+        @Override
+        public String getAddress()
+        {
+            return "test";
+        }
+
+        @Override
+        public Kernel getKernel()
+        {
+            return kernel;
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public void send( ByteBuffer data )
+        {
+            sent.add(data);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void close( boolean flushData )
+        {
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks the reference counting of PooledBuffer and the recycling
+ *  done by BufferPool.
+ */
+public class BufferPoolTest
+{
+    @Test
+    public void testReleasedBufferIsRecycled()
+    {
+        BufferPool pool = new BufferPool(false);
+        PooledBuffer first = pool.acquire(100);
+        first.getBuffer().position(50);
+        first.release();
+
+        // Same size class so we get it back, reset for the new size
+        PooledBuffer second = pool.acquire(200);
+        assertSame(first, second);
+        assertEquals(0, second.getBuffer().position());
+        assertEquals(200, second.size());
+        second.release();
+    }
+
+    @Test
+    public void testRetainedBufferIsNotRecycled()
+    {
+        BufferPool pool = new BufferPool(false);
+        PooledBuffer buffer = pool.acquire(100);
+        buffer.retain();
+        buffer.release();
+        assertNotSame(buffer, pool.acquire(100));
+
+        buffer.release();
+        assertSame(buffer, pool.acquire(100));
+    }
+
+    @Test
+    public void testDoubleReleaseThrows()
+    {
+        BufferPool pool = new BufferPool(false);
+        PooledBuffer buffer = pool.acquire(100);
+        buffer.release();
+        try {
+            buffer.release();
+            fail("Expected an IllegalStateException");
+        } catch( IllegalStateException e ) {
+            // expected
+        }
+
+        // The failed release must not put the buffer in the pool again
+        PooledBuffer first = pool.acquire(100);
+        PooledBuffer second = pool.acquire(100);
+        assertSame(buffer, first);
+        assertNotSame(first, second);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRetainAfterReleaseThrows()
+    {
+        PooledBuffer buffer = new BufferPool(false).acquire(100);
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test
+    public void testSizeClasses()
+    {
+        BufferPool pool = new BufferPool(true);
+        assertEquals(BufferPool.MIN_BUFFER_SIZE, pool.acquire(1).getBuffer().capacity());
+        assertEquals(256, pool.acquire(256).getBuffer().capacity());
+        assertEquals(512, pool.acquire(257).getBuffer().capacity());
+        assertEquals(BufferPool.MAX_BUFFER_SIZE, 
+                     pool.acquire(BufferPool.MAX_BUFFER_SIZE).getBuffer().capacity());
+        assertTrue(pool.acquire(1).getBuffer().isDirect());
+
+        // A small buffer is not handed out for a larger request
+        PooledBuffer small = pool.acquire(100);
+        small.release();
+        assertNotSame(small, pool.acquire(1000));
+    }
+
+    @Test
+    public void testOversizedBufferIsNotPooled()
+    {
+        BufferPool pool = new BufferPool(false);
+        PooledBuffer buffer = pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE + 1, buffer.size());
+        buffer.release();
+        assertNotSame(buffer, pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1));
+    }
+
+    @Test
+    public void testMaxPooled()
+    {
+        BufferPool pool = new BufferPool(false, 1);
+        PooledBuffer first = pool.acquire(100);
+        PooledBuffer second = pool.acquire(100);
+        first.release();
+        second.release();
+
+        // Only the first one released was kept
+        assertSame(first, pool.acquire(100));
+        assertNotSame(second, pool.acquire(100));
+    }
+
+    @Test
+    public void testToByteBuffer()
+    {
+        PooledBuffer buffer = new BufferPool(true).acquire(4);
+        buffer.getBuffer().putInt(42);
+        buffer.getBuffer().flip();
+        buffer.getBuffer().position(3);
+
+        // The copy holds the whole content no matter the position
+        ByteBuffer copy = buffer.toByteBuffer();
+        assertEquals(4, copy.remaining());
+        assertTrue(copy.hasArray());
+        assertEquals(42, copy.getInt());
+        assertEquals(3, buffer.getBuffer().position());
+    }
+
+    @Test
+    public void testWrapIsNotPooled()
+    {
+        ByteBuffer data = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+        data.position(1);
+        PooledBuffer buffer = PooledBuffer.wrap(data);
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.getBuffer().get(0));
+        buffer.release();
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2009-2020 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.kernel.tcp;
+
+import com.jme3.network.Filter;
+import com.jme3.network.kernel.Endpoint;
+import com.jme3.network.kernel.PooledBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  Checks that endpoints sharing a broadcast buffer each write all of
+ *  it and give it back to the pool once they are done.
+ */
+public class NioEndpointTest
+{
+    private static SelectorKernel createKernel()
+    {
+        // Nothing is running so there is no selector to wake up
+        return new SelectorKernel(new InetSocketAddress(0)) {
+            @Override
+            protected void wakeupSelector()
+            {
+            }
+        };
+    }
+
+    private static PooledBuffer createMessage( SelectorKernel kernel, int size, int first )
+    {
+        PooledBuffer buffer = kernel.getBufferPool().acquire(size);
+        for( int i = 0; i < size; i++ ) {
+            buffer.getBuffer().put((byte)(first + i));
+        }
+        buffer.getBuffer().flip();
+        return buffer;
+    }
+
+    private static byte[] expected( int size, int first )
+    {
+        byte[] result = new byte[size];
+        for( int i = 0; i < size; i++ ) {
+            result[i] = (byte)(first + i);
+        }
+        return result;
+    }
+
+    /**
+     *  Writes one chunk at a time for each endpoint in turn, the way
+     *  the selector thread would for slow connections.
+     */
+    private static void writeAll( NioEndpoint[] endpoints, ChunkedChannel[] channels ) throws IOException
+    {
+        boolean pending = true;
+        while( pending ) {
+            pending = false;
+            for( int i = 0; i < endpoints.length; i++ ) {
+                if( endpoints[i].hasPending() ) {
+                    endpoints[i].writePending(channels[i]);
+                    pending = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharedBroadcastBuffer() throws IOException
+    {
+        SelectorKernel kernel = createKernel();
+        ChunkedChannel[] channels = { new ChunkedChannel(3), new ChunkedChannel(7), new ChunkedChannel(1000) };
+        NioEndpoint[] endpoints = new NioEndpoint[channels.length];
+        for( int i = 0; i < channels.length; i++ ) {
+            endpoints[i] = kernel.addEndpoint(channels[i]);
+        }
+
+        PooledBuffer first = createMessage(kernel, 20, 0);
+        PooledBuffer second = createMessage(kernel, 10, 100);
+        kernel.broadcast(null, first, true);
+        kernel.broadcast(null, second, true);
+        first.release();
+        second.release();
+
+        // Partly written by some endpoints, so still in use
+        endpoints[0].writePending(channels[0]);
+        endpoints[1].writePending(channels[1]);
+        assertNotSame(first, kernel.getBufferPool().acquire(20));
+
+        writeAll(endpoints, channels);
+
+        byte[] all = new byte[30];
+        System.arraycopy(expected(20, 0), 0, all, 0, 20);
+        System.arraycopy(expected(10, 100), 0, all, 20, 10);
+        for( ChunkedChannel c : channels ) {
+            assertArrayEquals(all, c.getWritten());
+        }
+
+        // The content was not moved by the endpoints
+        assertEquals(0, first.getBuffer().get(0));
+
+        // Both buffers went back to the pool
+        PooledBuffer a = kernel.getBufferPool().acquire(20);
+        PooledBuffer b = kernel.getBufferPool().acquire(20);
+        assertTrue((a == first && b == second) || (a == second && b == first));
+    }
+
+    @Test
+    public void testFilteredBroadcast() throws IOException
+    {
+        SelectorKernel kernel = createKernel();
+        ChunkedChannel[] channels = { new ChunkedChannel(4), new ChunkedChannel(4) };
+        final NioEndpoint[] endpoints = { kernel.addEndpoint(channels[0]), kernel.addEndpoint(channels[1]) };
+
+        PooledBuffer buffer = createMessage(kernel, 10, 0);
+        kernel.broadcast(new Filter<Endpoint>() {
+                @Override
+                public boolean apply( Endpoint input )
+                {
+                    return input != endpoints[1];
+                }
+            }, buffer, true);
+        buffer.release();
+
+        assertFalse(endpoints[1].hasPending());
+        writeAll(endpoints, channels);
+        assertArrayEquals(expected(10, 0), channels[0].getWritten());
+        assertEquals(0, channels[1].getWritten().length);
+        assertSame(buffer, kernel.getBufferPool().acquire(10));
+    }
+
+    @Test
+    public void testClearPendingReleasesBuffers() throws IOException
+    {
+        SelectorKernel kernel = createKernel();
+        ChunkedChannel[] channels = { new ChunkedChannel(4), new ChunkedChannel(4) };
+        NioEndpoint[] endpoints = { kernel.addEndpoint(channels[0]), kernel.addEndpoint(channels[1]) };
+
+        PooledBuffer buffer = createMessage(kernel, 10, 0);
+        kernel.broadcast(null, buffer, true);
+        buffer.release();
+
+        // One endpoint is closed part way through
+        endpoints[0].writePending(channels[0]);
+        endpoints[0].clearPending();
+        assertFalse(endpoints[0].hasPending());
+        assertNotSame(buffer, kernel.getBufferPool().acquire(10));
+
+        writeAll(endpoints, channels);
+        assertArrayEquals(expected(10, 0), channels[1].getWritten());
+        assertSame(buffer, kernel.getBufferPool().acquire(10));
+    }
+
+    @Test
+    public void testSendKeepsCallerReference() throws IOException
+    {
+        SelectorKernel kernel = createKernel();
+        ChunkedChannel channel = new ChunkedChannel(3);
+        NioEndpoint endpoint = kernel.addEndpoint(channel);
+
+        PooledBuffer buffer = createMessage(kernel, 8, 0);
+        kernel.send(endpoint, buffer);
+        writeAll(new NioEndpoint[] { endpoint }, new ChunkedChannel[] { channel });
+        assertArrayEquals(expected(8, 0), channel.getWritten());
+
+        // The caller's reference is still live until released
+        buffer.retain().release();
+        buffer.release();
+        assertSame(buffer, kernel.getBufferPool().acquire(8));
+    }
+
+    /**
+     *  A channel that only takes so many bytes per write.
+     */
+    private static class ChunkedChannel extends SocketChannel
+    {
+        private final int chunk;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        public ChunkedChannel( int chunk )
+        {
+            super(SelectorProvider.provider());
+            this.chunk = chunk;
+        }
+
+        public byte[] getWritten()
+        {
+            return written.toByteArray();
+        }
+
+        @Override
+        public int write( ByteBuffer src )
+        {
+            int size = Math.min(chunk, src.remaining());
+            byte[] bytes = new byte[size];
+            src.get(bytes);
+            written.write(bytes, 0, size);
+            return size;
+        }
+
+        @Override
+        public long write( ByteBuffer[] srcs, int offset, int length )
+        {
+            long total = 0;
+            for( int i = offset; i < offset + length; i++ ) {
+                total += write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public int read( ByteBuffer dst )
+        {
+            return 0;
+        }
+
+        @Override
+        public long read( ByteBuffer[] dsts, int offset, int length )
+        {
+            return 0;
+        }
+
+        @Override
+        public SocketChannel bind( SocketAddress local )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> SocketChannel setOption( SocketOption<T> name, T value )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T getOption( SocketOption<T> name )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<SocketOption<?>> supportedOptions()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SocketChannel shutdownInput()
+        {
+            return this;
+        }
+
+        @Override
+        public SocketChannel shutdownOutput()
+        {
+            return this;
+        }
+
+        @Override
+        public Socket socket()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isConnectionPending()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean connect( SocketAddress remote )
+        {
+            return true;
+        }
+
+        @Override
+        public boolean finishConnect()
+        {
+            return true;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress()
+        {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress()
+        {
+            return null;
+        }
+
+        @Override
+        protected void implCloseSelectableChannel()
+        {
+        }
+
+        @Override
+        protected void implConfigureBlocking( boolean block )
+        {
+        }
+    }
+}